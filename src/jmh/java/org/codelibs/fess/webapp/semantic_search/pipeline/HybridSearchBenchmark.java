@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency and throughput of the hybrid query compared with the rank fusion of a lexical and a neural search
+ * against a live OpenSearch cluster with a Fess document index and a deployed embedding model.
+ * The fusion mode sends both searches at the same time, as the rank fusion processor runs its searchers in parallel,
+ * and the hybrid mode sends one hybrid query with the normalization pipeline of {@link HybridSearchPipeline}.
+ * The lexical query is a query_string query on the title and content fields, not the full query of the default searcher.
+ *
+ * It is configured by environment variables, which are passed to the forked JVM:
+ * OPENSEARCH_URL (default http://localhost:9201), SEMANTIC_INDEX (default fess.search),
+ * SEMANTIC_MODEL_ID (required), SEMANTIC_FIELD (default content_vector) and SEMANTIC_K (default 10).
+ *
+ * Run with: SEMANTIC_MODEL_ID=... mvn -Pjmh test-compile exec:exec -Djmh.benchmark=HybridSearchBenchmark
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HybridSearchBenchmark {
+
+    private static final String PIPELINE = "fess_semantic_search_hybrid_benchmark";
+
+    private static final String[] QUERIES = { "open source enterprise search server", "how to configure the crawler",
+            "full text search with japanese documents", "install fess with docker", "access control of search results",
+            "schedule a web crawl", "search log analysis", "ldap authentication settings" };
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private HttpClient client;
+
+    private String url;
+
+    private String index;
+
+    private String modelId;
+
+    private String field;
+
+    private int k;
+
+    /**
+     * Provisions the hybrid search pipeline and checks that both modes return hits.
+     *
+     * @throws Exception if the cluster is not available or not configured
+     */
+    @Setup
+    public void setup() throws Exception {
+        url = getenv("OPENSEARCH_URL", "http://localhost:9201");
+        index = getenv("SEMANTIC_INDEX", "fess.search");
+        modelId = getenv("SEMANTIC_MODEL_ID", null);
+        field = getenv("SEMANTIC_FIELD", "content_vector");
+        k = Integer.parseInt(getenv("SEMANTIC_K", "10"));
+        if (modelId == null) {
+            throw new IllegalStateException("Set SEMANTIC_MODEL_ID to the ID of the deployed embedding model.");
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        final String pipeline = new HybridSearchPipeline(null).createPipeline("min_max", "arithmetic_mean", new float[] { 0.3f, 0.7f });
+        final HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/_search/pipeline/" + PIPELINE))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(pipeline))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Failed to put the search pipeline: " + response.body());
+        }
+        for (final String body : new String[] { fusion(), hybrid() }) {
+            if (!body.contains("\"hits\"")) {
+                throw new IllegalStateException("Unexpected search response: " + body);
+            }
+        }
+    }
+
+    /**
+     * Rank fusion: a lexical and a neural search sent at the same time.
+     *
+     * @return the responses
+     */
+    @Benchmark
+    public String fusion() {
+        final String query = nextQuery();
+        final CompletableFuture<String> lexical = search(lexicalQuery(query), null);
+        final CompletableFuture<String> neural = search(neuralQuery(query), null);
+        return lexical.join() + neural.join();
+    }
+
+    /**
+     * Hybrid query: one search with the lexical and the neural query normalized by the search pipeline.
+     *
+     * @return the response
+     */
+    @Benchmark
+    public String hybrid() {
+        final String query = nextQuery();
+        return search("{\"hybrid\":{\"queries\":[" + lexicalQuery(query) + "," + neuralQuery(query) + "]}}", PIPELINE).join();
+    }
+
+    private String nextQuery() {
+        return QUERIES[Math.floorMod(counter.getAndIncrement(), QUERIES.length)];
+    }
+
+    private String lexicalQuery(final String query) {
+        return "{\"query_string\":{\"query\":\"" + query + "\",\"fields\":[\"title^0.5\",\"content^0.05\"]}}";
+    }
+
+    private String neuralQuery(final String query) {
+        return "{\"neural\":{\"" + field + "\":{\"query_text\":\"" + query + "\",\"model_id\":\"" + modelId + "\",\"k\":" + k + "}}}";
+    }
+
+    private CompletableFuture<String> search(final String query, final String pipeline) {
+        final String path = "/" + index + "/_search" + (pipeline != null ? "?search_pipeline=" + pipeline : "");
+        final String body = "{\"size\":" + k + ",\"_source\":false,\"query\":" + query + "}";
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(url + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build(), HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body);
+    }
+
+    private static String getenv(final String name, final String defaultValue) {
+        final String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
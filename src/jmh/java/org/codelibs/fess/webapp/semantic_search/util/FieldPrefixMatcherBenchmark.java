@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-query cost of the field prefix detection in SemanticSearchHelper.rewriteQuery()
+ * and of the field lookup in SemanticSearcher.isSearchableField() with 60 search fields.
+ * The baselines are the linear scans used before {@link FieldPrefixMatcher}.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FieldPrefixMatcherBenchmark {
+
+    /** The query, with or without a field prefix. */
+    @Param({ "open source enterprise search server", "fess crawler filetype:pdf" })
+    public String query;
+
+    /** The field name to look up. */
+    @Param({ "filetype", "nonexistent" })
+    public String field;
+
+    private String[] fields;
+
+    private FieldPrefixMatcher matcher;
+
+    /**
+     * Creates 60 search fields like the default and additional Fess search fields.
+     */
+    @Setup
+    public void setup() {
+        final String[] defaults = { "url", "doc_id", "host", "site", "title", "content", "content_length", "last_modified", "timestamp",
+                "mimetype", "filetype", "filename", "label", "segment", "anchor", "click_count", "favorite_count", "lang", "inurl" };
+        fields = new String[60];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = i < defaults.length ? defaults[i] : "custom_field_" + i;
+        }
+        matcher = new FieldPrefixMatcher(fields);
+    }
+
+    /**
+     * Baseline: the indexOf scan over all fields.
+     *
+     * @return true if a field prefix is found
+     */
+    @Benchmark
+    public boolean prefixIndexOfScan() {
+        for (final String f : fields) {
+            if (query.indexOf(f + ":") != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The compiled field prefix matcher.
+     *
+     * @return true if a field prefix is found
+     */
+    @Benchmark
+    public boolean prefixMatcher() {
+        return matcher.hasFieldPrefix(query);
+    }
+
+    /**
+     * Baseline: the linear scan of the field array.
+     *
+     * @return true if the field is found
+     */
+    @Benchmark
+    public boolean containsLinearScan() {
+        for (final String f : fields) {
+            if (field.equals(f)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The hash lookup of the compiled matcher.
+     *
+     * @return true if the field is found
+     */
+    @Benchmark
+    public boolean containsMatcher() {
+        return matcher.contains(field);
+    }
+}
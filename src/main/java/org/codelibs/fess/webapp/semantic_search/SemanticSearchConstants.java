@@ -83,9 +83,234 @@ public class SemanticSearchConstants {
     /** Configuration key for batch inference enablement. */
     public static final String BATCH_INFERENCE_ENABLED = PREFIX + "batch_inference.enabled";
 
+    /** Configuration key for the maximum number of query texts sent in one batch inference request. */
+    public static final String BATCH_INFERENCE_MAX_SIZE = PREFIX + "batch_inference.max_size";
+
+    /** Configuration key for the maximum wait time in milliseconds to fill a batch inference request. */
+    public static final String BATCH_INFERENCE_MAX_WAIT = PREFIX + "batch_inference.max_wait";
+
+    /** Configuration key for the maximum number of batch inference requests sent at the same time. */
+    public static final String BATCH_INFERENCE_MAX_CONCURRENCY = PREFIX + "batch_inference.max_concurrency";
+
+    /** Configuration key for the maximum time in milliseconds a search waits for a batched embedding. */
+    public static final String BATCH_INFERENCE_TIMEOUT = PREFIX + "batch_inference.timeout";
+
     /** Configuration key for performance monitoring enablement. */
     public static final String PERFORMANCE_MONITORING_ENABLED = PREFIX + "performance.monitoring.enabled";
 
+    /** Configuration key for query embedding cache enablement. */
+    public static final String QUERY_CACHE_ENABLED = PREFIX + "query_cache.enabled";
+
+    /** Configuration key for the maximum memory size in bytes used by the query embedding cache. */
+    public static final String QUERY_CACHE_MAX_MEMORY = PREFIX + "query_cache.max_memory";
+
+    /** Configuration key for the query embedding cache expiration time in seconds. */
+    public static final String QUERY_CACHE_EXPIRE = PREFIX + "query_cache.expire";
+
+    /** Configuration key for the query embedding cache type (float or int8). */
+    public static final String QUERY_CACHE_TYPE = PREFIX + "query_cache.type";
+
+    /** Configuration key for the file path of the persistent query vector store. */
+    public static final String QUERY_VECTOR_STORE_PATH = PREFIX + "query_vector_store.path";
+
+    /** Configuration key for the maximum number of vectors in the persistent query vector store. */
+    public static final String QUERY_VECTOR_STORE_MAX_ENTRIES = PREFIX + "query_vector_store.max_entries";
+
+    /** Configuration key for query embedding warm-up from search logs at startup. */
+    public static final String QUERY_WARMUP_ENABLED = PREFIX + "query_warmup.enabled";
+
+    /** Configuration key for the number of the most frequent logged queries to warm up. */
+    public static final String QUERY_WARMUP_SIZE = PREFIX + "query_warmup.size";
+
+    /** Configuration key for the number of queries embedded in one warm-up request. */
+    public static final String QUERY_WARMUP_BATCH_SIZE = PREFIX + "query_warmup.batch_size";
+
+    /** Configuration key for the number of concurrent warm-up requests. */
+    public static final String QUERY_WARMUP_CONCURRENCY = PREFIX + "query_warmup.concurrency";
+
+    /** Configuration key for the warm-up time budget in seconds. */
+    public static final String QUERY_WARMUP_TIMEOUT = PREFIX + "query_warmup.timeout";
+
+    /** Configuration key for the file created when the warm-up is finished. */
+    public static final String QUERY_WARMUP_READY_FILE = PREFIX + "query_warmup.ready_file";
+
+    /** Configuration key for deduplication of identical concurrent semantic search requests. */
+    public static final String SINGLE_FLIGHT_ENABLED = PREFIX + "single_flight.enabled";
+
+    /** Configuration key for the maximum k of a k-NN search. */
+    public static final String KNN_MAX_K = PREFIX + "knn.max_k";
+
+    /** Configuration key for the per-session cache of k-NN result windows. */
+    public static final String RESULT_WINDOW_CACHE_ENABLED = PREFIX + "result_window_cache.enabled";
+
+    /** Configuration key for the number of k-NN hits fetched into one cached result window. */
+    public static final String RESULT_WINDOW_CACHE_WINDOW_SIZE = PREFIX + "result_window_cache.window_size";
+
+    /** Configuration key for the maximum number of cached result windows. */
+    public static final String RESULT_WINDOW_CACHE_MAX_SIZE = PREFIX + "result_window_cache.max_size";
+
+    /** Configuration key for the result window cache expiration time in seconds. */
+    public static final String RESULT_WINDOW_CACHE_EXPIRE = PREFIX + "result_window_cache.expire";
+
+    /** Configuration key for latency-adaptive ef_search enablement. */
+    public static final String EF_SEARCH_CONTROLLER_ENABLED = PREFIX + "ef_search_controller.enabled";
+
+    /** Configuration key for the minimum ef_search of the adaptive controller. */
+    public static final String EF_SEARCH_CONTROLLER_MIN = PREFIX + "ef_search_controller.min";
+
+    /** Configuration key for the maximum ef_search of the adaptive controller. */
+    public static final String EF_SEARCH_CONTROLLER_MAX = PREFIX + "ef_search_controller.max";
+
+    /** Configuration key for the target p95 latency in milliseconds of the whole semantic search request of the adaptive controller. */
+    public static final String EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY = PREFIX + "ef_search_controller.target_search_latency";
+
+    /** Configuration key for the number of concurrent searches above which ef_search is reduced. */
+    public static final String EF_SEARCH_CONTROLLER_MAX_CONCURRENCY = PREFIX + "ef_search_controller.max_concurrency";
+
+    /** Configuration key for the number of recent latencies used by the adaptive controller. */
+    public static final String EF_SEARCH_CONTROLLER_WINDOW_SIZE = PREFIX + "ef_search_controller.window_size";
+
+    /** Configuration key for the single-round-trip hybrid query mode. */
+    public static final String HYBRID_ENABLED = PREFIX + "hybrid.enabled";
+
+    /** Configuration key for the name of the search pipeline provisioned for hybrid queries. */
+    public static final String HYBRID_PIPELINE = PREFIX + "hybrid.pipeline";
+
+    /** Configuration key for the score normalization technique of hybrid queries (min_max, l2 or z_score). */
+    public static final String HYBRID_NORMALIZATION = PREFIX + "hybrid.normalization";
+
+    /** Configuration key for the score combination technique of hybrid queries (arithmetic_mean, geometric_mean or harmonic_mean). */
+    public static final String HYBRID_COMBINATION = PREFIX + "hybrid.combination";
+
+    /** Configuration key for the comma-separated weights of the lexical and the neural query. */
+    public static final String HYBRID_WEIGHTS = PREFIX + "hybrid.weights";
+
+    /** Configuration key for radial k-NN search with the minimum score instead of k. */
+    public static final String RADIAL_SEARCH_ENABLED = PREFIX + "radial_search.enabled";
+
+    /** Configuration key for the maximum k of the content field when additional vector fields are searched. */
+    public static final String CONTENT_K = PREFIX + "content.k";
+
+    /** Configuration key for the names of additional vector fields searched with the content field. */
+    public static final String VECTOR_FIELDS = PREFIX + "vector_fields";
+
+    /** Configuration key prefix for the settings of an additional vector field. */
+    public static final String VECTOR_FIELD_PREFIX = PREFIX + "vector_field.";
+
+    /** Configuration key for routing keyword-style queries to the lexical search. */
+    public static final String QUERY_ROUTING_ENABLED = PREFIX + "query_routing.enabled";
+
+    /** Configuration key for the query classifier: rule, click_log or a class name. */
+    public static final String QUERY_ROUTING_CLASSIFIER = PREFIX + "query_routing.classifier";
+
+    /** Configuration key for the minimum number of terms of a semantic query. */
+    public static final String QUERY_ROUTING_MIN_TERMS = PREFIX + "query_routing.min_terms";
+
+    /** Configuration key for the number of click log samples required before the trained classifier is used. */
+    public static final String QUERY_ROUTING_MIN_SAMPLES = PREFIX + "query_routing.min_samples";
+
+    /** Configuration key for the number of click logs used to train the classifier. */
+    public static final String QUERY_ROUTING_TRAINING_SIZE = PREFIX + "query_routing.training_size";
+
+    /** Configuration key for merging the default field clauses of a query into one neural query. */
+    public static final String QUERY_AGGREGATION_ENABLED = PREFIX + "query_aggregation.enabled";
+
+    /** Configuration key for selecting the exact k-NN search for selective filters. */
+    public static final String EXACT_SEARCH_ENABLED = PREFIX + "exact_search.enabled";
+
+    /** Configuration key for the maximum number of filtered documents searched exactly. */
+    public static final String EXACT_SEARCH_THRESHOLD = PREFIX + "exact_search.threshold";
+
+    /** Configuration key for the maximum number of cached filter counts. */
+    public static final String EXACT_SEARCH_COUNT_CACHE_MAX_SIZE = PREFIX + "exact_search.count_cache.max_size";
+
+    /** Configuration key for the expiration time of cached filter counts in seconds. */
+    public static final String EXACT_SEARCH_COUNT_CACHE_EXPIRE = PREFIX + "exact_search.count_cache.expire";
+
+    /** Configuration key for the vector storage mode of the content field (in_memory or on_disk). */
+    public static final String CONTENT_MODE = PREFIX + "content.mode";
+
+    /** Configuration key for the vector compression level of the content field (1x, 2x, 4x, 8x, 16x or 32x). */
+    public static final String CONTENT_COMPRESSION_LEVEL = PREFIX + "content.compression_level";
+
+    /** Configuration key for enabling or disabling rescoring of quantized vectors. */
+    public static final String RESCORE_ENABLED = PREFIX + "rescore.enabled";
+
+    /** Configuration key for the oversample factor of candidates rescored with full-precision vectors. */
+    public static final String RESCORE_OVERSAMPLE_FACTOR = PREFIX + "rescore.oversample_factor";
+
+    /** Configuration key for L2-normalizing indexed and query vectors and mapping the content field with the innerproduct space. */
+    public static final String VECTOR_NORMALIZATION_ENABLED = PREFIX + "vector_normalization.enabled";
+
+    /** Configuration key for the name of the ingest pipeline normalizing indexed vectors. */
+    public static final String VECTOR_NORMALIZATION_PIPELINE = PREFIX + "vector_normalization.pipeline";
+
+    /** Configuration key for the document-level centroid vector field of nested chunk vectors. */
+    public static final String CONTENT_CENTROID_FIELD = PREFIX + "content.centroid_field";
+
+    /** Configuration key for the factor of candidate documents found by the centroid vectors. */
+    public static final String CENTROID_CANDIDATE_FACTOR = PREFIX + "centroid.candidate_factor";
+
+    /** Configuration key for the name of the ingest pipeline computing centroid vectors. */
+    public static final String CENTROID_PIPELINE = PREFIX + "centroid.pipeline";
+
+    /** Configuration key for the expiration time in seconds of the checks whether the centroid vector field is populated. */
+    public static final String CENTROID_CHECK_EXPIRE = PREFIX + "centroid.check.expire";
+
+    /** Configuration key for the retrieval mode: dense, sparse or both. */
+    public static final String RETRIEVAL_MODE = PREFIX + "retrieval.mode";
+
+    /** Configuration key for the rank_features field of sparse token weights. */
+    public static final String CONTENT_SPARSE_FIELD = PREFIX + "content.sparse.field";
+
+    /** Configuration key for the ML model ID of the sparse encoding of documents. */
+    public static final String CONTENT_SPARSE_MODEL_ID = PREFIX + "content.sparse.model_id";
+
+    /** Configuration key for the ML model ID of the sparse encoding of queries, such as a tokenizer of the doc-only mode. */
+    public static final String CONTENT_SPARSE_QUERY_MODEL_ID = PREFIX + "content.sparse.query_model_id";
+
+    /** Configuration key for the boost of the sparse query combined with the dense query. */
+    public static final String CONTENT_SPARSE_BOOST = PREFIX + "content.sparse.boost";
+
+    /** Configuration key for the name of the ingest pipeline encoding sparse token weights. */
+    public static final String SPARSE_PIPELINE = PREFIX + "sparse.pipeline";
+
+    /** Configuration key for the binary vector field of the Hamming-space first-pass search. */
+    public static final String CONTENT_BINARY_FIELD = PREFIX + "content.binary_field";
+
+    /** Configuration key for the factor of candidate documents found by the binary vectors. */
+    public static final String BINARY_CANDIDATE_FACTOR = PREFIX + "binary.candidate_factor";
+
+    /** Configuration key for the name of the ingest pipeline computing binary vectors. */
+    public static final String BINARY_PIPELINE = PREFIX + "binary.pipeline";
+
+    /** Configuration key for storing the full-precision content vectors without a graph when binary vectors are used. */
+    public static final String BINARY_FLAT_VECTOR = PREFIX + "binary.flat_vector";
+
+    /** Configuration key for the expiration time in seconds of the checks whether the binary vector field is populated. */
+    public static final String BINARY_CHECK_EXPIRE = PREFIX + "binary.check.expire";
+
+    /** Configuration key for searching similar documents with the stored vector of the source document. */
+    public static final String SIMILAR_DOC_VECTOR_ENABLED = PREFIX + "similar_doc.vector.enabled";
+
+    /** Configuration key for the language-to-vector-field map, such as ja:ja_vector,en:en_vector, of per-language models. */
+    public static final String LANGUAGE_VECTOR_FIELDS = PREFIX + "language_vector_fields";
+
+    /** Configuration key for the name of the ingest pipeline computing per-language vectors. */
+    public static final String LANGUAGE_PIPELINE = PREFIX + "language.pipeline";
+
+    /** Configuration key for skipping the content vector of documents embedded by the model of their language. */
+    public static final String LANGUAGE_SKIP_CONTENT_VECTOR = PREFIX + "language.skip_content_vector";
+
+    /** Configuration key for the label-to-vector-field map, such as sales:sales_vector,hr:hr_vector, of label partitions. */
+    public static final String LABEL_VECTOR_FIELDS = PREFIX + "label_vector_fields";
+
+    /** Configuration key for the name of the ingest pipeline copying vectors to label partitions. */
+    public static final String LABEL_PIPELINE = PREFIX + "label.pipeline";
+
+    /** Configuration key for the expiration time in seconds of the checks whether label partitions are populated. */
+    public static final String LABEL_PARTITION_CHECK_EXPIRE = PREFIX + "label.partition_check.expire";
+
     /** Component name for SemanticSearchHelper in DI container. */
     public static final String SEMANTIC_SEARCH_HELPER = "semanticSearchHelper";
 }
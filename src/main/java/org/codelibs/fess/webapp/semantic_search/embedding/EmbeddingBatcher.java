@@ -0,0 +1,421 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Coalesces embedding requests from concurrent threads into batched ML predict requests.
+ * A request waits until the batch is full or the wait window has elapsed since the first request of the batch.
+ * Up to the maximum number of concurrent batches are predicted at the same time, so that the next batch is collected
+ * while the previous batches are being predicted.
+ */
+public class EmbeddingBatcher implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(EmbeddingBatcher.class);
+
+    /**
+     * Function computing embeddings for a batch of texts.
+     */
+    @FunctionalInterface
+    public interface Predictor {
+        /**
+         * Computes embeddings for the given texts.
+         *
+         * @param modelId the ML model ID
+         * @param texts the texts to embed
+         * @return the embeddings in the same order as the texts, or an empty list if the request failed
+         */
+        List<float[]> predict(String modelId, List<String> texts);
+    }
+
+    /** The function computing embeddings. */
+    protected final Predictor predictor;
+
+    /** The maximum number of texts in a batch. */
+    protected final int maxBatchSize;
+
+    /** The maximum wait time in milliseconds to fill a batch. */
+    protected final long maxWaitMillis;
+
+    /** The maximum time in milliseconds a caller waits for its embedding. */
+    protected final long timeoutMillis;
+
+    /** The maximum number of batches predicted at the same time. */
+    protected final int maxConcurrentBatches;
+
+    /** Permits of the batches predicted at the same time. */
+    protected final Semaphore batchPermits;
+
+    /** Pending requests. */
+    protected final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    /** The dispatcher thread, or null if this batcher has not been started. */
+    protected Thread dispatcher;
+
+    /** The executor predicting batches, or null if this batcher has not been started. */
+    protected ExecutorService executor;
+
+    /** Whether this batcher is running. */
+    protected volatile boolean running;
+
+    /** The number of requested texts. */
+    protected final AtomicLong requestCount = new AtomicLong();
+
+    /** The number of sent predict requests. */
+    protected final AtomicLong batchCount = new AtomicLong();
+
+    /** The total time in nanoseconds requests waited in the queue before being sent. */
+    protected final AtomicLong totalQueueTime = new AtomicLong();
+
+    /**
+     * Constructs a batcher predicting one batch at a time. The dispatcher thread is started by {@link #start()}.
+     *
+     * @param predictor the function computing embeddings
+     * @param maxBatchSize the maximum number of texts in a batch
+     * @param maxWaitMillis the maximum wait time in milliseconds to fill a batch
+     * @param timeoutMillis the maximum time in milliseconds a caller waits for its embedding
+     */
+    public EmbeddingBatcher(final Predictor predictor, final int maxBatchSize, final long maxWaitMillis, final long timeoutMillis) {
+        this(predictor, maxBatchSize, maxWaitMillis, timeoutMillis, 1);
+    }
+
+    /**
+     * Constructs a batcher. The dispatcher thread is started by {@link #start()}.
+     *
+     * @param predictor the function computing embeddings
+     * @param maxBatchSize the maximum number of texts in a batch
+     * @param maxWaitMillis the maximum wait time in milliseconds to fill a batch
+     * @param timeoutMillis the maximum time in milliseconds a caller waits for its embedding
+     * @param maxConcurrentBatches the maximum number of batches predicted at the same time
+     */
+    public EmbeddingBatcher(final Predictor predictor, final int maxBatchSize, final long maxWaitMillis, final long timeoutMillis,
+            final int maxConcurrentBatches) {
+        this.predictor = predictor;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitMillis = Math.max(0L, maxWaitMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.maxConcurrentBatches = Math.max(1, maxConcurrentBatches);
+        this.batchPermits = new Semaphore(this.maxConcurrentBatches);
+    }
+
+    /**
+     * Starts the dispatcher thread and the executor predicting batches.
+     *
+     * @return this batcher
+     * @throws IllegalStateException if this batcher has already been started
+     */
+    public synchronized EmbeddingBatcher start() {
+        if (dispatcher != null) {
+            throw new IllegalStateException("The batcher has already been started.");
+        }
+        running = true;
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrentBatches, r -> {
+            final Thread thread = new Thread(r, "SemanticSearchEmbeddingPredictor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatch, "SemanticSearchEmbeddingBatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        return this;
+    }
+
+    /**
+     * Gets the embedding for the text, waiting until the batch containing it is processed.
+     *
+     * @param modelId the ML model ID
+     * @param text the text to embed
+     * @return the embedding, or null if it could not be computed
+     */
+    public float[] embed(final String modelId, final String text) {
+        if (!running) {
+            return null;
+        }
+        final Request request = new Request(modelId, text);
+        requestCount.incrementAndGet();
+        queue.add(request);
+        if (!running && queue.remove(request)) {
+            // closed while enqueuing, and the dispatcher will not take the request any more
+            return null;
+        }
+        try {
+            return request.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted while waiting for the embedding.", e);
+        } catch (final ExecutionException | TimeoutException e) {
+            logger.warn("Failed to get the embedding with model:{}", modelId, e);
+        }
+        return null;
+    }
+
+    /**
+     * Takes pending requests in batches and hands them to the executor.
+     * A batch is collected only when a permit of the concurrent batches is available,
+     * so that requests arriving while all permits are in use are sent in the next, fuller batch.
+     */
+    protected void dispatch() {
+        while (running) {
+            final List<Request> batch = new ArrayList<>(maxBatchSize);
+            boolean acquired = false;
+            try {
+                batchPermits.acquire();
+                acquired = true;
+                final Request first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    final long deadline = first.createdTime + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                    while (batch.size() < maxBatchSize) {
+                        final long remaining = deadline - System.nanoTime();
+                        final Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                if (running) {
+                    logger.debug("Interrupted the dispatcher.", e);
+                }
+            } catch (final Exception e) {
+                logger.warn("Failed to process embedding requests.", e);
+            }
+            if (!batch.isEmpty()) {
+                // the collected requests are sent even if the dispatcher is interrupted, or completed if the executor is shut down
+                submit(batch);
+            } else if (acquired) {
+                batchPermits.release();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Hands a batch to the executor, which releases the permit of the batch after processing it.
+     * The batch is completed without embeddings if the executor has been shut down.
+     *
+     * @param batch the requests to process
+     */
+    protected void submit(final List<Request> batch) {
+        try {
+            executor.execute(() -> {
+                try {
+                    process(batch);
+                } finally {
+                    batchPermits.release();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            batchPermits.release();
+            logger.debug("Rejected embedding requests.", e);
+            for (final Request request : batch) {
+                request.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Completes all pending requests without embeddings.
+     */
+    protected void drain() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.complete(null);
+        }
+    }
+
+    /**
+     * Sends a batch of requests to the predictor and completes them.
+     * Requests are grouped by model ID and duplicate texts are sent only once.
+     *
+     * @param batch the requests to process
+     */
+    protected void process(final List<Request> batch) {
+        final long now = System.nanoTime();
+        final Map<String, Map<String, List<Request>>> modelRequests = new LinkedHashMap<>();
+        for (final Request request : batch) {
+            totalQueueTime.addAndGet(now - request.createdTime);
+            modelRequests.computeIfAbsent(request.modelId, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(request.text, k -> new ArrayList<>())
+                    .add(request);
+        }
+        modelRequests.forEach((modelId, textRequests) -> {
+            final List<String> texts = new ArrayList<>(textRequests.keySet());
+            List<float[]> embeddings;
+            try {
+                batchCount.incrementAndGet();
+                embeddings = predictor.predict(modelId, texts);
+            } catch (final Exception e) {
+                logger.warn("Failed to predict embeddings with model:{}", modelId, e);
+                embeddings = Collections.emptyList();
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                final float[] embedding = i < embeddings.size() ? embeddings.get(i) : null;
+                for (final Request request : textRequests.get(texts.get(i))) {
+                    request.future.complete(embedding);
+                }
+            }
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Processed {} embedding requests in {}ms.", batch.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now));
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread and the executor. Pending requests are completed without embeddings.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        drain();
+    }
+
+    /**
+     * Gets the number of requested texts.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the number of sent predict requests.
+     *
+     * @return the batch count
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Gets the average number of texts per predict request.
+     *
+     * @return the average batch size
+     */
+    public double getAverageBatchSize() {
+        final long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) requestCount.get() / batches;
+    }
+
+    /**
+     * Gets the average latency in milliseconds added by waiting for a batch to fill.
+     *
+     * @return the average queue time in milliseconds
+     */
+    public double getAverageQueueTime() {
+        final long requests = requestCount.get();
+        return requests == 0 ? 0.0 : totalQueueTime.get() / 1000000.0 / requests;
+    }
+
+    /**
+     * Gets the maximum number of texts in a batch.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Gets the maximum wait time in milliseconds to fill a batch.
+     *
+     * @return the maximum wait time
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Gets the maximum time in milliseconds a caller waits for its embedding.
+     *
+     * @return the timeout
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Gets the maximum number of batches predicted at the same time.
+     *
+     * @return the maximum number of concurrent batches
+     */
+    public int getMaxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingBatcher [maxBatchSize=" + maxBatchSize + ", maxWait=" + maxWaitMillis + "ms, timeout=" + timeoutMillis
+                + "ms, maxConcurrentBatches="
+                + maxConcurrentBatches + ", requests=" + getRequestCount()
+                + ", batches=" + getBatchCount() + ", avgBatchSize=" + String.format("%.2f", getAverageBatchSize()) + ", avgQueueTime="
+                + String.format("%.2f", getAverageQueueTime()) + "ms]";
+    }
+
+    /**
+     * Pending embedding request.
+     */
+    protected static class Request {
+        /** The ML model ID. */
+        protected final String modelId;
+        /** The text to embed. */
+        protected final String text;
+        /** The time in nanoseconds the request was created. */
+        protected final long createdTime = System.nanoTime();
+        /** The future completed with the embedding. */
+        protected final CompletableFuture<float[]> future = new CompletableFuture<>();
+
+        /**
+         * Constructs a request.
+         *
+         * @param modelId the ML model ID
+         * @param text the text to embed
+         */
+        protected Request(final String modelId, final String text) {
+            this.modelId = modelId;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import com.google.common.base.CharMatcher;
+
+/**
+ * Cache of query embeddings keyed by ML model ID and normalized query text.
+ */
+public interface EmbeddingCache {
+
+    /**
+     * Gets the cached embedding for the given model and text.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the embedding, or null if it is not cached
+     */
+    float[] get(String modelId, String text);
+
+    /**
+     * Stores the embedding for the given model and text.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @param embedding the embedding vector
+     */
+    void put(String modelId, String text, float[] embedding);
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+
+    /**
+     * Gets the estimated memory size in bytes used by cached entries.
+     *
+     * @return the memory usage in bytes
+     */
+    long getMemoryUsage();
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return the number of entries
+     */
+    long size();
+
+    /**
+     * Removes all cached entries.
+     */
+    void clear();
+
+    /**
+     * Creates a cache key from the model ID and the normalized query text.
+     * Leading and trailing whitespace is removed and inner whitespace is collapsed.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the cache key
+     */
+    static String createKey(final String modelId, final String text) {
+        return modelId + '\n' + CharMatcher.whitespace().trimAndCollapseFrom(text, ' ');
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Concurrent LRU cache of float embeddings bounded by memory size and expiration time.
+ */
+public class FloatEmbeddingCache implements EmbeddingCache {
+
+    /** Estimated overhead in bytes per entry for the cache entry, key object and array header. */
+    protected static final int ENTRY_OVERHEAD = 96;
+
+    /** The underlying cache. */
+    protected final Cache<String, float[]> cache;
+
+    /** The maximum memory size in bytes. */
+    protected final long maxMemory;
+
+    /** The estimated memory size in bytes used by cached entries. */
+    protected final AtomicLong memoryUsage = new AtomicLong();
+
+    /**
+     * Constructs a cache bounded by the given memory size.
+     *
+     * @param maxMemory the maximum memory size in bytes
+     * @param expireSeconds the expiration time in seconds after an entry is written, or 0 to disable expiration
+     */
+    public FloatEmbeddingCache(final long maxMemory, final long expireSeconds) {
+        this.maxMemory = maxMemory;
+        final CacheBuilder<String, float[]> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxMemory)
+                .weigher(FloatEmbeddingCache::weigh)
+                .removalListener(notification -> memoryUsage.addAndGet(-weigh(notification.getKey(), notification.getValue())));
+        if (expireSeconds > 0) {
+            builder.expireAfterWrite(expireSeconds, TimeUnit.SECONDS);
+        }
+        cache = builder.recordStats().build();
+    }
+
+    @Override
+    public float[] get(final String modelId, final String text) {
+        return cache.getIfPresent(EmbeddingCache.createKey(modelId, text));
+    }
+
+    @Override
+    public void put(final String modelId, final String text, final float[] embedding) {
+        final String key = EmbeddingCache.createKey(modelId, text);
+        memoryUsage.addAndGet(weigh(key, embedding));
+        cache.put(key, embedding);
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Gets the maximum memory size in bytes.
+     *
+     * @return the maximum memory size
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Estimates the memory size in bytes of a cache entry.
+     *
+     * @param key the cache key
+     * @param embedding the embedding vector
+     * @return the estimated size in bytes
+     */
+    protected static int weigh(final String key, final float[] embedding) {
+        return ENTRY_OVERHEAD + key.length() * 2 + (embedding != null ? embedding.length * Float.BYTES : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "FloatEmbeddingCache [size=" + size() + ", memory=" + getMemoryUsage() + "/" + maxMemory + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + "]";
+    }
+}
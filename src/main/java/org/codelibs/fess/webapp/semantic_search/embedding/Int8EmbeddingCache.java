@@ -0,0 +1,605 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.webapp.semantic_search.util.LongIntHashIndex;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Embedding cache storing vectors as scalar-quantized int8 values with a per-vector scale and offset.
+ * Entries are kept in slots of large primitive arrays instead of per-entry objects and are dequantized on read.
+ * Keys are stored as 128-bit digests: the slots are looked up by the first half, and the second half is compared on lookup,
+ * so that a hash collision never returns the vector of another query. Entries are evicted with the CLOCK algorithm when the cache is full.
+ * The slots of each model are kept in a segment whose dimension is fixed by the first vector of the model,
+ * so that models with different dimensions can share the cache. The memory size is split evenly among the expected models,
+ * so that a segment is allocated for a new model without touching the entries of the other models.
+ * When more models than expected store vectors, the memory size is split again among all segments,
+ * and the existing segments are allocated again without their entries.
+ * The memory size covers the slots and the key indices.
+ */
+public class Int8EmbeddingCache implements EmbeddingCache {
+    private static final Logger logger = LogManager.getLogger(Int8EmbeddingCache.class);
+
+    /** Bytes per slot besides the codes: scale, offset, both halves of the key digest, write time and reference bit. */
+    protected static final int ENTRY_OVERHEAD = Float.BYTES * 2 + Long.BYTES * 3 + 1;
+
+    /** The initial number of entries of the key index. */
+    protected static final int INITIAL_INDEX_SIZE = 1024;
+
+    /** The quantization error is measured for one of this number of stored vectors. */
+    protected static final int QUANTIZATION_SAMPLE_INTERVAL = 64;
+
+    /** Access to the reference bits, which are set by readers holding only the read lock. */
+    private static final VarHandle REFERENCED = MethodHandles.arrayElementVarHandle(boolean[].class);
+
+    /** The maximum memory size in bytes. */
+    protected final long maxMemory;
+
+    /** The expiration time in nanoseconds, or 0 to disable expiration. */
+    protected final long expireNanos;
+
+    /** The number of models whose segments share the memory size. */
+    protected final int modelCount;
+
+    /** Lock guarding the segments. */
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Segments by model ID. */
+    protected final Map<String, Segment> segments = new HashMap<>();
+
+    /** The number of cache hits. */
+    protected final AtomicLong hitCount = new AtomicLong();
+
+    /** The number of cache misses. */
+    protected final AtomicLong missCount = new AtomicLong();
+
+    /** The number of stored vectors. */
+    protected final AtomicLong putCount = new AtomicLong();
+
+    /** The number of vectors sampled for the quantization error. */
+    protected final AtomicLong quantizedCount = new AtomicLong();
+
+    /** Sum of cosine similarities between sampled original and dequantized vectors. */
+    protected final DoubleAdder cosineSum = new DoubleAdder();
+
+    /** The minimum cosine similarity between an original and its dequantized vector. */
+    protected volatile double minCosine = 1.0;
+
+    /**
+     * Slots of the vectors of one model.
+     */
+    protected static class Segment {
+        /** The vector dimension. */
+        protected final int dimension;
+
+        /** The number of slots. */
+        protected final int capacity;
+
+        /** Quantized vectors, {@code dimension} bytes per slot. */
+        protected final byte[] codes;
+
+        /** Scale per slot. */
+        protected final float[] scales;
+
+        /** Offset (minimum value) per slot. */
+        protected final float[] offsets;
+
+        /** First half of the key digest per slot, which is the key of the index. */
+        protected final long[] keyHashes;
+
+        /** Second half of the key digest per slot, compared on lookup. */
+        protected final long[] keyChecks;
+
+        /** Write time in nanoseconds per slot. */
+        protected final long[] writeTimes;
+
+        /** CLOCK reference bit per slot. */
+        protected final boolean[] referenced;
+
+        /** Index from the first halves of the key digests to slots. */
+        protected final LongIntHashIndex index;
+
+        /** The number of used slots. */
+        protected int count;
+
+        /** The CLOCK hand. */
+        protected int hand;
+
+        /**
+         * Allocates the slots for the given dimension within the memory size.
+         * The key index starts small and grows with the entries, but its size at full capacity is reserved.
+         *
+         * @param dimension the vector dimension
+         * @param memory the memory size in bytes
+         */
+        protected Segment(final int dimension, final long memory) {
+            this.dimension = dimension;
+            int low = 0;
+            int high = (int) Math.min(memory / getEntrySize(dimension), Integer.MAX_VALUE / dimension);
+            while (low < high) {
+                final int mid = (int) (((long) low + high + 1) / 2);
+                if (getMemorySize(dimension, mid) <= memory) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            capacity = low;
+            codes = new byte[capacity * dimension];
+            scales = new float[capacity];
+            offsets = new float[capacity];
+            keyHashes = new long[capacity];
+            keyChecks = new long[capacity];
+            writeTimes = new long[capacity];
+            referenced = new boolean[capacity];
+            index = new LongIntHashIndex(Math.min(capacity, INITIAL_INDEX_SIZE));
+        }
+
+        /**
+         * Gets the memory size in bytes used by the entries.
+         *
+         * @return the memory usage
+         */
+        protected long getMemoryUsage() {
+            return count * getEntrySize(dimension) + index.getMemoryUsage();
+        }
+    }
+
+    /**
+     * Constructs a cache bounded by the given memory size for one model.
+     *
+     * @param maxMemory the maximum memory size in bytes
+     * @param expireSeconds the expiration time in seconds after an entry is written, or 0 to disable expiration
+     */
+    public Int8EmbeddingCache(final long maxMemory, final long expireSeconds) {
+        this(maxMemory, expireSeconds, 1);
+    }
+
+    /**
+     * Constructs a cache bounded by the given memory size, which is split evenly among the expected models.
+     *
+     * @param maxMemory the maximum memory size in bytes
+     * @param expireSeconds the expiration time in seconds after an entry is written, or 0 to disable expiration
+     * @param modelCount the number of models expected to store vectors
+     */
+    public Int8EmbeddingCache(final long maxMemory, final long expireSeconds, final int modelCount) {
+        this.maxMemory = maxMemory;
+        expireNanos = expireSeconds > 0 ? TimeUnit.SECONDS.toNanos(expireSeconds) : 0L;
+        this.modelCount = Math.max(1, modelCount);
+    }
+
+    @Override
+    public float[] get(final String modelId, final String text) {
+        final long[] digest = digest(modelId, text);
+        lock.readLock().lock();
+        try {
+            final Segment segment = segments.get(modelId);
+            if (segment != null) {
+                final int slot = segment.index.get(digest[0]);
+                if (slot != LongIntHashIndex.NOT_FOUND && segment.keyChecks[slot] == digest[1]
+                        && !isExpired(segment, slot, System.nanoTime())) {
+                    if (!(boolean) REFERENCED.getOpaque(segment.referenced, slot)) {
+                        REFERENCED.setOpaque(segment.referenced, slot, true);
+                    }
+                    hitCount.incrementAndGet();
+                    return dequantize(segment, slot);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void put(final String modelId, final String text, final float[] embedding) {
+        if (embedding == null || embedding.length == 0) {
+            return;
+        }
+        final long[] digest = digest(modelId, text);
+        lock.writeLock().lock();
+        try {
+            Segment segment = segments.get(modelId);
+            if (segment == null) {
+                segment = allocate(modelId, embedding.length);
+            }
+            if (embedding.length != segment.dimension || segment.capacity == 0) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Skip caching the embedding: model={}, dimension={}, expected={}, capacity={}", modelId,
+                            embedding.length, segment.dimension, segment.capacity);
+                }
+                return;
+            }
+            // a colliding entry with the same first half of the digest is replaced
+            int slot = segment.index.get(digest[0]);
+            if (slot == LongIntHashIndex.NOT_FOUND) {
+                slot = segment.count < segment.capacity ? segment.count++ : evict(segment);
+                segment.index.put(digest[0], slot);
+                segment.keyHashes[slot] = digest[0];
+            }
+            segment.keyChecks[slot] = digest[1];
+            quantize(segment, slot, embedding);
+            segment.writeTimes[slot] = System.nanoTime();
+            segment.referenced[slot] = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (putCount.getAndIncrement() % QUANTIZATION_SAMPLE_INTERVAL == 0) {
+            recordQuantizationError(embedding);
+        }
+    }
+
+    /**
+     * Adds the segment of a model with its share of the maximum memory size.
+     * While fewer segments than the expected models exist, the other segments keep their entries.
+     * Otherwise the maximum memory size is split evenly among all segments,
+     * and the existing segments are allocated again with their smaller share, so their entries are dropped.
+     * It is called with the write lock held.
+     *
+     * @param modelId the ML model ID
+     * @param dim the vector dimension of the model
+     * @return the segment of the model
+     */
+    protected Segment allocate(final String modelId, final int dim) {
+        final long memory;
+        if (segments.size() < modelCount) {
+            memory = maxMemory / modelCount;
+        } else {
+            memory = maxMemory / (segments.size() + 1);
+            logger.info("Reallocate the int8 embedding cache for {} because more than {} models store vectors.", modelId, modelCount);
+            for (final Map.Entry<String, Segment> entry : segments.entrySet()) {
+                entry.setValue(new Segment(entry.getValue().dimension, memory));
+            }
+        }
+        final Segment segment = new Segment(dim, memory);
+        segments.put(modelId, segment);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Allocated int8 embedding cache: model={}, dimension={}, capacity={}, segments={}", modelId, dim,
+                    segment.capacity, segments.size());
+        }
+        return segment;
+    }
+
+    /**
+     * Selects a slot of the segment to reuse with the CLOCK algorithm and removes its entry from the index.
+     * Expired entries and entries not referenced since the last sweep are evicted.
+     *
+     * @param segment the segment
+     * @return the slot
+     */
+    protected int evict(final Segment segment) {
+        final long now = System.nanoTime();
+        while (true) {
+            final int slot = segment.hand;
+            segment.hand = (segment.hand + 1) % segment.capacity;
+            if (segment.referenced[slot] && !isExpired(segment, slot, now)) {
+                segment.referenced[slot] = false;
+            } else {
+                segment.index.remove(segment.keyHashes[slot]);
+                return slot;
+            }
+        }
+    }
+
+    private boolean isExpired(final Segment segment, final int slot, final long now) {
+        return expireNanos > 0 && now - segment.writeTimes[slot] > expireNanos;
+    }
+
+    /**
+     * Quantizes the vector into the slot by mapping [min, max] to 256 levels.
+     *
+     * @param segment the segment
+     * @param slot the slot
+     * @param vector the vector
+     */
+    protected void quantize(final Segment segment, final int slot, final float[] vector) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (final float v : vector) {
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+        }
+        final float scale = (max - min) / 255f;
+        final int dimension = segment.dimension;
+        final int base = slot * dimension;
+        for (int i = 0; i < dimension; i++) {
+            final int q = scale > 0f ? Math.round((vector[i] - min) / scale) : 0;
+            segment.codes[base + i] = (byte) (Math.min(255, Math.max(0, q)) - 128);
+        }
+        segment.scales[slot] = scale;
+        segment.offsets[slot] = min;
+    }
+
+    /**
+     * Dequantizes the vector in the slot.
+     *
+     * @param segment the segment
+     * @param slot the slot
+     * @return the dequantized vector
+     */
+    protected float[] dequantize(final Segment segment, final int slot) {
+        final int dimension = segment.dimension;
+        final float[] vector = new float[dimension];
+        final float scale = segment.scales[slot];
+        final float offset = segment.offsets[slot];
+        final int base = slot * dimension;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (segment.codes[base + i] + 128) * scale + offset;
+        }
+        return vector;
+    }
+
+    /**
+     * Records the cosine similarity between the vector and its quantized representation.
+     * It is called for a sample of the stored vectors, outside the lock.
+     *
+     * @param vector the original vector
+     */
+    protected void recordQuantizationError(final float[] vector) {
+        final double cosine = cosineSimilarity(vector, dequantize(vector));
+        quantizedCount.incrementAndGet();
+        cosineSum.add(cosine);
+        if (cosine < minCosine) {
+            minCosine = cosine;
+        }
+    }
+
+    /**
+     * Quantizes and dequantizes the vector without storing it.
+     *
+     * @param vector the vector
+     * @return the vector after the int8 round trip
+     */
+    protected static float[] dequantize(final float[] vector) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (final float v : vector) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        final float scale = (max - min) / 255f;
+        final float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            final int q = scale > 0f ? Math.min(255, Math.max(0, Math.round((vector[i] - min) / scale))) : 0;
+            result[i] = q * scale + min;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector
+     * @return the cosine similarity, or 1 if either vector is zero
+     */
+    protected static double cosineSimilarity(final float[] a, final float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0.0 || normB == 0.0) {
+            return 1.0;
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    /**
+     * Computes the 128-bit key digest of the model ID and the normalized query text.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the digest as two longs
+     */
+    protected long[] digest(final String modelId, final String text) {
+        final byte[] bytes = Hashing.murmur3_128().hashString(EmbeddingCache.createKey(modelId, text), StandardCharsets.UTF_8).asBytes();
+        final ByteBuffer digest = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[] { digest.getLong(0), digest.getLong(Long.BYTES) };
+    }
+
+    /**
+     * Gets the memory size in bytes of a slot.
+     *
+     * @param dimension the vector dimension
+     * @return the slot size
+     */
+    protected static long getEntrySize(final int dimension) {
+        return dimension + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Gets the memory size in bytes of the given number of slots and the key index holding them.
+     *
+     * @param dimension the vector dimension
+     * @param slots the number of slots
+     * @return the memory size
+     */
+    protected static long getMemorySize(final int dimension, final int slots) {
+        return slots * getEntrySize(dimension) + LongIntHashIndex.getMemoryUsage(slots);
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        lock.readLock().lock();
+        try {
+            long usage = 0L;
+            for (final Segment segment : segments.values()) {
+                usage += segment.getMemoryUsage();
+            }
+            return usage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the memory size in bytes saved compared with storing the cached vectors as float arrays.
+     *
+     * @return the saved memory size
+     */
+    public long getMemorySaved() {
+        lock.readLock().lock();
+        try {
+            long saved = 0L;
+            for (final Segment segment : segments.values()) {
+                saved += (long) segment.count * segment.dimension * (Float.BYTES - 1);
+            }
+            return saved;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the average cosine similarity between sampled original and dequantized vectors.
+     * Values close to 1 mean that quantization has little impact on k-NN recall.
+     *
+     * @return the average cosine similarity
+     */
+    public double getAverageCosineSimilarity() {
+        final long n = quantizedCount.get();
+        return n == 0 ? 1.0 : cosineSum.sum() / n;
+    }
+
+    /**
+     * Gets the minimum cosine similarity between a sampled original and its dequantized vector.
+     *
+     * @return the minimum cosine similarity
+     */
+    public double getMinCosineSimilarity() {
+        return minCosine;
+    }
+
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            long size = 0L;
+            for (final Segment segment : segments.values()) {
+                size += segment.count;
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum number of entries of all segments, or 0 until the first vector is stored.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        lock.readLock().lock();
+        try {
+            int capacity = 0;
+            for (final Segment segment : segments.values()) {
+                capacity += segment.capacity;
+            }
+            return capacity;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (final Segment segment : segments.values()) {
+                segment.index.clear();
+                segment.count = 0;
+                segment.hand = 0;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of models with a segment.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum memory size in bytes.
+     *
+     * @return the maximum memory size
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Gets the number of models whose segments share the memory size.
+     *
+     * @return the number of expected models
+     */
+    public int getModelCount() {
+        return modelCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Int8EmbeddingCache [size=" + size() + "/" + getCapacity() + ", segments=" + getSegmentCount() + ", memory="
+                + getMemoryUsage() + "/" + maxMemory + ", saved=" + getMemorySaved() + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + ", avgCosine=" + String.format("%.5f", getAverageCosineSimilarity()) + "]";
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.webapp.semantic_search.util.LongIntHashIndex;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Persistent store of query embeddings in an append-only memory-mapped file.
+ * Records have a fixed width of a 128-bit key digest followed by the vector, and are looked up through an in-memory hash index
+ * of the first half of the digests, rebuilt when the file is opened. The second half is compared on lookup,
+ * so that a hash collision never returns the vector of another query. Vectors are read directly from the mapped file,
+ * and the mapping grows with the number of records up to the maximum.
+ * The file is reinitialized when it was written for a different model or dimension.
+ */
+public class QueryVectorStore implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(QueryVectorStore.class);
+
+    /** Magic number identifying the file format. */
+    protected static final int MAGIC = 0x46515653; // FQVS
+
+    /** The file format version. */
+    protected static final int VERSION = 2;
+
+    /** The header size in bytes. */
+    protected static final int HEADER_SIZE = 512;
+
+    /** The number of records mapped when the file is created. */
+    protected static final int INITIAL_CAPACITY = 1024;
+
+    private static final int DIGEST_SIZE = Long.BYTES * 2;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int VERSION_OFFSET = 4;
+
+    private static final int DIMENSION_OFFSET = 8;
+
+    private static final int COUNT_OFFSET = 12;
+
+    private static final int MODEL_ID_LENGTH_OFFSET = 16;
+
+    private static final int MODEL_ID_OFFSET = 20;
+
+    /** The path of the store file. */
+    protected final Path path;
+
+    /** The ML model ID of stored vectors. */
+    protected final String modelId;
+
+    /** The vector dimension. */
+    protected final int dimension;
+
+    /** The maximum number of records. */
+    protected final int maxEntries;
+
+    /** The record size in bytes. */
+    protected final int recordSize;
+
+    /** The file channel. */
+    protected final FileChannel channel;
+
+    /** The mapped file, replaced by a larger mapping when the records exceed its capacity. */
+    protected MappedByteBuffer buffer;
+
+    /** The number of records the current mapping can hold. */
+    protected int capacity;
+
+    /** Index from key hashes to record numbers. */
+    protected final LongIntHashIndex index;
+
+    /** Lock guarding the index and appends. */
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The number of records. */
+    protected int count;
+
+    /**
+     * Opens the store, creating or reinitializing the file if needed.
+     *
+     * @param path the path of the store file
+     * @param modelId the ML model ID of stored vectors
+     * @param dimension the vector dimension
+     * @param maxEntries the maximum number of records
+     * @throws IOException if an I/O error occurs
+     */
+    public QueryVectorStore(final Path path, final String modelId, final int dimension, final int maxEntries) throws IOException {
+        final byte[] modelIdBytes = modelId.getBytes(StandardCharsets.UTF_8);
+        if (modelIdBytes.length > HEADER_SIZE - MODEL_ID_OFFSET) {
+            throw new IllegalArgumentException("Model ID is too long: " + modelId);
+        }
+        if (dimension <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid dimension or max entries: " + dimension + ", " + maxEntries);
+        }
+        this.path = path;
+        this.modelId = modelId;
+        this.dimension = dimension;
+        this.maxEntries = maxEntries;
+        recordSize = DIGEST_SIZE + dimension * Float.BYTES;
+        if (HEADER_SIZE + (long) recordSize * maxEntries > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The store size exceeds 2GB: dimension=" + dimension + ", maxEntries=" + maxEntries);
+        }
+
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long storedRecords = Math.max(0L, (channel.size() - HEADER_SIZE) / recordSize);
+            capacity = (int) Math.min(maxEntries, Math.max(INITIAL_CAPACITY, storedRecords));
+            buffer = map(capacity);
+            if (isCompatible(buffer, modelIdBytes, dimension)) {
+                count = (int) Math.min(Math.min(buffer.getInt(COUNT_OFFSET), storedRecords), maxEntries);
+            } else {
+                logger.info("Initialize query vector store: path={}, model={}, dimension={}", path, modelId, dimension);
+                initHeader(modelIdBytes);
+                count = 0;
+            }
+            index = new LongIntHashIndex(count);
+            for (int i = 0; i < count; i++) {
+                index.put(buffer.getLong(recordOffset(i)), i);
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Loaded {} query vectors from {}", count, path);
+        }
+    }
+
+    /**
+     * Checks whether the file header matches the format, model and dimension of a store.
+     *
+     * @param buffer the mapped file
+     * @param modelIdBytes the encoded model ID
+     * @param dimension the vector dimension
+     * @return true if the stored records can be used
+     */
+    private static boolean isCompatible(final ByteBuffer buffer, final byte[] modelIdBytes, final int dimension) {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+                || buffer.getInt(DIMENSION_OFFSET) != dimension || buffer.getInt(MODEL_ID_LENGTH_OFFSET) != modelIdBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < modelIdBytes.length; i++) {
+            if (buffer.get(MODEL_ID_OFFSET + i) != modelIdBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the header and the given number of records, extending the file if needed.
+     *
+     * @param records the number of records to map
+     * @return the mapped buffer
+     * @throws IOException if an I/O error occurs
+     */
+    private MappedByteBuffer map(final int records) throws IOException {
+        final MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) recordSize * records);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        return mapped;
+    }
+
+    private void initHeader(final byte[] modelIdBytes) {
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(DIMENSION_OFFSET, dimension);
+        buffer.putInt(COUNT_OFFSET, 0);
+        buffer.putInt(MODEL_ID_LENGTH_OFFSET, modelIdBytes.length);
+        buffer.put(MODEL_ID_OFFSET, modelIdBytes);
+    }
+
+    /**
+     * Gets a read-only view of the stored vector for the text without copying it.
+     *
+     * @param text the query text
+     * @return the vector view, or null if the text is not stored
+     */
+    public FloatBuffer getBuffer(final String text) {
+        final long[] digest = digest(text);
+        lock.readLock().lock();
+        try {
+            final int record = index.get(digest[0]);
+            if (record == LongIntHashIndex.NOT_FOUND) {
+                return null;
+            }
+            final int offset = recordOffset(record);
+            if (buffer.getLong(offset + Long.BYTES) != digest[1]) {
+                return null;
+            }
+            return buffer.slice(offset + DIGEST_SIZE, dimension * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer()
+                    .asReadOnlyBuffer();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the stored vector for the text.
+     *
+     * @param text the query text
+     * @return the vector, or null if the text is not stored
+     */
+    public float[] get(final String text) {
+        final FloatBuffer view = getBuffer(text);
+        if (view == null) {
+            return null;
+        }
+        final float[] vector = new float[dimension];
+        view.get(vector);
+        return vector;
+    }
+
+    /**
+     * Appends the vector for the text. The vector is ignored if the text or another text with the same first half
+     * of the digest is already stored, the dimension does not match, or the store is full.
+     *
+     * @param text the query text
+     * @param vector the vector
+     * @return true if the vector was appended
+     */
+    public boolean put(final String text, final float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            return false;
+        }
+        final long[] digest = digest(text);
+        lock.writeLock().lock();
+        try {
+            if (count >= maxEntries || index.get(digest[0]) != LongIntHashIndex.NOT_FOUND) {
+                return false;
+            }
+            if (count >= capacity) {
+                final int newCapacity = (int) Math.min(maxEntries, (long) capacity * 2);
+                buffer = map(newCapacity);
+                capacity = newCapacity;
+            }
+            final int offset = recordOffset(count);
+            buffer.putLong(offset, digest[0]);
+            buffer.putLong(offset + Long.BYTES, digest[1]);
+            buffer.slice(offset + DIGEST_SIZE, dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(vector);
+            index.put(digest[0], count);
+            count++;
+            buffer.putInt(COUNT_OFFSET, count);
+            return true;
+        } catch (final IOException e) {
+            logger.warn("Failed to extend the query vector store: {}", path, e);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of stored vectors.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ML model ID of stored vectors.
+     *
+     * @return the model ID
+     */
+    public String getModelId() {
+        return modelId;
+    }
+
+    /**
+     * Gets the vector dimension.
+     *
+     * @return the dimension
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the path of the store file.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the mapped file to the storage and closes it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int recordOffset(final int record) {
+        return HEADER_SIZE + record * recordSize;
+    }
+
+    /**
+     * Computes the 128-bit key digest of the model ID and the normalized query text.
+     *
+     * @param text the query text
+     * @return the digest as two longs
+     */
+    protected long[] digest(final String text) {
+        final byte[] bytes = Hashing.murmur3_128().hashString(EmbeddingCache.createKey(modelId, text), StandardCharsets.UTF_8).asBytes();
+        final ByteBuffer digest = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[] { digest.getLong(0), digest.getLong(Long.BYTES) };
+    }
+
+    @Override
+    public String toString() {
+        return "QueryVectorStore [path=" + path + ", model=" + modelId + ", dimension=" + dimension + ", size=" + size() + "/" + maxEntries
+                + "]";
+    }
+}
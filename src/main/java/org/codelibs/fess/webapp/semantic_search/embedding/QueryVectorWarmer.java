@@ -0,0 +1,284 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pre-computes query embeddings in the background before a node serves traffic.
+ * Queries are embedded in batches by a fixed number of threads within a time budget.
+ * When the warm-up finishes, an optional ready file is created as a readiness signal for load balancers.
+ */
+public class QueryVectorWarmer implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(QueryVectorWarmer.class);
+
+    /**
+     * Status of the warm-up.
+     */
+    public enum Status {
+        /** The warm-up has not started. */
+        NOT_STARTED,
+        /** The warm-up is running. */
+        RUNNING,
+        /** All queries were embedded. */
+        WARM,
+        /** The time budget was exhausted before all queries were embedded. */
+        TIMED_OUT,
+        /** The warm-up failed. */
+        FAILED
+    }
+
+    /** Supplier of the queries to embed. */
+    protected final Supplier<List<String>> querySupplier;
+
+    /** Function embedding a batch of queries and storing the results. */
+    protected final Consumer<List<String>> embedder;
+
+    /** The number of queries per batch. */
+    protected final int batchSize;
+
+    /** The number of concurrent batches. */
+    protected final int concurrency;
+
+    /** The time budget in milliseconds. */
+    protected final long timeoutMillis;
+
+    /** The file created when the warm-up is finished, or null. */
+    protected final Path readyFile;
+
+    /** The current status. */
+    protected volatile Status status = Status.NOT_STARTED;
+
+    /** The number of queries to embed. */
+    protected volatile int totalCount;
+
+    /** The number of processed queries. */
+    protected final AtomicInteger completedCount = new AtomicInteger();
+
+    /** The executor running batches. */
+    protected volatile ExecutorService executor;
+
+    /** The thread running the warm-up. */
+    protected Thread thread;
+
+    /** The elapsed time in milliseconds of the finished warm-up. */
+    protected volatile long elapsedTime;
+
+    /**
+     * Constructs a warmer.
+     *
+     * @param querySupplier supplier of the queries to embed
+     * @param embedder function embedding a batch of queries and storing the results
+     * @param batchSize the number of queries per batch
+     * @param concurrency the number of concurrent batches
+     * @param timeoutMillis the time budget in milliseconds
+     * @param readyFile the file created when the warm-up is finished, or null
+     */
+    public QueryVectorWarmer(final Supplier<List<String>> querySupplier, final Consumer<List<String>> embedder, final int batchSize,
+            final int concurrency, final long timeoutMillis, final Path readyFile) {
+        this.querySupplier = querySupplier;
+        this.embedder = embedder;
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutMillis = timeoutMillis;
+        this.readyFile = readyFile;
+    }
+
+    /**
+     * Starts the warm-up in a background thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        deleteReadyFile();
+        status = Status.RUNNING;
+        thread = new Thread(this::run, "SemanticSearchQueryVectorWarmer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the warm-up and waits until it finishes or the time budget is exhausted.
+     */
+    protected void run() {
+        final long startTime = System.currentTimeMillis();
+        final long deadline = startTime + timeoutMillis;
+        try {
+            final List<String> queries = querySupplier.get();
+            totalCount = queries.size();
+            logger.info("Starting query vector warm-up: queries={}, batchSize={}, concurrency={}, timeout={}ms", totalCount, batchSize,
+                    concurrency, timeoutMillis);
+
+            executor = Executors.newFixedThreadPool(concurrency, r -> {
+                final Thread t = new Thread(r, "SemanticSearchQueryVectorWarmer-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < queries.size(); i += batchSize) {
+                final List<String> batch = queries.subList(i, Math.min(i + batchSize, queries.size()));
+                executor.execute(() -> {
+                    if (System.currentTimeMillis() < deadline) {
+                        try {
+                            embedder.accept(batch);
+                        } catch (final Exception e) {
+                            logger.warn("Failed to warm up query vectors.", e);
+                        }
+                        final int completed = completedCount.addAndGet(batch.size());
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Query vector warm-up progress: {}/{}", completed, totalCount);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0 && executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)
+                    && completedCount.get() >= totalCount) {
+                status = Status.WARM;
+            } else {
+                executor.shutdownNow();
+                status = Status.TIMED_OUT;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = Status.FAILED;
+        } catch (final Exception e) {
+            logger.warn("Failed to run query vector warm-up.", e);
+            status = Status.FAILED;
+        }
+        elapsedTime = System.currentTimeMillis() - startTime;
+        logger.info("Finished query vector warm-up: {}", this);
+        createReadyFile();
+    }
+
+    /**
+     * Creates the ready file if it is configured.
+     */
+    protected void createReadyFile() {
+        if (readyFile != null) {
+            try {
+                final Path parent = readyFile.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                Files.write(readyFile, status.name().getBytes(StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                logger.warn("Failed to create the ready file: {}", readyFile, e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the ready file if it is configured.
+     */
+    protected void deleteReadyFile() {
+        if (readyFile != null) {
+            try {
+                Files.deleteIfExists(readyFile);
+            } catch (final IOException e) {
+                logger.warn("Failed to delete the ready file: {}", readyFile, e);
+            }
+        }
+    }
+
+    /**
+     * Stops the warm-up and deletes the ready file.
+     */
+    @Override
+    public synchronized void close() {
+        final ExecutorService current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        deleteReadyFile();
+    }
+
+    /**
+     * Waits until the warm-up finishes.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await(final long timeout) throws InterruptedException {
+        final Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current != null) {
+            current.join(timeout);
+        }
+    }
+
+    /**
+     * Checks whether the warm-up has finished, successfully or not, so that the node can serve traffic.
+     *
+     * @return true if the warm-up is not running
+     */
+    public boolean isReady() {
+        final Status current = status;
+        return current != Status.NOT_STARTED && current != Status.RUNNING;
+    }
+
+    /**
+     * Gets the current status.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of queries to embed.
+     *
+     * @return the total count
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the number of processed queries.
+     *
+     * @return the completed count
+     */
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryVectorWarmer [status=" + status + ", progress=" + getCompletedCount() + "/" + totalCount + ", elapsed=" + elapsedTime
+                + "ms]";
+    }
+}
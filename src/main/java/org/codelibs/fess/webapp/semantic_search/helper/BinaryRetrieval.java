@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import org.opensearch.index.query.QueryBuilder;
+
+/**
+ * Searches the binary vectors of the content field for candidates and scores them with the full-precision content vectors.
+ * It applies when the binary field is configured and populated.
+ */
+public class BinaryRetrieval implements DenseRetrieval {
+
+    @Override
+    public QueryBuilder build(final SemanticSearchHelper helper, final DenseQuery query) {
+        return helper.newBinaryQueryBuilder(query.getModelId(), query.getField(), query.getText(), query.getK(), query.getEfSearch(),
+                query.getFilter());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import org.opensearch.index.query.InnerHitBuilder;
+import org.opensearch.index.query.QueryBuilder;
+
+/**
+ * Parameters of a dense vector query passed to the retrieval paths.
+ */
+public class DenseQuery {
+
+    /** The ML model ID embedding the query text. */
+    protected final String modelId;
+
+    /** The vector field, or the full path of the chunk vector field with the nested field. */
+    protected final String field;
+
+    /** The query text. */
+    protected final String text;
+
+    /** The number of nearest neighbors. */
+    protected final int k;
+
+    /** The ef_search value, or null. */
+    protected final Integer efSearch;
+
+    /** The pre-filter applied during the k-NN search, or null. */
+    protected final QueryBuilder filter;
+
+    /** The nested field of the chunk vectors, or null for a top-level vector field. */
+    protected final String nestedField;
+
+    /** The inner hit of the best chunks, or null for a top-level vector field. */
+    protected final InnerHitBuilder innerHit;
+
+    /**
+     * Constructs a dense query.
+     *
+     * @param modelId the ML model ID
+     * @param field the vector field name
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter, or null
+     * @param nestedField the nested field name, or null
+     * @param innerHit the inner hit of the best chunks, or null
+     */
+    public DenseQuery(final String modelId, final String field, final String text, final int k, final Integer efSearch,
+            final QueryBuilder filter, final String nestedField, final InnerHitBuilder innerHit) {
+        this.modelId = modelId;
+        this.field = field;
+        this.text = text;
+        this.k = k;
+        this.efSearch = efSearch;
+        this.filter = filter;
+        this.nestedField = nestedField;
+        this.innerHit = innerHit;
+    }
+
+    /**
+     * Creates the same query on another top-level vector field.
+     *
+     * @param modelId the ML model ID of the field
+     * @param field the vector field name
+     * @return the dense query
+     */
+    public DenseQuery withField(final String modelId, final String field) {
+        return new DenseQuery(modelId, field, text, k, efSearch, filter, null, null);
+    }
+
+    /**
+     * Gets the ML model ID.
+     *
+     * @return the model ID
+     */
+    public String getModelId() {
+        return modelId;
+    }
+
+    /**
+     * Gets the vector field name.
+     *
+     * @return the vector field name
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Gets the query text.
+     *
+     * @return the query text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the number of nearest neighbors.
+     *
+     * @return the number of nearest neighbors
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Gets the ef_search value.
+     *
+     * @return the ef_search value, or null
+     */
+    public Integer getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Gets the pre-filter.
+     *
+     * @return the pre-filter, or null
+     */
+    public QueryBuilder getFilter() {
+        return filter;
+    }
+
+    /**
+     * Gets the nested field name.
+     *
+     * @return the nested field name, or null
+     */
+    public String getNestedField() {
+        return nestedField;
+    }
+
+    /**
+     * Gets the inner hit of the best chunks.
+     *
+     * @return the inner hit, or null
+     */
+    public InnerHitBuilder getInnerHit() {
+        return innerHit;
+    }
+
+    @Override
+    public String toString() {
+        return "DenseQuery [modelId=" + modelId + ", field=" + field + ", k=" + k + ", efSearch=" + efSearch + ", nestedField="
+                + nestedField + "]";
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import org.opensearch.index.query.QueryBuilder;
+
+/**
+ * A retrieval path of the dense vector query.
+ * The helper tries its retrieval paths in order and uses the query of the first one that applies to the search,
+ * so each path decides by itself whether its field is configured, populated and selected by the search.
+ */
+public interface DenseRetrieval {
+
+    /**
+     * Builds the dense query of this retrieval path.
+     *
+     * @param helper the helper running the search
+     * @param query the dense query to build
+     * @return the query builder, or null if this path does not apply to the search
+     */
+    QueryBuilder build(SemanticSearchHelper helper, DenseQuery query);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import java.util.List;
+
+import org.opensearch.index.query.DisMaxQueryBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+
+/**
+ * Searches the partition vector fields of the labels of the search filter instead of the content field.
+ * It applies when every label of the filter has a populated partition.
+ * A single partition is searched like any other vector field, so the result window cache applies to it,
+ * and several partitions are combined with a dis_max query.
+ */
+public class LabelPartitionRetrieval implements DenseRetrieval {
+
+    @Override
+    public QueryBuilder build(final SemanticSearchHelper helper, final DenseQuery query) {
+        final List<String> partitionFields = helper.getLabelPartitionFields();
+        if (partitionFields == null) {
+            return null;
+        }
+        if (partitionFields.size() == 1) {
+            return helper.buildFieldQueryBuilder(query.withField(query.getModelId(), partitionFields.get(0)));
+        }
+        // a document with several labels is scored once by its best partition
+        final DisMaxQueryBuilder partitionQuery = QueryBuilders.disMaxQuery();
+        for (final String partitionField : partitionFields) {
+            partitionQuery.add(helper.newVectorQueryBuilder(query.getModelId(), partitionField, query.getText(), query.getK(),
+                    query.getEfSearch(), query.getFilter()));
+        }
+        return partitionQuery;
+    }
+}
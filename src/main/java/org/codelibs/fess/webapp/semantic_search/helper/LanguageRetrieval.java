@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import org.opensearch.index.query.DisMaxQueryBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+
+/**
+ * Searches the vector field of the model of the search language instead of the content field.
+ * A search with one language is searched like any other vector field, so the result window cache applies to it.
+ * When documents of the languages have no content vector, a search with no or several languages
+ * combines the content field and all language fields with a dis_max query.
+ */
+public class LanguageRetrieval implements DenseRetrieval {
+
+    @Override
+    public QueryBuilder build(final SemanticSearchHelper helper, final DenseQuery query) {
+        final SemanticSearchHelper.VectorField languageField = helper.getLanguageVectorField();
+        if (languageField != null) {
+            return helper.buildFieldQueryBuilder(query.withField(languageField.getModelId(), languageField.getField()));
+        }
+        if (!helper.skipLanguageContentVector) {
+            return null;
+        }
+        final DisMaxQueryBuilder languageQuery = QueryBuilders.disMaxQuery();
+        languageQuery.add(helper.newVectorQueryBuilder(query.getModelId(), query.getField(), query.getText(), query.getK(),
+                query.getEfSearch(), query.getFilter()));
+        for (final SemanticSearchHelper.VectorField fieldOfLanguage : helper.languageVectorFields.values()) {
+            languageQuery.add(helper.newVectorQueryBuilder(fieldOfLanguage.getModelId(), fieldOfLanguage.getField(), query.getText(),
+                    query.getK(), query.getEfSearch(), query.getFilter()));
+        }
+        return languageQuery;
+    }
+}
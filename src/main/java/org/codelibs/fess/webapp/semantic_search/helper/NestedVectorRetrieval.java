@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import org.apache.lucene.search.join.ScoreMode;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+
+/**
+ * Searches the chunk vectors of the nested vector field and scores a document by its best chunk.
+ */
+public class NestedVectorRetrieval implements DenseRetrieval {
+
+    @Override
+    public QueryBuilder build(final SemanticSearchHelper helper, final DenseQuery query) {
+        final QueryBuilder vectorQuery = helper.newVectorQueryBuilder(query.getModelId(), query.getField(), query.getText(), query.getK(),
+                query.getEfSearch(), query.getFilter());
+        return QueryBuilders.nestedQuery(query.getNestedField(), vectorQuery, ScoreMode.Max).innerHit(query.getInnerHit());
+    }
+}
@@ -15,48 +15,171 @@
  */
 package org.codelibs.fess.webapp.semantic_search.helper;
 
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BATCH_INFERENCE_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BATCH_INFERENCE_MAX_CONCURRENCY;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BATCH_INFERENCE_MAX_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BATCH_INFERENCE_MAX_WAIT;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BATCH_INFERENCE_TIMEOUT;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BINARY_CANDIDATE_FACTOR;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BINARY_CHECK_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BINARY_FLAT_VECTOR;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CENTROID_CANDIDATE_FACTOR;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CENTROID_CHECK_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_BINARY_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_CENTROID_FIELD;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_CHUNK_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_COMPRESSION_LEVEL;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_DIMENSION;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_ENGINE;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_K;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_METHOD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_MODE;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_MODEL_ID;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_NESTED_FIELD;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_PARAM_EF_CONSTRUCTION;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_PARAM_EF_SEARCH;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_PARAM_M;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPACE_TYPE;
-import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_BOOST;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_MODEL_ID;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_QUERY_MODEL_ID;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_MAX;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_MAX_CONCURRENCY;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_MIN;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EF_SEARCH_CONTROLLER_WINDOW_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EXACT_SEARCH_COUNT_CACHE_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EXACT_SEARCH_COUNT_CACHE_MAX_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EXACT_SEARCH_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.EXACT_SEARCH_THRESHOLD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.KNN_MAX_K;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LABEL_PARTITION_CHECK_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LABEL_VECTOR_FIELDS;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LANGUAGE_SKIP_CONTENT_VECTOR;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LANGUAGE_VECTOR_FIELDS;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_AGGREGATION_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_CACHE_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_CACHE_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_CACHE_MAX_MEMORY;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_CACHE_TYPE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_ROUTING_CLASSIFIER;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_ROUTING_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_ROUTING_MIN_SAMPLES;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_ROUTING_MIN_TERMS;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_ROUTING_TRAINING_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_VECTOR_STORE_MAX_ENTRIES;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_VECTOR_STORE_PATH;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_BATCH_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_CONCURRENCY;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_READY_FILE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.QUERY_WARMUP_TIMEOUT;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RADIAL_SEARCH_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESCORE_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESCORE_OVERSAMPLE_FACTOR;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESULT_WINDOW_CACHE_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESULT_WINDOW_CACHE_EXPIRE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESULT_WINDOW_CACHE_MAX_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RESULT_WINDOW_CACHE_WINDOW_SIZE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.RETRIEVAL_MODE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.SIMILAR_DOC_VECTOR_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.VECTOR_FIELDS;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.VECTOR_FIELD_PREFIX;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.VECTOR_NORMALIZATION_ENABLED;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.join.ScoreMode;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.core.lang.ThreadUtil;
 import org.codelibs.curl.CurlResponse;
 import org.codelibs.fess.Constants;
 import org.codelibs.fess.entity.SearchRequestParams;
+import org.codelibs.fess.entity.SearchRequestParams.SearchRequestType;
 import org.codelibs.fess.mylasta.action.FessUserBean;
+import org.codelibs.fess.mylasta.direction.FessConfig;
 import org.codelibs.fess.opensearch.client.SearchEngineClient;
 import org.codelibs.fess.query.parser.QueryParser;
 import org.codelibs.fess.util.ComponentUtil;
 import org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants;
+import org.codelibs.fess.webapp.semantic_search.embedding.EmbeddingBatcher;
+import org.codelibs.fess.webapp.semantic_search.embedding.EmbeddingCache;
+import org.codelibs.fess.webapp.semantic_search.embedding.FloatEmbeddingCache;
+import org.codelibs.fess.webapp.semantic_search.embedding.Int8EmbeddingCache;
+import org.codelibs.fess.webapp.semantic_search.embedding.QueryVectorStore;
+import org.codelibs.fess.webapp.semantic_search.embedding.QueryVectorWarmer;
+import org.codelibs.fess.webapp.semantic_search.index.query.KnnQueryBuilder;
 import org.codelibs.fess.webapp.semantic_search.index.query.NeuralQueryBuilder;
+import org.codelibs.fess.webapp.semantic_search.index.query.NeuralSparseQueryBuilder;
+import org.codelibs.fess.webapp.semantic_search.knn.EfSearchController;
+import org.codelibs.fess.webapp.semantic_search.knn.KnnStrategySelector;
+import org.codelibs.fess.webapp.semantic_search.knn.KnnStrategySelector.Strategy;
+import org.codelibs.fess.webapp.semantic_search.pipeline.HybridSearchPipeline;
+import org.codelibs.fess.webapp.semantic_search.pipeline.IngestPipelineManager;
+import org.codelibs.fess.webapp.semantic_search.pipeline.PipelineClient;
+import org.codelibs.fess.webapp.semantic_search.routing.ClickLogQueryClassifier;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifierTrainer;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryRouter;
+import org.codelibs.fess.webapp.semantic_search.routing.RuleBasedQueryClassifier;
+import org.codelibs.fess.webapp.semantic_search.util.FieldPrefixMatcher;
+import org.codelibs.fess.webapp.semantic_search.util.VectorUtil;
 import org.codelibs.opensearch.runner.net.OpenSearchCurl;
 import org.dbflute.optional.OptionalThing;
 import org.lastaflute.web.util.LaRequestUtil;
+import org.opensearch.action.search.SearchResponse;
+import org.opensearch.common.document.DocumentField;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.BoolQueryBuilder;
 import org.opensearch.index.query.InnerHitBuilder;
 import org.opensearch.index.query.QueryBuilder;
 import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.functionscore.FunctionScoreQueryBuilder;
+import org.opensearch.index.query.functionscore.ScriptScoreQueryBuilder;
+import org.opensearch.script.Script;
+import org.opensearch.script.ScriptType;
+import org.opensearch.search.SearchHit;
 import org.opensearch.search.fetch.subphase.FetchSourceContext;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSession;
 
 /**
  * Central component managing neural search configuration and model interactions.
@@ -66,6 +189,15 @@ import jakarta.annotation.PostConstruct;
 public class SemanticSearchHelper {
     private static final Logger logger = LogManager.getLogger(SemanticSearchHelper.class);
 
+    /** The retrieval mode searching the dense vector field. */
+    protected static final String RETRIEVAL_DENSE = "dense";
+
+    /** The retrieval mode searching the sparse rank_features field. */
+    protected static final String RETRIEVAL_SPARSE = "sparse";
+
+    /** The retrieval mode searching both the dense and the sparse field. */
+    protected static final String RETRIEVAL_BOTH = "both";
+
     /**
      * Default constructor.
      */
@@ -84,6 +216,119 @@ public class SemanticSearchHelper {
     /** Size of content chunks for processing. */
     protected int chunkSize;
 
+    /** Cache of query embeddings, or null if the query cache is disabled. */
+    protected EmbeddingCache embeddingCache;
+
+    /** Settings used to create the current query embedding cache. */
+    protected String embeddingCacheSettings;
+
+    /** Coalescer of concurrent embedding requests, or null if batch inference is disabled. */
+    protected EmbeddingBatcher embeddingBatcher;
+
+    /** Settings used to create the current embedding batcher. */
+    protected String embeddingBatcherSettings;
+
+    /** Persistent store of query embeddings, or null if it is not configured. */
+    protected QueryVectorStore queryVectorStore;
+
+    /** Settings used to open the current query vector store. */
+    protected String queryVectorStoreSettings;
+
+    /** Warmer of query embeddings from search logs, or null if the warm-up is not started. */
+    protected QueryVectorWarmer queryVectorWarmer;
+
+    /** Per-session cache of ordered k-NN hits, or null if the result window cache is disabled. */
+    protected Cache<String, ResultWindow> resultWindowCache;
+
+    /** Settings used to create the current result window cache. */
+    protected String resultWindowCacheSettings;
+
+    /** Latency-adaptive ef_search controller, or null if it is disabled. */
+    protected EfSearchController efSearchController;
+
+    /** Settings used to create the current ef_search controller. */
+    protected String efSearchControllerSettings;
+
+    /** Whether indexed and query vectors are L2-normalized. */
+    protected volatile boolean vectorNormalization;
+
+    /** Client of the ingest and search pipeline APIs. */
+    protected PipelineClient pipelineClient = new PipelineClient();
+
+    /** Manager of the ingest pipelines of the document index. */
+    protected IngestPipelineManager ingestPipelineManager = new IngestPipelineManager(pipelineClient);
+
+    /** Search pipeline of hybrid queries. */
+    protected HybridSearchPipeline hybridSearchPipeline = new HybridSearchPipeline(pipelineClient);
+
+    /** The retrieval mode of semantic queries: dense, sparse or both. */
+    protected volatile String retrievalMode = RETRIEVAL_DENSE;
+
+    /** Whether the candidates of quantized vectors are rescored, or null for the index default. */
+    protected Boolean rescore;
+
+    /** The oversample factor of rescored candidates, or null for the index default. */
+    protected Float oversampleFactor;
+
+    /** Selector of the exact or the approximate k-NN search, or null if the exact search is disabled. */
+    protected KnnStrategySelector knnStrategySelector;
+
+    /** Settings used to create the current k-NN strategy selector. */
+    protected String knnStrategySelectorSettings;
+
+    /** Router of keyword-style queries to the lexical search, or null if query routing is disabled. */
+    protected volatile QueryRouter queryRouter;
+
+    /** Settings used to create the current query router. */
+    protected String queryRouterSettings;
+
+    /** Thread training the click log classifier of the current query router, or null if no training is running. */
+    protected Thread queryClassifierTrainerThread;
+
+    /** Matcher of the search fields, recompiled when the query field configuration changes. */
+    protected volatile FieldPrefixMatcher searchFieldMatcher;
+
+    /** Additional vector fields searched with the content field. */
+    protected List<VectorField> vectorFields = Collections.emptyList();
+
+    /** Vector fields of per-language models searched instead of the content field, keyed by language. */
+    protected Map<String, VectorField> languageVectorFields = Collections.emptyMap();
+
+    /** Whether documents embedded by the model of their language have no content vector. */
+    protected boolean skipLanguageContentVector;
+
+    /** Retrieval paths of the nested vector field, tried in order. */
+    protected List<DenseRetrieval> nestedRetrievals =
+            Arrays.asList(new CentroidRetrieval(), new NestedBinaryRetrieval(), new NestedVectorRetrieval());
+
+    /** Retrieval paths of the top-level content field, tried in order. */
+    protected List<DenseRetrieval> retrievals = Arrays.asList(new LabelPartitionRetrieval(), new BinaryRetrieval(), new LanguageRetrieval(),
+            new ResultWindowRetrieval(), new VectorRetrieval());
+
+    /** Retrieval paths of a single vector field selected by another retrieval path. */
+    protected List<DenseRetrieval> fieldRetrievals = Arrays.asList(new ResultWindowRetrieval(), new VectorRetrieval());
+
+    /** Partition vector fields of the content vector, keyed by label. */
+    protected Map<String, String> labelVectorFields = Collections.emptyMap();
+
+    /** Whether the partition of each label is populated, or null without label partitions. */
+    protected Cache<String, Boolean> labelPartitionStates;
+
+    /** Space type of the content field in the mapping of the document index, or null if unknown. */
+    protected volatile String contentSpaceType;
+
+    /** Space type of the content field of a new document index decided when the configuration is loaded, or null if not loaded. */
+    protected volatile String newIndexSpaceType;
+
+    /** Whether a new document index is refused, because it needs normalized vectors and the current index has others. */
+    protected volatile boolean newIndexRefused;
+
+    /** Whether the binary vector field is populated, keyed by field, or null without binary vectors. */
+    protected Cache<String, Boolean> binaryFieldStates;
+
+    /** Whether the centroid vector field is populated, keyed by field, or null without centroid vectors. */
+    protected Cache<String, Boolean> centroidFieldStates;
+
     /**
      * Initializes the semantic search helper by configuring OpenSearch mappings,
      * loading ML models, and setting up query rewrite rules.
@@ -93,7 +338,7 @@ public class SemanticSearchHelper {
         final SearchEngineClient client = ComponentUtil.getSearchEngineClient();
         client.usePipeline();
         client.addDocumentSettingRewriteRule(s -> {
-            final String pipeline = System.getProperty(PIPELINE); // ex. neural_pipeline
+            final String pipeline = ingestPipelineManager.getIngestPipeline(); // ex. neural_pipeline
             if (logger.isDebugEnabled()) {
                 logger.debug("pipeline: {}", pipeline);
             }
@@ -110,57 +355,107 @@ public class SemanticSearchHelper {
             if (logger.isDebugEnabled()) {
                 logger.debug("field: {}, dimension: {}, method: {}, engine: {}", field, dimension, method, engine);
             }
+            final String sparseField = System.getProperty(CONTENT_SPARSE_FIELD); // ex. content_sparse
+            final String sparseDef = StringUtil.isNotBlank(sparseField) ? createSparseFieldMapping(sparseField) : StringUtil.EMPTY;
             if (StringUtil.isBlank(dimension) || StringUtil.isBlank(field) || StringUtil.isBlank(method) || StringUtil.isBlank(engine)) {
-                return s;
+                return sparseDef.isEmpty() ? s : s.replace("\"content\":", sparseDef + "\n\"content\":");
             }
             final String nestedField = System.getProperty(CONTENT_NESTED_FIELD); // ex. content_vector
             final String chunkField = System.getProperty(CONTENT_CHUNK_FIELD); // ex. content_chunk
-            final String spaceType = System.getProperty(CONTENT_SPACE_TYPE, "cosinesimil"); // ex. cosinesimil (changed from l2 for better semantic search)
+            if (newIndexRefused) {
+                throw new IllegalStateException("Vector normalization maps the content field with the innerproduct space,"
+                        + " but the vectors of the current document index are not normalized."
+                        + " Recrawl the documents with vector normalization, or disable it, before the index is created.");
+            }
+            final String spaceType = newIndexSpaceType != null ? newIndexSpaceType : System.getProperty(CONTENT_SPACE_TYPE, "cosinesimil");
+            contentSpaceType = spaceType;
             final String m = System.getProperty(CONTENT_PARAM_M, "16"); // ex. 16
             final String ef = System.getProperty(CONTENT_PARAM_EF_CONSTRUCTION, "100"); // ex. 100
+            final String mode = System.getProperty(CONTENT_MODE); // ex. on_disk
+            final String compressionLevel = System.getProperty(CONTENT_COMPRESSION_LEVEL); // ex. 32x
+            final String binaryField = System.getProperty(CONTENT_BINARY_FIELD); // ex. content_binary
+            final boolean binary = StringUtil.isNotBlank(binaryField) && isBinaryDimension(dimension);
+            if (StringUtil.isNotBlank(binaryField) && !binary) {
+                logger.warn("Skip the binary vector field {} because the dimension {} is not a multiple of 8.", binaryField, dimension);
+            }
+            final boolean flatVector = binary && Boolean.parseBoolean(System.getProperty(BINARY_FLAT_VECTOR, "false"));
             final String fieldDef;
             if (StringUtil.isNotBlank(nestedField)) {
+                final StringBuilder properties = new StringBuilder();
+                if (flatVector) {
+                    properties.append(toNestedPropertyMapping(createFlatVectorFieldMapping(field, dimension)));
+                } else {
+                    properties.append("    \"" + field + "\": {\n" //
+                            + "      \"type\": \"knn_vector\",\n" //
+                            + "      \"dimension\": " + dimension + ",\n" //
+                            + createVectorStorageMapping(mode, compressionLevel, "      ") //
+                            + "      \"method\": {\n" //
+                            + "        \"name\": \"" + method + "\",\n" //
+                            + "        \"engine\": \"" + engine + "\",\n" //
+                            + "        \"space_type\": \"" + spaceType + "\",\n" //
+                            + "        \"parameters\": {\n" //
+                            + "          \"m\": " + m + ",\n" //
+                            + "          \"ef_construction\": " + ef + "\n" //
+                            + "        }\n" //
+                            + "      }\n" //
+                            + "    }");
+                }
+                if (binary) {
+                    properties.append(",\n").append(toNestedPropertyMapping(createBinaryFieldMapping(binaryField, dimension, m, ef)));
+                }
                 fieldDef = "\"" + nestedField + "\": {\n" //
                         + "  \"type\": \"nested\",\n" //
                         + "  \"properties\": {\n" //
-                        + "    \"" + field + "\": {\n" //
-                        + "      \"type\": \"knn_vector\",\n" //
-                        + "      \"dimension\": " + dimension + ",\n" //
-                        + "      \"method\": {\n" //
-                        + "        \"name\": \"" + method + "\",\n" //
-                        + "        \"engine\": \"" + engine + "\",\n" //
-                        + "        \"space_type\": \"" + spaceType + "\",\n" //
-                        + "        \"parameters\": {\n" //
-                        + "          \"m\": " + m + ",\n" //
-                        + "          \"ef_construction\": " + ef + "\n" //
-                        + "        }\n" //
-                        + "      }\n" //
-                        + "    }\n" //
+                        + properties + "\n" //
                         + "  }\n" //
                         + "},\n" //
                         + "\"" + chunkField + "\": {\n" //
                         + "  \"type\": \"text\",\n" //
                         + "  \"index\": false\n" //
                         + "},";
+            } else if (flatVector) {
+                fieldDef = createFlatVectorFieldMapping(field, dimension);
             } else {
-                fieldDef = "\"" + field + "\": {\n" //
-                        + "  \"type\": \"knn_vector\",\n" //
-                        + "  \"dimension\": " + dimension + ",\n" //
-                        + "  \"method\": {\n" //
-                        + "    \"name\": \"" + method + "\",\n" //
-                        + "    \"engine\": \"" + engine + "\",\n" //
-                        + "    \"space_type\": \"" + spaceType + "\",\n" //
-                        + "    \"parameters\": {\n" //
-                        + "      \"m\": \"" + m + "\",\n" //
-                        + "      \"ef_construction\": \"" + ef + "\"\n" //
-                        + "    }\n" //
-                        + "  }\n" //
-                        + "},";
+                fieldDef = createVectorFieldMapping(field, dimension, method, engine, spaceType, m, ef, mode, compressionLevel);
+            }
+            final StringBuilder fieldDefs = new StringBuilder(fieldDef);
+            final String centroidField = System.getProperty(CONTENT_CENTROID_FIELD); // ex. content_centroid
+            if (StringUtil.isNotBlank(nestedField) && StringUtil.isNotBlank(centroidField)) {
+                final String centroidDef =
+                        createVectorFieldMapping(centroidField, dimension, method, engine, spaceType, m, ef, mode, compressionLevel);
+                fieldDefs.append('\n').append(centroidDef);
+            }
+            if (StringUtil.isBlank(nestedField) && binary) {
+                fieldDefs.append('\n').append(createBinaryFieldMapping(binaryField, dimension, m, ef));
+            }
+            final Set<String> mappedFields = new LinkedHashSet<>();
+            final List<VectorField> additionalFields = new ArrayList<>(parseVectorFields());
+            additionalFields.addAll(parseLanguageVectorFields().values());
+            for (final VectorField vectorField : additionalFields) {
+                if (!mappedFields.add(vectorField.getField())) {
+                    continue;
+                }
+                fieldDefs.append('\n')
+                        .append(createVectorFieldMapping(vectorField.getField(), vectorField.getDimension(), vectorField.getMethod(),
+                                vectorField.getEngine(), vectorField.getSpaceType(), vectorField.getM(), vectorField.getEfConstruction(),
+                                vectorField.getMode(), vectorField.getCompressionLevel()));
+            }
+            if (StringUtil.isBlank(nestedField)) {
+                for (final String partition : parseLabelVectorFields().values()) {
+                    if (mappedFields.add(partition)) {
+                        final String partitionDef =
+                                createVectorFieldMapping(partition, dimension, method, engine, spaceType, m, ef, mode, compressionLevel);
+                        fieldDefs.append('\n').append(partitionDef);
+                    }
+                }
+            }
+            if (!sparseDef.isEmpty()) {
+                fieldDefs.append('\n').append(sparseDef);
             }
             if (logger.isDebugEnabled()) {
-                logger.debug("fieldDef: {}", fieldDef);
+                logger.debug("fieldDef: {}", fieldDefs);
             }
-            return s.replace("\"content\":", fieldDef + "\n\"content\":");
+            return s.replace("\"content\":", fieldDefs + "\n\"content\":");
         });
 
         if (ComponentUtil.hasQueryParser()) {
@@ -170,6 +465,444 @@ public class SemanticSearchHelper {
 
         load();
         ComponentUtil.getSystemHelper().addUpdateConfigListener("SemanticSearch", this::load);
+
+        startQueryVectorWarmer();
+    }
+
+    /**
+     * Decides the space type of the content field for a new index when the configuration is loaded,
+     * so that the mapping rewrite rule does not search the index while an index is created.
+     * With vector normalization, the innerproduct space is used, and a new index is refused until the vectors
+     * of the current index are normalized, because reindexed documents keep their vectors.
+     */
+    protected void loadNewIndexSpaceType() {
+        final String field = System.getProperty(CONTENT_FIELD);
+        final String spaceType = StringUtil.isNotBlank(field) ? getContentSpaceType(field, System.getProperty(CONTENT_NESTED_FIELD)) : null;
+        newIndexRefused = StringUtil.isNotBlank(field) && spaceType == null;
+        newIndexSpaceType = spaceType;
+    }
+
+    /**
+     * Gets the space type of the content field for a new index.
+     * With vector normalization, the innerproduct space is used if the vectors of the current index are normalized.
+     *
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @return the space type, or null if the vectors of the current index are not normalized
+     */
+    protected String getContentSpaceType(final String field, final String nestedField) {
+        final String spaceType = System.getProperty(CONTENT_SPACE_TYPE, "cosinesimil"); // ex. cosinesimil (changed from l2 for better semantic search)
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_NORMALIZATION_ENABLED, "false")) || "innerproduct".equals(spaceType)) {
+            return spaceType;
+        }
+        final String index = ComponentUtil.getFessConfig().getIndexDocumentSearchIndex();
+        if (!isNormalizedIndex(index, field, nestedField)) {
+            logger.warn("Refuse to create a document index with the innerproduct space because the vectors of {} are not normalized."
+                    + " Recrawl the documents with vector normalization, or disable it, before the index is created.", index);
+            return null;
+        }
+        return "innerproduct";
+    }
+
+    /**
+     * Checks whether the vectors of the documents indexed first are normalized.
+     * Documents indexed before vector normalization was enabled and not recrawled since then have the oldest timestamps,
+     * so they are found without scanning the whole index.
+     *
+     * @param index the index or alias name
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @return true if all checked vectors have unit length or the index has no vector, false if they do not or the check failed
+     */
+    protected boolean isNormalizedIndex(final String index, final String field, final String nestedField) {
+        final List<float[]> vectors = getIndexedVectors(index, field, nestedField, 100);
+        if (vectors == null) {
+            return false;
+        }
+        for (final float[] vector : vectors) {
+            if (!VectorUtil.isNormalized(vector)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Found a vector with the norm {} in {}.", VectorUtil.norm(vector), index);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the vectors of the documents indexed first.
+     *
+     * @param index the index or alias name
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @param size the number of documents
+     * @return the vectors, an empty list if the index does not exist, or null if the search failed
+     */
+    protected List<float[]> getIndexedVectors(final String index, final String field, final String nestedField, final int size) {
+        final String path = StringUtil.isNotBlank(nestedField) ? nestedField + "." + field : field;
+        final String query;
+        if (StringUtil.isNotBlank(nestedField)) {
+            query = "{\"nested\":{\"path\":\"" + nestedField + "\",\"query\":{\"exists\":{\"field\":\"" + path + "\"}}}}";
+        } else {
+            query = "{\"exists\":{\"field\":\"" + path + "\"}}";
+        }
+        final String timestampField = ComponentUtil.getFessConfig().getIndexFieldTimestamp();
+        final String sort = "{\"" + timestampField + "\":{\"order\":\"asc\",\"unmapped_type\":\"date\"}}";
+        return getIndexedVectors(index, query, sort, field, nestedField, size);
+    }
+
+    /**
+     * Gets the vectors of the documents of the index matching the query.
+     *
+     * @param index the index or alias name
+     * @param query the query in JSON
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @param size the maximum number of documents
+     * @return the vectors, an empty list if the index does not exist, or null if the search failed
+     */
+    protected List<float[]> getIndexedVectors(final String index, final String query, final String field, final String nestedField,
+            final int size) {
+        return getIndexedVectors(index, query, null, field, nestedField, size);
+    }
+
+    /**
+     * Gets the vectors of the documents of the index matching the query in the order of the sort.
+     *
+     * @param index the index or alias name
+     * @param query the query in JSON
+     * @param sort the sort in JSON, or null
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @param size the maximum number of documents
+     * @return the vectors, an empty list if the index does not exist, or null if the search failed
+     */
+    protected List<float[]> getIndexedVectors(final String index, final String query, final String sort, final String field,
+            final String nestedField, final int size) {
+        final String path = StringUtil.isNotBlank(nestedField) ? nestedField + "." + field : field;
+        final StringBuilder body = new StringBuilder();
+        body.append("{\"size\":").append(size).append(",\"_source\":[\"").append(path).append("\"],\"query\":").append(query);
+        if (sort != null) {
+            body.append(",\"sort\":[").append(sort).append(']');
+        }
+        body.append('}');
+        try (CurlResponse response = ComponentUtil.getCurlHelper().post("/" + index + "/_search").body(body.toString()).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return parseIndexedVectors(response.getContent(OpenSearchCurl.jsonParser()), field, nestedField);
+            }
+            if (response.getHttpStatusCode() == 404) {
+                return Collections.emptyList();
+            }
+            logger.warn("Failed to sample the vectors of {}: {}", index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to sample the vectors of {}", index, e);
+        }
+        return null;
+    }
+
+    /**
+     * Parses the vectors from the hits of a search response.
+     *
+     * @param content the response content
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @return the vectors
+     */
+    protected List<float[]> parseIndexedVectors(final Map<String, Object> content, final String field, final String nestedField) {
+        final List<float[]> vectors = new ArrayList<>();
+        for (final Map<?, ?> source : getSources(content)) {
+            if (StringUtil.isNotBlank(nestedField)) {
+                if (source.get(nestedField) instanceof final List<?> chunks) {
+                    for (final Object chunk : chunks) {
+                        if (chunk instanceof final Map<?, ?> chunkMap && chunkMap.get(field) instanceof final List<?> values) {
+                            vectors.add(toVector(values));
+                        }
+                    }
+                }
+            } else if (source.get(field) instanceof final List<?> values) {
+                vectors.add(toVector(values));
+            }
+        }
+        return vectors;
+    }
+
+    private static float[] toVector(final List<?> values) {
+        final float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = ((Number) values.get(i)).floatValue();
+        }
+        return vector;
+    }
+
+    /**
+     * Creates the mapping of a top-level knn_vector field.
+     *
+     * @param field the vector field name
+     * @param dimension the vector dimension
+     * @param method the vector search method
+     * @param engine the vector search engine
+     * @param spaceType the distance calculation method
+     * @param m the HNSW m parameter
+     * @param ef the HNSW ef_construction parameter
+     * @param mode the vector storage mode, or null
+     * @param compressionLevel the vector compression level, or null
+     * @return the field mapping followed by a comma
+     */
+    protected String createVectorFieldMapping(final String field, final String dimension, final String method, final String engine,
+            final String spaceType, final String m, final String ef, final String mode, final String compressionLevel) {
+        return "\"" + field + "\": {\n" //
+                + "  \"type\": \"knn_vector\",\n" //
+                + "  \"dimension\": " + dimension + ",\n" //
+                + createVectorStorageMapping(mode, compressionLevel, "  ") //
+                + "  \"method\": {\n" //
+                + "    \"name\": \"" + method + "\",\n" //
+                + "    \"engine\": \"" + engine + "\",\n" //
+                + "    \"space_type\": \"" + spaceType + "\",\n" //
+                + "    \"parameters\": {\n" //
+                + "      \"m\": \"" + m + "\",\n" //
+                + "      \"ef_construction\": \"" + ef + "\"\n" //
+                + "    }\n" //
+                + "  }\n" //
+                + "},";
+    }
+
+    /**
+     * Creates the mapping of a binary knn_vector field searched in the Hamming space.
+     * Each document or chunk stores one bit per dimension of the content vector, packed into bytes,
+     * so that the graph is 32 times smaller than the graph of float vectors.
+     *
+     * @param field the binary vector field name
+     * @param dimension the vector dimension in bits
+     * @param m the HNSW m parameter
+     * @param ef the HNSW ef_construction parameter
+     * @return the field mapping followed by a comma
+     */
+    protected String createBinaryFieldMapping(final String field, final String dimension, final String m, final String ef) {
+        return "\"" + field + "\": {\n" //
+                + "  \"type\": \"knn_vector\",\n" //
+                + "  \"dimension\": " + dimension + ",\n" //
+                + "  \"data_type\": \"binary\",\n" //
+                + "  \"method\": {\n" //
+                + "    \"name\": \"hnsw\",\n" //
+                + "    \"engine\": \"faiss\",\n" //
+                + "    \"space_type\": \"hamming\",\n" //
+                + "    \"parameters\": {\n" //
+                + "      \"m\": \"" + m + "\",\n" //
+                + "      \"ef_construction\": \"" + ef + "\"\n" //
+                + "    }\n" //
+                + "  }\n" //
+                + "},";
+    }
+
+    /**
+     * Creates the mapping of a knn_vector field stored without a graph.
+     * The vectors are only scored exactly, so no graph has to be built or loaded into memory.
+     *
+     * @param field the vector field name
+     * @param dimension the vector dimension
+     * @return the field mapping followed by a comma
+     */
+    protected String createFlatVectorFieldMapping(final String field, final String dimension) {
+        return "\"" + field + "\": {\n" //
+                + "  \"type\": \"knn_vector\",\n" //
+                + "  \"dimension\": " + dimension + ",\n" //
+                + "  \"index\": false\n" //
+                + "},";
+    }
+
+    /**
+     * Converts the mapping of a top-level field into a property of the nested field.
+     *
+     * @param mapping the field mapping followed by a comma
+     * @return the indented field mapping without the comma
+     */
+    protected String toNestedPropertyMapping(final String mapping) {
+        final String definition = mapping.endsWith(",") ? mapping.substring(0, mapping.length() - 1) : mapping;
+        return Arrays.stream(definition.split("\n")).map(line -> "    " + line).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Checks whether the vector dimension can be packed into bytes of a binary vector.
+     *
+     * @param dimension the vector dimension
+     * @return true if the dimension is a positive multiple of 8
+     */
+    protected boolean isBinaryDimension(final String dimension) {
+        try {
+            final int value = Integer.parseInt(dimension.trim());
+            return value > 0 && value % Byte.SIZE == 0;
+        } catch (final NumberFormatException e) {
+            logger.debug("Failed to parse {}.", dimension, e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the mapping of a rank_features field storing the sparse token weights of documents.
+     *
+     * @param field the sparse field name
+     * @return the field mapping followed by a comma
+     */
+    protected String createSparseFieldMapping(final String field) {
+        return "\"" + field + "\": {\n" //
+                + "  \"type\": \"rank_features\"\n" //
+                + "},";
+    }
+
+    /**
+     * Creates the storage settings of a knn_vector field.
+     * With the on_disk mode or a compression level, the HNSW graph is built on quantized vectors
+     * and the full-precision vectors are kept on disk for rescoring.
+     *
+     * @param mode the vector storage mode, or null
+     * @param compressionLevel the vector compression level, or null
+     * @param indent the indent of the settings
+     * @return the settings followed by a comma, or an empty string if neither is configured
+     */
+    protected String createVectorStorageMapping(final String mode, final String compressionLevel, final String indent) {
+        final StringBuilder buf = new StringBuilder();
+        if (StringUtil.isNotBlank(mode)) {
+            buf.append(indent).append("\"mode\": \"").append(mode.trim()).append("\",\n");
+        }
+        if (StringUtil.isNotBlank(compressionLevel)) {
+            buf.append(indent).append("\"compression_level\": \"").append(compressionLevel.trim()).append("\",\n");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Parses the additional vector fields from the configuration.
+     * Each name in the vector field list has its own settings, which default to the settings of the content field.
+     *
+     * @return the additional vector fields
+     */
+    protected List<VectorField> parseVectorFields() {
+        final String value = System.getProperty(VECTOR_FIELDS);
+        if (StringUtil.isBlank(value)) {
+            return Collections.emptyList();
+        }
+        final List<VectorField> list = new ArrayList<>();
+        for (final String name : value.split(",")) {
+            if (StringUtil.isBlank(name)) {
+                continue;
+            }
+            final VectorField vectorField = newVectorField(name.trim());
+            if (vectorField != null) {
+                list.add(vectorField);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Parses the vector fields of per-language models from the configuration.
+     * Each entry maps a language code to the name of vector field settings, such as ja:ja_vector.
+     * Per-language models are used only with a top-level content vector field without binary vectors,
+     * because the chunks and the binary vectors are computed with the model of the content field.
+     *
+     * @return the vector fields keyed by language in lower case, or an empty map with the nested or the binary vector field
+     */
+    protected Map<String, VectorField> parseLanguageVectorFields() {
+        final String value = System.getProperty(LANGUAGE_VECTOR_FIELDS);
+        if (StringUtil.isBlank(value)) {
+            return Collections.emptyMap();
+        }
+        if (StringUtil.isNotBlank(System.getProperty(CONTENT_NESTED_FIELD))
+                || StringUtil.isNotBlank(System.getProperty(CONTENT_BINARY_FIELD))) {
+            logger.warn("Per-language models are not supported with the nested or the binary vector field.");
+            return Collections.emptyMap();
+        }
+        final Map<String, VectorField> map = new LinkedHashMap<>();
+        for (final String entry : value.split(",")) {
+            if (StringUtil.isBlank(entry)) {
+                continue;
+            }
+            final String[] pair = entry.split(":", 2);
+            final String language = pair[0].trim().toLowerCase(Locale.ROOT);
+            if (pair.length != 2 || !language.matches("[a-z0-9_-]+") || StringUtil.isBlank(pair[1])) {
+                logger.warn("Invalid language vector field: {}", entry);
+                continue;
+            }
+            final VectorField vectorField = newVectorField(pair[1].trim());
+            if (vectorField != null) {
+                map.put(language, vectorField);
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Parses the partition vector fields of labels from the configuration.
+     * Each entry maps a label value to the name of the field holding the content vectors of its documents, such as sales:sales_vector.
+     * Label partitions are used only with a plain top-level content vector field.
+     * They are rejected with binary vectors and per-language models, because a search of a partition would bypass them,
+     * so neither their mapping nor their pipeline is provisioned.
+     *
+     * @return the partition vector field names keyed by label, or an empty map if partitions are not supported by the configuration
+     */
+    protected Map<String, String> parseLabelVectorFields() {
+        final String value = System.getProperty(LABEL_VECTOR_FIELDS);
+        if (StringUtil.isBlank(value)) {
+            return Collections.emptyMap();
+        }
+        if (StringUtil.isNotBlank(System.getProperty(CONTENT_NESTED_FIELD))) {
+            logger.warn("Ignore the label partitions because they are not supported with the nested vector field: {}", value);
+            return Collections.emptyMap();
+        }
+        if (StringUtil.isNotBlank(System.getProperty(CONTENT_BINARY_FIELD))) {
+            logger.warn("Ignore the label partitions because they are not supported with the binary vectors: {}", value);
+            return Collections.emptyMap();
+        }
+        if (StringUtil.isNotBlank(System.getProperty(LANGUAGE_VECTOR_FIELDS))) {
+            logger.warn("Ignore the label partitions because they are not supported with the per-language models: {}", value);
+            return Collections.emptyMap();
+        }
+        final Map<String, String> map = new LinkedHashMap<>();
+        for (final String entry : value.split(",")) {
+            if (StringUtil.isBlank(entry)) {
+                continue;
+            }
+            final String[] pair = entry.split(":", 2);
+            final String label = pair[0].trim();
+            if (pair.length != 2 || !label.matches("[A-Za-z0-9_.-]+") || StringUtil.isBlank(pair[1])
+                    || pair[1].trim().equals(System.getProperty(CONTENT_FIELD))) {
+                logger.warn("Invalid label vector field: {}", entry);
+                continue;
+            }
+            map.put(label, pair[1].trim());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Creates the settings of a vector field from the configuration.
+     *
+     * @param name the name of the vector field settings
+     * @return the vector field, or null if the field or the model is not configured, or it is the content field
+     */
+    protected VectorField newVectorField(final String name) {
+        final VectorField vectorField = new VectorField(name);
+        if (StringUtil.isBlank(vectorField.getField()) || StringUtil.isBlank(vectorField.getModelId())
+                || vectorField.getField().equals(System.getProperty(CONTENT_FIELD))) {
+            logger.warn("Invalid vector field: {}", vectorField);
+            return null;
+        }
+        return vectorField;
+    }
+
+    /**
+     * Stops background resources used by this helper.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (queryVectorWarmer != null) {
+            queryVectorWarmer.close();
+            queryVectorWarmer = null;
+        }
+        stopQueryClassifierTrainer();
+        closeEmbeddingBatcher();
+        closeQueryVectorStore();
     }
 
     /**
@@ -242,198 +975,2302 @@ public class SemanticSearchHelper {
             chunkSize = 1;
         }
 
+        buf.append(", rescore=");
+        final String rescoreValue = System.getProperty(RESCORE_ENABLED);
+        rescore = StringUtil.isNotBlank(rescoreValue) ? Boolean.valueOf(rescoreValue.trim()) : null;
+        buf.append(rescore);
+
+        buf.append(", oversample_factor=");
+        final String oversampleFactorValue = System.getProperty(RESCORE_OVERSAMPLE_FACTOR);
+        if (StringUtil.isNotBlank(oversampleFactorValue)) {
+            try {
+                oversampleFactor = Float.valueOf(oversampleFactorValue.trim());
+                buf.append(oversampleFactor);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", oversampleFactorValue, e);
+                oversampleFactor = null;
+            }
+        } else {
+            oversampleFactor = null;
+        }
+
+        buf.append(", vector_fields=");
+        vectorFields = parseVectorFields();
+        buf.append(vectorFields);
+
+        buf.append(", language_vector_fields=");
+        languageVectorFields = parseLanguageVectorFields();
+        buf.append(languageVectorFields);
+
+        buf.append(", query_routing=");
+        loadQueryRouter();
+        buf.append(queryRouter);
+
+        buf.append(", vector_normalization=");
+        loadVectorNormalization();
+        loadContentSpaceType();
+        loadNewIndexSpaceType();
+        buf.append(vectorNormalization).append(':').append(ingestPipelineManager.getNormalizationPipeline());
+        buf.append(':').append(newIndexRefused ? "refused" : newIndexSpaceType);
+
+        buf.append(", centroid=");
+        ingestPipelineManager.loadCentroidPipeline(vectorNormalization);
+        loadCentroidFieldStates();
+        buf.append(ingestPipelineManager.getCentroidPipeline());
+
+        buf.append(", binary=");
+        ingestPipelineManager.loadBinaryPipeline();
+        loadBinaryFieldStates();
+        buf.append(ingestPipelineManager.getBinaryPipeline());
+
+        buf.append(", language=");
+        labelVectorFields = parseLabelVectorFields();
+        loadSkipLanguageContentVector();
+        ingestPipelineManager.loadLanguagePipeline(languageVectorFields, skipLanguageContentVector);
+        buf.append(ingestPipelineManager.getLanguagePipeline()).append(':').append(skipLanguageContentVector);
+
+        buf.append(", label=");
+        ingestPipelineManager.loadLabelPipeline(labelVectorFields);
+        loadLabelPartitionStates();
+        buf.append(labelVectorFields).append(':').append(ingestPipelineManager.getLabelPipeline());
+
+        buf.append(", retrieval=");
+        loadSparseRetrieval();
+        buf.append(retrievalMode).append(':').append(ingestPipelineManager.getSparsePipeline());
+
+        buf.append(", ingest_pipeline=");
+        ingestPipelineManager.applyDefaultPipeline(ComponentUtil.getFessConfig().getIndexDocumentUpdateIndex());
+        buf.append(ingestPipelineManager.getIngestPipeline());
+
+        buf.append(", query_cache=");
+        loadEmbeddingCache();
+        buf.append(embeddingCache);
+
+        buf.append(", batch_inference=");
+        loadEmbeddingBatcher();
+        buf.append(embeddingBatcher);
+
+        buf.append(", query_vector_store=");
+        loadQueryVectorStore();
+        buf.append(queryVectorStore);
+
+        buf.append(", result_window_cache=");
+        loadResultWindowCache();
+        buf.append(resultWindowCacheSettings);
+
+        buf.append(", ef_search_controller=");
+        loadEfSearchController();
+        buf.append(efSearchController);
+
+        buf.append(", exact_search=");
+        loadKnnStrategySelector();
+        buf.append(knnStrategySelector);
+
+        buf.append(", hybrid=");
+        hybridSearchPipeline.load();
+        buf.append(hybridSearchPipeline.getSettings());
+
         return buf.toString();
     }
 
     /**
-     * Retrieves model information from OpenSearch ML plugin.
-     *
-     * @param modelId the ML model ID
-     * @return model information map, or empty map if not found
+     * Creates or discards the cache of the checks whether label partitions are populated.
+     * The checks are discarded whenever the configuration is loaded.
      */
-    protected Map<String, Object> getModel(final String modelId) {
-        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/_plugins/_ml/models/" + modelId).execute()) {
-            if (response.getHttpStatusCode() == 200) {
-                return response.getContent(OpenSearchCurl.jsonParser());
-            }
-            if (logger.isDebugEnabled()) {
-                logger.debug("model:{} does not exists: {}", modelId, response.getContentAsString());
-            }
-        } catch (final IOException e) {
-            logger.warn("Failed to get model info for {}", modelId, e);
+    protected void loadLabelPartitionStates() {
+        if (labelVectorFields.isEmpty()) {
+            labelPartitionStates = null;
+            return;
         }
-        return Collections.emptyMap();
+        final int expire = getIntProperty(LABEL_PARTITION_CHECK_EXPIRE, 300);
+        labelPartitionStates = CacheBuilder.newBuilder().expireAfterWrite(expire, TimeUnit.SECONDS).build();
     }
 
     /**
-     * Loads and deploys an ML model in OpenSearch.
-     *
-     * @param modelId the ML model ID to load
-     * @return true if model was loaded successfully, false otherwise
+     * Creates or discards the cache of the checks whether the centroid vector field is populated.
+     * The checks are discarded whenever the configuration is loaded.
      */
-    protected boolean loadModel(final String modelId) {
-        try (CurlResponse response = ComponentUtil.getCurlHelper().post("/_plugins/_ml/models/" + modelId + "/_load").execute()) {
-            if (response.getHttpStatusCode() == 200) {
-                final Map<String, Object> contentMap = response.getContent(OpenSearchCurl.jsonParser());
-                if (logger.isDebugEnabled()) {
-                    logger.debug("loading model:{}: {}", modelId, contentMap);
-                }
-                if (contentMap.get("task_id") instanceof final String taskId) {
-                    for (int i = 0; i < 60; i++) {
-                        ThreadUtil.sleepQuietly(1000L);
-                        final Map<String, Object> taskInfo = getTask(taskId);
-                        final Object taskState = taskInfo.get("state");
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("task: {}, state: {}, count: {}", taskInfo, taskState, i);
-                        }
-                        if ("CREATED".equals(taskState) || "RUNNING".equals(taskState)) {
-                            continue;
-                        }
-                        return true;
-                    }
+    protected void loadCentroidFieldStates() {
+        if (StringUtil.isBlank(System.getProperty(CONTENT_FIELD)) || StringUtil.isBlank(System.getProperty(CONTENT_NESTED_FIELD))
+                || StringUtil.isBlank(System.getProperty(CONTENT_CENTROID_FIELD))) {
+            centroidFieldStates = null;
+            return;
+        }
+        final int expire = getIntProperty(CENTROID_CHECK_EXPIRE, 300);
+        centroidFieldStates = CacheBuilder.newBuilder().expireAfterWrite(expire, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Creates or discards the cache of the checks whether the binary vector field is populated.
+     * The checks are discarded whenever the configuration is loaded.
+     */
+    protected void loadBinaryFieldStates() {
+        if (StringUtil.isBlank(System.getProperty(CONTENT_FIELD)) || StringUtil.isBlank(System.getProperty(CONTENT_BINARY_FIELD))) {
+            binaryFieldStates = null;
+            return;
+        }
+        final int expire = getIntProperty(BINARY_CHECK_EXPIRE, 300);
+        binaryFieldStates = CacheBuilder.newBuilder().expireAfterWrite(expire, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Loads whether documents embedded by the model of their language skip the content vector.
+     */
+    protected void loadSkipLanguageContentVector() {
+        skipLanguageContentVector =
+                Boolean.parseBoolean(System.getProperty(LANGUAGE_SKIP_CONTENT_VECTOR, "false")) && !languageVectorFields.isEmpty();
+    }
+
+    /**
+     * Creates or discards the query embedding cache according to the current configuration.
+     * The int8 cache splits its memory size among the configured models.
+     * The existing cache is kept if its settings have not changed.
+     */
+    protected void loadEmbeddingCache() {
+        if (!Boolean.parseBoolean(System.getProperty(QUERY_CACHE_ENABLED, "false"))) {
+            embeddingCache = null;
+            embeddingCacheSettings = null;
+            return;
+        }
+
+        long maxMemory = 64L * 1024L * 1024L;
+        final String maxMemoryValue = System.getProperty(QUERY_CACHE_MAX_MEMORY);
+        if (StringUtil.isNotBlank(maxMemoryValue)) {
+            try {
+                maxMemory = Long.parseLong(maxMemoryValue);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", maxMemoryValue, e);
+            }
+        }
+        long expire = 3600L;
+        final String expireValue = System.getProperty(QUERY_CACHE_EXPIRE);
+        if (StringUtil.isNotBlank(expireValue)) {
+            try {
+                expire = Long.parseLong(expireValue);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", expireValue, e);
+            }
+        }
+
+        final String type = System.getProperty(QUERY_CACHE_TYPE, "float");
+        final int modelCount = getEmbeddingModelIds().size();
+
+        final String settings = type + ":" + maxMemory + ":" + expire + ":" + vectorNormalization + ":" + modelCount;
+        if (embeddingCache == null || !settings.equals(embeddingCacheSettings)) {
+            if ("int8".equalsIgnoreCase(type)) {
+                embeddingCache = new Int8EmbeddingCache(maxMemory, expire, modelCount);
+            } else {
+                embeddingCache = new FloatEmbeddingCache(maxMemory, expire);
+            }
+            embeddingCacheSettings = settings;
+        }
+    }
+
+    /**
+     * Gets the IDs of the models whose query embeddings are cached: the content model,
+     * the models of additional vector fields and the per-language models.
+     *
+     * @return the model IDs
+     */
+    protected Set<String> getEmbeddingModelIds() {
+        final Set<String> modelIds = new LinkedHashSet<>();
+        final String modelId = System.getProperty(CONTENT_MODEL_ID);
+        if (StringUtil.isNotBlank(modelId)) {
+            modelIds.add(modelId);
+        }
+        for (final VectorField vectorField : vectorFields) {
+            modelIds.add(vectorField.getModelId());
+        }
+        for (final VectorField vectorField : languageVectorFields.values()) {
+            modelIds.add(vectorField.getModelId());
+        }
+        return modelIds;
+    }
+
+    /**
+     * Creates or discards the result window cache according to the current configuration.
+     * The existing cache is kept if its settings have not changed.
+     */
+    protected void loadResultWindowCache() {
+        if (!Boolean.parseBoolean(System.getProperty(RESULT_WINDOW_CACHE_ENABLED, "false"))) {
+            resultWindowCache = null;
+            resultWindowCacheSettings = null;
+            return;
+        }
+
+        final int maxSize = getIntProperty(RESULT_WINDOW_CACHE_MAX_SIZE, 10000);
+        final int expire = getIntProperty(RESULT_WINDOW_CACHE_EXPIRE, 60);
+
+        final String settings = maxSize + ":" + expire;
+        if (resultWindowCache == null || !settings.equals(resultWindowCacheSettings)) {
+            resultWindowCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(expire, TimeUnit.SECONDS).build();
+            resultWindowCacheSettings = settings;
+        }
+    }
+
+    /**
+     * Creates or discards the query router according to the current configuration.
+     * The click log classifier is trained in the background and replaces the rule-based classifier when it is ready.
+     */
+    protected void loadQueryRouter() {
+        if (!Boolean.parseBoolean(System.getProperty(QUERY_ROUTING_ENABLED, "false"))) {
+            stopQueryClassifierTrainer();
+            queryRouter = null;
+            queryRouterSettings = null;
+            return;
+        }
+        final String classifierName = System.getProperty(QUERY_ROUTING_CLASSIFIER, "rule").trim();
+        final int minTerms = getIntProperty(QUERY_ROUTING_MIN_TERMS, 1);
+        final int minSamples = getIntProperty(QUERY_ROUTING_MIN_SAMPLES, 100);
+        final int trainingSize = getIntProperty(QUERY_ROUTING_TRAINING_SIZE, 10000);
+        final String settings = classifierName + ":" + minTerms + ":" + minSamples + ":" + trainingSize;
+        if (queryRouter != null && settings.equals(queryRouterSettings)) {
+            return;
+        }
+        stopQueryClassifierTrainer();
+
+        final RuleBasedQueryClassifier ruleClassifier = new RuleBasedQueryClassifier(minTerms);
+        QueryClassifier classifier = ruleClassifier;
+        if (!"rule".equals(classifierName) && !"click_log".equals(classifierName)) {
+            try {
+                classifier = (QueryClassifier) Class.forName(classifierName).getDeclaredConstructor().newInstance();
+            } catch (final Exception e) {
+                logger.warn("Failed to create the query classifier: {}", classifierName, e);
+            }
+        }
+        final QueryRouter router = new QueryRouter(classifier);
+        queryRouter = router;
+        queryRouterSettings = settings;
+
+        if ("click_log".equals(classifierName)) {
+            final QueryClassifierTrainer trainer = newQueryClassifierTrainer();
+            final Thread thread = new Thread(() -> {
+                final ClickLogQueryClassifier clickLogClassifier = new ClickLogQueryClassifier(ruleClassifier, minSamples);
+                trainer.train(clickLogClassifier, trainingSize);
+                if (Thread.currentThread().isInterrupted() || queryRouter != router) {
+                    logger.debug("Discarded the query classifier of a replaced router: {}", clickLogClassifier);
+                    return;
                 }
-            } else if (logger.isDebugEnabled()) {
-                logger.debug("Failed to load model:{}: {}", modelId, response.getContentAsString());
+                router.setClassifier(clickLogClassifier);
+                logger.info("Trained the query classifier: {}", clickLogClassifier);
+            }, "QueryClassifierTrainer");
+            thread.setDaemon(true);
+            queryClassifierTrainerThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Interrupts the training of the click log classifier, if any, so that it does not replace the classifier of a new router.
+     */
+    protected void stopQueryClassifierTrainer() {
+        final Thread thread = queryClassifierTrainerThread;
+        if (thread != null) {
+            thread.interrupt();
+            queryClassifierTrainerThread = null;
+        }
+    }
+
+    /**
+     * Creates the trainer of the click log classifier.
+     *
+     * @return the trainer reading the click and the search log indices
+     */
+    protected QueryClassifierTrainer newQueryClassifierTrainer() {
+        return new QueryClassifierTrainer(getLogIndex("click_log"), getLogIndex("search_log"));
+    }
+
+    private List<Map<?, ?>> getSources(final Map<String, Object> content) {
+        final List<Map<?, ?>> sources = new ArrayList<>();
+        if (content.get("hits") instanceof final Map<?, ?> hits && hits.get("hits") instanceof final List<?> hitList) {
+            for (final Object hit : hitList) {
+                if (hit instanceof final Map<?, ?> hitMap && hitMap.get("_source") instanceof final Map<?, ?> source) {
+                    sources.add(source);
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Creates or discards the ef_search controller according to the current configuration.
+     * The existing controller is kept if its settings have not changed.
+     */
+    protected void loadEfSearchController() {
+        if (!Boolean.parseBoolean(System.getProperty(EF_SEARCH_CONTROLLER_ENABLED, "false"))) {
+            efSearchController = null;
+            efSearchControllerSettings = null;
+            return;
+        }
+
+        final Integer staticEfSearch = getStaticEfSearch();
+        final int minEfSearch = getIntProperty(EF_SEARCH_CONTROLLER_MIN, 16);
+        final int maxEfSearch = getIntProperty(EF_SEARCH_CONTROLLER_MAX, staticEfSearch != null ? staticEfSearch : 512);
+        final int targetLatency = getIntProperty(EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY, 100);
+        final int maxConcurrency = getIntProperty(EF_SEARCH_CONTROLLER_MAX_CONCURRENCY, 16);
+        final int windowSize = getIntProperty(EF_SEARCH_CONTROLLER_WINDOW_SIZE, 100);
+
+        final String settings = minEfSearch + ":" + maxEfSearch + ":" + targetLatency + ":" + maxConcurrency + ":" + windowSize;
+        if (efSearchController == null || !settings.equals(efSearchControllerSettings)) {
+            efSearchController = new EfSearchController(minEfSearch, maxEfSearch, staticEfSearch != null ? staticEfSearch : maxEfSearch,
+                    targetLatency, maxConcurrency, windowSize);
+            efSearchControllerSettings = settings;
+        }
+    }
+
+    /**
+     * Creates or discards the k-NN strategy selector according to the current configuration.
+     * The existing selector is kept if its settings have not changed.
+     */
+    protected void loadKnnStrategySelector() {
+        if (!Boolean.parseBoolean(System.getProperty(EXACT_SEARCH_ENABLED, "false"))) {
+            knnStrategySelector = null;
+            knnStrategySelectorSettings = null;
+            return;
+        }
+
+        final int threshold = getIntProperty(EXACT_SEARCH_THRESHOLD, 10000);
+        final int maxSize = getIntProperty(EXACT_SEARCH_COUNT_CACHE_MAX_SIZE, 1000);
+        final int expire = getIntProperty(EXACT_SEARCH_COUNT_CACHE_EXPIRE, 60);
+
+        final String settings = threshold + ":" + maxSize + ":" + expire;
+        if (knnStrategySelector == null || !settings.equals(knnStrategySelectorSettings)) {
+            knnStrategySelector = new KnnStrategySelector(threshold, maxSize, expire);
+            knnStrategySelectorSettings = settings;
+        }
+    }
+
+    /**
+     * Enables or disables vector normalization according to the current configuration,
+     * and provisions the ingest pipeline normalizing indexed vectors.
+     */
+    protected void loadVectorNormalization() {
+        vectorNormalization = Boolean.parseBoolean(System.getProperty(VECTOR_NORMALIZATION_ENABLED, "false"));
+        ingestPipelineManager.loadNormalizationPipeline(vectorNormalization);
+    }
+
+    /**
+     * Loads the space type of the content field from the mapping of the document index.
+     * With vector normalization, the field may be mapped with the innerproduct space instead of the configured one,
+     * so that the exact scoring uses the space of the approximate search.
+     * The space type decided for the mapping at startup is kept if the mapping cannot be read.
+     */
+    protected void loadContentSpaceType() {
+        final String field = System.getProperty(CONTENT_FIELD);
+        if (!vectorNormalization || StringUtil.isBlank(field)) {
+            contentSpaceType = null;
+            return;
+        }
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        final String path = StringUtil.isNotBlank(nestedField) ? nestedField + "." + field : field;
+        final String spaceType = pipelineClient.getFieldSpaceType(ComponentUtil.getFessConfig().getIndexDocumentSearchIndex(), path);
+        if (StringUtil.isNotBlank(spaceType)) {
+            contentSpaceType = spaceType;
+        }
+    }
+
+    /**
+     * Loads the retrieval mode and provisions the ingest pipeline encoding the sparse token weights of documents
+     * according to the current configuration.
+     */
+    protected void loadSparseRetrieval() {
+        final String mode = System.getProperty(RETRIEVAL_MODE, RETRIEVAL_DENSE).trim().toLowerCase(Locale.ROOT);
+        if (RETRIEVAL_DENSE.equals(mode) || RETRIEVAL_SPARSE.equals(mode) || RETRIEVAL_BOTH.equals(mode)) {
+            retrievalMode = mode;
+        } else {
+            logger.warn("Unknown retrieval mode: {}", mode);
+            retrievalMode = RETRIEVAL_DENSE;
+        }
+
+        final String sparseField = System.getProperty(CONTENT_SPARSE_FIELD);
+        final String modelId = System.getProperty(CONTENT_SPARSE_MODEL_ID);
+        if (!RETRIEVAL_DENSE.equals(retrievalMode) && (StringUtil.isBlank(sparseField) || StringUtil.isBlank(modelId))) {
+            logger.warn("Sparse retrieval needs {} and {}.", CONTENT_SPARSE_FIELD, CONTENT_SPARSE_MODEL_ID);
+        }
+        ingestPipelineManager.loadSparsePipeline();
+    }
+
+    /**
+     * Creates or stops the embedding batcher according to the current configuration.
+     * The existing batcher is kept if its settings have not changed.
+     */
+    protected void loadEmbeddingBatcher() {
+        if (!Boolean.parseBoolean(System.getProperty(BATCH_INFERENCE_ENABLED, "false"))) {
+            closeEmbeddingBatcher();
+            return;
+        }
+
+        int maxBatchSize = 16;
+        final String maxBatchSizeValue = System.getProperty(BATCH_INFERENCE_MAX_SIZE);
+        if (StringUtil.isNotBlank(maxBatchSizeValue)) {
+            try {
+                maxBatchSize = Integer.parseInt(maxBatchSizeValue);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", maxBatchSizeValue, e);
+            }
+        }
+        long maxWait = 5L;
+        final String maxWaitValue = System.getProperty(BATCH_INFERENCE_MAX_WAIT);
+        if (StringUtil.isNotBlank(maxWaitValue)) {
+            try {
+                maxWait = Long.parseLong(maxWaitValue);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", maxWaitValue, e);
+            }
+        }
+
+        final int maxConcurrency = getIntProperty(BATCH_INFERENCE_MAX_CONCURRENCY, 4);
+
+        long timeout = getSearchTimeoutMillis();
+        final String timeoutValue = System.getProperty(BATCH_INFERENCE_TIMEOUT);
+        if (StringUtil.isNotBlank(timeoutValue)) {
+            try {
+                timeout = Long.parseLong(timeoutValue.trim());
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", timeoutValue, e);
+            }
+        }
+
+        final String settings = maxBatchSize + ":" + maxWait + ":" + maxConcurrency + ":" + timeout;
+        if (embeddingBatcher == null || !settings.equals(embeddingBatcherSettings)) {
+            closeEmbeddingBatcher();
+            embeddingBatcher = new EmbeddingBatcher(this::predictTextEmbeddings, maxBatchSize, maxWait, timeout, maxConcurrency).start();
+            embeddingBatcherSettings = settings;
+        }
+    }
+
+    /**
+     * Gets the search timeout of the document index in milliseconds, which is the default timeout of batched embeddings.
+     *
+     * @return the search timeout, or 10 seconds if it cannot be parsed
+     */
+    protected long getSearchTimeoutMillis() {
+        final String value = ComponentUtil.getFessConfig().getIndexSearchTimeout();
+        try {
+            return TimeValue.parseTimeValue(value, "index.search.timeout").millis();
+        } catch (final RuntimeException e) {
+            logger.debug("Failed to parse the search timeout {}.", value, e);
+            return 10000L;
+        }
+    }
+
+    /**
+     * Stops the embedding batcher if it exists.
+     */
+    protected void closeEmbeddingBatcher() {
+        if (embeddingBatcher != null) {
+            embeddingBatcher.close();
+            embeddingBatcher = null;
+            embeddingBatcherSettings = null;
+        }
+    }
+
+    /**
+     * Opens or closes the persistent query vector store according to the current configuration.
+     * The store is reopened when the model ID or the dimension changes, and the file is reinitialized
+     * if it was written for a different model or dimension.
+     */
+    protected void loadQueryVectorStore() {
+        final String path = System.getProperty(QUERY_VECTOR_STORE_PATH);
+        final String modelId = System.getProperty(CONTENT_MODEL_ID);
+        final String dimensionValue = System.getProperty(CONTENT_DIMENSION);
+        if (StringUtil.isBlank(path) || StringUtil.isBlank(modelId) || StringUtil.isBlank(dimensionValue)) {
+            closeQueryVectorStore();
+            return;
+        }
+
+        final int dimension;
+        try {
+            dimension = Integer.parseInt(dimensionValue.trim());
+        } catch (final NumberFormatException e) {
+            logger.debug("Failed to parse {}.", dimensionValue, e);
+            closeQueryVectorStore();
+            return;
+        }
+        int maxEntries = 100000;
+        final String maxEntriesValue = System.getProperty(QUERY_VECTOR_STORE_MAX_ENTRIES);
+        if (StringUtil.isNotBlank(maxEntriesValue)) {
+            try {
+                maxEntries = Integer.parseInt(maxEntriesValue);
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", maxEntriesValue, e);
+            }
+        }
+
+        final String settings = path + ":" + modelId + ":" + dimension + ":" + maxEntries;
+        if (queryVectorStore == null || !settings.equals(queryVectorStoreSettings)) {
+            closeQueryVectorStore();
+            try {
+                queryVectorStore = new QueryVectorStore(Paths.get(path), modelId, dimension, maxEntries);
+                queryVectorStoreSettings = settings;
+            } catch (final IOException | IllegalArgumentException e) {
+                logger.warn("Failed to open the query vector store: {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Closes the persistent query vector store if it is open.
+     */
+    protected void closeQueryVectorStore() {
+        if (queryVectorStore != null) {
+            try {
+                queryVectorStore.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close the query vector store: {}", queryVectorStore.getPath(), e);
+            }
+            queryVectorStore = null;
+            queryVectorStoreSettings = null;
+        }
+    }
+
+    /**
+     * Starts the warm-up of query embeddings for the most frequent logged queries if it is enabled.
+     * The warm-up runs in the background and its progress is available from {@link #getQueryVectorWarmer()}.
+     */
+    protected void startQueryVectorWarmer() {
+        final String modelId = System.getProperty(CONTENT_MODEL_ID);
+        if (!Boolean.parseBoolean(System.getProperty(QUERY_WARMUP_ENABLED, "false")) || StringUtil.isBlank(modelId)) {
+            return;
+        }
+        if (!isQueryVectorEnabled()) {
+            logger.warn("Query vector warm-up requires the query cache or the query vector store.");
+            return;
+        }
+
+        final int size = getIntProperty(QUERY_WARMUP_SIZE, 1000);
+        final int batchSize = getIntProperty(QUERY_WARMUP_BATCH_SIZE, 32);
+        final int concurrency = getIntProperty(QUERY_WARMUP_CONCURRENCY, 2);
+        final int timeout = getIntProperty(QUERY_WARMUP_TIMEOUT, 300);
+        final String readyFile = System.getProperty(QUERY_WARMUP_READY_FILE);
+        queryVectorWarmer = new QueryVectorWarmer(() -> getFrequentQueries(size), texts -> warmUpQueryVectors(modelId, texts), batchSize,
+                concurrency, timeout * 1000L, StringUtil.isNotBlank(readyFile) ? Paths.get(readyFile) : null);
+        queryVectorWarmer.start();
+    }
+
+    /**
+     * Gets an int value from system properties.
+     *
+     * @param key the property key
+     * @param defaultValue the default value
+     * @return the property value, or the default value if it is not set or invalid
+     */
+    protected int getIntProperty(final String key, final int defaultValue) {
+        final String value = System.getProperty(key);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", value, e);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets the name of a log index of Fess, such as search_log, under the configured log index prefix.
+     *
+     * @param name the name of the log type
+     * @return the index name
+     */
+    protected String getLogIndex(final String name) {
+        return ComponentUtil.getFessConfig().getIndexLogIndex() + "." + name;
+    }
+
+    /**
+     * Gets the most frequent queries from the search log index.
+     *
+     * @param size the maximum number of queries
+     * @return the queries in descending order of frequency
+     */
+    protected List<String> getFrequentQueries(final int size) {
+        final String body = "{\"size\":0,\"aggs\":{\"queries\":{\"terms\":{\"field\":\"searchWord\",\"size\":" + size + "}}}}";
+        final String index = getLogIndex("search_log");
+        try (CurlResponse response = ComponentUtil.getCurlHelper().post("/" + index + "/_search").body(body).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return parseFrequentQueries(response.getContent(OpenSearchCurl.jsonParser()));
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to get frequent queries: {}", response.getContentAsString());
             }
         } catch (final IOException e) {
-            logger.warn("Failed to load model:{}", modelId, e);
+            logger.warn("Failed to get frequent queries from {}", index, e);
         }
-        return false;
+        return Collections.emptyList();
     }
 
     /**
-     * Retrieves task information for model loading operations.
+     * Parses the terms aggregation of the search log index into queries.
      *
-     * @param taskId the task ID
-     * @return task information map, or empty map if not found
+     * @param content the response content
+     * @return the non-blank queries
      */
-    protected Map<String, Object> getTask(final String taskId) {
-        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/_plugins/_ml/tasks/" + taskId).execute()) {
+    protected List<String> parseFrequentQueries(final Map<String, Object> content) {
+        final List<String> queries = new ArrayList<>();
+        if (content.get("aggregations") instanceof final Map<?, ?> aggregations
+                && aggregations.get("queries") instanceof final Map<?, ?> terms && terms.get("buckets") instanceof final List<?> buckets) {
+            for (final Object bucket : buckets) {
+                if (bucket instanceof final Map<?, ?> bucketMap && bucketMap.get("key") instanceof final String key
+                        && StringUtil.isNotBlank(key)) {
+                    queries.add(key);
+                }
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Loads the stored embeddings of the queries into the query cache, and computes and stores the others.
+     *
+     * @param modelId the ML model ID
+     * @param texts the query texts
+     */
+    protected void warmUpQueryVectors(final String modelId, final List<String> texts) {
+        final QueryVectorStore store = queryVectorStore;
+        final List<String> missingTexts = new ArrayList<>();
+        for (final String text : texts) {
+            final float[] stored = getStoredQueryVector(modelId, text);
+            if (stored == null) {
+                missingTexts.add(text);
+            } else if (embeddingCache != null) {
+                embeddingCache.put(modelId, text, stored);
+            }
+        }
+        if (missingTexts.isEmpty()) {
+            return;
+        }
+        final List<float[]> embeddings = predictTextEmbeddings(modelId, missingTexts);
+        for (int i = 0; i < embeddings.size(); i++) {
+            final float[] embedding = embeddings.get(i);
+            if (embedding != null) {
+                if (embeddingCache != null) {
+                    embeddingCache.put(modelId, missingTexts.get(i), embedding);
+                }
+                if (store != null && modelId.equals(store.getModelId())) {
+                    store.put(missingTexts.get(i), embedding);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves model information from OpenSearch ML plugin.
+     *
+     * @param modelId the ML model ID
+     * @return model information map, or empty map if not found
+     */
+    protected Map<String, Object> getModel(final String modelId) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/_plugins/_ml/models/" + modelId).execute()) {
             if (response.getHttpStatusCode() == 200) {
                 return response.getContent(OpenSearchCurl.jsonParser());
             }
             if (logger.isDebugEnabled()) {
-                logger.debug("Failed to load task: {} => {}", taskId, response.getContentAsString());
+                logger.debug("model:{} does not exists: {}", modelId, response.getContentAsString());
             }
         } catch (final IOException e) {
-            logger.warn("Failed to load task: {}", taskId, e);
+            logger.warn("Failed to get model info for {}", modelId, e);
         }
         return Collections.emptyMap();
     }
 
     /**
-     * Rewrites queries for semantic search by adding quotes to multi-word queries.
+     * Loads and deploys an ML model in OpenSearch.
+     *
+     * @param modelId the ML model ID to load
+     * @return true if model was loaded successfully, false otherwise
+     */
+    protected boolean loadModel(final String modelId) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().post("/_plugins/_ml/models/" + modelId + "/_load").execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                final Map<String, Object> contentMap = response.getContent(OpenSearchCurl.jsonParser());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("loading model:{}: {}", modelId, contentMap);
+                }
+                if (contentMap.get("task_id") instanceof final String taskId) {
+                    for (int i = 0; i < 60; i++) {
+                        ThreadUtil.sleepQuietly(1000L);
+                        final Map<String, Object> taskInfo = getTask(taskId);
+                        final Object taskState = taskInfo.get("state");
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("task: {}, state: {}, count: {}", taskInfo, taskState, i);
+                        }
+                        if ("CREATED".equals(taskState) || "RUNNING".equals(taskState)) {
+                            continue;
+                        }
+                        return true;
+                    }
+                }
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Failed to load model:{}: {}", modelId, response.getContentAsString());
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to load model:{}", modelId, e);
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves task information for model loading operations.
+     *
+     * @param taskId the task ID
+     * @return task information map, or empty map if not found
+     */
+    protected Map<String, Object> getTask(final String taskId) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/_plugins/_ml/tasks/" + taskId).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return response.getContent(OpenSearchCurl.jsonParser());
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to load task: {} => {}", taskId, response.getContentAsString());
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to load task: {}", taskId, e);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Computes text embeddings with the ML predict API.
+     *
+     * @param modelId the ML model ID
+     * @param texts the texts to embed
+     * @return the embeddings in the same order as the texts, or an empty list if the request failed
+     */
+    protected List<float[]> predictTextEmbeddings(final String modelId, final List<String> texts) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.array("text_docs", texts.toArray(String[]::new));
+            builder.field("return_number", true);
+            builder.array("target_response", "sentence_embedding");
+            builder.endObject();
+            try (CurlResponse response = ComponentUtil.getCurlHelper()
+                    .post("/_plugins/_ml/_predict/text_embedding/" + modelId)
+                    .body(BytesReference.bytes(builder).utf8ToString())
+                    .execute()) {
+                if (response.getHttpStatusCode() == 200) {
+                    final List<float[]> embeddings = parseTextEmbeddings(response.getContent(OpenSearchCurl.jsonParser()));
+                    if (embeddings.size() == texts.size()) {
+                        return embeddings;
+                    }
+                    logger.warn("Unexpected number of embeddings: expected={}, actual={}", texts.size(), embeddings.size());
+                } else if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to predict embeddings with model:{}: {}", modelId, response.getContentAsString());
+                }
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to predict embeddings with model:{}", modelId, e);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Parses the response of the ML predict API into embeddings.
+     * With vector normalization, the embeddings are scaled to unit length.
+     *
+     * @param content the response content
+     * @return the embeddings, where an element is null if the result has no data
+     */
+    protected List<float[]> parseTextEmbeddings(final Map<String, Object> content) {
+        final List<float[]> embeddings = new ArrayList<>();
+        if (content.get("inference_results") instanceof final List<?> results) {
+            for (final Object result : results) {
+                float[] embedding = null;
+                if (result instanceof final Map<?, ?> resultMap && resultMap.get("output") instanceof final List<?> outputs) {
+                    for (final Object output : outputs) {
+                        if (output instanceof final Map<?, ?> outputMap && outputMap.get("data") instanceof final List<?> data) {
+                            embedding = new float[data.size()];
+                            for (int i = 0; i < embedding.length; i++) {
+                                embedding[i] = ((Number) data.get(i)).floatValue();
+                            }
+                            if (vectorNormalization) {
+                                VectorUtil.normalize(embedding);
+                            }
+                            break;
+                        }
+                    }
+                }
+                embeddings.add(embedding);
+            }
+        }
+        return embeddings;
+    }
+
+    /**
+     * Gets the query embedding from the query cache, or computes it with the ML predict API on a cache miss.
+     * Embeddings persisted in the query vector store are used before computing them,
+     * and computed embeddings are appended to the store.
+     * If batch inference is enabled, the computation is batched with concurrent requests.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the embedding, or null if it could not be computed
+     */
+    public float[] getQueryVector(final String modelId, final String text) {
+        if (embeddingCache != null) {
+            final float[] cached = embeddingCache.get(modelId, text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final float[] stored = getStoredQueryVector(modelId, text);
+        if (stored != null) {
+            if (embeddingCache != null) {
+                embeddingCache.put(modelId, text, stored);
+            }
+            return stored;
+        }
+        final QueryVectorStore store = queryVectorStore;
+        final float[] embedding;
+        if (embeddingBatcher != null) {
+            embedding = embeddingBatcher.embed(modelId, text);
+        } else {
+            final List<float[]> embeddings = predictTextEmbeddings(modelId, Collections.singletonList(text));
+            embedding = embeddings.isEmpty() ? null : embeddings.get(0);
+        }
+        if (embedding == null) {
+            return null;
+        }
+        if (embeddingCache != null) {
+            embeddingCache.put(modelId, text, embedding);
+        }
+        if (store != null && modelId.equals(store.getModelId())) {
+            store.put(text, embedding);
+        }
+        return embedding;
+    }
+
+    /**
+     * Gets the query embedding persisted in the query vector store.
+     * With vector normalization, the embedding is scaled to unit length.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the embedding, or null if the store is not open, is for another model, or has no embedding for the text
+     */
+    protected float[] getStoredQueryVector(final String modelId, final String text) {
+        final QueryVectorStore store = queryVectorStore;
+        if (store == null || !modelId.equals(store.getModelId())) {
+            return null;
+        }
+        final float[] stored = store.get(text);
+        if (stored != null && vectorNormalization) {
+            VectorUtil.normalize(stored);
+        }
+        return stored;
+    }
+
+    /**
+     * Rewrites queries for semantic search by adding quotes to multi-word queries.
+     *
+     * @param query the original query string
+     * @return the rewritten query string
+     */
+    protected String rewriteQuery(final String query) {
+        if (StringUtil.isBlank(query) || (query.indexOf('"') != -1) || !CharMatcher.whitespace().matchesAnyOf(query)) {
+            return query;
+        }
+
+        if (getSearchFieldMatcher().hasFieldPrefix(query)) {
+            return query;
+        }
+
+        final String modelId = System.getProperty(CONTENT_MODEL_ID);
+        if (StringUtil.isBlank(modelId)) {
+            return query;
+        }
+
+        // keyword-style queries keep the lexical query syntax
+        final QueryRouter router = queryRouter;
+        if (router != null && router.getClassifier().classify(query) == Route.LEXICAL) {
+            return query;
+        }
+
+        return "\"" + query + "\"";
+    }
+
+    /**
+     * Gets the matcher of the search fields.
+     * The matcher is recompiled when the search fields of the query field configuration are replaced.
+     *
+     * @return the search field matcher
+     */
+    public FieldPrefixMatcher getSearchFieldMatcher() {
+        final String[] fields = ComponentUtil.getQueryFieldConfig().getSearchFields();
+        FieldPrefixMatcher matcher = searchFieldMatcher;
+        if (matcher == null || !matcher.isCompiledFrom(fields)) {
+            matcher = new FieldPrefixMatcher(fields);
+            searchFieldMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * Creates a new neural query builder for semantic search.
+     * If query aggregation is enabled, all default field terms and phrases of the search query share one neural query
+     * for their combined text, so that one query needs one inference and one k-NN search.
+     * In a similar document search with vectors, they share one k-NN query with the vector of the source document instead.
+     *
+     * @param text the query text to convert to neural query
+     * @return optional neural query builder, or empty if not configured
+     */
+    public OptionalThing<QueryBuilder> newNeuralQueryBuilder(final String text) {
+        final SemanticSearchContext context = getContext();
+        if (context != null && context.getSimilarDocVector() != null) {
+            OptionalThing<QueryBuilder> similarQuery = context.getAggregatedQuery();
+            if (similarQuery == null) {
+                similarQuery = OptionalThing.of(newSimilarDocQueryBuilder(context.getSimilarDocVector()));
+                context.setAggregatedQuery(similarQuery);
+            }
+            return similarQuery;
+        }
+        if (context != null && Boolean.parseBoolean(System.getProperty(QUERY_AGGREGATION_ENABLED, "false"))) {
+            final Set<String> texts = getDefaultFieldTexts(context);
+            if (texts.size() > 1 && texts.contains(text)) {
+                OptionalThing<QueryBuilder> aggregatedQuery = context.getAggregatedQuery();
+                if (aggregatedQuery == null) {
+                    aggregatedQuery = buildNeuralQueryBuilder(String.join(" ", texts));
+                    context.setAggregatedQuery(aggregatedQuery);
+                }
+                return aggregatedQuery;
+            }
+        }
+        return buildNeuralQueryBuilder(text);
+    }
+
+    /**
+     * Creates the neural sub-query of a hybrid query.
+     * It is one vector query for the combined text of the default field terms and phrases of the search query,
+     * or the k-NN query with the vector of the source document in a similar document search.
+     * Other clauses and filters of the search query belong to the lexical sub-query.
+     *
+     * @return optional neural query builder, or empty if there is no search context or default field text
+     */
+    public OptionalThing<QueryBuilder> newHybridNeuralQueryBuilder() {
+        final SemanticSearchContext context = getContext();
+        if (context == null) {
+            return OptionalThing.empty();
+        }
+        if (context.getSimilarDocVector() != null) {
+            return OptionalThing.of(newSimilarDocQueryBuilder(context.getSimilarDocVector()));
+        }
+        final Set<String> texts = getDefaultFieldTexts(context);
+        if (texts.isEmpty()) {
+            return OptionalThing.empty();
+        }
+        return buildNeuralQueryBuilder(String.join(" ", texts));
+    }
+
+    /**
+     * Gets the texts of the default field terms and phrases of the search query.
+     * Negated clauses and the clauses of other fields, wildcards and ranges are not collected.
+     *
+     * @param context the search context
+     * @return the texts in the order of the query
+     */
+    protected Set<String> getDefaultFieldTexts(final SemanticSearchContext context) {
+        Set<String> texts = context.getDefaultFieldTexts();
+        if (texts == null) {
+            texts = new LinkedHashSet<>();
+            if (StringUtil.isNotBlank(context.getQuery()) && ComponentUtil.hasQueryParser()) {
+                try {
+                    collectDefaultFieldTexts(ComponentUtil.getQueryParser().parse(context.getQuery()), texts);
+                } catch (final Exception e) {
+                    logger.debug("Failed to parse {}.", context.getQuery(), e);
+                    texts.clear();
+                }
+            }
+            context.setDefaultFieldTexts(texts);
+        }
+        return texts;
+    }
+
+    /**
+     * Collects the texts of the default field terms and phrases of a parsed query.
+     *
+     * @param query the parsed query
+     * @param texts the collected texts
+     */
+    protected void collectDefaultFieldTexts(final Query query, final Set<String> texts) {
+        if (query instanceof final BooleanQuery booleanQuery) {
+            for (final BooleanClause clause : booleanQuery.clauses()) {
+                if (clause.occur() != Occur.MUST_NOT) {
+                    collectDefaultFieldTexts(clause.query(), texts);
+                }
+            }
+        } else if (query instanceof final BoostQuery boostQuery) {
+            collectDefaultFieldTexts(boostQuery.getQuery(), texts);
+        } else if (query instanceof final TermQuery termQuery) {
+            if (Constants.DEFAULT_FIELD.equals(termQuery.getTerm().field())) {
+                texts.add(termQuery.getTerm().text());
+            }
+        } else if (query instanceof final PhraseQuery phraseQuery) {
+            final Term[] terms = phraseQuery.getTerms();
+            if (terms.length > 0 && Constants.DEFAULT_FIELD.equals(terms[0].field())) {
+                texts.add(Arrays.stream(terms).map(Term::text).collect(Collectors.joining(" ")));
+            }
+        }
+    }
+
+    /**
+     * Removes the duplicated clauses of the aggregated neural query from the built query.
+     * Each boolean query keeps one aggregated clause, preferring must over filter and should.
+     *
+     * @param query the built query
+     */
+    public void removeAggregatedDuplicates(final QueryBuilder query) {
+        final SemanticSearchContext context = getContext();
+        if (context == null || context.getAggregatedQuery() == null || !context.getAggregatedQuery().isPresent()) {
+            return;
+        }
+        removeDuplicateClauses(query, context.getAggregatedQuery().get());
+    }
+
+    /**
+     * Removes the duplicates of a clause from boolean queries.
+     *
+     * @param query the query to process
+     * @param clause the clause whose duplicates are removed
+     */
+    protected void removeDuplicateClauses(final QueryBuilder query, final QueryBuilder clause) {
+        if (query instanceof final BoolQueryBuilder boolQuery) {
+            boolean found = false;
+            for (final List<QueryBuilder> clauses : Arrays.asList(boolQuery.must(), boolQuery.filter(), boolQuery.should())) {
+                for (int i = 0; i < clauses.size();) {
+                    if (clauses.get(i) == clause) {
+                        if (found) {
+                            clauses.remove(i);
+                            continue;
+                        }
+                        found = true;
+                    } else {
+                        removeDuplicateClauses(clauses.get(i), clause);
+                    }
+                    i++;
+                }
+            }
+        } else if (query instanceof final FunctionScoreQueryBuilder functionScoreQuery) {
+            removeDuplicateClauses(functionScoreQuery.query(), clause);
+        }
+    }
+
+    /**
+     * Builds a neural query builder for the text.
+     * The retrieval mode selects the dense query, the sparse query, or both of them in one bool query.
+     *
+     * @param text the query text to convert to neural query
+     * @return optional neural query builder, or empty if not configured
+     */
+    protected OptionalThing<QueryBuilder> buildNeuralQueryBuilder(final String text) {
+        if (StringUtil.isBlank(text)) {
+            return OptionalThing.empty();
+        }
+        final QueryRouter router = queryRouter;
+        if (router != null && router.route(text) == Route.LEXICAL) {
+            return OptionalThing.empty();
+        }
+
+        final String mode = retrievalMode;
+        final QueryBuilder denseQuery = RETRIEVAL_SPARSE.equals(mode) ? null : buildDenseQueryBuilder(text);
+        final QueryBuilder sparseQuery = RETRIEVAL_DENSE.equals(mode) ? null : newSparseQueryBuilder(text);
+        if (denseQuery != null && sparseQuery != null) {
+            return OptionalThing.of(QueryBuilders.boolQuery().should(denseQuery).should(sparseQuery.boost(getSparseBoost())));
+        }
+        if (denseQuery != null) {
+            return OptionalThing.of(denseQuery);
+        }
+        if (sparseQuery != null) {
+            return OptionalThing.of(sparseQuery);
+        }
+        return OptionalThing.empty();
+    }
+
+    /**
+     * Builds the dense vector query for the text.
+     * The retrieval paths of the nested or the top-level content field are tried in order, and the first query is used.
+     *
+     * @param text the query text
+     * @return the dense query, or null if the dense field is not configured
+     */
+    protected QueryBuilder buildDenseQueryBuilder(final String text) {
+        final String modelId = System.getProperty(CONTENT_MODEL_ID);
+        final String field = System.getProperty(CONTENT_FIELD); // ex. knn
+        if (StringUtil.isNotBlank(modelId) && StringUtil.isNotBlank(field)) {
+            final Integer efSearch = getEfSearch();
+
+            final int k = getK();
+            final int contentK = getContentK(k);
+            final QueryBuilder filter = buildPreFilter();
+
+            final String nestedField = System.getProperty(CONTENT_NESTED_FIELD); // ex. content_vector
+            final QueryBuilder denseQuery;
+            if (StringUtil.isNotBlank(nestedField)) {
+                final InnerHitBuilder innerHit =
+                        new InnerHitBuilder(nestedField).setSize(chunkSize).setFetchSourceContext(new FetchSourceContext(false));
+                denseQuery = buildRetrievalQueryBuilder(nestedRetrievals,
+                        new DenseQuery(modelId, nestedField + "." + field, text, contentK, efSearch, filter, nestedField, innerHit));
+            } else {
+                final DenseQuery query = new DenseQuery(modelId, field, text, contentK, efSearch, filter, null, null);
+                denseQuery = buildRetrievalQueryBuilder(retrievals, query);
+            }
+            return denseQuery != null ? addVectorFieldQueries(denseQuery, text, k, efSearch, filter) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Builds the query of the first retrieval path that applies to the search.
+     *
+     * @param retrievalPaths the retrieval paths in order
+     * @param query the dense query
+     * @return the query builder, or null if no path applies
+     */
+    protected QueryBuilder buildRetrievalQueryBuilder(final List<DenseRetrieval> retrievalPaths, final DenseQuery query) {
+        for (final DenseRetrieval retrieval : retrievalPaths) {
+            final QueryBuilder queryBuilder = retrieval.build(this, query);
+            if (queryBuilder != null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Use {} for {}", retrieval.getClass().getSimpleName(), query);
+                }
+                return queryBuilder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the query of a single vector field selected by a retrieval path, such as a label partition or the field of a language.
+     *
+     * @param query the dense query on the selected field
+     * @return the query builder
+     */
+    protected QueryBuilder buildFieldQueryBuilder(final DenseQuery query) {
+        return buildRetrievalQueryBuilder(fieldRetrievals, query);
+    }
+
+    /**
+     * Creates the neural sparse query for the text.
+     * The query runs on the inverted index of the rank_features field and needs no k-NN pre-filter,
+     * because the filters of the search apply to it in the same way as to lexical queries.
+     *
+     * @param text the query text
+     * @return the sparse query, or null if the sparse field is not configured
+     */
+    protected QueryBuilder newSparseQueryBuilder(final String text) {
+        final String field = System.getProperty(CONTENT_SPARSE_FIELD); // ex. content_sparse
+        final String modelId = System.getProperty(CONTENT_SPARSE_QUERY_MODEL_ID, System.getProperty(CONTENT_SPARSE_MODEL_ID));
+        if (StringUtil.isBlank(field) || StringUtil.isBlank(modelId)) {
+            return null;
+        }
+        return new NeuralSparseQueryBuilder.Builder().field(field).query(text).modelId(modelId).build();
+    }
+
+    /**
+     * Gets the boost of the sparse query combined with the dense query.
+     *
+     * @return the boost
+     */
+    protected float getSparseBoost() {
+        final String value = System.getProperty(CONTENT_SPARSE_BOOST);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Float.parseFloat(value.trim());
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", value, e);
+            }
+        }
+        return 1.0f;
+    }
+
+    /**
+     * Gets the vector field of the per-language model for the languages of the current search.
+     * A search with one language uses the model of the language, and a search with no or several languages
+     * uses the multilingual model of the content field.
+     *
+     * @return the vector field, or null if the content field is used
+     */
+    protected VectorField getLanguageVectorField() {
+        final Map<String, VectorField> fields = languageVectorFields;
+        final SemanticSearchContext context = getContext();
+        if (fields.isEmpty() || context == null || context.getParams() == null || context.getParams().getLanguages() == null) {
+            return null;
+        }
+        final Set<String> languages = Arrays.stream(context.getParams().getLanguages())
+                .filter(StringUtil::isNotBlank)
+                .map(language -> language.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        return languages.size() == 1 ? fields.get(languages.iterator().next()) : null;
+    }
+
+    /**
+     * Gets the partition vector fields covering the label filter of the current search.
+     * The partitions are searched only if every label of the filter has a populated partition,
+     * because documents of other labels, and documents indexed before the partitions were enabled, are not in any partition.
+     *
+     * @return the distinct partition fields, or null if the content field is searched
+     */
+    protected List<String> getLabelPartitionFields() {
+        final Map<String, String> partitions = labelVectorFields;
+        final SemanticSearchContext context = getContext();
+        if (partitions.isEmpty() || context == null || context.getParams() == null || context.getParams().getFields() == null) {
+            return null;
+        }
+        final String[] labels = context.getParams().getFields().get(ComponentUtil.getFessConfig().getIndexFieldLabel());
+        if (labels == null) {
+            return null;
+        }
+        final Set<String> fields = new LinkedHashSet<>();
+        for (final String label : labels) {
+            if (StringUtil.isBlank(label)) {
+                continue;
+            }
+            final String partitionField = partitions.get(label.trim());
+            if (partitionField == null || !isLabelPartitionPopulated(label.trim(), partitionField)) {
+                return null;
+            }
+            fields.add(partitionField);
+        }
+        return fields.isEmpty() ? null : new ArrayList<>(fields);
+    }
+
+    /**
+     * Checks whether every document of the label with a content vector is in the partition of the label.
+     * The result is cached until the check expires, so that the partition is used once the documents are reindexed.
+     *
+     * @param label the label value
+     * @param partitionField the partition vector field of the label
+     * @return true if the partition is populated, false if it is not or the check failed
+     */
+    protected boolean isLabelPartitionPopulated(final String label, final String partitionField) {
+        final Cache<String, Boolean> states = labelPartitionStates;
+        if (states == null) {
+            return true;
+        }
+        final Boolean cached = states.getIfPresent(label);
+        if (cached != null) {
+            return cached;
+        }
+        final QueryBuilder missingQuery = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.termQuery(ComponentUtil.getFessConfig().getIndexFieldLabel(), label))
+                .filter(QueryBuilders.existsQuery(System.getProperty(CONTENT_FIELD)))
+                .mustNot(QueryBuilders.existsQuery(partitionField));
+        final boolean populated = countDocuments(missingQuery, 0L) == 0L;
+        if (!populated) {
+            logger.info("Search the content field for the label {} until its documents are reindexed into {}.", label, partitionField);
+        }
+        states.put(label, populated);
+        return populated;
+    }
+
+    /**
+     * Creates a two-stage query for nested chunk vectors.
+     * Candidate documents are found by the approximate search of the centroid vectors,
+     * and only the chunks of the candidates are scored exactly, so the cost does not grow with the number of chunks
+     * of all documents. The best chunks are returned as inner hits in the same way as the nested k-NN query.
+     * As ef_search widens the graph search of the nested k-NN query, it widens the candidates to at least ef_search documents.
+     * Like the nested k-NN query, the minimum score is applied to the document scores after the search, not as a radial search.
+     * Until every document with chunk vectors has a centroid vector, the nested k-NN query is used instead,
+     * because documents without a centroid vector would never become candidates.
+     *
+     * @param modelId the ML model ID
+     * @param nestedField the nested field name
+     * @param vectorField the full path of the chunk vector field
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the centroid search, or null
+     * @param innerHit the inner hit of the best chunks
+     * @return the query builder, or null if the centroid field is not configured or populated, or the query embedding is not available
+     */
+    protected QueryBuilder newCentroidQueryBuilder(final String modelId, final String nestedField, final String vectorField,
+            final String text, final int k, final Integer efSearch, final QueryBuilder filter, final InnerHitBuilder innerHit) {
+        final String centroidField = System.getProperty(CONTENT_CENTROID_FIELD);
+        if (StringUtil.isBlank(centroidField)) {
+            return null;
+        }
+        final QueryBuilder missingQuery = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.nestedQuery(nestedField, QueryBuilders.existsQuery(vectorField), ScoreMode.None))
+                .mustNot(QueryBuilders.existsQuery(centroidField));
+        if (!isVectorFieldPopulated(centroidFieldStates, centroidField, missingQuery)) {
+            return null;
+        }
+        final float[] vector = getSharedQueryVector(modelId, text);
+        if (vector == null) {
+            return null;
+        }
+        final int minCandidates = Math.max(k * getIntProperty(CENTROID_CANDIDATE_FACTOR, 4), efSearch != null ? efSearch : 0);
+        final int candidates = Math.min(Math.max(k, minCandidates), getIntProperty(KNN_MAX_K, 1000));
+        final QueryBuilder candidateQuery = new KnnQueryBuilder.Builder().field(centroidField)
+                .vector(vector)
+                .k(candidates)
+                .efSearch(efSearch)
+                .rescore(rescore)
+                .oversampleFactor(oversampleFactor)
+                .filter(filter)
+                .build();
+        final QueryBuilder chunkQuery = newExactVectorQueryBuilder(vectorField, vector, QueryBuilders.matchAllQuery());
+        return QueryBuilders.boolQuery()
+                .filter(candidateQuery)
+                .must(QueryBuilders.nestedQuery(nestedField, chunkQuery, ScoreMode.Max).innerHit(innerHit));
+    }
+
+    /**
+     * Creates a two-pass query for the binary vectors of the content field.
+     * Candidate documents are found by the approximate search of the packed bits in the Hamming space,
+     * and only the candidates are scored exactly with the full-precision content vectors.
+     * The graph of the full-precision vectors is not searched, so it does not have to be loaded into memory.
+     *
+     * @param modelId the ML model ID
+     * @param vectorField the full-precision vector field name
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the binary search, or null
+     * @return the query builder, or null if the binary field is not configured or populated, or the query embedding is not available
+     */
+    protected QueryBuilder newBinaryQueryBuilder(final String modelId, final String vectorField, final String text, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        final String binaryField = System.getProperty(CONTENT_BINARY_FIELD);
+        if (StringUtil.isBlank(binaryField)) {
+            return null;
+        }
+        final float[] vector = getSharedQueryVector(modelId, text);
+        if (vector == null || vector.length % Byte.SIZE != 0) {
+            return null;
+        }
+        return newBinaryQueryBuilder(binaryField, vectorField, vector, k, efSearch, filter);
+    }
+
+    /**
+     * Creates a two-pass query for the binary vectors with the vector.
+     * Until every document with a content vector has binary vectors, the candidates cannot be found in the binary field.
+     * Then the full-precision vectors are searched instead: approximately, or exactly if they are mapped without a graph.
+     *
+     * @param binaryField the binary vector field name
+     * @param vectorField the full-precision vector field name
+     * @param vector the query vector whose length is a multiple of 8
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the binary search, or null
+     * @return the query builder, or null if the full-precision vectors are searched approximately
+     */
+    protected QueryBuilder newBinaryQueryBuilder(final String binaryField, final String vectorField, final float[] vector, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        final QueryBuilder missingQuery = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.existsQuery(vectorField))
+                .mustNot(QueryBuilders.existsQuery(binaryField));
+        if (!isVectorFieldPopulated(binaryFieldStates, binaryField, missingQuery)) {
+            if (!isFlatVector()) {
+                return null;
+            }
+            return newExactVectorQueryBuilder(vectorField, vector, filter != null ? filter : QueryBuilders.matchAllQuery());
+        }
+        return QueryBuilders.boolQuery()
+                .filter(newBinaryCandidateQueryBuilder(binaryField, vector, k, efSearch, filter))
+                .must(newExactVectorQueryBuilder(vectorField, vector, QueryBuilders.matchAllQuery()));
+    }
+
+    /**
+     * Creates a two-pass query for the binary vectors of nested chunks.
+     * Candidate documents are found by the approximate search of the packed bits of their chunks in the Hamming space,
+     * and only the chunks of the candidates are scored exactly with the full-precision chunk vectors.
+     * The best chunks are returned as inner hits in the same way as the nested k-NN query.
+     *
+     * @param modelId the ML model ID
+     * @param nestedField the nested field name
+     * @param vectorField the full path of the chunk vector field
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the binary search, or null
+     * @param innerHit the inner hit of the best chunks
+     * @return the query builder, or null if the binary field is not configured or populated, or the query embedding is not available
+     */
+    protected QueryBuilder newNestedBinaryQueryBuilder(final String modelId, final String nestedField, final String vectorField,
+            final String text, final int k, final Integer efSearch, final QueryBuilder filter, final InnerHitBuilder innerHit) {
+        final String binaryField = System.getProperty(CONTENT_BINARY_FIELD);
+        if (StringUtil.isBlank(binaryField)) {
+            return null;
+        }
+        final float[] vector = getSharedQueryVector(modelId, text);
+        if (vector == null || vector.length % Byte.SIZE != 0) {
+            return null;
+        }
+        return newNestedBinaryQueryBuilder(nestedField, nestedField + "." + binaryField, vectorField, vector, k, efSearch, filter,
+                innerHit);
+    }
+
+    /**
+     * Creates a two-pass query for the binary vectors of nested chunks with the vector.
+     * Until every chunk with a vector has binary vectors, the chunk vectors are searched instead:
+     * approximately, or exactly if they are mapped without a graph.
+     *
+     * @param nestedField the nested field name
+     * @param binaryField the full path of the chunk binary vector field
+     * @param vectorField the full path of the chunk vector field
+     * @param vector the query vector whose length is a multiple of 8
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the binary search, or null
+     * @param innerHit the inner hit of the best chunks
+     * @return the query builder, or null if the chunk vectors are searched approximately
+     */
+    protected QueryBuilder newNestedBinaryQueryBuilder(final String nestedField, final String binaryField, final String vectorField,
+            final float[] vector, final int k, final Integer efSearch, final QueryBuilder filter, final InnerHitBuilder innerHit) {
+        final QueryBuilder missingQuery = QueryBuilders.nestedQuery(nestedField, QueryBuilders.boolQuery()
+                .filter(QueryBuilders.existsQuery(vectorField))
+                .mustNot(QueryBuilders.existsQuery(binaryField)), ScoreMode.None);
+        if (!isVectorFieldPopulated(binaryFieldStates, binaryField, missingQuery)) {
+            if (!isFlatVector()) {
+                return null;
+            }
+            final BoolQueryBuilder exactQuery = QueryBuilders.boolQuery()
+                    .must(QueryBuilders.nestedQuery(nestedField,
+                            newExactVectorQueryBuilder(vectorField, vector, QueryBuilders.matchAllQuery()), ScoreMode.Max)
+                            .innerHit(innerHit));
+            return filter != null ? exactQuery.filter(filter) : exactQuery;
+        }
+        final QueryBuilder candidateQuery = newBinaryCandidateQueryBuilder(binaryField, vector, k, efSearch, filter);
+        final QueryBuilder chunkQuery = newExactVectorQueryBuilder(vectorField, vector, QueryBuilders.matchAllQuery());
+        return QueryBuilders.boolQuery()
+                .filter(QueryBuilders.nestedQuery(nestedField, candidateQuery, ScoreMode.None))
+                .must(QueryBuilders.nestedQuery(nestedField, chunkQuery, ScoreMode.Max).innerHit(innerHit));
+    }
+
+    /**
+     * Checks whether every document with a content vector has a value in the vector field written by an ingest stage.
+     * The ingest stages computing binary and centroid vectors are attached only while their fields are mapped,
+     * so documents indexed before that have no value and are not found by a search of the field.
+     * The result is cached until the check expires, so that the field is used once the documents are reindexed.
+     *
+     * @param states the cached checks of the field, or null if the field is not checked
+     * @param field the vector field name
+     * @param missingQuery the query matching documents with a content vector and without a value in the field
+     * @return true if the field is populated, false if it is not or the check failed
+     */
+    protected boolean isVectorFieldPopulated(final Cache<String, Boolean> states, final String field, final QueryBuilder missingQuery) {
+        if (states == null) {
+            return true;
+        }
+        final Boolean cached = states.getIfPresent(field);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean populated = countDocuments(missingQuery, 0L) == 0L;
+        if (!populated) {
+            logger.info("Search without {} until the documents are reindexed into it.", field);
+        }
+        states.put(field, populated);
+        return populated;
+    }
+
+    /**
+     * Checks whether the full-precision vectors are mapped without a graph.
+     *
+     * @return true if the flat vector mapping is configured with binary vectors
+     */
+    protected boolean isFlatVector() {
+        return Boolean.parseBoolean(System.getProperty(BINARY_FLAT_VECTOR, "false"));
+    }
+
+    /**
+     * Creates the k-NN query finding the candidates of a two-pass query in the binary vectors.
+     *
+     * @param binaryField the binary vector field name
+     * @param vector the query vector whose length is a multiple of 8
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the binary search, or null
+     * @return the query builder
+     */
+    protected QueryBuilder newBinaryCandidateQueryBuilder(final String binaryField, final float[] vector, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        final int candidates = Math.min(Math.max(k, k * getIntProperty(BINARY_CANDIDATE_FACTOR, 5)), getIntProperty(KNN_MAX_K, 1000));
+        return new KnnQueryBuilder.Builder().field(binaryField)
+                .vector(VectorUtil.binarize(vector))
+                .k(candidates)
+                .efSearch(efSearch)
+                .filter(filter)
+                .build();
+    }
+
+    /**
+     * Creates the query of a similar document search with the vector of the source document.
+     * The vector is searched in the same fields as a query embedding, so that no model inference is needed.
+     *
+     * @param vector the vector of the source document
+     * @return the query builder
+     */
+    protected QueryBuilder newSimilarDocQueryBuilder(final float[] vector) {
+        final String field = System.getProperty(CONTENT_FIELD);
+        final Integer efSearch = getEfSearch();
+        final int k = getK();
+        final QueryBuilder filter = buildPreFilter();
+        final String binaryField = System.getProperty(CONTENT_BINARY_FIELD);
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        if (StringUtil.isNotBlank(nestedField)) {
+            final InnerHitBuilder innerHit =
+                    new InnerHitBuilder(nestedField).setSize(chunkSize).setFetchSourceContext(new FetchSourceContext(false));
+            if (StringUtil.isNotBlank(binaryField) && vector.length % Byte.SIZE == 0) {
+                final QueryBuilder binaryQuery = newNestedBinaryQueryBuilder(nestedField, nestedField + "." + binaryField,
+                        nestedField + "." + field, vector, k, efSearch, filter, innerHit);
+                if (binaryQuery != null) {
+                    return binaryQuery;
+                }
+            }
+            return QueryBuilders.nestedQuery(nestedField, newKnnQueryBuilder(nestedField + "." + field, vector, k, efSearch, filter),
+                    ScoreMode.Max).innerHit(innerHit);
+        }
+        if (StringUtil.isNotBlank(binaryField) && vector.length % Byte.SIZE == 0) {
+            final QueryBuilder binaryQuery = newBinaryQueryBuilder(binaryField, field, vector, k, efSearch, filter);
+            if (binaryQuery != null) {
+                return binaryQuery;
+            }
+        }
+        return newKnnQueryBuilder(field, vector, k, efSearch, filter);
+    }
+
+    /**
+     * Creates a k-NN query with a precomputed vector.
+     *
+     * @param vectorField the vector field name
+     * @param vector the query vector
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the k-NN search, or null
+     * @return the query builder
+     */
+    protected QueryBuilder newKnnQueryBuilder(final String vectorField, final float[] vector, final int k, final Integer efSearch,
+            final QueryBuilder filter) {
+        return new KnnQueryBuilder.Builder().field(vectorField)
+                .vector(vector)
+                .k(k)
+                .minScore(getRadialMinScore())
+                .efSearch(efSearch)
+                .rescore(rescore)
+                .oversampleFactor(oversampleFactor)
+                .filter(filter)
+                .build();
+    }
+
+    /**
+     * Gets the stored vector of the source document of a similar document search.
+     * The source document is found by its MinHash bits. Its centroid vector is used if it exists,
+     * and otherwise the mean of its chunk vectors or its content vector.
+     *
+     * @param similarDocHash the encoded MinHash bits of the source document
+     * @return the vector, or null if the vector search of similar documents is disabled or the vector is not found
+     */
+    public float[] getSimilarDocVector(final String similarDocHash) {
+        final String field = System.getProperty(CONTENT_FIELD);
+        if (!Boolean.parseBoolean(System.getProperty(SIMILAR_DOC_VECTOR_ENABLED, "false")) || StringUtil.isBlank(field)
+                || StringUtil.isBlank(similarDocHash)) {
+            return null;
+        }
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        final String index = fessConfig.getIndexDocumentSearchIndex();
+        final String minhashBits = ComponentUtil.getDocumentHelper().decodeSimilarDocHash(similarDocHash);
+        final String query = QueryBuilders.termQuery(fessConfig.getIndexFieldContentMinhashBits(), minhashBits).toString();
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        final String centroidField = System.getProperty(CONTENT_CENTROID_FIELD);
+        List<float[]> vectors = null;
+        if (StringUtil.isNotBlank(nestedField) && StringUtil.isNotBlank(centroidField)) {
+            vectors = getIndexedVectors(index, query, centroidField, null, 1);
+        }
+        if (vectors == null || vectors.isEmpty()) {
+            vectors = getIndexedVectors(index, query, field, nestedField, 1);
+        }
+        if (vectors == null || vectors.isEmpty()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No vector of the similar document: {}", minhashBits);
+            }
+            return null;
+        }
+        final float[] vector = VectorUtil.mean(vectors);
+        return vectorNormalization ? VectorUtil.normalize(vector) : vector;
+    }
+
+    /**
+     * Gets the number of nearest neighbors of the content field.
+     * When additional vector fields are searched, their matches cover the result window,
+     * so k of the content field can be reduced by the configured value.
+     *
+     * @param k the number of nearest neighbors that covers the result window
+     * @return the number of nearest neighbors of the content field
+     */
+    protected int getContentK(final int k) {
+        if (vectorFields.isEmpty()) {
+            return k;
+        }
+        return Math.max(1, Math.min(k, getIntProperty(CONTENT_K, k)));
+    }
+
+    /**
+     * Combines the content field query with the queries of the additional vector fields.
+     * The fields share the query embedding of their model, so the embedding is computed once per query.
+     *
+     * @param contentQuery the query of the content field
+     * @param text the query text
+     * @param k the number of nearest neighbors that covers the result window
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the k-NN search, or null
+     * @return the combined query, or the content field query if no additional vector field is configured
+     */
+    protected QueryBuilder addVectorFieldQueries(final QueryBuilder contentQuery, final String text, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        final List<VectorField> fields = vectorFields;
+        if (fields.isEmpty()) {
+            return contentQuery;
+        }
+        final BoolQueryBuilder boolQuery = QueryBuilders.boolQuery().should(contentQuery);
+        for (final VectorField vectorField : fields) {
+            final int fieldK = vectorField.getK() != null ? vectorField.getK() : k;
+            boolQuery.should(newVectorQueryBuilder(vectorField.getModelId(), vectorField.getField(), text, fieldK, efSearch, filter)
+                    .boost(vectorField.getBoost()));
+        }
+        return boolQuery;
+    }
+
+    /**
+     * Gets ef_search of the current search.
+     * The value chosen by the ef_search controller for the search is used if it exists.
+     *
+     * @return the ef_search value, or null
+     */
+    protected Integer getEfSearch() {
+        final SemanticSearchContext context = getContext();
+        if (context != null && context.getEfSearch() != null) {
+            return context.getEfSearch();
+        }
+        return getStaticEfSearch();
+    }
+
+    /**
+     * Gets the configured ef_search.
+     *
+     * @return the ef_search value, or null if it is not configured
+     */
+    protected Integer getStaticEfSearch() {
+        final String efSearchValue = System.getProperty(CONTENT_PARAM_EF_SEARCH);
+        if (StringUtil.isNotBlank(efSearchValue)) {
+            try {
+                return Integer.valueOf(efSearchValue.trim());
+            } catch (final NumberFormatException e) {
+                logger.debug("Failed to parse {}.", efSearchValue, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of nearest neighbors that covers the requested result window.
+     * k is the start position plus the page size, capped by the configured maximum.
+     *
+     * @return the number of nearest neighbors
+     */
+    protected int getK() {
+        final SemanticSearchContext context = getContext();
+        final int k;
+        if (context != null && context.getParams() != null) {
+            final SearchRequestParams params = context.getParams();
+            k = Math.max(params.getStartPosition(), 0) + params.getPageSize();
+        } else {
+            k = LaRequestUtil.getOptionalRequest().map(req -> {
+                final Object pageSize = req.getAttribute(Constants.REQUEST_PAGE_SIZE);
+                if (pageSize != null) {
+                    return Integer.parseInt(pageSize.toString());
+                }
+                return Constants.DEFAULT_PAGE_SIZE;
+            }).orElse(Constants.DEFAULT_PAGE_SIZE);
+        }
+        return Math.max(1, Math.min(k, getIntProperty(KNN_MAX_K, 1000)));
+    }
+
+    /**
+     * Creates a query fetching the cached k-NN hits of the current session by document ID.
+     * The first page is served by the k-NN query itself with k set to the window size, so it needs no extra round trip.
+     * When the session requests a later page, the ordered hits are searched once per session, query and filter
+     * with the same window, and the following pages are served from the window without running a new vector search.
+     *
+     * @param modelId the ML model ID
+     * @param vectorField the vector field name
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the k-NN search, or null
+     * @return the query builder, or null if the result window cache is not available
+     */
+    protected QueryBuilder newResultWindowQueryBuilder(final String modelId, final String vectorField, final String text, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        final Cache<String, ResultWindow> cache = resultWindowCache;
+        if (cache == null) {
+            return null;
+        }
+        final String sessionId = getSessionId();
+        if (StringUtil.isBlank(sessionId)) {
+            return null;
+        }
+
+        final String key = sessionId + '\n' + vectorField + '\n' + EmbeddingCache.createKey(modelId, text) + '\n'
+                + (filter != null ? filter.toString() : StringUtil.EMPTY);
+        ResultWindow window = cache.getIfPresent(key);
+        if (window == null || !window.covers(k)) {
+            final int maxK = getIntProperty(KNN_MAX_K, 1000);
+            final int windowSize = Math.max(k, Math.min(getIntProperty(RESULT_WINDOW_CACHE_WINDOW_SIZE, 100), maxK));
+            if (window == null && isFirstPage()) {
+                return newVectorQueryBuilder(modelId, vectorField, text, windowSize, efSearch, filter);
+            }
+            window = searchResultWindow(newVectorQueryBuilder(modelId, vectorField, text, windowSize, efSearch, filter), windowSize);
+            if (window == null) {
+                return null;
+            }
+            cache.put(key, window);
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Use the cached result window: k={}, window={}", k, window);
+        }
+        return window.toQueryBuilder(ComponentUtil.getFessConfig().getIndexFieldDocId());
+    }
+
+    /**
+     * Checks whether the current search requests the first page.
+     *
+     * @return true if the start position is 0 or there is no search context
+     */
+    protected boolean isFirstPage() {
+        final SemanticSearchContext context = getContext();
+        return context == null || context.getParams() == null || context.getParams().getStartPosition() <= 0;
+    }
+
+    /**
+     * Runs the k-NN search and gets the ordered document IDs and scores of the hits.
+     *
+     * @param vectorQuery the k-NN query
+     * @param k the number of nearest neighbors
+     * @return the result window, or null if the search failed
+     */
+    protected ResultWindow searchResultWindow(final QueryBuilder vectorQuery, final int k) {
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        final String docIdField = fessConfig.getIndexFieldDocId();
+        try {
+            final SearchResponse response = ComponentUtil.getSearchEngineClient()
+                    .prepareSearch(fessConfig.getIndexDocumentSearchIndex())
+                    .setQuery(vectorQuery)
+                    .setSize(k)
+                    .setFetchSource(false)
+                    .addDocValueField(docIdField)
+                    .setTrackTotalHits(false)
+                    .execute()
+                    .actionGet(fessConfig.getIndexSearchTimeout());
+            final SearchHit[] hits = response.getHits().getHits();
+            final String[] ids = new String[hits.length];
+            final float[] scores = new float[hits.length];
+            for (int i = 0; i < hits.length; i++) {
+                final DocumentField docId = hits[i].field(docIdField);
+                if (docId == null || docId.getValue() == null) {
+                    logger.warn("No {} in the k-NN hit {}.", docIdField, hits[i].getId());
+                    return null;
+                }
+                ids[i] = docId.getValue().toString();
+                scores[i] = hits[i].getScore();
+            }
+            return new ResultWindow(ids, scores, k);
+        } catch (final Exception e) {
+            logger.warn("Failed to search the k-NN result window.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the session ID of the current request.
+     *
+     * @return the session ID, or null if there is no session
+     */
+    protected String getSessionId() {
+        return LaRequestUtil.getOptionalRequest().map(req -> {
+            final HttpSession session = req.getSession(false);
+            return session != null ? session.getId() : null;
+        }).orElse(null);
+    }
+
+    /**
+     * Creates a query builder for the vector field.
+     * If vector normalization, the query cache, batch inference or the query vector store is enabled and the query embedding is available,
+     * a k-NN query with the precomputed vector is created.
+     * Otherwise, a neural query is created and OpenSearch runs the model inference.
+     *
+     * @param modelId the ML model ID
+     * @param vectorField the vector field name
+     * @param text the query text
+     * @param k the number of nearest neighbors
+     * @param efSearch the ef_search value, or null
+     * @param filter the pre-filter applied during the k-NN search, or null
+     * @return the query builder
+     */
+    protected QueryBuilder newVectorQueryBuilder(final String modelId, final String vectorField, final String text, final int k,
+            final Integer efSearch, final QueryBuilder filter) {
+        if (selectKnnStrategy(vectorField, filter) == Strategy.EXACT) {
+            final float[] vector = getSharedQueryVector(modelId, text);
+            if (vector != null) {
+                return newExactVectorQueryBuilder(vectorField, vector, filter);
+            }
+        }
+        if (isQueryVectorEnabled()) {
+            final float[] vector = getSharedQueryVector(modelId, text);
+            if (vector != null) {
+                return newKnnQueryBuilder(vectorField, vector, k, efSearch, filter);
+            }
+        }
+        return new NeuralQueryBuilder.Builder().modelId(modelId)
+                .field(vectorField)
+                .query(text)
+                .k(k)
+                .minScore(getRadialMinScore())
+                .efSearch(efSearch)
+                .rescore(rescore)
+                .oversampleFactor(oversampleFactor)
+                .filter(filter)
+                .build();
+    }
+
+    /**
+     * Selects the exact or the approximate search for the k-NN search of the vector field with the filter.
+     * The approximate search is used if the selector is disabled, the search is not filtered,
+     * or the vector field is nested in chunks.
+     *
+     * @param vectorField the vector field name
+     * @param filter the pre-filter applied during the k-NN search, or null
+     * @return the selected strategy
+     */
+    protected Strategy selectKnnStrategy(final String vectorField, final QueryBuilder filter) {
+        final KnnStrategySelector selector = knnStrategySelector;
+        if (selector == null || filter == null) {
+            return Strategy.ANN;
+        }
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        if (StringUtil.isNotBlank(nestedField) && vectorField.startsWith(nestedField + ".")) {
+            return Strategy.ANN;
+        }
+        return selector.select(filter, key -> countDocuments(filter, selector.getThreshold()));
+    }
+
+    /**
+     * Counts the documents matching the filter.
+     * Counting stops beyond the threshold, because the approximate search is used for larger sets.
+     *
+     * @param filter the filter query
+     * @param threshold the maximum number of filtered documents searched exactly
+     * @return the document count, or -1 if the count failed
+     */
+    protected long countDocuments(final QueryBuilder filter, final long threshold) {
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        try {
+            final SearchResponse response = ComponentUtil.getSearchEngineClient()
+                    .prepareSearch(fessConfig.getIndexDocumentSearchIndex())
+                    .setQuery(filter)
+                    .setSize(0)
+                    .setTrackTotalHitsUpTo((int) Math.min(Integer.MAX_VALUE, threshold + 1))
+                    .execute()
+                    .actionGet(fessConfig.getIndexSearchTimeout());
+            return response.getHits().getTotalHits().value();
+        } catch (final Exception e) {
+            logger.warn("Failed to count the filtered documents.", e);
+            return -1L;
+        }
+    }
+
+    /**
+     * Creates a query scoring all documents matching the filter exactly with the k-NN scoring script.
+     * Cosine similarity scores are halved, so that they are on the scale of the approximate search.
+     * The query is sent as the semantic clause of the search itself, and the size and min_score of the request
+     * truncate its hits, so the k nearest documents need no separate search. Unlike the approximate search,
+     * every filtered document is a hit, which is at most the exact search threshold.
+     *
+     * @param vectorField the vector field name
+     * @param vector the query embedding
+     * @param filter the filter query
+     * @return the query builder
+     */
+    protected QueryBuilder newExactVectorQueryBuilder(final String vectorField, final float[] vector, final QueryBuilder filter) {
+        final String spaceType = getSpaceType(vectorField);
+        final List<Float> queryValue = new ArrayList<>(vector.length);
+        for (final float value : vector) {
+            queryValue.add(value);
+        }
+        final Map<String, Object> params = new HashMap<>();
+        params.put("field", vectorField);
+        params.put("query_value", queryValue);
+        params.put("space_type", spaceType);
+        final ScriptScoreQueryBuilder query =
+                QueryBuilders.scriptScoreQuery(filter, new Script(ScriptType.INLINE, "knn", "knn_score", params));
+        if ("cosinesimil".equals(spaceType)) {
+            query.boost(0.5f);
+        }
+        final Float radialMinScore = getRadialMinScore();
+        if (radialMinScore != null) {
+            query.setMinScore(radialMinScore);
+        }
+        return query;
+    }
+
+    /**
+     * Gets the space type of the vector field.
+     * The content field uses the space type of its mapping, which may differ from the configured one with vector normalization.
+     *
+     * @param vectorField the vector field name
+     * @return the space type
+     */
+    protected String getSpaceType(final String vectorField) {
+        for (final VectorField field : vectorFields) {
+            if (vectorField.equals(field.getField())) {
+                return field.getSpaceType();
+            }
+        }
+        for (final VectorField field : languageVectorFields.values()) {
+            if (vectorField.equals(field.getField())) {
+                return field.getSpaceType();
+            }
+        }
+        final String spaceType = contentSpaceType;
+        return spaceType != null ? spaceType : System.getProperty(CONTENT_SPACE_TYPE, "cosinesimil");
+    }
+
+    /**
+     * Gets the query embedding shared by the vector fields of the current search.
+     * The embedding is kept in the search context, so that it is computed once for all fields using the same model.
+     *
+     * @param modelId the ML model ID
+     * @param text the query text
+     * @return the embedding, or null if it could not be computed
+     */
+    protected float[] getSharedQueryVector(final String modelId, final String text) {
+        final SemanticSearchContext context = getContext();
+        if (context == null) {
+            return getQueryVector(modelId, text);
+        }
+        final String key = EmbeddingCache.createKey(modelId, text);
+        final Map<String, float[]> queryVectors = context.getQueryVectors();
+        if (queryVectors.containsKey(key)) {
+            return queryVectors.get(key);
+        }
+        final float[] vector = getQueryVector(modelId, text);
+        queryVectors.put(key, vector);
+        return vector;
+    }
+
+    /**
+     * Builds the pre-filter of the k-NN search from the current search context.
+     * Role, virtual host, label and minimum content length restrictions are applied while the nearest neighbors are searched,
+     * so that k results remain after filtering.
+     *
+     * @return the filter query, or null if there is no search context or restriction
+     */
+    protected QueryBuilder buildPreFilter() {
+        final SemanticSearchContext context = getContext();
+        if (context == null || context.getParams() == null) {
+            return null;
+        }
+        final SearchRequestParams params = context.getParams();
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        final BoolQueryBuilder filter = QueryBuilders.boolQuery();
+
+        final SearchRequestType type = params.getType();
+        final Set<String> roleSet = getRoleSet(type);
+        if (!roleSet.isEmpty()) {
+            ComponentUtil.getQueryHelper().buildRoleQuery(roleSet, filter);
+        }
+
+        if (type != SearchRequestType.ADMIN_SEARCH) {
+            final String virtualHostKey = getVirtualHostKey();
+            if (StringUtil.isNotBlank(virtualHostKey)) {
+                filter.filter(QueryBuilders.termQuery(fessConfig.getIndexFieldVirtualHost(), virtualHostKey));
+            }
+        }
+
+        final Map<String, String[]> fields = params.getFields();
+        if (fields != null) {
+            final String labelField = fessConfig.getIndexFieldLabel();
+            final String[] labels = fields.get(labelField);
+            if (labels != null) {
+                final String[] values = Arrays.stream(labels).filter(StringUtil::isNotBlank).toArray(String[]::new);
+                if (values.length == 1) {
+                    filter.filter(QueryBuilders.termQuery(labelField, values[0]));
+                } else if (values.length > 1) {
+                    filter.filter(QueryBuilders.termsQuery(labelField, values));
+                }
+            }
+        }
+
+        final String contentLengthField = fessConfig.getIndexFieldContentLength();
+        if (minContentLength != null && minContentLength.longValue() >= 0 && getSearchFieldMatcher().contains(contentLengthField)) {
+            filter.filter(QueryBuilders.rangeQuery(contentLengthField).gte(minContentLength));
+        }
+
+        if (!filter.hasClauses()) {
+            return null;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("k-NN pre-filter: {}", filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Gets the roles of the current user for the search request type.
+     *
+     * @param type the search request type
+     * @return the role names
+     */
+    protected Set<String> getRoleSet(final SearchRequestType type) {
+        return ComponentUtil.getRoleQueryHelper().build(type);
+    }
+
+    /**
+     * Gets the virtual host key of the current request.
+     *
+     * @return the virtual host key, or null
+     */
+    protected String getVirtualHostKey() {
+        return ComponentUtil.getVirtualHostHelper().getVirtualHostKey();
+    }
+
+    /**
+     * Checks whether query embeddings are computed by this plugin and sent as vectors.
+     *
+     * @return true if vector normalization, the query cache, batch inference or the query vector store is enabled
+     */
+    protected boolean isQueryVectorEnabled() {
+        return vectorNormalization || embeddingCache != null || embeddingBatcher != null || queryVectorStore != null;
+    }
+
+    /**
+     * Creates a new semantic search context for the current thread.
+     *
+     * @param query the search query
+     * @param params the search request parameters
+     * @param userBean the optional user bean
+     * @return the created semantic search context
+     */
+    public SemanticSearchContext createContext(final String query, final SearchRequestParams params,
+            final OptionalThing<FessUserBean> userBean) {
+        if (contextLocal.get() != null) {
+            logger.warn("The context exists: {}", contextLocal.get());
+            contextLocal.remove();
+        }
+        final SemanticSearchContext context = new SemanticSearchContext(query, params, userBean);
+        contextLocal.set(context);
+        return context;
+    }
+
+    /**
+     * Closes and removes the current semantic search context.
+     */
+    public void closeContext() {
+        if (contextLocal.get() == null) {
+            logger.warn("The context does not exist.");
+        } else {
+            contextLocal.remove();
+        }
+    }
+
+    /**
+     * Runs the function without the semantic search context of the current thread,
+     * so that queries are built by the lexical query commands.
+     *
+     * @param <T> the result type
+     * @param function the function to run
+     * @return the result of the function
+     */
+    public <T> T withoutContext(final Supplier<T> function) {
+        final SemanticSearchContext context = contextLocal.get();
+        contextLocal.remove();
+        try {
+            return function.get();
+        } finally {
+            if (context != null) {
+                contextLocal.set(context);
+            }
+        }
+    }
+
+    /**
+     * Gets the current semantic search context for this thread.
+     *
+     * @return the current context, or null if no context exists
+     */
+    public SemanticSearchContext getContext() {
+        return contextLocal.get();
+    }
+
+    /**
+     * Gets the query embedding cache.
+     *
+     * @return the query embedding cache, or null if the query cache is disabled
+     */
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    /**
+     * Gets the embedding batcher.
+     *
+     * @return the embedding batcher, or null if batch inference is disabled
+     */
+    public EmbeddingBatcher getEmbeddingBatcher() {
+        return embeddingBatcher;
+    }
+
+    /**
+     * Gets the persistent query vector store.
+     *
+     * @return the query vector store, or null if it is not configured
+     */
+    public QueryVectorStore getQueryVectorStore() {
+        return queryVectorStore;
+    }
+
+    /**
+     * Gets the warmer of query embeddings.
+     *
+     * @return the query vector warmer, or null if the warm-up is not started
+     */
+    public QueryVectorWarmer getQueryVectorWarmer() {
+        return queryVectorWarmer;
+    }
+
+    /**
+     * Gets the per-session cache of k-NN result windows.
+     *
+     * @return the result window cache, or null if it is disabled
+     */
+    public Cache<String, ResultWindow> getResultWindowCache() {
+        return resultWindowCache;
+    }
+
+    /**
+     * Gets the latency-adaptive ef_search controller.
+     *
+     * @return the ef_search controller, or null if it is disabled
+     */
+    public EfSearchController getEfSearchController() {
+        return efSearchController;
+    }
+
+    /**
+     * Checks whether indexed and query vectors are L2-normalized.
+     *
+     * @return true if vector normalization is enabled
+     */
+    public boolean isVectorNormalization() {
+        return vectorNormalization;
+    }
+
+    /**
+     * Gets whether the candidates of quantized vectors are rescored.
+     *
+     * @return the rescore flag, or null for the index default
+     */
+    public Boolean getRescore() {
+        return rescore;
+    }
+
+    /**
+     * Gets the oversample factor of rescored candidates.
+     *
+     * @return the oversample factor, or null for the index default
+     */
+    public Float getOversampleFactor() {
+        return oversampleFactor;
+    }
+
+    /**
+     * Gets the k-NN strategy selector.
+     *
+     * @return the selector, or null if the exact search is disabled
+     */
+    public KnnStrategySelector getKnnStrategySelector() {
+        return knnStrategySelector;
+    }
+
+    /**
+     * Checks whether searches are sent as single-round-trip hybrid queries.
      *
-     * @param query the original query string
-     * @return the rewritten query string
+     * @return true if the hybrid search pipeline is provisioned
      */
-    protected String rewriteQuery(final String query) {
-        if (StringUtil.isBlank(query) || (query.indexOf('"') != -1) || !CharMatcher.whitespace().matchesAnyOf(query)) {
-            return query;
-        }
-
-        for (final String field : ComponentUtil.getQueryFieldConfig().getSearchFields()) {
-            if (query.indexOf(field + ":") != -1) {
-                return query;
-            }
-        }
-
-        final String modelId = System.getProperty(CONTENT_MODEL_ID);
-        if (StringUtil.isBlank(modelId)) {
-            return query;
-        }
-
-        return "\"" + query + "\"";
+    public boolean isHybridEnabled() {
+        return hybridSearchPipeline.getName() != null;
     }
 
     /**
-     * Creates a new neural query builder for semantic search.
+     * Gets the name of the provisioned hybrid search pipeline.
      *
-     * @param text the query text to convert to neural query
-     * @return optional neural query builder, or empty if not configured
+     * @return the pipeline name, or null if the hybrid mode is disabled
      */
-    public OptionalThing<QueryBuilder> newNeuralQueryBuilder(final String text) {
-        final String modelId = System.getProperty(CONTENT_MODEL_ID);
-        final String field = System.getProperty(CONTENT_FIELD); // ex. knn
-        if (StringUtil.isNotBlank(modelId) && StringUtil.isNotBlank(field) && StringUtil.isNotBlank(text)) {
-            final String efSearchValue = System.getProperty(CONTENT_PARAM_EF_SEARCH);
-            final Integer efSearch = StringUtil.isNotBlank(efSearchValue) ? Integer.valueOf(efSearchValue) : null;
+    public String getHybridPipeline() {
+        return hybridSearchPipeline.getName();
+    }
 
-            final int k = LaRequestUtil.getOptionalRequest().map(req -> {
-                final Object pageSize = req.getAttribute(Constants.REQUEST_PAGE_SIZE);
-                if (pageSize != null) {
-                    return Integer.parseInt(pageSize.toString());
-                }
-                return Constants.DEFAULT_PAGE_SIZE;
-            }).orElse(Constants.DEFAULT_PAGE_SIZE);
+    /**
+     * Gets the manager of the ingest pipelines of the document index.
+     *
+     * @return the ingest pipeline manager
+     */
+    public IngestPipelineManager getIngestPipelineManager() {
+        return ingestPipelineManager;
+    }
 
-            final String nestedField = System.getProperty(CONTENT_NESTED_FIELD); // ex. content_vector
-            if (StringUtil.isNotBlank(nestedField)) {
-                final String vectorField = nestedField + "." + field;
-                final InnerHitBuilder innerHit =
-                        new InnerHitBuilder(nestedField).setSize(chunkSize).setFetchSourceContext(new FetchSourceContext(false));
-                final NeuralQueryBuilder.Builder builder =
-                        new NeuralQueryBuilder.Builder().modelId(modelId).field(vectorField).query(text).k(k);
-                if (efSearch != null) {
-                    builder.efSearch(efSearch);
-                }
-                return OptionalThing.of(QueryBuilders.nestedQuery(nestedField, builder.build(), ScoreMode.Max).innerHit(innerHit));
-            }
-            final NeuralQueryBuilder.Builder builder = new NeuralQueryBuilder.Builder().modelId(modelId).field(field).query(text).k(k);
-            if (efSearch != null) {
-                builder.efSearch(efSearch);
-            }
-            return OptionalThing.of(builder.build());
-        }
-        return OptionalThing.empty();
+    /**
+     * Gets the minimum score threshold for search results.
+     *
+     * @return the minimum score, or null if not configured
+     */
+    public Float getMinScore() {
+        return minScore;
     }
 
     /**
-     * Creates a new semantic search context for the current thread.
+     * Checks whether semantic queries include the sparse query.
      *
-     * @param query the search query
-     * @param params the search request parameters
-     * @param userBean the optional user bean
-     * @return the created semantic search context
+     * @return true if the retrieval mode is sparse or both
      */
-    public SemanticSearchContext createContext(final String query, final SearchRequestParams params,
-            final OptionalThing<FessUserBean> userBean) {
-        if (contextLocal.get() != null) {
-            logger.warn("The context exists: {}", contextLocal.get());
-            contextLocal.remove();
-        }
-        final SemanticSearchContext context = new SemanticSearchContext(query, params, userBean);
-        contextLocal.set(context);
-        return context;
+    public boolean isSparseRetrieval() {
+        return !RETRIEVAL_DENSE.equals(retrievalMode);
     }
 
     /**
-     * Closes and removes the current semantic search context.
+     * Gets the minimum score used as the threshold of a radial k-NN search.
+     * A radial search returns all documents above the threshold, so that the engine does not collect k neighbors
+     * and drop the low-scoring tail afterwards. Nested vector fields keep the k-NN search with the post-hoc minimum score.
+     * A radial search must be enabled explicitly, and it is only used with the lucene and faiss engines, which support it.
+     *
+     * @return the minimum score, or null if a radial search is not used
      */
-    public void closeContext() {
-        if (contextLocal.get() == null) {
-            logger.warn("The context does not exist.");
-        } else {
-            contextLocal.remove();
+    public Float getRadialMinScore() {
+        if (minScore == null || !Boolean.parseBoolean(System.getProperty(RADIAL_SEARCH_ENABLED, "false"))
+                || StringUtil.isNotBlank(System.getProperty(CONTENT_NESTED_FIELD))) {
+            return null;
+        }
+        final String engine = System.getProperty(CONTENT_ENGINE);
+        if (!"lucene".equals(engine) && !"faiss".equals(engine)) {
+            return null;
         }
+        return minScore;
     }
 
     /**
-     * Gets the current semantic search context for this thread.
+     * Gets the router of keyword-style queries.
      *
-     * @return the current context, or null if no context exists
+     * @return the query router, or null if query routing is disabled
      */
-    public SemanticSearchContext getContext() {
-        return contextLocal.get();
+    public QueryRouter getQueryRouter() {
+        return queryRouter;
     }
 
     /**
-     * Gets the minimum score threshold for search results.
+     * Gets the additional vector fields searched with the content field.
      *
-     * @return the minimum score, or null if not configured
+     * @return the additional vector fields
      */
-    public Float getMinScore() {
-        return minScore;
+    public List<VectorField> getVectorFields() {
+        return vectorFields;
     }
 
     /**
@@ -445,6 +3282,284 @@ public class SemanticSearchHelper {
         return minContentLength;
     }
 
+    /**
+     * Ordered k-NN hits of a search, used to serve later pages by document ID.
+     */
+    public static class ResultWindow {
+
+        private final String[] ids;
+        private final float[] scores;
+        private final int k;
+
+        /**
+         * Constructs a new result window.
+         *
+         * @param ids the document IDs of the hits in rank order
+         * @param scores the hit scores
+         * @param k the number of nearest neighbors requested
+         */
+        public ResultWindow(final String[] ids, final float[] scores, final int k) {
+            this.ids = ids;
+            this.scores = scores;
+            this.k = k;
+        }
+
+        /**
+         * Checks whether this window contains all hits up to the given rank.
+         * A window with fewer hits than requested contains all matching documents.
+         *
+         * @param size the required number of hits
+         * @return true if no new search is needed
+         */
+        public boolean covers(final int size) {
+            return size <= k || ids.length < k;
+        }
+
+        /**
+         * Creates a query matching the hits of this window with their original scores.
+         * One terms query selects the hits, and a script looks up the score of each hit by its document ID.
+         *
+         * @param docIdField the document ID field
+         * @return the query builder
+         */
+        public QueryBuilder toQueryBuilder(final String docIdField) {
+            final Map<String, Object> scoreMap = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                scoreMap.putIfAbsent(ids[i], Math.max(scores[i], 0f));
+            }
+            final Map<String, Object> params = new HashMap<>();
+            params.put("field", docIdField);
+            params.put("scores", scoreMap);
+            return QueryBuilders.scriptScoreQuery(QueryBuilders.termsQuery(docIdField, ids),
+                    new Script(ScriptType.INLINE, "painless", "params.scores.getOrDefault(doc[params.field].value, 0.0)", params));
+        }
+
+        /**
+         * Gets the document IDs of the hits in rank order.
+         *
+         * @return the document IDs
+         */
+        public String[] getIds() {
+            return ids;
+        }
+
+        /**
+         * Gets the hit scores.
+         *
+         * @return the hit scores
+         */
+        public float[] getScores() {
+            return scores;
+        }
+
+        /**
+         * Gets the number of nearest neighbors requested.
+         *
+         * @return k
+         */
+        public int getK() {
+            return k;
+        }
+
+        @Override
+        public String toString() {
+            return "ResultWindow [hits=" + ids.length + ", k=" + k + "]";
+        }
+    }
+
+    /**
+     * Settings of an additional vector field.
+     * The settings are read from the properties prefixed with the field name and default to the settings of the content field.
+     */
+    public static class VectorField {
+
+        private final String name;
+        private final String field;
+        private final String modelId;
+        private final String dimension;
+        private final String method;
+        private final String engine;
+        private final String spaceType;
+        private final String m;
+        private final String efConstruction;
+        private final String mode;
+        private final String compressionLevel;
+        private final Integer k;
+        private final float boost;
+
+        /**
+         * Constructs the settings of a vector field from the configuration.
+         *
+         * @param name the name of the vector field settings
+         */
+        public VectorField(final String name) {
+            this.name = name;
+            field = getProperty("field", null);
+            modelId = getProperty("model_id", CONTENT_MODEL_ID);
+            dimension = getProperty("dimension", CONTENT_DIMENSION);
+            method = getProperty("method", CONTENT_METHOD);
+            engine = getProperty("engine", CONTENT_ENGINE);
+            spaceType = getProperty("space_type", CONTENT_SPACE_TYPE);
+            m = getProperty("param.m", CONTENT_PARAM_M);
+            efConstruction = getProperty("param.ef_construction", CONTENT_PARAM_EF_CONSTRUCTION);
+            mode = getProperty("mode", CONTENT_MODE);
+            compressionLevel = getProperty("compression_level", CONTENT_COMPRESSION_LEVEL);
+            k = parseInteger(getProperty("k", null));
+            final String boostValue = getProperty("boost", null);
+            float value = 1.0f;
+            if (StringUtil.isNotBlank(boostValue)) {
+                try {
+                    value = Float.parseFloat(boostValue.trim());
+                } catch (final NumberFormatException e) {
+                    logger.debug("Failed to parse {}.", boostValue, e);
+                }
+            }
+            boost = value;
+        }
+
+        private String getProperty(final String key, final String defaultKey) {
+            final String value = System.getProperty(VECTOR_FIELD_PREFIX + name + "." + key);
+            if (StringUtil.isNotBlank(value) || defaultKey == null) {
+                return value;
+            }
+            return System.getProperty(defaultKey);
+        }
+
+        private static Integer parseInteger(final String value) {
+            if (StringUtil.isNotBlank(value)) {
+                try {
+                    return Integer.valueOf(value.trim());
+                } catch (final NumberFormatException e) {
+                    logger.debug("Failed to parse {}.", value, e);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the name of the vector field settings.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the vector field name in the index.
+         *
+         * @return the vector field name
+         */
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * Gets the ML model ID of the query embedding.
+         *
+         * @return the model ID
+         */
+        public String getModelId() {
+            return modelId;
+        }
+
+        /**
+         * Gets the vector dimension.
+         *
+         * @return the dimension
+         */
+        public String getDimension() {
+            return dimension;
+        }
+
+        /**
+         * Gets the vector search method.
+         *
+         * @return the method
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the vector search engine.
+         *
+         * @return the engine
+         */
+        public String getEngine() {
+            return engine;
+        }
+
+        /**
+         * Gets the distance calculation method.
+         *
+         * @return the space type
+         */
+        public String getSpaceType() {
+            return spaceType != null ? spaceType : "cosinesimil";
+        }
+
+        /**
+         * Gets the HNSW m parameter.
+         *
+         * @return the m parameter
+         */
+        public String getM() {
+            return m != null ? m : "16";
+        }
+
+        /**
+         * Gets the HNSW ef_construction parameter.
+         *
+         * @return the ef_construction parameter
+         */
+        public String getEfConstruction() {
+            return efConstruction != null ? efConstruction : "100";
+        }
+
+        /**
+         * Gets the vector storage mode.
+         *
+         * @return the mode, or null
+         */
+        public String getMode() {
+            return mode;
+        }
+
+        /**
+         * Gets the vector compression level.
+         *
+         * @return the compression level, or null
+         */
+        public String getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        /**
+         * Gets the number of nearest neighbors of this field.
+         *
+         * @return k, or null to use k of the content field
+         */
+        public Integer getK() {
+            return k;
+        }
+
+        /**
+         * Gets the boost of this field.
+         *
+         * @return the boost
+         */
+        public float getBoost() {
+            return boost;
+        }
+
+        @Override
+        public String toString() {
+            return "VectorField [name=" + name + ", field=" + field + ", modelId=" + modelId + ", dimension=" + dimension + ", k=" + k
+                    + ", boost=" + boost + "]";
+        }
+    }
+
     /**
      * Context object holding semantic search parameters and state.
      */
@@ -453,6 +3568,11 @@ public class SemanticSearchHelper {
         private final String query;
         private final SearchRequestParams params;
         private final OptionalThing<FessUserBean> userBean;
+        private Integer efSearch;
+        private final Map<String, float[]> queryVectors = new HashMap<>();
+        private Set<String> defaultFieldTexts;
+        private OptionalThing<QueryBuilder> aggregatedQuery;
+        private float[] similarDocVector;
 
         /**
          * Constructs a new semantic search context.
@@ -494,6 +3614,87 @@ public class SemanticSearchHelper {
             return userBean;
         }
 
+        /**
+         * Gets ef_search chosen for this search.
+         *
+         * @return the ef_search value, or null
+         */
+        public Integer getEfSearch() {
+            return efSearch;
+        }
+
+        /**
+         * Sets ef_search chosen for this search.
+         *
+         * @param efSearch the ef_search value
+         */
+        public void setEfSearch(final Integer efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        /**
+         * Gets the texts of the default field clauses of the query.
+         *
+         * @return the texts, or null if they are not collected yet
+         */
+        public Set<String> getDefaultFieldTexts() {
+            return defaultFieldTexts;
+        }
+
+        /**
+         * Sets the texts of the default field clauses of the query.
+         *
+         * @param defaultFieldTexts the texts
+         */
+        public void setDefaultFieldTexts(final Set<String> defaultFieldTexts) {
+            this.defaultFieldTexts = defaultFieldTexts;
+        }
+
+        /**
+         * Gets the neural query shared by the default field clauses.
+         *
+         * @return the aggregated query, or null if it is not built yet
+         */
+        public OptionalThing<QueryBuilder> getAggregatedQuery() {
+            return aggregatedQuery;
+        }
+
+        /**
+         * Sets the neural query shared by the default field clauses.
+         *
+         * @param aggregatedQuery the aggregated query
+         */
+        public void setAggregatedQuery(final OptionalThing<QueryBuilder> aggregatedQuery) {
+            this.aggregatedQuery = aggregatedQuery;
+        }
+
+        /**
+         * Gets the stored vector of the source document of a similar document search.
+         *
+         * @return the vector, or null if this search is not a similar document search with vectors
+         */
+        public float[] getSimilarDocVector() {
+            return similarDocVector;
+        }
+
+        /**
+         * Sets the stored vector of the source document of a similar document search.
+         *
+         * @param similarDocVector the vector
+         */
+        public void setSimilarDocVector(final float[] similarDocVector) {
+            this.similarDocVector = similarDocVector;
+        }
+
+        /**
+         * Gets the query embeddings computed for this search, keyed by model ID and text.
+         *
+         * @return the query embeddings
+         */
+        public Map<String, float[]> getQueryVectors() {
+            return queryVectors;
+        }
+
         @Override
         public String toString() {
             return "SemanticSearchContext [query=" + query + ", params=" + params + ", userBean=" + userBean.orElse(null) + "]";
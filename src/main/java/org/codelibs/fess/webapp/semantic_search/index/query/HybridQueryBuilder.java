@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.lucene.search.Query;
+import org.opensearch.core.ParseField;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.AbstractQueryBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryShardContext;
+
+/**
+ * Custom OpenSearch query builder for hybrid queries of the neural search plugin.
+ * The scores of the sub-queries are normalized and combined by a search pipeline in one round trip.
+ */
+public class HybridQueryBuilder extends AbstractQueryBuilder<HybridQueryBuilder> {
+
+    private static final String NAME = "hybrid";
+
+    private static final ParseField QUERIES_FIELD = new ParseField("queries");
+
+    private static final ParseField FILTER_FIELD = new ParseField("filter");
+
+    /** The sub-queries whose scores are combined. */
+    protected List<QueryBuilder> queries = new ArrayList<>();
+
+    /** Optional filter applied to all sub-queries. */
+    protected QueryBuilder filter;
+
+    /**
+     * Constructs a HybridQueryBuilder from stream input.
+     *
+     * @param in the stream input to read from
+     * @throws IOException if an I/O error occurs
+     */
+    public HybridQueryBuilder(final StreamInput in) throws IOException {
+        super(in);
+        this.queries = in.readNamedWriteableList(QueryBuilder.class);
+        this.filter = in.readOptionalNamedWriteable(QueryBuilder.class);
+    }
+
+    private HybridQueryBuilder() {
+    }
+
+    /**
+     * Builder class for creating HybridQueryBuilder instances.
+     */
+    public static class Builder {
+
+        /**
+         * Default constructor.
+         */
+        public Builder() {
+        }
+
+        private final List<QueryBuilder> queries = new ArrayList<>();
+        private QueryBuilder filter;
+
+        /**
+         * Adds a sub-query.
+         *
+         * @param query the sub-query
+         * @return this builder instance
+         */
+        public Builder add(final QueryBuilder query) {
+            this.queries.add(query);
+            return this;
+        }
+
+        /**
+         * Sets an optional filter applied to all sub-queries.
+         *
+         * @param filter the filter query
+         * @return this builder instance
+         */
+        public Builder filter(final QueryBuilder filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new HybridQueryBuilder instance.
+         *
+         * @return the constructed HybridQueryBuilder
+         */
+        public HybridQueryBuilder build() {
+            final HybridQueryBuilder query = new HybridQueryBuilder();
+            query.queries = new ArrayList<>(queries);
+            query.filter = filter;
+            return query;
+        }
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    protected void doWriteTo(final StreamOutput out) throws IOException {
+        out.writeNamedWriteableList(this.queries);
+        out.writeOptionalNamedWriteable(this.filter);
+    }
+
+    @Override
+    protected void doXContent(final XContentBuilder xContentBuilder, final Params params) throws IOException {
+        xContentBuilder.startObject(NAME);
+        xContentBuilder.startArray(QUERIES_FIELD.getPreferredName());
+        for (final QueryBuilder query : queries) {
+            query.toXContent(xContentBuilder, params);
+        }
+        xContentBuilder.endArray();
+        if (filter != null) {
+            xContentBuilder.field(FILTER_FIELD.getPreferredName(), filter);
+        }
+        printBoostAndQueryName(xContentBuilder);
+        xContentBuilder.endObject();
+    }
+
+    @Override
+    protected Query doToQuery(final QueryShardContext context) throws IOException {
+        throw new UnsupportedOperationException("doToQuery is not supported.");
+    }
+
+    @Override
+    protected boolean doEquals(final HybridQueryBuilder obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EqualsBuilder equalsBuilder = new EqualsBuilder();
+        equalsBuilder.append(queries, obj.queries);
+        equalsBuilder.append(filter, obj.filter);
+        return equalsBuilder.isEquals();
+    }
+
+    @Override
+    protected int doHashCode() {
+        return new HashCodeBuilder().append(queries).append(filter).toHashCode();
+    }
+}
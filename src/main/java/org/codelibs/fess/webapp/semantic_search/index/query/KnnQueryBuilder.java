@@ -0,0 +1,377 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.lucene.search.Query;
+import org.opensearch.core.ParseField;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.AbstractQueryBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryShardContext;
+
+/**
+ * Custom OpenSearch query builder for k-NN queries with a precomputed query vector.
+ * Unlike {@link NeuralQueryBuilder}, no model inference is performed by OpenSearch.
+ * For a vector field in nested documents, the field name is the full path and the query is wrapped
+ * in a nested query in the same way as {@link NeuralQueryBuilder}.
+ */
+public class KnnQueryBuilder extends AbstractQueryBuilder<KnnQueryBuilder> {
+
+    private static final String NAME = "knn";
+
+    private static final ParseField VECTOR_FIELD = new ParseField("vector");
+
+    private static final ParseField K_FIELD = new ParseField("k");
+
+    private static final ParseField FILTER_FIELD = new ParseField("filter");
+
+    private static final ParseField MIN_SCORE_FIELD = new ParseField("min_score");
+
+    private static final ParseField MAX_DISTANCE_FIELD = new ParseField("max_distance");
+
+    private static final ParseField RESCORE_FIELD = new ParseField("rescore");
+
+    private static final ParseField OVERSAMPLE_FACTOR_FIELD = new ParseField("oversample_factor");
+
+    private static final ParseField METHOD_PARAMETERS_FIELD = new ParseField("method_parameters");
+
+    private static final ParseField EF_SEARCH_FIELD = new ParseField("ef_search");
+
+    private static final int DEFAULT_K = 10;
+
+    /** The field name to search against. */
+    protected String fieldName;
+
+    /** The query vector. */
+    protected float[] vector;
+
+    /** Number of nearest neighbors to return. */
+    protected int k = DEFAULT_K;
+
+    /** Optional filter to apply to the k-NN search results. */
+    protected QueryBuilder filter;
+
+    /** Optional ef_search parameter for HNSW algorithm tuning. */
+    protected Integer efSearch;
+
+    /** Optional minimum score of a radial search, used instead of k. */
+    protected Float minScore;
+
+    /** Optional maximum distance of a radial search, used instead of k. */
+    protected Float maxDistance;
+
+    /** Optional flag to enable or disable rescoring of quantized vectors, or null for the index default. */
+    protected Boolean rescore;
+
+    /** Optional factor of oversampled candidates rescored with full-precision vectors. */
+    protected Float oversampleFactor;
+
+    /**
+     * Constructs a KnnQueryBuilder from stream input.
+     *
+     * @param in the stream input to read from
+     * @throws IOException if an I/O error occurs
+     */
+    public KnnQueryBuilder(final StreamInput in) throws IOException {
+        super(in);
+        this.fieldName = in.readString();
+        this.vector = readVector(in);
+        this.k = in.readVInt();
+        this.filter = in.readOptionalNamedWriteable(QueryBuilder.class);
+        this.efSearch = in.readOptionalVInt();
+        this.minScore = in.readOptionalFloat();
+        this.maxDistance = in.readOptionalFloat();
+        this.rescore = in.readOptionalBoolean();
+        this.oversampleFactor = in.readOptionalFloat();
+    }
+
+    private KnnQueryBuilder() {
+    }
+
+    /**
+     * Builder class for creating KnnQueryBuilder instances.
+     */
+    public static class Builder {
+
+        /**
+         * Default constructor.
+         */
+        public Builder() {
+        }
+
+        private int k = DEFAULT_K;
+        private float[] vector;
+        private String fieldName;
+        private QueryBuilder filter;
+        private Integer efSearch;
+        private Float minScore;
+        private Float maxDistance;
+        private Boolean rescore;
+        private Float oversampleFactor;
+
+        /**
+         * Sets the field name to search against.
+         *
+         * @param fieldName the field name
+         * @return this builder instance
+         */
+        public Builder field(final String fieldName) {
+            this.fieldName = fieldName;
+            return this;
+        }
+
+        /**
+         * Sets the query vector.
+         *
+         * @param vector the query vector
+         * @return this builder instance
+         */
+        public Builder vector(final float[] vector) {
+            this.vector = vector;
+            return this;
+        }
+
+        /**
+         * Sets the number of nearest neighbors to return.
+         *
+         * @param k the number of neighbors
+         * @return this builder instance
+         */
+        public Builder k(final int k) {
+            this.k = k;
+            return this;
+        }
+
+        /**
+         * Sets an optional filter to apply to the k-NN search results.
+         *
+         * @param filter the filter query
+         * @return this builder instance
+         */
+        public Builder filter(final QueryBuilder filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Sets the ef_search parameter for HNSW algorithm tuning.
+         *
+         * @param efSearch the ef_search value
+         * @return this builder instance
+         */
+        public Builder efSearch(final Integer efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Sets the minimum score of a radial search.
+         * All documents scoring at least this value are returned instead of the k nearest neighbors.
+         *
+         * @param minScore the minimum score
+         * @return this builder instance
+         */
+        public Builder minScore(final Float minScore) {
+            this.minScore = minScore;
+            return this;
+        }
+
+        /**
+         * Sets the maximum distance of a radial search.
+         * All documents within this distance are returned instead of the k nearest neighbors.
+         *
+         * @param maxDistance the maximum distance
+         * @return this builder instance
+         */
+        public Builder maxDistance(final Float maxDistance) {
+            this.maxDistance = maxDistance;
+            return this;
+        }
+
+        /**
+         * Enables or disables rescoring of the candidates found in a quantized vector index.
+         *
+         * @param rescore true to rescore, false to disable rescoring, or null for the index default
+         * @return this builder instance
+         */
+        public Builder rescore(final Boolean rescore) {
+            this.rescore = rescore;
+            return this;
+        }
+
+        /**
+         * Sets the oversample factor of rescoring.
+         * k multiplied by this factor candidates are searched in the quantized index
+         * and rescored with full-precision vectors before the top k are returned.
+         *
+         * @param oversampleFactor the oversample factor
+         * @return this builder instance
+         */
+        public Builder oversampleFactor(final Float oversampleFactor) {
+            this.oversampleFactor = oversampleFactor;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new KnnQueryBuilder instance.
+         *
+         * @return the constructed KnnQueryBuilder
+         */
+        public KnnQueryBuilder build() {
+            final KnnQueryBuilder query = new KnnQueryBuilder();
+            query.k = k;
+            query.vector = vector;
+            query.fieldName = fieldName;
+            query.filter = filter;
+            query.efSearch = efSearch;
+            query.minScore = minScore;
+            query.maxDistance = maxDistance;
+            query.rescore = rescore;
+            query.oversampleFactor = oversampleFactor;
+            return query;
+        }
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    protected void doWriteTo(final StreamOutput out) throws IOException {
+        out.writeString(this.fieldName);
+        writeVector(out, this.vector);
+        out.writeVInt(this.k);
+        out.writeOptionalNamedWriteable(this.filter);
+        out.writeOptionalVInt(this.efSearch);
+        out.writeOptionalFloat(this.minScore);
+        out.writeOptionalFloat(this.maxDistance);
+        out.writeOptionalBoolean(this.rescore);
+        out.writeOptionalFloat(this.oversampleFactor);
+    }
+
+    /**
+     * Writes the vector as a length-prefixed block of packed little-endian floats.
+     *
+     * @param out the stream output
+     * @param vector the vector
+     * @throws IOException if an I/O error occurs
+     */
+    protected static void writeVector(final StreamOutput out, final float[] vector) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        out.writeByteArray(buffer.array());
+    }
+
+    /**
+     * Reads a vector written by {@link #writeVector(StreamOutput, float[])}.
+     *
+     * @param in the stream input
+     * @return the vector
+     * @throws IOException if an I/O error occurs or the length is not a multiple of the float size
+     */
+    protected static float[] readVector(final StreamInput in) throws IOException {
+        final byte[] bytes = in.readByteArray();
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IOException("Invalid vector length: " + bytes.length + " bytes");
+        }
+        final float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    @Override
+    protected void doXContent(final XContentBuilder xContentBuilder, final Params params) throws IOException {
+        xContentBuilder.startObject(NAME);
+        xContentBuilder.startObject(fieldName);
+        xContentBuilder.array(VECTOR_FIELD.getPreferredName(), vector);
+        if (minScore != null) {
+            xContentBuilder.field(MIN_SCORE_FIELD.getPreferredName(), minScore);
+        } else if (maxDistance != null) {
+            xContentBuilder.field(MAX_DISTANCE_FIELD.getPreferredName(), maxDistance);
+        } else {
+            xContentBuilder.field(K_FIELD.getPreferredName(), k);
+        }
+        if (filter != null) {
+            xContentBuilder.field(FILTER_FIELD.getPreferredName(), filter);
+        }
+        if (efSearch != null) {
+            xContentBuilder.startObject(METHOD_PARAMETERS_FIELD.getPreferredName());
+            xContentBuilder.field(EF_SEARCH_FIELD.getPreferredName(), efSearch);
+            xContentBuilder.endObject();
+        }
+        if (Boolean.FALSE.equals(rescore)) {
+            xContentBuilder.field(RESCORE_FIELD.getPreferredName(), false);
+        } else if (oversampleFactor != null) {
+            xContentBuilder.startObject(RESCORE_FIELD.getPreferredName());
+            xContentBuilder.field(OVERSAMPLE_FACTOR_FIELD.getPreferredName(), oversampleFactor);
+            xContentBuilder.endObject();
+        } else if (Boolean.TRUE.equals(rescore)) {
+            xContentBuilder.field(RESCORE_FIELD.getPreferredName(), true);
+        }
+        printBoostAndQueryName(xContentBuilder);
+        xContentBuilder.endObject();
+        xContentBuilder.endObject();
+    }
+
+    @Override
+    protected Query doToQuery(final QueryShardContext context) throws IOException {
+        throw new UnsupportedOperationException("doToQuery is not supported.");
+    }
+
+    @Override
+    protected boolean doEquals(final KnnQueryBuilder obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EqualsBuilder equalsBuilder = new EqualsBuilder();
+        equalsBuilder.append(fieldName, obj.fieldName);
+        equalsBuilder.append(vector, obj.vector);
+        equalsBuilder.append(k, obj.k);
+        equalsBuilder.append(filter, obj.filter);
+        equalsBuilder.append(efSearch, obj.efSearch);
+        equalsBuilder.append(minScore, obj.minScore);
+        equalsBuilder.append(maxDistance, obj.maxDistance);
+        equalsBuilder.append(rescore, obj.rescore);
+        equalsBuilder.append(oversampleFactor, obj.oversampleFactor);
+        return equalsBuilder.isEquals();
+    }
+
+    @Override
+    protected int doHashCode() {
+        return new HashCodeBuilder().append(fieldName)
+                .append(Arrays.hashCode(vector))
+                .append(k)
+                .append(efSearch)
+                .append(minScore)
+                .append(maxDistance)
+                .append(rescore)
+                .append(oversampleFactor)
+                .toHashCode();
+    }
+}
@@ -44,6 +44,14 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
 
     private static final ParseField FILTER_FIELD = new ParseField("filter");
 
+    private static final ParseField MIN_SCORE_FIELD = new ParseField("min_score");
+
+    private static final ParseField MAX_DISTANCE_FIELD = new ParseField("max_distance");
+
+    private static final ParseField RESCORE_FIELD = new ParseField("rescore");
+
+    private static final ParseField OVERSAMPLE_FACTOR_FIELD = new ParseField("oversample_factor");
+
     private static final ParseField EF_SEARCH_FIELD = new ParseField("ef_search");
 
     private static final int DEFAULT_K = 10;
@@ -66,6 +74,18 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
     /** Optional ef_search parameter for HNSW algorithm tuning. */
     protected Integer efSearch;
 
+    /** Optional minimum score of a radial search, used instead of k. */
+    protected Float minScore;
+
+    /** Optional maximum distance of a radial search, used instead of k. */
+    protected Float maxDistance;
+
+    /** Optional flag to enable or disable rescoring of quantized vectors, or null for the index default. */
+    protected Boolean rescore;
+
+    /** Optional factor of oversampled candidates rescored with full-precision vectors. */
+    protected Float oversampleFactor;
+
     /**
      * Constructs a NeuralQueryBuilder from stream input.
      *
@@ -80,6 +100,10 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
         this.k = in.readVInt();
         this.filter = in.readOptionalNamedWriteable(QueryBuilder.class);
         this.efSearch = in.readOptionalVInt();
+        this.minScore = in.readOptionalFloat();
+        this.maxDistance = in.readOptionalFloat();
+        this.rescore = in.readOptionalBoolean();
+        this.oversampleFactor = in.readOptionalFloat();
     }
 
     private NeuralQueryBuilder() {
@@ -102,6 +126,10 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
         private String fieldName;
         private QueryBuilder filter;
         private Integer efSearch;
+        private Float minScore;
+        private Float maxDistance;
+        private Boolean rescore;
+        private Float oversampleFactor;
 
         /**
          * Sets the field name to search against.
@@ -169,6 +197,54 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
             return this;
         }
 
+        /**
+         * Sets the minimum score of a radial search.
+         * All documents scoring at least this value are returned instead of the k nearest neighbors.
+         *
+         * @param minScore the minimum score
+         * @return this builder instance
+         */
+        public Builder minScore(final Float minScore) {
+            this.minScore = minScore;
+            return this;
+        }
+
+        /**
+         * Sets the maximum distance of a radial search.
+         * All documents within this distance are returned instead of the k nearest neighbors.
+         *
+         * @param maxDistance the maximum distance
+         * @return this builder instance
+         */
+        public Builder maxDistance(final Float maxDistance) {
+            this.maxDistance = maxDistance;
+            return this;
+        }
+
+        /**
+         * Enables or disables rescoring of the candidates found in a quantized vector index.
+         *
+         * @param rescore true to rescore, false to disable rescoring, or null for the index default
+         * @return this builder instance
+         */
+        public Builder rescore(final Boolean rescore) {
+            this.rescore = rescore;
+            return this;
+        }
+
+        /**
+         * Sets the oversample factor of rescoring.
+         * k multiplied by this factor candidates are searched in the quantized index
+         * and rescored with full-precision vectors before the top k are returned.
+         *
+         * @param oversampleFactor the oversample factor
+         * @return this builder instance
+         */
+        public Builder oversampleFactor(final Float oversampleFactor) {
+            this.oversampleFactor = oversampleFactor;
+            return this;
+        }
+
         /**
          * Builds and returns a new NeuralQueryBuilder instance.
          *
@@ -182,6 +258,10 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
             query.fieldName = fieldName;
             query.filter = filter;
             query.efSearch = efSearch;
+            query.minScore = minScore;
+            query.maxDistance = maxDistance;
+            query.rescore = rescore;
+            query.oversampleFactor = oversampleFactor;
             return query;
         }
     }
@@ -199,6 +279,10 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
         out.writeVInt(this.k);
         out.writeOptionalNamedWriteable(this.filter);
         out.writeOptionalVInt(this.efSearch);
+        out.writeOptionalFloat(this.minScore);
+        out.writeOptionalFloat(this.maxDistance);
+        out.writeOptionalBoolean(this.rescore);
+        out.writeOptionalFloat(this.oversampleFactor);
     }
 
     @Override
@@ -207,13 +291,28 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
         xContentBuilder.startObject(fieldName);
         xContentBuilder.field(QUERY_TEXT_FIELD.getPreferredName(), queryText);
         xContentBuilder.field(MODEL_ID_FIELD.getPreferredName(), modelId);
-        xContentBuilder.field(K_FIELD.getPreferredName(), k);
+        if (minScore != null) {
+            xContentBuilder.field(MIN_SCORE_FIELD.getPreferredName(), minScore);
+        } else if (maxDistance != null) {
+            xContentBuilder.field(MAX_DISTANCE_FIELD.getPreferredName(), maxDistance);
+        } else {
+            xContentBuilder.field(K_FIELD.getPreferredName(), k);
+        }
         if (filter != null) {
             xContentBuilder.field(FILTER_FIELD.getPreferredName(), filter);
         }
         if (efSearch != null) {
             xContentBuilder.field(EF_SEARCH_FIELD.getPreferredName(), efSearch);
         }
+        if (Boolean.FALSE.equals(rescore)) {
+            xContentBuilder.field(RESCORE_FIELD.getPreferredName(), false);
+        } else if (oversampleFactor != null) {
+            xContentBuilder.startObject(RESCORE_FIELD.getPreferredName());
+            xContentBuilder.field(OVERSAMPLE_FACTOR_FIELD.getPreferredName(), oversampleFactor);
+            xContentBuilder.endObject();
+        } else if (Boolean.TRUE.equals(rescore)) {
+            xContentBuilder.field(RESCORE_FIELD.getPreferredName(), true);
+        }
         printBoostAndQueryName(xContentBuilder);
         xContentBuilder.endObject();
         xContentBuilder.endObject();
@@ -239,11 +338,24 @@ public class NeuralQueryBuilder extends AbstractQueryBuilder<NeuralQueryBuilder>
         equalsBuilder.append(k, obj.k);
         equalsBuilder.append(filter, obj.filter);
         equalsBuilder.append(efSearch, obj.efSearch);
+        equalsBuilder.append(minScore, obj.minScore);
+        equalsBuilder.append(maxDistance, obj.maxDistance);
+        equalsBuilder.append(rescore, obj.rescore);
+        equalsBuilder.append(oversampleFactor, obj.oversampleFactor);
         return equalsBuilder.isEquals();
     }
 
     @Override
     protected int doHashCode() {
-        return new HashCodeBuilder().append(fieldName).append(queryText).append(modelId).append(k).append(efSearch).toHashCode();
+        return new HashCodeBuilder().append(fieldName)
+                .append(queryText)
+                .append(modelId)
+                .append(k)
+                .append(efSearch)
+                .append(minScore)
+                .append(maxDistance)
+                .append(rescore)
+                .append(oversampleFactor)
+                .toHashCode();
     }
 }
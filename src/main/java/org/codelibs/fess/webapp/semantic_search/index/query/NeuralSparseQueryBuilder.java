@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.lucene.search.Query;
+import org.opensearch.core.ParseField;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.AbstractQueryBuilder;
+import org.opensearch.index.query.QueryShardContext;
+
+/**
+ * Custom OpenSearch query builder for neural sparse search queries.
+ * The query text is expanded to weighted tokens by a sparse encoding or tokenizer model,
+ * and the tokens are matched against a rank_features field in the inverted index,
+ * so that no vector graph has to be kept in memory.
+ */
+public class NeuralSparseQueryBuilder extends AbstractQueryBuilder<NeuralSparseQueryBuilder> {
+
+    private static final String NAME = "neural_sparse";
+
+    private static final ParseField QUERY_TEXT_FIELD = new ParseField("query_text");
+
+    private static final ParseField MODEL_ID_FIELD = new ParseField("model_id");
+
+    /** The rank_features field name to search against. */
+    protected String fieldName;
+
+    /** The query text to be converted to weighted tokens. */
+    protected String queryText;
+
+    /** The ML model ID used for token conversion. */
+    protected String modelId;
+
+    /**
+     * Constructs a NeuralSparseQueryBuilder from stream input.
+     *
+     * @param in the stream input to read from
+     * @throws IOException if an I/O error occurs
+     */
+    public NeuralSparseQueryBuilder(final StreamInput in) throws IOException {
+        super(in);
+        this.fieldName = in.readString();
+        this.queryText = in.readString();
+        this.modelId = in.readString();
+    }
+
+    private NeuralSparseQueryBuilder() {
+    }
+
+    /**
+     * Builder class for creating NeuralSparseQueryBuilder instances.
+     */
+    public static class Builder {
+
+        /**
+         * Default constructor.
+         */
+        public Builder() {
+        }
+
+        private String modelId;
+        private String queryText;
+        private String fieldName;
+
+        /**
+         * Sets the rank_features field name to search against.
+         *
+         * @param fieldName the field name
+         * @return this builder instance
+         */
+        public Builder field(final String fieldName) {
+            this.fieldName = fieldName;
+            return this;
+        }
+
+        /**
+         * Sets the query text to be converted to weighted tokens.
+         *
+         * @param queryText the query text
+         * @return this builder instance
+         */
+        public Builder query(final String queryText) {
+            this.queryText = queryText;
+            return this;
+        }
+
+        /**
+         * Sets the ML model ID used for token conversion.
+         *
+         * @param modelId the model ID
+         * @return this builder instance
+         */
+        public Builder modelId(final String modelId) {
+            this.modelId = modelId;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new NeuralSparseQueryBuilder instance.
+         *
+         * @return the constructed NeuralSparseQueryBuilder
+         */
+        public NeuralSparseQueryBuilder build() {
+            final NeuralSparseQueryBuilder query = new NeuralSparseQueryBuilder();
+            query.modelId = modelId;
+            query.queryText = queryText;
+            query.fieldName = fieldName;
+            return query;
+        }
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    protected void doWriteTo(final StreamOutput out) throws IOException {
+        out.writeString(this.fieldName);
+        out.writeString(this.queryText);
+        out.writeString(this.modelId);
+    }
+
+    @Override
+    protected void doXContent(final XContentBuilder xContentBuilder, final Params params) throws IOException {
+        xContentBuilder.startObject(NAME);
+        xContentBuilder.startObject(fieldName);
+        xContentBuilder.field(QUERY_TEXT_FIELD.getPreferredName(), queryText);
+        xContentBuilder.field(MODEL_ID_FIELD.getPreferredName(), modelId);
+        printBoostAndQueryName(xContentBuilder);
+        xContentBuilder.endObject();
+        xContentBuilder.endObject();
+    }
+
+    @Override
+    protected Query doToQuery(final QueryShardContext context) throws IOException {
+        throw new UnsupportedOperationException("doToQuery is not supported.");
+    }
+
+    @Override
+    protected boolean doEquals(final NeuralSparseQueryBuilder obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EqualsBuilder equalsBuilder = new EqualsBuilder();
+        equalsBuilder.append(fieldName, obj.fieldName);
+        equalsBuilder.append(queryText, obj.queryText);
+        equalsBuilder.append(modelId, obj.modelId);
+        return equalsBuilder.isEquals();
+    }
+
+    @Override
+    protected int doHashCode() {
+        return new HashCodeBuilder().append(fieldName).append(queryText).append(modelId).toHashCode();
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.knn;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tunes ef_search of k-NN searches within bounds from the observed search latency and concurrency.
+ * The latency is that of the whole search request, not of the k-NN phase alone, because OpenSearch reports the phases
+ * only for profiled searches. ef_search is the only part of the request the controller changes, so it is decreased
+ * multiplicatively when the p95 latency exceeds the target, and increased additively
+ * when the latency is well below the target and the cluster is idle.
+ * Requests beyond the concurrency limit get a proportionally smaller ef_search.
+ */
+public class EfSearchController {
+    private static final Logger logger = LogManager.getLogger(EfSearchController.class);
+
+    /** The factor applied to ef_search when the latency exceeds the target. */
+    protected static final double DECREASE_FACTOR = 0.8;
+
+    /** The ratio of the target latency below which ef_search is increased. */
+    protected static final double INCREASE_THRESHOLD = 0.7;
+
+    /** The minimum ef_search. */
+    protected final int minEfSearch;
+
+    /** The maximum ef_search. */
+    protected final int maxEfSearch;
+
+    /** The target p95 latency in milliseconds. */
+    protected final long targetLatency;
+
+    /** The number of concurrent searches above which ef_search is reduced. */
+    protected final int maxConcurrency;
+
+    /** The ef_search step added when the latency is low. */
+    protected final int increaseStep;
+
+    /** The number of samples between adjustments. */
+    protected final int adjustInterval;
+
+    /** Ring buffer of the recent latencies in milliseconds. */
+    protected final long[] latencies;
+
+    /** The number of recorded samples. */
+    protected long sampleCount;
+
+    /** The current ef_search. */
+    protected volatile int efSearch;
+
+    /** The p95 latency at the last adjustment. */
+    protected volatile long p95Latency;
+
+    /** The number of searches in flight. */
+    protected final AtomicInteger inFlightCount = new AtomicInteger();
+
+    /** The number of increases. */
+    protected final AtomicLong increaseCount = new AtomicLong();
+
+    /** The number of decreases. */
+    protected final AtomicLong decreaseCount = new AtomicLong();
+
+    /** The number of searches whose ef_search was reduced by concurrency. */
+    protected final AtomicLong concurrencyReducedCount = new AtomicLong();
+
+    /**
+     * Constructs a controller.
+     *
+     * @param minEfSearch the minimum ef_search
+     * @param maxEfSearch the maximum ef_search
+     * @param initialEfSearch the initial ef_search
+     * @param targetLatency the target p95 latency in milliseconds
+     * @param maxConcurrency the number of concurrent searches above which ef_search is reduced
+     * @param windowSize the number of recent latencies used to compute the p95 latency
+     */
+    public EfSearchController(final int minEfSearch, final int maxEfSearch, final int initialEfSearch, final long targetLatency,
+            final int maxConcurrency, final int windowSize) {
+        this.minEfSearch = Math.max(1, minEfSearch);
+        this.maxEfSearch = Math.max(this.minEfSearch, maxEfSearch);
+        this.targetLatency = Math.max(1L, targetLatency);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        latencies = new long[Math.max(1, windowSize)];
+        adjustInterval = Math.max(1, latencies.length / 5);
+        increaseStep = Math.max(1, (this.maxEfSearch - this.minEfSearch) / 10);
+        efSearch = clamp(initialEfSearch);
+    }
+
+    /**
+     * Starts a search and gets its ef_search.
+     * {@link #release(long)} must be called when the search finishes.
+     *
+     * @return the ef_search for the search
+     */
+    public int acquire() {
+        final int concurrency = inFlightCount.incrementAndGet();
+        final int current = efSearch;
+        if (concurrency > maxConcurrency) {
+            concurrencyReducedCount.incrementAndGet();
+            return clamp((int) ((long) current * maxConcurrency / concurrency));
+        }
+        return current;
+    }
+
+    /**
+     * Finishes a search and records its latency.
+     *
+     * @param latency the search latency in milliseconds
+     */
+    public void release(final long latency) {
+        inFlightCount.decrementAndGet();
+        synchronized (latencies) {
+            latencies[(int) (sampleCount % latencies.length)] = latency;
+            sampleCount++;
+            if (sampleCount % adjustInterval == 0) {
+                adjust();
+            }
+        }
+    }
+
+    /**
+     * Adjusts ef_search from the p95 latency of the recent samples.
+     */
+    protected void adjust() {
+        final long[] samples = Arrays.copyOf(latencies, (int) Math.min(sampleCount, latencies.length));
+        Arrays.sort(samples);
+        final long p95 = samples[Math.max(0, (int) Math.ceil(samples.length * 0.95) - 1)];
+        p95Latency = p95;
+        final int current = efSearch;
+        int next = current;
+        if (p95 > targetLatency) {
+            next = clamp((int) (current * DECREASE_FACTOR));
+            if (next < current) {
+                decreaseCount.incrementAndGet();
+            }
+        } else if (p95 < targetLatency * INCREASE_THRESHOLD && inFlightCount.get() <= maxConcurrency / 2) {
+            next = clamp(current + increaseStep);
+            if (next > current) {
+                increaseCount.incrementAndGet();
+            }
+        }
+        if (next != current) {
+            efSearch = next;
+            if (logger.isDebugEnabled()) {
+                logger.debug("ef_search {} -> {}: p95={}ms, target={}ms, inFlight={}", current, next, p95, targetLatency,
+                        inFlightCount.get());
+            }
+        }
+    }
+
+    private int clamp(final int value) {
+        return Math.min(maxEfSearch, Math.max(minEfSearch, value));
+    }
+
+    /**
+     * Gets the current ef_search without concurrency reduction.
+     *
+     * @return the ef_search
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Gets the p95 latency at the last adjustment.
+     *
+     * @return the p95 latency in milliseconds
+     */
+    public long getP95Latency() {
+        return p95Latency;
+    }
+
+    /**
+     * Gets the number of searches in flight.
+     *
+     * @return the in-flight count
+     */
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * Gets the number of ef_search increases.
+     *
+     * @return the increase count
+     */
+    public long getIncreaseCount() {
+        return increaseCount.get();
+    }
+
+    /**
+     * Gets the number of ef_search decreases.
+     *
+     * @return the decrease count
+     */
+    public long getDecreaseCount() {
+        return decreaseCount.get();
+    }
+
+    /**
+     * Gets the number of searches whose ef_search was reduced by concurrency.
+     *
+     * @return the reduced count
+     */
+    public long getConcurrencyReducedCount() {
+        return concurrencyReducedCount.get();
+    }
+
+    /**
+     * Gets the minimum ef_search.
+     *
+     * @return the minimum ef_search
+     */
+    public int getMinEfSearch() {
+        return minEfSearch;
+    }
+
+    /**
+     * Gets the maximum ef_search.
+     *
+     * @return the maximum ef_search
+     */
+    public int getMaxEfSearch() {
+        return maxEfSearch;
+    }
+
+    /**
+     * Gets the target p95 latency.
+     *
+     * @return the target latency in milliseconds
+     */
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "EfSearchController [efSearch=" + efSearch + ", range=" + minEfSearch + "-" + maxEfSearch + ", p95=" + p95Latency
+                + "ms, target=" + targetLatency + "ms, inFlight=" + getInFlightCount() + ", increases=" + getIncreaseCount()
+                + ", decreases=" + getDecreaseCount() + ", reduced=" + getConcurrencyReducedCount() + "]";
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.knn;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Selects the exact or the approximate k-NN search from the selectivity of the search filter.
+ * When the filter matches only a few documents, scoring all of them exactly is cheaper than the HNSW traversal
+ * and does not lose recall. The number of documents matching a filter is counted once and cached.
+ * Filters are cached by their key objects, such as the filter queries themselves, which are compared by content
+ * without serializing them.
+ */
+public class KnnStrategySelector {
+    private static final Logger logger = LogManager.getLogger(KnnStrategySelector.class);
+
+    /** The number of selections between reports of the selected fractions. */
+    protected static final long REPORT_INTERVAL = 1000L;
+
+    /**
+     * The k-NN search strategy.
+     */
+    public enum Strategy {
+        /** Exact scoring of all documents matching the filter. */
+        EXACT,
+        /** Approximate nearest neighbor search. */
+        ANN
+    }
+
+    /** The maximum number of filtered documents searched exactly. */
+    protected final long threshold;
+
+    /** The cached document counts by filter key. */
+    protected final Cache<Object, Long> countCache;
+
+    /** The number of exact searches. */
+    protected final AtomicLong exactCount = new AtomicLong();
+
+    /** The number of approximate searches. */
+    protected final AtomicLong annCount = new AtomicLong();
+
+    /** The number of count queries. */
+    protected final AtomicLong countQueryCount = new AtomicLong();
+
+    /**
+     * Constructs a selector.
+     *
+     * @param threshold the maximum number of filtered documents searched exactly
+     * @param maxSize the maximum number of cached counts
+     * @param expire the expiration time of cached counts in seconds
+     */
+    public KnnStrategySelector(final long threshold, final long maxSize, final long expire) {
+        this.threshold = Math.max(0L, threshold);
+        countCache = CacheBuilder.newBuilder().maximumSize(Math.max(1L, maxSize)).expireAfterWrite(expire, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Selects the strategy of a k-NN search with the filter and counts it.
+     *
+     * @param filterKey the key of the filter with content-based equality, or null if the search is not filtered
+     * @param counter the function counting the documents matching the filter, returning a negative value on failure
+     * @return the selected strategy
+     */
+    public Strategy select(final Object filterKey, final ToLongFunction<Object> counter) {
+        final long count = filterKey != null ? getCount(filterKey, counter) : -1L;
+        final Strategy strategy = count >= 0L && count <= threshold ? Strategy.EXACT : Strategy.ANN;
+        if (strategy == Strategy.EXACT) {
+            exactCount.incrementAndGet();
+        } else {
+            annCount.incrementAndGet();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("count={}, threshold={}, strategy={}", count, threshold, strategy);
+        }
+        if ((getExactCount() + getAnnCount()) % REPORT_INTERVAL == 0 && logger.isInfoEnabled()) {
+            logger.info("Selected k-NN strategies: {}", this);
+        }
+        return strategy;
+    }
+
+    /**
+     * Gets the number of documents matching the filter from the cache, or counts them.
+     * Failed counts are not cached.
+     *
+     * @param filterKey the key of the filter
+     * @param counter the function counting the documents matching the filter
+     * @return the document count, or a negative value if it is unknown
+     */
+    protected long getCount(final Object filterKey, final ToLongFunction<Object> counter) {
+        final Long cached = countCache.getIfPresent(filterKey);
+        if (cached != null) {
+            return cached;
+        }
+        countQueryCount.incrementAndGet();
+        final long count = counter.applyAsLong(filterKey);
+        if (count >= 0L) {
+            countCache.put(filterKey, count);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the cached number of documents matching the filter.
+     *
+     * @param filterKey the key of the filter
+     * @return the document count, or -1 if it is not cached
+     */
+    public long getCachedCount(final Object filterKey) {
+        final Long cached = filterKey != null ? countCache.getIfPresent(filterKey) : null;
+        return cached != null ? cached : -1L;
+    }
+
+    /**
+     * Gets the maximum number of filtered documents searched exactly.
+     *
+     * @return the threshold
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Gets the number of exact searches.
+     *
+     * @return the exact count
+     */
+    public long getExactCount() {
+        return exactCount.get();
+    }
+
+    /**
+     * Gets the number of approximate searches.
+     *
+     * @return the approximate count
+     */
+    public long getAnnCount() {
+        return annCount.get();
+    }
+
+    /**
+     * Gets the number of count queries sent for uncached filters.
+     *
+     * @return the count query count
+     */
+    public long getCountQueryCount() {
+        return countQueryCount.get();
+    }
+
+    /**
+     * Gets the fraction of exact searches.
+     *
+     * @return the exact fraction, or 0 if no search is selected
+     */
+    public double getExactRatio() {
+        final long exact = exactCount.get();
+        final long total = exact + annCount.get();
+        return total == 0 ? 0.0 : (double) exact / total;
+    }
+
+    @Override
+    public String toString() {
+        return "KnnStrategySelector [threshold=" + threshold + ", exact=" + getExactCount() + ", ann=" + getAnnCount() + ", exactRatio="
+                + String.format(Locale.ROOT, "%.3f", getExactRatio()) + ", countQueries=" + getCountQueryCount() + "]";
+    }
+}
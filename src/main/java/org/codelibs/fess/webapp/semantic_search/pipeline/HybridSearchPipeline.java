@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_COMBINATION;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_NORMALIZATION;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_WEIGHTS;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.util.ComponentUtil;
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+/**
+ * Search pipeline normalizing and combining the scores of the sub-queries of hybrid queries.
+ * The pipeline is passed with each hybrid query, so that other searches of the document index do not run through it.
+ */
+public class HybridSearchPipeline {
+    private static final Logger logger = LogManager.getLogger(HybridSearchPipeline.class);
+
+    /** Client of the pipeline APIs. */
+    protected final PipelineClient client;
+
+    /** The name of the provisioned hybrid search pipeline, or null if the hybrid mode is disabled. */
+    protected volatile String name;
+
+    /** Settings used to provision the current hybrid search pipeline. */
+    protected String settings;
+
+    /**
+     * Constructs a hybrid search pipeline.
+     *
+     * @param client the client of the pipeline APIs
+     */
+    public HybridSearchPipeline(final PipelineClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Provisions the search pipeline for hybrid queries according to the current configuration.
+     * The pipeline is provisioned again only if its settings have changed.
+     * A default search pipeline of the document index set to the hybrid search pipeline by earlier versions is removed.
+     */
+    public void load() {
+        if (!Boolean.parseBoolean(System.getProperty(HYBRID_ENABLED, "false"))) {
+            name = null;
+            settings = null;
+            return;
+        }
+
+        final String pipelineName = System.getProperty(HYBRID_PIPELINE, "fess_semantic_search_hybrid");
+        final String normalization = System.getProperty(HYBRID_NORMALIZATION, "min_max");
+        final String combination = System.getProperty(HYBRID_COMBINATION, "arithmetic_mean");
+        final float[] weights = parseWeights(System.getProperty(HYBRID_WEIGHTS, "0.3,0.7"));
+
+        final String newSettings = pipelineName + ":" + normalization + ":" + combination + ":" + Arrays.toString(weights);
+        if (name == null || !newSettings.equals(settings)) {
+            if (client.putSearchPipeline(pipelineName, createPipeline(normalization, combination, weights))) {
+                removeDefaultSearchPipeline(pipelineName);
+                name = pipelineName;
+                settings = newSettings;
+            } else {
+                logger.warn("Failed to provision the hybrid search pipeline: {}", newSettings);
+                name = null;
+                settings = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the default search pipeline of the document index if it is the hybrid search pipeline.
+     * Searches other than hybrid queries would otherwise run through the pipeline.
+     *
+     * @param pipelineName the name of the hybrid search pipeline
+     */
+    protected void removeDefaultSearchPipeline(final String pipelineName) {
+        final String index = ComponentUtil.getFessConfig().getIndexDocumentSearchIndex();
+        if (pipelineName.equals(client.getDefaultSearchPipeline(index)) && !client.setDefaultSearchPipeline(index, null)) {
+            logger.warn("Failed to remove the default search pipeline {} from {}.", pipelineName, index);
+        }
+    }
+
+    /**
+     * Parses the weights of the lexical and the neural query.
+     *
+     * @param value the comma-separated weights
+     * @return the weights, or the default weights if the value is invalid
+     */
+    protected float[] parseWeights(final String value) {
+        try {
+            final String[] values = value.split(",");
+            if (values.length == 2) {
+                final float[] weights = new float[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    weights[i] = Float.parseFloat(values[i].trim());
+                }
+                return weights;
+            }
+        } catch (final NumberFormatException e) {
+            logger.debug("Failed to parse {}.", value, e);
+        }
+        return new float[] { 0.3f, 0.7f };
+    }
+
+    /**
+     * Creates the definition of the search pipeline normalizing and combining the scores of hybrid queries.
+     *
+     * @param normalization the normalization technique
+     * @param combination the combination technique
+     * @param weights the weights of the sub-queries
+     * @return the pipeline definition in JSON
+     */
+    protected String createPipeline(final String normalization, final String combination, final float[] weights) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Hybrid search pipeline for Fess semantic search");
+            builder.startArray("phase_results_processors");
+            builder.startObject();
+            builder.startObject("normalization-processor");
+            builder.startObject("normalization").field("technique", normalization).endObject();
+            builder.startObject("combination");
+            builder.field("technique", combination);
+            builder.startObject("parameters").array("weights", weights).endObject();
+            builder.endObject();
+            builder.endObject();
+            builder.endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the hybrid search pipeline.", e);
+        }
+    }
+
+    /**
+     * Gets the name of the provisioned hybrid search pipeline.
+     *
+     * @return the pipeline name, or null if the hybrid mode is disabled
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the settings used to provision the current hybrid search pipeline.
+     *
+     * @return the settings, or null if the hybrid mode is disabled
+     */
+    public String getSettings() {
+        return settings;
+    }
+}
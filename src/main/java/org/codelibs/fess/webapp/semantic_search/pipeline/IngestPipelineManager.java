@@ -0,0 +1,805 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.BINARY_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CENTROID_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_BINARY_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_CENTROID_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_NESTED_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_SPARSE_MODEL_ID;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LABEL_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.LANGUAGE_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.SPARSE_PIPELINE;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.VECTOR_NORMALIZATION_PIPELINE;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.mylasta.direction.FessConfig;
+import org.codelibs.fess.util.ComponentUtil;
+import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.VectorField;
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+/**
+ * Manages the ingest pipelines computing the vectors of documents of the document index.
+ * Each stage runs the pipeline of the previous stage and is set as the default pipeline of the index:
+ * the embedding pipeline, the normalization, the centroid, the binary pipeline, the language,
+ * the label and the sparse pipeline.
+ */
+public class IngestPipelineManager {
+    private static final Logger logger = LogManager.getLogger(IngestPipelineManager.class);
+
+    /** Painless script of the ingest pipeline scaling the vectors of a document to unit length. */
+    protected static final String NORMALIZATION_SCRIPT = "List vectors = new ArrayList();" //
+            + "String field = params.get('field');" //
+            + "String nestedField = params.get('nested_field');" //
+            + "if (nestedField != null) {" //
+            + "  if (ctx[nestedField] instanceof List) {" //
+            + "    for (def chunk : ctx[nestedField]) {" //
+            + "      if (chunk instanceof Map && chunk[field] instanceof List) { vectors.add(chunk[field]); }" //
+            + "    }" //
+            + "  }" //
+            + "} else if (ctx[field] instanceof List) {" //
+            + "  vectors.add(ctx[field]);" //
+            + "}" //
+            + "for (List vector : vectors) {" //
+            + "  double sum = 0;" //
+            + "  for (def value : vector) { sum += value * value; }" //
+            + "  if (sum > 0) {" //
+            + "    double norm = Math.sqrt(sum);" //
+            + "    for (int i = 0; i < vector.size(); i++) { vector.set(i, vector.get(i) / norm); }" //
+            + "  }" //
+            + "}";
+
+    /** Painless script of the ingest pipeline storing the mean of the chunk vectors of a document. */
+    protected static final String CENTROID_SCRIPT = "String field = params.get('field');" //
+            + "def chunks = ctx[params.get('nested_field')];" //
+            + "if (!(chunks instanceof List)) { return; }" //
+            + "double[] sum = null;" //
+            + "int count = 0;" //
+            + "for (def chunk : chunks) {" //
+            + "  if (chunk instanceof Map && chunk[field] instanceof List) {" //
+            + "    List vector = chunk[field];" //
+            + "    if (sum == null) { sum = new double[vector.size()]; }" //
+            + "    if (vector.size() == sum.length) {" //
+            + "      for (int i = 0; i < sum.length; i++) { sum[i] += vector.get(i); }" //
+            + "      count++;" //
+            + "    }" //
+            + "  }" //
+            + "}" //
+            + "if (count == 0) { return; }" //
+            + "double norm = 0;" //
+            + "for (int i = 0; i < sum.length; i++) { sum[i] /= count; norm += sum[i] * sum[i]; }" //
+            + "norm = params.get('normalize') && norm > 0 ? Math.sqrt(norm) : 1;" //
+            + "List centroid = new ArrayList();" //
+            + "for (int i = 0; i < sum.length; i++) { centroid.add(sum[i] / norm); }" //
+            + "ctx[params.get('centroid_field')] = centroid;";
+
+    /** Painless script of the ingest pipeline packing the signs of the vectors of a document or its chunks into bits. */
+    protected static final String BINARY_SCRIPT = "List targets = new ArrayList();" //
+            + "String nestedField = params.get('nested_field');" //
+            + "if (nestedField != null) {" //
+            + "  if (ctx[nestedField] instanceof List) {" //
+            + "    for (def chunk : ctx[nestedField]) {" //
+            + "      if (chunk instanceof Map) { targets.add(chunk); }" //
+            + "    }" //
+            + "  }" //
+            + "} else {" //
+            + "  targets.add(ctx);" //
+            + "}" //
+            + "for (def target : targets) {" //
+            + "  def vector = target[params.get('field')];" //
+            + "  if (!(vector instanceof List) || vector.size() % 8 != 0) { continue; }" //
+            + "  List bits = new ArrayList();" //
+            + "  int value = 0;" //
+            + "  for (int i = 0; i < vector.size(); i++) {" //
+            + "    value <<= 1;" //
+            + "    if (vector.get(i) > 0) { value |= 1; }" //
+            + "    if (i % 8 == 7) { bits.add((byte) value); value = 0; }" //
+            + "  }" //
+            + "  target[params.get('binary_field')] = bits;" //
+            + "}";
+
+    /** Painless script of the ingest pipeline copying the vector of a document to the partition fields of its labels. */
+    protected static final String LABEL_SCRIPT = "def vector = ctx[params.get('field')];" //
+            + "def labels = ctx[params.get('label_field')];" //
+            + "if (!(vector instanceof List) || labels == null) { return; }" //
+            + "if (!(labels instanceof List)) { labels = [labels]; }" //
+            + "Map partitions = params.get('partitions');" //
+            + "for (def label : labels) {" //
+            + "  def partitionField = partitions.get(label);" //
+            + "  if (partitionField != null) { ctx[partitionField] = vector; }" //
+            + "}";
+
+    /** The mapping type of dense vector fields. */
+    protected static final String KNN_VECTOR_TYPE = "knn_vector";
+
+    /** The mapping type of sparse token weight fields. */
+    protected static final String RANK_FEATURES_TYPE = "rank_features";
+
+    /** Client of the pipeline APIs. */
+    protected final PipelineClient client;
+
+    /** The name of the provisioned ingest pipeline normalizing indexed vectors, or null if it is not provisioned. */
+    protected volatile String normalizationPipeline;
+
+    /** Settings used to provision the current normalization pipeline. */
+    protected String normalizationPipelineSettings;
+
+    /** The name of the provisioned ingest pipeline computing centroid vectors, or null if it is not provisioned. */
+    protected volatile String centroidPipeline;
+
+    /** Settings used to provision the current centroid pipeline. */
+    protected String centroidPipelineSettings;
+
+    /** The name of the provisioned ingest pipeline computing binary vectors, or null if it is not provisioned. */
+    protected volatile String binaryPipeline;
+
+    /** Settings used to provision the current binary pipeline. */
+    protected String binaryPipelineSettings;
+
+    /** The name of the provisioned ingest pipeline computing per-language vectors, or null if it is not provisioned. */
+    protected volatile String languagePipeline;
+
+    /** Settings used to provision the current language pipeline. */
+    protected String languagePipelineSettings;
+
+    /** The name of the provisioned ingest pipeline filling the label partitions, or null if it is not provisioned. */
+    protected volatile String labelPipeline;
+
+    /** Settings used to provision the current label pipeline. */
+    protected String labelPipelineSettings;
+
+    /** The name of the provisioned ingest pipeline encoding sparse token weights, or null if it is not provisioned. */
+    protected volatile String sparsePipeline;
+
+    /** Settings used to provision the current sparse pipeline. */
+    protected String sparsePipelineSettings;
+
+    /** The default ingest pipeline last applied to the document index, or null if none is applied. */
+    protected volatile String defaultPipeline;
+
+    /**
+     * Constructs an ingest pipeline manager.
+     *
+     * @param client the client of the pipeline APIs
+     */
+    public IngestPipelineManager(final PipelineClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Provisions the ingest pipeline normalizing indexed vectors, so that documents added from now on have unit-length vectors.
+     * The pipeline is provisioned again only if its settings have changed.
+     *
+     * @param enabled true if vector normalization is enabled
+     */
+    public void loadNormalizationPipeline(final boolean enabled) {
+        final String field = System.getProperty(CONTENT_FIELD);
+        if (!enabled || StringUtil.isBlank(field)) {
+            normalizationPipeline = null;
+            normalizationPipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(VECTOR_NORMALIZATION_PIPELINE, "fess_semantic_search_normalization");
+        final String pipeline = System.getProperty(PIPELINE);
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        final String settings = name + ":" + pipeline + ":" + field + ":" + nestedField;
+        if (normalizationPipeline == null || !settings.equals(normalizationPipelineSettings)) {
+            if (client.putIngestPipeline(name, createNormalizationPipeline(pipeline, field, nestedField))) {
+                normalizationPipeline = name;
+                normalizationPipelineSettings = settings;
+            } else {
+                logger.warn("Failed to provision the vector normalization pipeline: {}", settings);
+                normalizationPipeline = null;
+                normalizationPipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Provisions the ingest pipeline computing the centroid vectors of documents with nested chunk vectors.
+     * The pipeline runs the embedding and the normalization pipelines before the centroid is computed.
+     * The pipeline is provisioned only if the centroid field is mapped as a knn_vector field in the document index.
+     * The pipeline is provisioned again only if its settings have changed.
+     *
+     * @param normalize true to scale the centroid to unit length
+     */
+    public void loadCentroidPipeline(final boolean normalize) {
+        final String field = System.getProperty(CONTENT_FIELD);
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        final String centroidField = System.getProperty(CONTENT_CENTROID_FIELD);
+        if (StringUtil.isBlank(field) || StringUtil.isBlank(nestedField) || StringUtil.isBlank(centroidField)) {
+            centroidPipeline = null;
+            centroidPipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(CENTROID_PIPELINE, "fess_semantic_search_centroid");
+        final String pipeline = normalizationPipeline != null ? normalizationPipeline : System.getProperty(PIPELINE);
+        final String settings = name + ":" + pipeline + ":" + field + ":" + nestedField + ":" + centroidField + ":" + normalize;
+        if (centroidPipeline == null || !settings.equals(centroidPipelineSettings)) {
+            if (!hasField(centroidField, KNN_VECTOR_TYPE)) {
+                centroidPipeline = null;
+                centroidPipelineSettings = null;
+                return;
+            }
+            if (client.putIngestPipeline(name, createCentroidPipeline(pipeline, field, nestedField, centroidField, normalize))) {
+                centroidPipeline = name;
+                centroidPipelineSettings = settings;
+            } else {
+                logger.warn("Failed to provision the centroid pipeline: {}", settings);
+                centroidPipeline = null;
+                centroidPipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the given pipeline and stores the mean of the chunk vectors
+     * of a document in the centroid field.
+     *
+     * @param pipeline the pipeline run before the centroid is computed, or null
+     * @param field the vector field name
+     * @param nestedField the nested field name
+     * @param centroidField the centroid vector field name
+     * @param normalize true to scale the centroid to unit length
+     * @return the pipeline definition in JSON
+     */
+    protected String createCentroidPipeline(final String pipeline, final String field, final String nestedField,
+            final String centroidField, final boolean normalize) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Centroid vector pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline").field("name", pipeline).endObject().endObject();
+            }
+            builder.startObject().startObject("script");
+            builder.field("lang", "painless");
+            builder.field("source", CENTROID_SCRIPT);
+            builder.startObject("params");
+            builder.field("field", field);
+            builder.field("nested_field", nestedField);
+            builder.field("centroid_field", centroidField);
+            builder.field("normalize", normalize);
+            builder.endObject();
+            builder.endObject().endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the centroid pipeline.", e);
+        }
+    }
+
+    /**
+     * Provisions the ingest pipeline computing the binary vectors of documents from their content vectors.
+     * With the nested field, the binary vector of each chunk is stored in the chunk.
+     * The pipeline runs the embedding, the normalization and the centroid pipelines before the vectors are binarized.
+     * The pipeline is provisioned only if the binary field is mapped as a knn_vector field in the document index.
+     * The pipeline is provisioned again only if its settings have changed.
+     */
+    public void loadBinaryPipeline() {
+        final String field = System.getProperty(CONTENT_FIELD);
+        final String nestedField = System.getProperty(CONTENT_NESTED_FIELD);
+        final String binaryField = System.getProperty(CONTENT_BINARY_FIELD);
+        if (StringUtil.isBlank(field) || StringUtil.isBlank(binaryField)) {
+            binaryPipeline = null;
+            binaryPipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(BINARY_PIPELINE, "fess_semantic_search_binary");
+        final String pipeline = centroidPipeline != null ? centroidPipeline
+                : normalizationPipeline != null ? normalizationPipeline : System.getProperty(PIPELINE);
+        final String settings = name + ":" + pipeline + ":" + field + ":" + nestedField + ":" + binaryField;
+        if (binaryPipeline == null || !settings.equals(binaryPipelineSettings)) {
+            if (!hasField(StringUtil.isNotBlank(nestedField) ? nestedField + "." + binaryField : binaryField, KNN_VECTOR_TYPE)) {
+                binaryPipeline = null;
+                binaryPipelineSettings = null;
+                return;
+            }
+            if (client.putIngestPipeline(name, createBinaryPipeline(pipeline, field, nestedField, binaryField))) {
+                binaryPipeline = name;
+                binaryPipelineSettings = settings;
+            } else {
+                logger.warn("Failed to provision the binary vector pipeline: {}", settings);
+                binaryPipeline = null;
+                binaryPipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the given pipeline and stores the signs of the content vectors
+     * of a document as packed bits in the binary field.
+     *
+     * @param pipeline the pipeline run before the vectors are binarized, or null
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @param binaryField the binary vector field name
+     * @return the pipeline definition in JSON
+     */
+    protected String createBinaryPipeline(final String pipeline, final String field, final String nestedField, final String binaryField) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Binary vector pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline").field("name", pipeline).endObject().endObject();
+            }
+            builder.startObject().startObject("script");
+            builder.field("lang", "painless");
+            builder.field("source", BINARY_SCRIPT);
+            builder.startObject("params");
+            builder.field("field", field);
+            if (StringUtil.isNotBlank(nestedField)) {
+                builder.field("nested_field", nestedField);
+            }
+            builder.field("binary_field", binaryField);
+            builder.endObject();
+            builder.endObject().endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the binary vector pipeline.", e);
+        }
+    }
+
+    /**
+     * Provisions the ingest pipeline computing the vectors of per-language models.
+     * Each language model embeds only the documents whose language field has its language,
+     * after the pipeline of the content field has run.
+     * If the content vector is skipped, the pipeline of the content field runs only for documents of other languages,
+     * so that each document is embedded once.
+     * The pipeline is provisioned only if all language fields are mapped as knn_vector fields in the document index.
+     * The pipeline is provisioned again only if its settings have changed.
+     *
+     * @param fields the vector fields of per-language models keyed by language
+     * @param skipContentVector true to skip the pipeline of the content field for documents of the languages
+     */
+    public void loadLanguagePipeline(final Map<String, VectorField> fields, final boolean skipContentVector) {
+        if (fields.isEmpty()) {
+            languagePipeline = null;
+            languagePipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(LANGUAGE_PIPELINE, "fess_semantic_search_language");
+        final String pipeline = getContentIngestPipeline();
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        final String sourceField = fessConfig.getIndexFieldContent();
+        final String langField = fessConfig.getIndexFieldLang();
+        final StringBuilder settings = new StringBuilder().append(name).append(':').append(pipeline).append(':').append(langField)
+                .append(':').append(skipContentVector);
+        fields.forEach((language, field) -> settings.append(':').append(language).append('=').append(field.getModelId()).append('>')
+                .append(field.getField()));
+        if (languagePipeline == null || !settings.toString().equals(languagePipelineSettings)) {
+            if (!fields.values().stream().allMatch(field -> hasField(field.getField(), KNN_VECTOR_TYPE))) {
+                languagePipeline = null;
+                languagePipelineSettings = null;
+                return;
+            }
+            if (client.putIngestPipeline(name, createLanguagePipeline(pipeline, sourceField, langField, fields, skipContentVector))) {
+                languagePipeline = name;
+                languagePipelineSettings = settings.toString();
+            } else {
+                logger.warn("Failed to provision the language vector pipeline: {}", settings);
+                languagePipeline = null;
+                languagePipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the given pipeline and embeds the source field
+     * with the model of the language of each document.
+     *
+     * @param pipeline the pipeline run before the language models, or null
+     * @param sourceField the text field embedded
+     * @param langField the language field of documents
+     * @param fields the vector fields keyed by language
+     * @param skipContentVector true to run the given pipeline only for documents of other languages
+     * @return the pipeline definition in JSON
+     */
+    protected String createLanguagePipeline(final String pipeline, final String sourceField, final String langField,
+            final Map<String, VectorField> fields, final boolean skipContentVector) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Language vector pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline");
+                if (skipContentVector) {
+                    final String languages =
+                            fields.keySet().stream().map(language -> "'" + language + "'").collect(Collectors.joining(","));
+                    builder.field("if", "![" + languages + "].contains(ctx['" + langField + "'])");
+                }
+                builder.field("name", pipeline).endObject().endObject();
+            }
+            for (final Map.Entry<String, VectorField> entry : fields.entrySet()) {
+                builder.startObject().startObject("text_embedding");
+                builder.field("if", "ctx['" + langField + "'] == '" + entry.getKey() + "'");
+                builder.field("model_id", entry.getValue().getModelId());
+                builder.startObject("field_map").field(sourceField, entry.getValue().getField()).endObject();
+                builder.endObject().endObject();
+            }
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the language vector pipeline.", e);
+        }
+    }
+
+    /**
+     * Provisions the ingest pipeline copying the content vector of a document to the partition fields of its labels.
+     * Label partitions are used only with a top-level content vector field.
+     * The pipeline is provisioned only if all partition fields are mapped as knn_vector fields in the document index.
+     * The pipeline is provisioned again only if its settings have changed.
+     *
+     * @param partitions the partition vector field names keyed by label
+     */
+    public void loadLabelPipeline(final Map<String, String> partitions) {
+        final String field = System.getProperty(CONTENT_FIELD);
+        if (StringUtil.isBlank(field) || partitions.isEmpty() || StringUtil.isNotBlank(System.getProperty(CONTENT_NESTED_FIELD))) {
+            labelPipeline = null;
+            labelPipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(LABEL_PIPELINE, "fess_semantic_search_label");
+        final String pipeline = languagePipeline != null ? languagePipeline : getContentIngestPipeline();
+        final FessConfig fessConfig = ComponentUtil.getFessConfig();
+        final String labelField = fessConfig.getIndexFieldLabel();
+        final String settings = name + ":" + pipeline + ":" + field + ":" + labelField + ":" + partitions;
+        if (labelPipeline == null || !settings.equals(labelPipelineSettings)) {
+            if (!partitions.values().stream().allMatch(partition -> hasField(partition, KNN_VECTOR_TYPE))) {
+                labelPipeline = null;
+                labelPipelineSettings = null;
+                return;
+            }
+            if (client.putIngestPipeline(name, createLabelPipeline(pipeline, field, labelField, partitions))) {
+                labelPipeline = name;
+                labelPipelineSettings = settings;
+            } else {
+                logger.warn("Failed to provision the label partition pipeline: {}", settings);
+                labelPipeline = null;
+                labelPipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the given pipeline and copies the content vector
+     * of a document to the partition fields of its labels.
+     *
+     * @param pipeline the pipeline run before the vector is copied, or null
+     * @param field the vector field name
+     * @param labelField the label field of documents
+     * @param partitions the partition vector field names keyed by label
+     * @return the pipeline definition in JSON
+     */
+    protected String createLabelPipeline(final String pipeline, final String field, final String labelField,
+            final Map<String, String> partitions) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Label partition pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline").field("name", pipeline).endObject().endObject();
+            }
+            builder.startObject().startObject("script");
+            builder.field("lang", "painless");
+            builder.field("source", LABEL_SCRIPT);
+            builder.startObject("params");
+            builder.field("field", field);
+            builder.field("label_field", labelField);
+            builder.field("partitions", partitions);
+            builder.endObject();
+            builder.endObject().endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the label partition pipeline.", e);
+        }
+    }
+
+    /**
+     * Provisions the ingest pipeline encoding the sparse token weights of documents according to the current configuration.
+     * The pipeline runs the dense ingest pipeline first, if any.
+     * The pipeline is provisioned only if the sparse field is mapped as a rank_features field in the document index.
+     * The pipeline is provisioned again only if its settings have changed.
+     */
+    public void loadSparsePipeline() {
+        final String sparseField = System.getProperty(CONTENT_SPARSE_FIELD);
+        final String modelId = System.getProperty(CONTENT_SPARSE_MODEL_ID);
+        if (StringUtil.isBlank(sparseField) || StringUtil.isBlank(modelId)) {
+            sparsePipeline = null;
+            sparsePipelineSettings = null;
+            return;
+        }
+
+        final String name = System.getProperty(SPARSE_PIPELINE, "fess_semantic_search_sparse");
+        final String pipeline = getDenseIngestPipeline();
+        final String sourceField = ComponentUtil.getFessConfig().getIndexFieldContent();
+        final String settings = name + ":" + pipeline + ":" + modelId + ":" + sourceField + ":" + sparseField;
+        if (sparsePipeline == null || !settings.equals(sparsePipelineSettings)) {
+            if (!hasField(sparseField, RANK_FEATURES_TYPE)) {
+                sparsePipeline = null;
+                sparsePipelineSettings = null;
+                return;
+            }
+            if (client.putIngestPipeline(name, createSparsePipeline(pipeline, modelId, sourceField, sparseField))) {
+                sparsePipeline = name;
+                sparsePipelineSettings = settings;
+            } else {
+                logger.warn("Failed to provision the sparse encoding pipeline: {}", settings);
+                sparsePipeline = null;
+                sparsePipelineSettings = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the given pipeline and stores the sparse token weights
+     * of the source field in the sparse field.
+     *
+     * @param pipeline the pipeline run before the sparse encoding, or null
+     * @param modelId the ML model ID of the sparse encoding
+     * @param sourceField the text field encoded
+     * @param sparseField the rank_features field name
+     * @return the pipeline definition in JSON
+     */
+    protected String createSparsePipeline(final String pipeline, final String modelId, final String sourceField,
+            final String sparseField) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Sparse encoding pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline").field("name", pipeline).endObject().endObject();
+            }
+            builder.startObject().startObject("sparse_encoding");
+            builder.field("model_id", modelId);
+            builder.startObject("field_map").field(sourceField, sparseField).endObject();
+            builder.endObject().endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the sparse encoding pipeline.", e);
+        }
+    }
+
+    /**
+     * Checks whether the field written by a pipeline is mapped with the expected type in the document index.
+     * A field added to the mapping configuration is created only with a new index, so the pipeline is not attached
+     * until the documents are reindexed, and writing the field does not fail or create a field of another type.
+     *
+     * @param field the field name
+     * @param type the expected field type
+     * @return true if the field is mapped with the type
+     */
+    protected boolean hasField(final String field, final String type) {
+        final String index = getDocumentIndex();
+        final String actual = client.getFieldType(index, field);
+        if (type.equals(actual)) {
+            return true;
+        }
+        logger.warn("The field {} of {} is {}, not {}. Reindex the documents to create it before its pipeline is used.", field, index,
+                actual != null ? actual : "not mapped", type);
+        return false;
+    }
+
+    /**
+     * Gets the document index updated by the pipelines.
+     *
+     * @return the index or alias name
+     */
+    protected String getDocumentIndex() {
+        return ComponentUtil.getFessConfig().getIndexDocumentUpdateIndex();
+    }
+
+    /**
+     * Sets the head of the pipeline chain as the default ingest pipeline of the document index, after all stages are provisioned.
+     * The index setting is updated only if it differs from the current value. If no stage and no embedding pipeline is
+     * configured any more, a default pipeline left by a disabled stage is removed, and a pipeline set by others is kept.
+     *
+     * @param index the document index or alias name
+     */
+    public void applyDefaultPipeline(final String index) {
+        final String pipeline = StringUtil.isNotBlank(getIngestPipeline()) ? getIngestPipeline() : null;
+        if (pipeline == null && defaultPipeline == null) {
+            return;
+        }
+        final String current = client.getDefaultIngestPipeline(index);
+        if (Objects.equals(pipeline, current) || pipeline == null && !isManagedPipeline(current)) {
+            defaultPipeline = pipeline;
+            return;
+        }
+        if (client.setDefaultIngestPipeline(index, pipeline)) {
+            logger.info("Changed the default ingest pipeline of {}: {} -> {}", index, current, pipeline);
+            defaultPipeline = pipeline;
+        }
+    }
+
+    /**
+     * Checks whether the pipeline is one of the stages provisioned by this manager.
+     *
+     * @param name the pipeline name, or null
+     * @return true if the pipeline is a stage of this manager
+     */
+    protected boolean isManagedPipeline(final String name) {
+        if (StringUtil.isBlank(name)) {
+            return false;
+        }
+        return name.equals(System.getProperty(VECTOR_NORMALIZATION_PIPELINE, "fess_semantic_search_normalization"))
+                || name.equals(System.getProperty(CENTROID_PIPELINE, "fess_semantic_search_centroid"))
+                || name.equals(System.getProperty(BINARY_PIPELINE, "fess_semantic_search_binary"))
+                || name.equals(System.getProperty(LANGUAGE_PIPELINE, "fess_semantic_search_language"))
+                || name.equals(System.getProperty(LABEL_PIPELINE, "fess_semantic_search_label"))
+                || name.equals(System.getProperty(SPARSE_PIPELINE, "fess_semantic_search_sparse"));
+    }
+
+    /**
+     * Gets the default ingest pipeline of the document index.
+     *
+     * @return the sparse, the centroid, the normalization or the configured pipeline, or null
+     */
+    public String getIngestPipeline() {
+        if (sparsePipeline != null) {
+            return sparsePipeline;
+        }
+        return getDenseIngestPipeline();
+    }
+
+    /**
+     * Gets the ingest pipeline computing the dense vectors of documents.
+     *
+     * @return the label, the language, the binary, the centroid, the normalization or the configured pipeline, or null
+     */
+    public String getDenseIngestPipeline() {
+        if (labelPipeline != null) {
+            return labelPipeline;
+        }
+        if (languagePipeline != null) {
+            return languagePipeline;
+        }
+        return getContentIngestPipeline();
+    }
+
+    /**
+     * Gets the ingest pipeline computing the vectors of the content field.
+     *
+     * @return the binary, the centroid, the normalization or the configured pipeline, or null
+     */
+    public String getContentIngestPipeline() {
+        if (binaryPipeline != null) {
+            return binaryPipeline;
+        }
+        if (centroidPipeline != null) {
+            return centroidPipeline;
+        }
+        if (normalizationPipeline != null) {
+            return normalizationPipeline;
+        }
+        return System.getProperty(PIPELINE);
+    }
+
+    /**
+     * Creates the definition of the ingest pipeline that runs the embedding pipeline and L2-normalizes the resulting vectors.
+     *
+     * @param pipeline the embedding pipeline, or null
+     * @param field the vector field name
+     * @param nestedField the nested field name, or null
+     * @return the pipeline definition in JSON
+     */
+    protected String createNormalizationPipeline(final String pipeline, final String field, final String nestedField) {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("description", "Vector normalization pipeline for Fess semantic search");
+            builder.startArray("processors");
+            if (StringUtil.isNotBlank(pipeline)) {
+                builder.startObject().startObject("pipeline").field("name", pipeline).endObject().endObject();
+            }
+            builder.startObject().startObject("script");
+            builder.field("lang", "painless");
+            builder.field("source", NORMALIZATION_SCRIPT);
+            builder.startObject("params");
+            builder.field("field", field);
+            if (StringUtil.isNotBlank(nestedField)) {
+                builder.field("nested_field", nestedField);
+            }
+            builder.endObject();
+            builder.endObject().endObject();
+            builder.endArray();
+            builder.endObject();
+            return BytesReference.bytes(builder).utf8ToString();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to create the vector normalization pipeline.", e);
+        }
+    }
+
+    /**
+     * Gets the name of the provisioned normalization pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getNormalizationPipeline() {
+        return normalizationPipeline;
+    }
+
+    /**
+     * Gets the name of the provisioned centroid pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getCentroidPipeline() {
+        return centroidPipeline;
+    }
+
+    /**
+     * Gets the name of the provisioned binary vector pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getBinaryPipeline() {
+        return binaryPipeline;
+    }
+
+    /**
+     * Gets the name of the provisioned language vector pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getLanguagePipeline() {
+        return languagePipeline;
+    }
+
+    /**
+     * Gets the name of the provisioned label partition pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getLabelPipeline() {
+        return labelPipeline;
+    }
+
+    /**
+     * Gets the name of the provisioned sparse encoding pipeline.
+     *
+     * @return the pipeline name, or null if it is not provisioned
+     */
+    public String getSparsePipeline() {
+        return sparsePipeline;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.curl.CurlResponse;
+import org.codelibs.fess.util.ComponentUtil;
+import org.codelibs.opensearch.runner.net.OpenSearchCurl;
+
+/**
+ * Client of the ingest and search pipeline APIs of OpenSearch.
+ */
+public class PipelineClient {
+    private static final Logger logger = LogManager.getLogger(PipelineClient.class);
+
+    /**
+     * Default constructor.
+     */
+    public PipelineClient() {
+    }
+
+    /**
+     * Creates or updates an ingest pipeline.
+     *
+     * @param name the pipeline name
+     * @param pipeline the pipeline definition in JSON
+     * @return true if the pipeline was created or updated
+     */
+    public boolean putIngestPipeline(final String name, final String pipeline) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().put("/_ingest/pipeline/" + name).body(pipeline).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                logger.info("Provisioned ingest pipeline: {}", name);
+                return true;
+            }
+            logger.warn("Failed to put ingest pipeline:{}: {}", name, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to put ingest pipeline:{}", name, e);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the type of a field in the mapping of an index.
+     * For an alias, the mapping of the first index is used.
+     *
+     * @param index the index or alias name
+     * @param field the full field name
+     * @return the field type, or null if the field is not mapped or the mapping could not be read
+     */
+    public String getFieldType(final String index, final String field) {
+        final Map<?, ?> definition = getFieldMapping(index, field);
+        return definition != null && definition.get("type") instanceof final String type ? type : null;
+    }
+
+    /**
+     * Gets the space type of a k-NN vector field in the mapping of an index.
+     * The space type is read from the field or from its method.
+     * For an alias, the mapping of the first index is used.
+     *
+     * @param index the index or alias name
+     * @param field the full field name
+     * @return the space type, or null if the field has no space type, is not mapped, or the mapping could not be read
+     */
+    public String getFieldSpaceType(final String index, final String field) {
+        final Map<?, ?> definition = getFieldMapping(index, field);
+        if (definition == null) {
+            return null;
+        }
+        if (definition.get("space_type") instanceof final String spaceType) {
+            return spaceType;
+        }
+        if (definition.get("method") instanceof final Map<?, ?> method && method.get("space_type") instanceof final String spaceType) {
+            return spaceType;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the definition of a field in the mapping of an index.
+     * For an alias, the mapping of the first index is used.
+     *
+     * @param index the index or alias name
+     * @param field the full field name
+     * @return the field definition, or null if the field is not mapped or the mapping could not be read
+     */
+    protected Map<?, ?> getFieldMapping(final String index, final String field) {
+        final String leafName = field.substring(field.lastIndexOf('.') + 1);
+        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/" + index + "/_mapping/field/" + field).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                final Map<String, Object> content = response.getContent(OpenSearchCurl.jsonParser());
+                for (final Object value : content.values()) {
+                    if (value instanceof final Map<?, ?> indexMap && indexMap.get("mappings") instanceof final Map<?, ?> mappings
+                            && mappings.get(field) instanceof final Map<?, ?> fieldMapping
+                            && fieldMapping.get("mapping") instanceof final Map<?, ?> mapping
+                            && mapping.get(leafName) instanceof final Map<?, ?> definition) {
+                        return definition;
+                    }
+                }
+                return null;
+            }
+            logger.warn("Failed to get the mapping of {} in {}: {}", field, index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to get the mapping of {} in {}", field, index, e);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the default ingest pipeline of an index.
+     * For an alias, the setting of the first index is returned.
+     *
+     * @param index the index or alias name
+     * @return the pipeline name, or null if it is not set or the settings could not be read
+     */
+    public String getDefaultIngestPipeline(final String index) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().get("/" + index + "/_settings/index.default_pipeline").execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                final Map<String, Object> content = response.getContent(OpenSearchCurl.jsonParser());
+                for (final Object value : content.values()) {
+                    if (value instanceof final Map<?, ?> indexMap && indexMap.get("settings") instanceof final Map<?, ?> settings
+                            && settings.get("index") instanceof final Map<?, ?> indexSettings
+                            && indexSettings.get("default_pipeline") instanceof final String pipeline) {
+                        return pipeline;
+                    }
+                }
+                return null;
+            }
+            logger.warn("Failed to get the default ingest pipeline of {}: {}", index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to get the default ingest pipeline of {}", index, e);
+        }
+        return null;
+    }
+
+    /**
+     * Sets the default ingest pipeline of an index.
+     *
+     * @param index the index or alias name
+     * @param name the pipeline name, or null to remove the default ingest pipeline
+     * @return true if the index setting was updated
+     */
+    public boolean setDefaultIngestPipeline(final String index, final String name) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper()
+                .put("/" + index + "/_settings")
+                .body("{\"index.default_pipeline\":" + (name != null ? "\"" + name + "\"" : "null") + "}")
+                .execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return true;
+            }
+            logger.warn("Failed to set the default ingest pipeline of {}: {}", index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to set the default ingest pipeline of {}", index, e);
+        }
+        return false;
+    }
+
+    /**
+     * Creates or updates a search pipeline.
+     *
+     * @param name the pipeline name
+     * @param pipeline the pipeline definition in JSON
+     * @return true if the pipeline was created or updated
+     */
+    public boolean putSearchPipeline(final String name, final String pipeline) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().put("/_search/pipeline/" + name).body(pipeline).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                logger.info("Provisioned search pipeline: {}", name);
+                return true;
+            }
+            logger.warn("Failed to put search pipeline:{}: {}", name, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to put search pipeline:{}", name, e);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the default search pipeline of an index.
+     * For an alias, the setting of the first index is returned.
+     *
+     * @param index the index or alias name
+     * @return the pipeline name, or null if it is not set or the settings could not be read
+     */
+    public String getDefaultSearchPipeline(final String index) {
+        try (CurlResponse response =
+                ComponentUtil.getCurlHelper().get("/" + index + "/_settings/index.search.default_pipeline").execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                final Map<String, Object> content = response.getContent(OpenSearchCurl.jsonParser());
+                for (final Object value : content.values()) {
+                    if (value instanceof final Map<?, ?> indexMap && indexMap.get("settings") instanceof final Map<?, ?> settings
+                            && settings.get("index") instanceof final Map<?, ?> indexSettings
+                            && indexSettings.get("search") instanceof final Map<?, ?> searchSettings
+                            && searchSettings.get("default_pipeline") instanceof final String pipeline) {
+                        return pipeline;
+                    }
+                }
+                return null;
+            }
+            logger.warn("Failed to get the default search pipeline of {}: {}", index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to get the default search pipeline of {}", index, e);
+        }
+        return null;
+    }
+
+    /**
+     * Sets the default search pipeline of an index.
+     *
+     * @param index the index or alias name
+     * @param name the pipeline name, or null to remove the default search pipeline
+     * @return true if the index setting was updated
+     */
+    public boolean setDefaultSearchPipeline(final String index, final String name) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper()
+                .put("/" + index + "/_settings")
+                .body("{\"index.search.default_pipeline\":" + (name != null ? "\"" + name + "\"" : "null") + "}")
+                .execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return true;
+            }
+            logger.warn("Failed to set the default search pipeline of {}: {}", index, response.getContentAsString());
+        } catch (final IOException e) {
+            logger.warn("Failed to set the default search pipeline of {}", index, e);
+        }
+        return false;
+    }
+}
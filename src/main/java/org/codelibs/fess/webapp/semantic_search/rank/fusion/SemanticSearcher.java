@@ -16,14 +16,20 @@
 package org.codelibs.fess.webapp.semantic_search.rank.fusion;
 
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_CHUNK_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_MODEL_ID;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.CONTENT_NESTED_FIELD;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.HYBRID_ENABLED;
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.PERFORMANCE_MONITORING_ENABLED;
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.SINGLE_FLIGHT_ENABLED;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
@@ -33,18 +39,28 @@ import org.codelibs.fess.entity.FacetInfo;
 import org.codelibs.fess.entity.GeoInfo;
 import org.codelibs.fess.entity.HighlightInfo;
 import org.codelibs.fess.entity.SearchRequestParams;
+import org.codelibs.fess.entity.SearchRequestParams.SearchRequestType;
 import org.codelibs.fess.mylasta.action.FessUserBean;
 import org.codelibs.fess.mylasta.direction.FessConfig;
 import org.codelibs.fess.opensearch.client.SearchEngineClient.SearchCondition;
 import org.codelibs.fess.opensearch.client.SearchEngineClient.SearchConditionBuilder;
 import org.codelibs.fess.rank.fusion.DefaultSearcher;
+import org.codelibs.fess.rank.fusion.RankFusionProcessor;
 import org.codelibs.fess.rank.fusion.SearchResult;
 import org.codelibs.fess.util.ComponentUtil;
 import org.codelibs.fess.util.DocumentUtil;
 import org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants;
 import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper;
+import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.SemanticSearchContext;
+import org.codelibs.fess.webapp.semantic_search.index.query.HybridQueryBuilder;
+import org.codelibs.fess.webapp.semantic_search.knn.EfSearchController;
+import org.codelibs.fess.webapp.semantic_search.util.SingleFlight;
+import org.dbflute.optional.OptionalEntity;
 import org.dbflute.optional.OptionalThing;
 import org.opensearch.action.search.SearchRequestBuilder;
+import org.opensearch.action.search.SearchResponse;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.search.SearchHit;
 import org.opensearch.search.SearchHit.NestedIdentity;
 import org.opensearch.search.SearchHits;
@@ -58,6 +74,15 @@ import jakarta.annotation.PostConstruct;
 public class SemanticSearcher extends DefaultSearcher {
     private static final Logger logger = LogManager.getLogger(SemanticSearcher.class);
 
+    /** Deduplicates identical search requests in flight. */
+    protected final SingleFlight<String, OptionalEntity<SearchResponse>> singleFlight = new SingleFlight<>();
+
+    /** Whether the hybrid mode setting that differs from the registration of this searcher has been logged. */
+    protected final AtomicBoolean hybridFallbackLogged = new AtomicBoolean(false);
+
+    /** Whether this searcher replaces the default searcher of the rank fusion processor for hybrid queries. */
+    protected volatile boolean mainSearcher;
+
     /**
      * Default constructor.
      */
@@ -66,6 +91,8 @@ public class SemanticSearcher extends DefaultSearcher {
 
     /**
      * Registers this searcher with the RankFusionProcessor.
+     * With the hybrid mode, this searcher replaces the default searcher, because the hybrid query carries the lexical query.
+     * Otherwise it is added next to the default searcher and the results are merged by rank fusion.
      */
     @PostConstruct
     public void register() {
@@ -73,39 +100,43 @@ public class SemanticSearcher extends DefaultSearcher {
             logger.info("Load {}", this.getClass().getSimpleName());
         }
 
-        ComponentUtil.getRankFusionProcessor().register(this);
+        final RankFusionProcessor rankFusionProcessor = ComponentUtil.getRankFusionProcessor();
+        if (Boolean.parseBoolean(System.getProperty(HYBRID_ENABLED, "false"))) {
+            rankFusionProcessor.setSeacher(this);
+            mainSearcher = true;
+            logger.info("Replace the default searcher with {} for hybrid queries.", this.getClass().getSimpleName());
+        } else {
+            rankFusionProcessor.register(this);
+        }
     }
 
     @Override
     protected SearchResult search(final String query, final SearchRequestParams params, final OptionalThing<FessUserBean> userBean) {
         final SemanticSearchHelper semanticSearchHelper = getSemanticSearchHelper();
+        if (mainSearcher && !semanticSearchHelper.isHybridEnabled()) {
+            // this searcher replaces the default searcher, so it searches as the default searcher without the hybrid query
+            logHybridFallback();
+            return super.search(query, params, userBean);
+        }
         final boolean performanceMonitoring = "true".equals(System.getProperty(PERFORMANCE_MONITORING_ENABLED));
         final long startTime = performanceMonitoring ? System.currentTimeMillis() : 0;
 
         try {
-            final SearchRequestParams reqParams = new SearchRequestParamsWrapper(params, semanticSearchHelper.getMinScore());
-            final StringBuilder queryBuf = new StringBuilder(query.length() + 40);
-            queryBuf.append(query);
-            final Long minContentLength = semanticSearchHelper.getMinContentLength();
-            if (minContentLength != null && minContentLength.longValue() >= 0) {
-                final String contentLengthField = ComponentUtil.getFessConfig().getIndexFieldContentLength();
-                if (isSearchableField(contentLengthField)) {
-                    if (query.indexOf('"') == -1) {
-                        queryBuf.setLength(0);
-                        queryBuf.append('"').append(query).append('"');
-                    }
-                    queryBuf.append(' ').append(contentLengthField).append(":[").append(minContentLength.toString()).append(" TO *]");
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("append {} range query: {} => {}", contentLengthField, query, queryBuf);
-                    }
-                }
+            // a radial search applies the minimum score in the k-NN search itself,
+            // and sparse scores are not on the similarity scale of the minimum score
+            final Float minScore = semanticSearchHelper.getRadialMinScore() != null || semanticSearchHelper.isSparseRetrieval() ? null
+                    : semanticSearchHelper.getMinScore();
+            final SearchRequestParams reqParams = new SearchRequestParamsWrapper(params, minScore);
+            final SemanticSearchContext context = semanticSearchHelper.createContext(query, reqParams, userBean);
+            if (params.getSimilarDocHash() != null) {
+                context.setSimilarDocVector(semanticSearchHelper.getSimilarDocVector(params.getSimilarDocHash()));
             }
-            semanticSearchHelper.createContext(query, reqParams, userBean);
-            final SearchResult result = super.search(queryBuf.toString(), reqParams, userBean);
+            final SearchResult result = super.search(query, reqParams, userBean);
 
             if (performanceMonitoring) {
                 final long elapsed = System.currentTimeMillis() - startTime;
-                logger.info("[Performance] Semantic search completed: query='{}', took={}ms, hits={}", query, elapsed,
+                logger.info("[Performance] Semantic search completed: query='{}', mode={}, took={}ms, hits={}", query,
+                        mainSearcher ? "hybrid" : "fusion", elapsed,
                         result.getDocumentList().size());
             }
 
@@ -115,17 +146,241 @@ public class SemanticSearcher extends DefaultSearcher {
         }
     }
 
+    /**
+     * Sends the search request.
+     * If single-flight is enabled, concurrent identical requests share one query embedding and k-NN round trip,
+     * and each caller builds its own result from the shared response.
+     */
+    @Override
+    protected OptionalEntity<SearchResponse> sendRequest(final String query, final SearchRequestParams params,
+            final OptionalThing<FessUserBean> userBean) {
+        if (!Boolean.parseBoolean(System.getProperty(SINGLE_FLIGHT_ENABLED, "false"))) {
+            return executeRequest(query, params, userBean);
+        }
+        final String key = createRequestKey(query, params);
+        if (logger.isDebugEnabled()) {
+            logger.debug("single-flight key: {}", key);
+        }
+        return singleFlight.execute(key, () -> executeRequest(query, params, userBean));
+    }
+
+    /**
+     * Executes the search request.
+     * If the ef_search controller is enabled, ef_search of the request is chosen by the controller
+     * and the search latency is reported back to it. The latency is the took time of the whole request,
+     * which includes the lexical query of a hybrid search, aggregations and the fetch phase,
+     * or the elapsed time if there is no response.
+     *
+     * @param query the search query
+     * @param params the search request parameters
+     * @param userBean the optional user bean
+     * @return the search response
+     */
+    protected OptionalEntity<SearchResponse> executeRequest(final String query, final SearchRequestParams params,
+            final OptionalThing<FessUserBean> userBean) {
+        final SemanticSearchHelper semanticSearchHelper = getSemanticSearchHelper();
+        final EfSearchController efSearchController = semanticSearchHelper.getEfSearchController();
+        final SemanticSearchContext context = semanticSearchHelper.getContext();
+        if (efSearchController == null || context == null) {
+            return super.sendRequest(query, params, userBean);
+        }
+
+        context.setEfSearch(efSearchController.acquire());
+        final long startTime = System.currentTimeMillis();
+        long latency = -1;
+        try {
+            final OptionalEntity<SearchResponse> response = super.sendRequest(query, params, userBean);
+            if (response.isPresent()) {
+                latency = response.get().getTook().millis();
+            }
+            return response;
+        } finally {
+            if (latency < 0) {
+                latency = System.currentTimeMillis() - startTime;
+            }
+            efSearchController.release(latency);
+        }
+    }
+
+    /**
+     * Creates a key identifying the search request for single-flight deduplication.
+     * The key consists of the query, the model, the result window and the effective filters and permissions.
+     *
+     * @param query the search query
+     * @param params the search request parameters
+     * @return the request key
+     */
+    protected String createRequestKey(final String query, final SearchRequestParams params) {
+        final StringBuilder buf = new StringBuilder(200);
+        buf.append("q=").append(query);
+        buf.append("\nmodel=").append(System.getProperty(CONTENT_MODEL_ID));
+        buf.append("\ntype=").append(params.getType());
+        buf.append("\nstart=").append(params.getStartPosition());
+        buf.append("\nsize=").append(params.getPageSize());
+        buf.append("\nmin_score=").append(params.getMinScore());
+        buf.append("\nsort=").append(params.getSort());
+        buf.append("\nsimilar=").append(params.getSimilarDocHash());
+        buf.append("\nfields=");
+        appendParamMap(buf, params.getFields());
+        buf.append("\nconditions=");
+        appendParamMap(buf, params.getConditions());
+        buf.append("\nlanguages=").append(Arrays.toString(params.getLanguages()));
+        buf.append("\nextra=").append(Arrays.toString(params.getExtraQueries()));
+        buf.append("\nresponse_fields=").append(Arrays.toString(params.getResponseFields()));
+        buf.append("\npermissions=").append(getPermissionKey(params));
+        return buf.toString();
+    }
+
+    /**
+     * Gets a key representing the roles and the virtual host applied to the search request.
+     *
+     * @param params the search request parameters
+     * @return the permission key
+     */
+    protected String getPermissionKey(final SearchRequestParams params) {
+        final TreeSet<String> roles = new TreeSet<>(ComponentUtil.getRoleQueryHelper().build(params.getType()));
+        return roles + "@" + ComponentUtil.getVirtualHostHelper().getVirtualHostKey();
+    }
+
+    private static void appendParamMap(final StringBuilder buf, final Map<String, String[]> map) {
+        if (map == null) {
+            buf.append("null");
+            return;
+        }
+        buf.append('{');
+        new TreeMap<>(map).forEach((key, values) -> buf.append(key).append('=').append(Arrays.toString(values)).append(';'));
+        buf.append('}');
+    }
+
+    /**
+     * Gets the single-flight deduplicator of search requests.
+     *
+     * @return the single-flight instance
+     */
+    public SingleFlight<String, OptionalEntity<SearchResponse>> getSingleFlight() {
+        return singleFlight;
+    }
+
     @Override
     protected SearchCondition<SearchRequestBuilder> createSearchCondition(final String query, final SearchRequestParams params,
             final OptionalThing<FessUserBean> userBean) {
+        final SemanticSearchHelper semanticSearchHelper = getSemanticSearchHelper();
+        final SemanticSearchContext context = semanticSearchHelper.getContext();
+        if (context == null) {
+            return super.createSearchCondition(query, params, userBean);
+        }
+        final boolean hybrid = isHybridSearch(context);
+        // the vector of the source document replaces the MinHash filter of similar documents
+        final boolean similarVector = context != null && context.getSimilarDocVector() != null;
         final String chunkField = System.getProperty(CONTENT_CHUNK_FIELD); // ex. content_chunk
+        final SearchCondition<SearchRequestBuilder> condition;
+        if (StringUtil.isBlank(chunkField) && (hybrid || !similarVector)) {
+            // min_score does not apply to normalized hybrid scores
+            condition = super.createSearchCondition(query, hybrid ? new SearchRequestParamsWrapper(params, null) : params, userBean);
+        } else {
+            condition = createChunkSearchCondition(query, params, userBean, chunkField, hybrid, similarVector);
+        }
+        if (hybrid) {
+            return searchRequestBuilder -> {
+                // the lexical sub-query is built as in the default searcher
+                final boolean built = semanticSearchHelper.withoutContext(() -> condition.build(searchRequestBuilder));
+                if (built) {
+                    final QueryBuilder lexicalQuery = filterByContentLength(searchRequestBuilder.request().source().query());
+                    final OptionalThing<QueryBuilder> neuralQuery = semanticSearchHelper.newHybridNeuralQueryBuilder();
+                    final String searchPipeline = semanticSearchHelper.getHybridPipeline();
+                    if (neuralQuery.isPresent() && searchPipeline != null) {
+                        searchRequestBuilder.setQuery(new HybridQueryBuilder.Builder().add(lexicalQuery).add(neuralQuery.get()).build());
+                        // only hybrid queries run through the normalization pipeline
+                        searchRequestBuilder.request().pipeline(searchPipeline);
+                    } else {
+                        searchRequestBuilder.setQuery(lexicalQuery);
+                    }
+                }
+                return built;
+            };
+        }
+        return searchRequestBuilder -> {
+            final boolean built = condition.build(searchRequestBuilder);
+            if (built) {
+                semanticSearchHelper.removeAggregatedDuplicates(searchRequestBuilder.request().source().query());
+                if (similarVector && context.getAggregatedQuery() == null) {
+                    // the query has no default field clause to carry the vector
+                    searchRequestBuilder.setQuery(QueryBuilders.boolQuery()
+                            .must(searchRequestBuilder.request().source().query())
+                            .must(semanticSearchHelper.newNeuralQueryBuilder(query).get()));
+                }
+                searchRequestBuilder.setQuery(filterByContentLength(searchRequestBuilder.request().source().query()));
+            }
+            return built;
+        };
+    }
+
+    /**
+     * Checks whether the search is sent as a hybrid query.
+     * The hybrid query carries the lexical query itself, so it is sent only if this searcher replaced the default searcher.
+     * Otherwise, the lexical search would cost a second round trip and its scores would be counted twice, once in the
+     * hybrid query and once by the rank fusion with the default searcher.
+     *
+     * @param context the semantic search context, or null
+     * @return true if the hybrid query is sent
+     */
+    protected boolean isHybridSearch(final SemanticSearchContext context) {
+        if (context == null || !getSemanticSearchHelper().isHybridEnabled()) {
+            return false;
+        }
+        if (!mainSearcher) {
+            logHybridFallback();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Logs once that the hybrid mode setting differs from the registration of this searcher,
+     * which is decided when Fess starts.
+     */
+    protected void logHybridFallback() {
+        if (hybridFallbackLogged.compareAndSet(false, true)) {
+            if (mainSearcher) {
+                logger.warn("Searches are sent without the semantic query because the hybrid mode is disabled or its search pipeline"
+                        + " is not provisioned. Restart Fess to restore the rank fusion with the default searcher.");
+            } else {
+                logger.warn("Semantic searches are sent without the hybrid query because the rank fusion processor runs the default"
+                        + " searcher. Restart Fess to replace the default searcher for the hybrid mode.");
+            }
+        }
+    }
+
+    /**
+     * Checks whether this searcher replaces the default searcher for hybrid queries.
+     *
+     * @return true if this searcher is the only searcher of the rank fusion processor
+     */
+    public boolean isMainSearcher() {
+        return mainSearcher;
+    }
+
+    /**
+     * Creates the search condition of a search returning the chunk field, or of a similar document search with vectors.
+     *
+     * @param query the search query
+     * @param params the search request parameters
+     * @param userBean the optional user bean
+     * @param chunkField the chunk field added to the response fields, or blank
+     * @param hybrid true if the search is sent as a hybrid query
+     * @param similarVector true if the vector of the source document replaces the MinHash filter
+     * @return the search condition
+     */
+    protected SearchCondition<SearchRequestBuilder> createChunkSearchCondition(final String query, final SearchRequestParams params,
+            final OptionalThing<FessUserBean> userBean, final String chunkField, final boolean hybrid, final boolean similarVector) {
+        final String[] responseFields;
         if (StringUtil.isBlank(chunkField)) {
-            return super.createSearchCondition(query, params, userBean);
+            responseFields = params.getResponseFields();
+        } else {
+            responseFields = Stream.concat(Arrays.stream(params.getResponseFields()), Stream.of(chunkField)).toArray(String[]::new);
         }
-        final String[] responseFields =
-                Stream.concat(Arrays.stream(params.getResponseFields()), Stream.of(chunkField)).toArray(String[]::new);
         if (logger.isDebugEnabled()) {
-            logger.debug("responseFields={}", Arrays.toString(responseFields));
+            logger.debug("responseFields={}, hybrid={}, similarVector={}", Arrays.toString(responseFields), hybrid, similarVector);
         }
         return searchRequestBuilder -> {
             ComponentUtil.getQueryHelper().processSearchPreference(searchRequestBuilder, userBean, query);
@@ -136,15 +391,40 @@ public class SemanticSearcher extends DefaultSearcher {
                     .facetInfo(params.getFacetInfo())
                     .geoInfo(params.getGeoInfo())
                     .highlightInfo(params.getHighlightInfo())
-                    .similarDocHash(params.getSimilarDocHash())
+                    // the lexical sub-query of a hybrid query keeps the MinHash filter
+                    .similarDocHash(similarVector && !hybrid ? null : params.getSimilarDocHash())
                     .responseFields(responseFields)
                     .searchRequestType(params.getType())
                     .trackTotalHits(params.getTrackTotalHits())
-                    .minScore(params.getMinScore())
+                    // min_score does not apply to normalized hybrid scores
+                    .minScore(hybrid ? null : params.getMinScore())
                     .build();
         };
     }
 
+    /**
+     * Restricts the query to documents of at least the minimum content length.
+     * The k-NN pre-filter only restricts the vector clauses, so lexical clauses of the query need this filter too.
+     * It is not applied unless the content length field is a search field.
+     *
+     * @param query the query
+     * @return the filtered query, or the query itself if no minimum content length applies
+     */
+    protected QueryBuilder filterByContentLength(final QueryBuilder query) {
+        final Long minContentLength = getSemanticSearchHelper().getMinContentLength();
+        if (query == null || minContentLength == null || minContentLength.longValue() < 0) {
+            return query;
+        }
+        final String contentLengthField = ComponentUtil.getFessConfig().getIndexFieldContentLength();
+        if (!isSearchableField(contentLengthField)) {
+            return query;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("append {} range filter: {}", contentLengthField, minContentLength);
+        }
+        return QueryBuilders.boolQuery().must(query).filter(QueryBuilders.rangeQuery(contentLengthField).gte(minContentLength));
+    }
+
     @Override
     protected Map<String, Object> parseSearchHit(final FessConfig fessConfig, final String hlPrefix, final SearchHit searchHit) {
         final Map<String, Object> docMap = super.parseSearchHit(fessConfig, hlPrefix, searchHit);
@@ -192,17 +472,13 @@ public class SemanticSearcher extends DefaultSearcher {
 
     /**
      * Checks if a field is searchable according to the query field configuration.
+     * The search field matcher of the helper is shared, so that it is compiled once per field configuration.
      *
      * @param field the field name to check
      * @return true if the field is searchable, false otherwise
      */
     protected boolean isSearchableField(final String field) {
-        for (final String f : ComponentUtil.getQueryFieldConfig().getSearchFields()) {
-            if (field.equals(f)) {
-                return true;
-            }
-        }
-        return false;
+        return getSemanticSearchHelper().getSearchFieldMatcher().contains(field);
     }
 
     /**
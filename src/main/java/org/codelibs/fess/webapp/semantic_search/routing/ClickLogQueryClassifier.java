@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Naive Bayes query classifier trained from clicked search results.
+ * A click on a document whose URL contains all terms of the query is a lexical match, and other clicks are semantic matches.
+ * The classifier learns the term types, the term count and the terms of the queries,
+ * and uses the fallback classifier until enough samples are trained.
+ * Training is not thread-safe; a classifier should be trained before it is shared.
+ */
+public class ClickLogQueryClassifier implements QueryClassifier {
+    private static final Logger logger = LogManager.getLogger(ClickLogQueryClassifier.class);
+
+    /** The classifier used until enough samples are trained. */
+    protected final QueryClassifier fallback;
+
+    /** The number of samples required before the trained model is used. */
+    protected final int minSamples;
+
+    /** The feature counts per route. */
+    protected final Map<String, long[]> featureCounts = new HashMap<>();
+
+    /** The sample counts per route. */
+    protected final long[] sampleCounts = new long[Route.values().length];
+
+    /** The feature occurrence counts per route. */
+    protected final long[] featureTotals = new long[Route.values().length];
+
+    /**
+     * Constructs a classifier.
+     *
+     * @param fallback the classifier used until enough samples are trained
+     * @param minSamples the number of samples required before the trained model is used
+     */
+    public ClickLogQueryClassifier(final QueryClassifier fallback, final int minSamples) {
+        this.fallback = fallback;
+        this.minSamples = Math.max(1, minSamples);
+    }
+
+    /**
+     * Trains the classifier with a clicked search result.
+     *
+     * @param query the query text
+     * @param url the URL of the clicked document
+     */
+    public void train(final String query, final String url) {
+        train(query, label(query, url));
+    }
+
+    /**
+     * Trains the classifier with a labeled query.
+     *
+     * @param query the query text
+     * @param route the route of the query
+     */
+    public void train(final String query, final Route route) {
+        final List<String> features = getFeatures(query);
+        if (features.isEmpty()) {
+            return;
+        }
+        final int index = route.ordinal();
+        sampleCounts[index]++;
+        for (final String feature : features) {
+            featureCounts.computeIfAbsent(feature, f -> new long[sampleCounts.length])[index]++;
+            featureTotals[index]++;
+        }
+    }
+
+    @Override
+    public Route classify(final String query) {
+        final long samples = getSampleCount();
+        if (samples < minSamples) {
+            return fallback.classify(query);
+        }
+        final List<String> features = getFeatures(query);
+        if (features.isEmpty()) {
+            return fallback.classify(query);
+        }
+        final int vocabularySize = featureCounts.size();
+        Route best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (final Route route : Route.values()) {
+            final int index = route.ordinal();
+            double score = Math.log((sampleCounts[index] + 1.0) / (samples + sampleCounts.length));
+            for (final String feature : features) {
+                final long[] counts = featureCounts.get(feature);
+                final long count = counts != null ? counts[index] : 0L;
+                score += Math.log((count + 1.0) / (featureTotals[index] + vocabularySize + 1.0));
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = route;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("query={}, route={}, score={}", query, best, bestScore);
+        }
+        return best;
+    }
+
+    /**
+     * Labels a clicked search result.
+     *
+     * @param query the query text
+     * @param url the URL of the clicked document
+     * @return LEXICAL if the URL contains all terms of the query, otherwise SEMANTIC
+     */
+    public static Route label(final String query, final String url) {
+        final String[] tokens = RuleBasedQueryClassifier.tokenize(query);
+        if (tokens.length == 0 || url == null) {
+            return Route.SEMANTIC;
+        }
+        String value;
+        try {
+            value = URLDecoder.decode(url, StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException e) {
+            value = url;
+        }
+        value = value.toLowerCase(Locale.ROOT);
+        for (final String token : tokens) {
+            if (!value.contains(token.toLowerCase(Locale.ROOT))) {
+                return Route.SEMANTIC;
+            }
+        }
+        return Route.LEXICAL;
+    }
+
+    /**
+     * Gets the features of a query.
+     *
+     * @param query the query text
+     * @return the term count, the term types and the terms
+     */
+    protected List<String> getFeatures(final String query) {
+        final String[] tokens = RuleBasedQueryClassifier.tokenize(query);
+        final List<String> features = new ArrayList<>(tokens.length * 2 + 1);
+        if (tokens.length == 0) {
+            return features;
+        }
+        features.add("terms:" + Math.min(tokens.length, 4));
+        for (final String token : tokens) {
+            features.add("type:" + RuleBasedQueryClassifier.getTokenType(token));
+            features.add("term:" + token.toLowerCase(Locale.ROOT));
+        }
+        return features;
+    }
+
+    /**
+     * Gets the number of trained samples.
+     *
+     * @return the sample count
+     */
+    public long getSampleCount() {
+        long count = 0;
+        for (final long value : sampleCounts) {
+            count += value;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of trained samples of a route.
+     *
+     * @param route the route
+     * @return the sample count
+     */
+    public long getSampleCount(final Route route) {
+        return sampleCounts[route.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "ClickLogQueryClassifier [samples=" + getSampleCount() + ", lexical=" + getSampleCount(Route.LEXICAL) + ", features="
+                + featureCounts.size() + ", minSamples=" + minSamples + ", fallback=" + fallback + "]";
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+/**
+ * Classifies search queries into the search they are routed to.
+ * Keyword-style queries, such as URLs, product codes and file names, are better and cheaper to answer with a lexical search
+ * than with model inference and a k-NN search.
+ */
+public interface QueryClassifier {
+
+    /**
+     * The search a query is routed to.
+     */
+    enum Route {
+        /** Semantic search with model inference and a k-NN search. */
+        SEMANTIC,
+        /** Lexical search only. */
+        LEXICAL
+    }
+
+    /**
+     * Classifies the query.
+     *
+     * @param query the query text
+     * @return the route of the query
+     */
+    Route classify(String query);
+}
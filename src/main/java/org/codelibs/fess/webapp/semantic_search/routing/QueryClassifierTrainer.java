@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.curl.CurlResponse;
+import org.codelibs.fess.util.ComponentUtil;
+import org.codelibs.opensearch.runner.net.OpenSearchCurl;
+
+/**
+ * Trains the click log classifier with the recent clicks of the click log index
+ * and the queries of the search log index.
+ */
+public class QueryClassifierTrainer {
+    private static final Logger logger = LogManager.getLogger(QueryClassifierTrainer.class);
+
+    /** The name of the click log index. */
+    protected final String clickLogIndex;
+
+    /** The name of the search log index. */
+    protected final String searchLogIndex;
+
+    /**
+     * Constructs a trainer.
+     *
+     * @param clickLogIndex the name of the click log index
+     * @param searchLogIndex the name of the search log index
+     */
+    public QueryClassifierTrainer(final String clickLogIndex, final String searchLogIndex) {
+        this.clickLogIndex = clickLogIndex;
+        this.searchLogIndex = searchLogIndex;
+    }
+
+    /**
+     * Trains the classifier with the recent clicks and the queries they belong to.
+     * The training stops early when the calling thread is interrupted.
+     *
+     * @param classifier the classifier to train
+     * @param size the maximum number of clicks
+     */
+    public void train(final ClickLogQueryClassifier classifier, final int size) {
+        final String clickBody = "{\"size\":" + size + ",\"_source\":[\"queryId\",\"url\"],\"sort\":[{\"requestedAt\":\"desc\"}]}";
+        final List<String[]> clicks = parseClicks(searchLogIndex(clickLogIndex, clickBody));
+        if (clicks.isEmpty() || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        final StringBuilder buf = new StringBuilder();
+        buf.append("{\"size\":").append(clicks.size()).append(",\"_source\":[\"queryId\",\"searchWord\"],");
+        buf.append("\"query\":{\"terms\":{\"queryId\":[");
+        for (int i = 0; i < clicks.size(); i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append('"').append(clicks.get(i)[0].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        buf.append("]}}}");
+        final Map<String, String> queries = parseSearchWords(searchLogIndex(searchLogIndex, buf.toString()));
+        for (final String[] click : clicks) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            final String query = queries.get(click[0]);
+            if (StringUtil.isNotBlank(query)) {
+                classifier.train(query, click[1]);
+            }
+        }
+    }
+
+    /**
+     * Searches a log index.
+     *
+     * @param index the log index name
+     * @param body the search request body
+     * @return the response content, or an empty map if the search failed
+     */
+    protected Map<String, Object> searchLogIndex(final String index, final String body) {
+        try (CurlResponse response = ComponentUtil.getCurlHelper().post("/" + index + "/_search").body(body).execute()) {
+            if (response.getHttpStatusCode() == 200) {
+                return response.getContent(OpenSearchCurl.jsonParser());
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to search {}: {}", index, response.getContentAsString());
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to search {}", index, e);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Parses the hits of the click log index into pairs of the query ID and the clicked URL.
+     *
+     * @param content the response content
+     * @return the pairs of the query ID and the URL
+     */
+    protected List<String[]> parseClicks(final Map<String, Object> content) {
+        final List<String[]> clicks = new ArrayList<>();
+        for (final Map<?, ?> source : getSources(content)) {
+            if (source.get("queryId") instanceof final String queryId && source.get("url") instanceof final String url
+                    && StringUtil.isNotBlank(queryId)) {
+                clicks.add(new String[] { queryId, url });
+            }
+        }
+        return clicks;
+    }
+
+    /**
+     * Parses the hits of the search log index into the search words by query ID.
+     *
+     * @param content the response content
+     * @return the search words by query ID
+     */
+    protected Map<String, String> parseSearchWords(final Map<String, Object> content) {
+        final Map<String, String> searchWords = new HashMap<>();
+        for (final Map<?, ?> source : getSources(content)) {
+            if (source.get("queryId") instanceof final String queryId && source.get("searchWord") instanceof final String searchWord) {
+                searchWords.put(queryId, searchWord);
+            }
+        }
+        return searchWords;
+    }
+
+    private List<Map<?, ?>> getSources(final Map<String, Object> content) {
+        final List<Map<?, ?>> sources = new ArrayList<>();
+        if (content.get("hits") instanceof final Map<?, ?> hits && hits.get("hits") instanceof final List<?> hitList) {
+            for (final Object hit : hitList) {
+                if (hit instanceof final Map<?, ?> hitMap && hitMap.get("_source") instanceof final Map<?, ?> source) {
+                    sources.add(source);
+                }
+            }
+        }
+        return sources;
+    }
+}
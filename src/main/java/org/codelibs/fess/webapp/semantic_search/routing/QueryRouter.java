@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+
+/**
+ * Routes queries with a query classifier and counts the queries routed to each search.
+ */
+public class QueryRouter {
+    private static final Logger logger = LogManager.getLogger(QueryRouter.class);
+
+    /** The number of routed queries between reports of the routed fractions. */
+    protected static final long REPORT_INTERVAL = 1000L;
+
+    /** The classifier of queries. */
+    protected volatile QueryClassifier classifier;
+
+    /** The number of queries routed to the semantic search. */
+    protected final AtomicLong semanticCount = new AtomicLong();
+
+    /** The number of queries routed to the lexical search. */
+    protected final AtomicLong lexicalCount = new AtomicLong();
+
+    /**
+     * Constructs a router.
+     *
+     * @param classifier the classifier of queries
+     */
+    public QueryRouter(final QueryClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Routes the query and counts it.
+     *
+     * @param query the query text
+     * @return the route of the query
+     */
+    public Route route(final String query) {
+        final Route route = classifier.classify(query);
+        if (route == Route.LEXICAL) {
+            lexicalCount.incrementAndGet();
+        } else {
+            semanticCount.incrementAndGet();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("query={}, route={}", query, route);
+        }
+        if ((getSemanticCount() + getLexicalCount()) % REPORT_INTERVAL == 0 && logger.isInfoEnabled()) {
+            logger.info("Routed queries: {}", this);
+        }
+        return route;
+    }
+
+    /**
+     * Gets the classifier of queries.
+     *
+     * @return the classifier
+     */
+    public QueryClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Replaces the classifier of queries, for example with a newly trained one.
+     *
+     * @param classifier the classifier
+     */
+    public void setClassifier(final QueryClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Gets the number of queries routed to the semantic search.
+     *
+     * @return the semantic count
+     */
+    public long getSemanticCount() {
+        return semanticCount.get();
+    }
+
+    /**
+     * Gets the number of queries routed to the lexical search.
+     *
+     * @return the lexical count
+     */
+    public long getLexicalCount() {
+        return lexicalCount.get();
+    }
+
+    /**
+     * Gets the fraction of queries routed to the lexical search.
+     *
+     * @return the lexical fraction, or 0 if no query is routed
+     */
+    public double getLexicalRatio() {
+        final long lexical = lexicalCount.get();
+        final long total = lexical + semanticCount.get();
+        return total == 0 ? 0.0 : (double) lexical / total;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryRouter [semantic=" + getSemanticCount() + ", lexical=" + getLexicalCount() + ", lexicalRatio="
+                + String.format(Locale.ROOT, "%.3f", getLexicalRatio()) + ", classifier=" + classifier + "]";
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import java.util.regex.Pattern;
+
+import org.codelibs.core.lang.StringUtil;
+
+/**
+ * Routes queries to the lexical search when all of their terms look like keywords.
+ * URLs, e-mail addresses, file names and paths, product codes and numbers are keywords,
+ * and queries with fewer terms than the configured minimum are routed to the lexical search.
+ */
+public class RuleBasedQueryClassifier implements QueryClassifier {
+
+    /** Token type of URLs. */
+    public static final String URL = "url";
+
+    /** Token type of e-mail addresses. */
+    public static final String EMAIL = "email";
+
+    /** Token type of file names and paths. */
+    public static final String PATH = "path";
+
+    /** Token type of product codes and identifiers mixing letters and digits. */
+    public static final String CODE = "code";
+
+    /** Token type of numbers. */
+    public static final String NUMBER = "number";
+
+    /** Token type of words. */
+    public static final String WORD = "word";
+
+    private static final Pattern URL_PATTERN = Pattern.compile("^([a-z][a-z0-9+.-]*://|www\\.)\\S+", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private static final Pattern PATH_PATTERN =
+            Pattern.compile("^(\\S*[/\\\\]\\S*|[^./\\\\]+\\.[a-z][a-z0-9]{0,4})$", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^[0-9][0-9.,:/-]*$");
+
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    /** The minimum number of terms of a semantic query. */
+    protected final int minTerms;
+
+    /**
+     * Constructs a classifier routing single-term keywords to the lexical search.
+     */
+    public RuleBasedQueryClassifier() {
+        this(1);
+    }
+
+    /**
+     * Constructs a classifier.
+     *
+     * @param minTerms the minimum number of terms of a semantic query
+     */
+    public RuleBasedQueryClassifier(final int minTerms) {
+        this.minTerms = Math.max(1, minTerms);
+    }
+
+    @Override
+    public Route classify(final String query) {
+        final String[] tokens = tokenize(query);
+        if (tokens.length == 0 || tokens.length < minTerms) {
+            return Route.LEXICAL;
+        }
+        for (final String token : tokens) {
+            if (WORD.equals(getTokenType(token))) {
+                return Route.SEMANTIC;
+            }
+        }
+        return Route.LEXICAL;
+    }
+
+    /**
+     * Splits the query into terms, removing quotes.
+     *
+     * @param query the query text
+     * @return the terms
+     */
+    public static String[] tokenize(final String query) {
+        if (StringUtil.isBlank(query)) {
+            return new String[0];
+        }
+        final String value = query.replace('"', ' ').trim();
+        if (value.isEmpty()) {
+            return new String[0];
+        }
+        return WHITESPACE_PATTERN.split(value);
+    }
+
+    /**
+     * Gets the type of a term.
+     *
+     * @param token the term
+     * @return the token type
+     */
+    public static String getTokenType(final String token) {
+        if (URL_PATTERN.matcher(token).find()) {
+            return URL;
+        }
+        if (EMAIL_PATTERN.matcher(token).matches()) {
+            return EMAIL;
+        }
+        if (NUMBER_PATTERN.matcher(token).matches()) {
+            return NUMBER;
+        }
+        if (PATH_PATTERN.matcher(token).matches()) {
+            return PATH;
+        }
+        boolean hasLetter = false;
+        boolean hasDigit = false;
+        for (int i = 0; i < token.length(); i++) {
+            final char c = token.charAt(i);
+            if (Character.isDigit(c)) {
+                hasDigit = true;
+            } else if (Character.isLetter(c)) {
+                hasLetter = true;
+            }
+        }
+        if (hasLetter && hasDigit) {
+            return CODE;
+        }
+        return WORD;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleBasedQueryClassifier [minTerms=" + minTerms + "]";
+    }
+}
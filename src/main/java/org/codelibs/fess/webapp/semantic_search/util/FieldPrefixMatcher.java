@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matcher of field names and field prefixes, such as "title:", in query strings.
+ * It is compiled once from the field names, and matching ASCII field names does not allocate objects:
+ * the fields are indexed by their last character, and only the fields ending with the character
+ * before each colon are compared with the query.
+ * This class is immutable and thread-safe.
+ */
+public class FieldPrefixMatcher {
+
+    private static final int ASCII_SIZE = 128;
+
+    private final String[] fields;
+
+    private final Set<String> fieldSet;
+
+    private final String[][] asciiIndex = new String[ASCII_SIZE][];
+
+    private final Map<Character, String[]> otherIndex = new HashMap<>();
+
+    private final boolean hasEmptyField;
+
+    /**
+     * Compiles a matcher of the fields.
+     *
+     * @param fields the field names
+     */
+    public FieldPrefixMatcher(final String[] fields) {
+        this.fields = fields;
+        fieldSet = new HashSet<>();
+        boolean empty = false;
+        final Map<Character, List<String>> index = new HashMap<>();
+        if (fields != null) {
+            for (final String field : fields) {
+                if (field == null || !fieldSet.add(field)) {
+                    continue;
+                }
+                if (field.isEmpty()) {
+                    empty = true;
+                } else {
+                    index.computeIfAbsent(field.charAt(field.length() - 1), c -> new ArrayList<>()).add(field);
+                }
+            }
+        }
+        hasEmptyField = empty;
+        index.forEach((c, list) -> {
+            final String[] values = list.toArray(new String[list.size()]);
+            if (c < ASCII_SIZE) {
+                asciiIndex[c] = values;
+            } else {
+                otherIndex.put(c, values);
+            }
+        });
+    }
+
+    /**
+     * Checks if the field is one of the fields.
+     *
+     * @param field the field name
+     * @return true if the field matches
+     */
+    public boolean contains(final String field) {
+        return field != null && fieldSet.contains(field);
+    }
+
+    /**
+     * Checks if the query contains one of the fields followed by a colon.
+     * This is equivalent to checking query.indexOf(field + ":") for all fields.
+     *
+     * @param query the query string
+     * @return true if a field prefix is found
+     */
+    public boolean hasFieldPrefix(final String query) {
+        if (query == null) {
+            return false;
+        }
+        int pos = query.indexOf(':');
+        if (pos != -1 && hasEmptyField) {
+            return true;
+        }
+        while (pos != -1) {
+            if (pos > 0) {
+                final char c = query.charAt(pos - 1);
+                final String[] candidates = c < ASCII_SIZE ? asciiIndex[c] : otherIndex.get(c);
+                if (candidates != null) {
+                    for (final String field : candidates) {
+                        final int start = pos - field.length();
+                        if (start >= 0 && query.regionMatches(start, field, 0, field.length())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            pos = query.indexOf(':', pos + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Checks if this matcher is compiled from the field array, so that it is recompiled when the array is replaced.
+     *
+     * @param fields the field names
+     * @return true if the array is the one this matcher is compiled from
+     */
+    public boolean isCompiledFrom(final String[] fields) {
+        return this.fields == fields;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldPrefixMatcher [fields=" + fieldSet.size() + "]";
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to non-negative int values.
+ * It avoids boxing so that large indexes are kept with a small heap footprint.
+ * This class is not thread-safe.
+ */
+public class LongIntHashIndex {
+
+    /** The value returned for absent keys. */
+    public static final int NOT_FOUND = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private static final int SLOT_SIZE = Long.BYTES + Integer.BYTES;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    private int mask;
+
+    /**
+     * Constructs an index with the expected number of entries.
+     *
+     * @param expectedSize the expected number of entries
+     */
+    public LongIntHashIndex(final int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @param key the key
+     * @param value the non-negative value
+     * @return the previous value, or {@link #NOT_FOUND}
+     */
+    public int put(final long key, final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative: " + value);
+        }
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        int slot = slot(key);
+        while (values[slot] != NOT_FOUND) {
+            if (keys[slot] == key) {
+                final int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gets the value associated with the key.
+     *
+     * @param key the key
+     * @return the value, or {@link #NOT_FOUND} if the key is absent
+     */
+    public int get(final long key) {
+        int slot = slot(key);
+        while (values[slot] != NOT_FOUND) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Removes the key.
+     *
+     * @param key the key
+     * @return the removed value, or {@link #NOT_FOUND} if the key is absent
+     */
+    public int remove(final long key) {
+        int slot = slot(key);
+        while (values[slot] != NOT_FOUND) {
+            if (keys[slot] == key) {
+                final int previous = values[slot];
+                // shift back following entries of the probe sequence into the gap
+                int gap = slot;
+                int next = (gap + 1) & mask;
+                while (values[next] != NOT_FOUND) {
+                    final int ideal = slot(keys[next]);
+                    if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                        keys[gap] = keys[next];
+                        values[gap] = values[next];
+                        gap = next;
+                    }
+                    next = (next + 1) & mask;
+                }
+                values[gap] = NOT_FOUND;
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the memory size in bytes of the hash table.
+     *
+     * @return the memory size
+     */
+    public long getMemoryUsage() {
+        return (long) keys.length * SLOT_SIZE;
+    }
+
+    /**
+     * Gets the memory size in bytes of the hash table once it holds the given number of entries.
+     *
+     * @param expectedSize the number of entries
+     * @return the memory size
+     */
+    public static long getMemoryUsage(final int expectedSize) {
+        return (long) tableSize(expectedSize) * SLOT_SIZE;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(values, NOT_FOUND);
+        size = 0;
+    }
+
+    private int slot(final long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    private void rehash(final int newCapacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(newCapacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NOT_FOUND) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NOT_FOUND);
+        mask = capacity - 1;
+    }
+
+    private static int tableSize(final int expectedSize) {
+        final long required = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        return (int) Math.min(1L << 30, Long.highestOneBit(required - 1) << 1);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent executions with the same key.
+ * The first caller runs the execution and the callers arriving while it is in flight share its result.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    /** In-flight executions by key. */
+    protected final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /** The number of executions. */
+    protected final AtomicLong executionCount = new AtomicLong();
+
+    /** The number of calls which shared an in-flight execution. */
+    protected final AtomicLong collapsedCount = new AtomicLong();
+
+    /**
+     * Default constructor.
+     */
+    public SingleFlight() {
+    }
+
+    /**
+     * Runs the supplier, or waits for the in-flight execution with the same key and returns its result.
+     * An exception thrown by the supplier is rethrown to all callers sharing the execution.
+     *
+     * @param key the key identifying the execution
+     * @param supplier the execution
+     * @return the result
+     */
+    public V execute(final K key, final Supplier<V> supplier) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsedCount.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof final RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+        }
+
+        executionCount.incrementAndGet();
+        try {
+            final V value = supplier.get();
+            future.complete(value);
+            return value;
+        } catch (final RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Gets the number of executions.
+     *
+     * @return the execution count
+     */
+    public long getExecutionCount() {
+        return executionCount.get();
+    }
+
+    /**
+     * Gets the number of calls which shared an in-flight execution instead of running their own.
+     *
+     * @return the collapsed count
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.get();
+    }
+
+    /**
+     * Gets the number of executions currently in flight.
+     *
+     * @return the in-flight count
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight [executions=" + getExecutionCount() + ", collapsed=" + getCollapsedCount() + ", inFlight="
+                + getInFlightCount() + "]";
+    }
+}
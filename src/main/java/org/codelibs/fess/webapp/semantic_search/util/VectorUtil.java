@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.List;
+
+/**
+ * Utility methods for embedding vectors.
+ */
+public final class VectorUtil {
+
+    /** The tolerance of the L2 norm of a unit-length vector. */
+    public static final double UNIT_LENGTH_TOLERANCE = 1e-3;
+
+    private VectorUtil() {
+    }
+
+    /**
+     * Computes the L2 norm of the vector.
+     *
+     * @param vector the vector
+     * @return the L2 norm
+     */
+    public static double norm(final float[] vector) {
+        double sum = 0.0;
+        for (final float value : vector) {
+            sum += (double) value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Scales the vector to unit length in place.
+     * A zero vector is left unchanged.
+     *
+     * @param vector the vector
+     * @return the given vector
+     */
+    public static float[] normalize(final float[] vector) {
+        final double norm = norm(vector);
+        if (norm > 0.0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) (vector[i] / norm);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Checks whether the vector has unit length within {@link #UNIT_LENGTH_TOLERANCE}.
+     *
+     * @param vector the vector
+     * @return true if the vector is normalized
+     */
+    public static boolean isNormalized(final float[] vector) {
+        return Math.abs(norm(vector) - 1.0) <= UNIT_LENGTH_TOLERANCE;
+    }
+
+    /**
+     * Computes the element-wise mean of the vectors.
+     * Vectors whose length differs from the first vector are skipped.
+     *
+     * @param vectors the vectors
+     * @return the mean vector, or null if there is no vector
+     */
+    public static float[] mean(final List<float[]> vectors) {
+        if (vectors.isEmpty()) {
+            return null;
+        }
+        final double[] sum = new double[vectors.get(0).length];
+        int count = 0;
+        for (final float[] vector : vectors) {
+            if (vector.length == sum.length) {
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += vector[i];
+                }
+                count++;
+            }
+        }
+        final float[] mean = new float[sum.length];
+        for (int i = 0; i < mean.length; i++) {
+            mean[i] = (float) (sum[i] / count);
+        }
+        return mean;
+    }
+
+    /**
+     * Quantizes the vector to one bit per dimension and packs the bits into bytes.
+     * A bit is set for a positive value, and the bits are packed from the most significant bit of each byte.
+     * The Hamming distance of the packed bits approximates the angle between the vectors.
+     *
+     * @param vector the vector whose length is a multiple of 8
+     * @return the packed bits as signed byte values
+     * @throws IllegalArgumentException if the length of the vector is not a multiple of 8
+     */
+    public static float[] binarize(final float[] vector) {
+        if (vector.length % Byte.SIZE != 0) {
+            throw new IllegalArgumentException("The vector length " + vector.length + " is not a multiple of 8.");
+        }
+        final float[] bits = new float[vector.length / Byte.SIZE];
+        for (int i = 0; i < bits.length; i++) {
+            int value = 0;
+            for (int j = 0; j < Byte.SIZE; j++) {
+                value <<= 1;
+                if (vector[i * Byte.SIZE + j] > 0.0f) {
+                    value |= 1;
+                }
+            }
+            bits[i] = (byte) value;
+        }
+        return bits;
+    }
+}
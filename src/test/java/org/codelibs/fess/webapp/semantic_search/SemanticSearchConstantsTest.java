@@ -85,6 +85,210 @@ public class SemanticSearchConstantsTest extends TestCase {
         assertEquals("fess.semantic_search.performance.monitoring.enabled", SemanticSearchConstants.PERFORMANCE_MONITORING_ENABLED);
     }
 
+    /**
+     * Test query embedding cache constant values
+     */
+    public void test_queryCacheConstants() throws Exception {
+        assertEquals("fess.semantic_search.query_cache.enabled", SemanticSearchConstants.QUERY_CACHE_ENABLED);
+        assertEquals("fess.semantic_search.query_cache.max_memory", SemanticSearchConstants.QUERY_CACHE_MAX_MEMORY);
+        assertEquals("fess.semantic_search.query_cache.expire", SemanticSearchConstants.QUERY_CACHE_EXPIRE);
+        assertEquals("fess.semantic_search.query_cache.type", SemanticSearchConstants.QUERY_CACHE_TYPE);
+    }
+
+    /**
+     * Test query vector store constants
+     */
+    public void test_queryVectorStoreConstants() throws Exception {
+        assertEquals("fess.semantic_search.query_vector_store.path", SemanticSearchConstants.QUERY_VECTOR_STORE_PATH);
+        assertEquals("fess.semantic_search.query_vector_store.max_entries", SemanticSearchConstants.QUERY_VECTOR_STORE_MAX_ENTRIES);
+    }
+
+    /**
+     * Test query warm-up constants
+     */
+    public void test_queryWarmupConstants() throws Exception {
+        assertEquals("fess.semantic_search.query_warmup.enabled", SemanticSearchConstants.QUERY_WARMUP_ENABLED);
+        assertEquals("fess.semantic_search.query_warmup.size", SemanticSearchConstants.QUERY_WARMUP_SIZE);
+        assertEquals("fess.semantic_search.query_warmup.batch_size", SemanticSearchConstants.QUERY_WARMUP_BATCH_SIZE);
+        assertEquals("fess.semantic_search.query_warmup.concurrency", SemanticSearchConstants.QUERY_WARMUP_CONCURRENCY);
+        assertEquals("fess.semantic_search.query_warmup.timeout", SemanticSearchConstants.QUERY_WARMUP_TIMEOUT);
+        assertEquals("fess.semantic_search.query_warmup.ready_file", SemanticSearchConstants.QUERY_WARMUP_READY_FILE);
+    }
+
+    /**
+     * Test single-flight constant
+     */
+    public void test_singleFlightConstant() throws Exception {
+        assertEquals("fess.semantic_search.single_flight.enabled", SemanticSearchConstants.SINGLE_FLIGHT_ENABLED);
+    }
+
+    /**
+     * Test k-NN result window constants
+     */
+    public void test_resultWindowConstants() throws Exception {
+        assertEquals("fess.semantic_search.knn.max_k", SemanticSearchConstants.KNN_MAX_K);
+        assertEquals("fess.semantic_search.result_window_cache.enabled", SemanticSearchConstants.RESULT_WINDOW_CACHE_ENABLED);
+        assertEquals("fess.semantic_search.result_window_cache.window_size", SemanticSearchConstants.RESULT_WINDOW_CACHE_WINDOW_SIZE);
+        assertEquals("fess.semantic_search.result_window_cache.max_size", SemanticSearchConstants.RESULT_WINDOW_CACHE_MAX_SIZE);
+        assertEquals("fess.semantic_search.result_window_cache.expire", SemanticSearchConstants.RESULT_WINDOW_CACHE_EXPIRE);
+    }
+
+    /**
+     * Test ef_search controller constants
+     */
+    public void test_efSearchControllerConstants() throws Exception {
+        assertEquals("fess.semantic_search.ef_search_controller.enabled", SemanticSearchConstants.EF_SEARCH_CONTROLLER_ENABLED);
+        assertEquals("fess.semantic_search.ef_search_controller.min", SemanticSearchConstants.EF_SEARCH_CONTROLLER_MIN);
+        assertEquals("fess.semantic_search.ef_search_controller.max", SemanticSearchConstants.EF_SEARCH_CONTROLLER_MAX);
+        assertEquals("fess.semantic_search.ef_search_controller.target_search_latency",
+                SemanticSearchConstants.EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY);
+        assertEquals("fess.semantic_search.ef_search_controller.max_concurrency",
+                SemanticSearchConstants.EF_SEARCH_CONTROLLER_MAX_CONCURRENCY);
+        assertEquals("fess.semantic_search.ef_search_controller.window_size", SemanticSearchConstants.EF_SEARCH_CONTROLLER_WINDOW_SIZE);
+    }
+
+    /**
+     * Test hybrid query constants
+     */
+    public void test_hybridConstants() throws Exception {
+        assertEquals("fess.semantic_search.hybrid.enabled", SemanticSearchConstants.HYBRID_ENABLED);
+        assertEquals("fess.semantic_search.hybrid.pipeline", SemanticSearchConstants.HYBRID_PIPELINE);
+        assertEquals("fess.semantic_search.hybrid.normalization", SemanticSearchConstants.HYBRID_NORMALIZATION);
+        assertEquals("fess.semantic_search.hybrid.combination", SemanticSearchConstants.HYBRID_COMBINATION);
+        assertEquals("fess.semantic_search.hybrid.weights", SemanticSearchConstants.HYBRID_WEIGHTS);
+    }
+
+    /**
+     * Test radial search constant
+     */
+    public void test_radialSearchConstant() throws Exception {
+        assertEquals("fess.semantic_search.radial_search.enabled", SemanticSearchConstants.RADIAL_SEARCH_ENABLED);
+    }
+
+    /**
+     * Test vector field constants
+     */
+    public void test_vectorFieldConstants() throws Exception {
+        assertEquals("fess.semantic_search.content.k", SemanticSearchConstants.CONTENT_K);
+        assertEquals("fess.semantic_search.vector_fields", SemanticSearchConstants.VECTOR_FIELDS);
+        assertEquals("fess.semantic_search.vector_field.", SemanticSearchConstants.VECTOR_FIELD_PREFIX);
+    }
+
+    /**
+     * Test query routing constants
+     */
+    public void test_queryRoutingConstants() throws Exception {
+        assertEquals("fess.semantic_search.query_routing.enabled", SemanticSearchConstants.QUERY_ROUTING_ENABLED);
+        assertEquals("fess.semantic_search.query_routing.classifier", SemanticSearchConstants.QUERY_ROUTING_CLASSIFIER);
+        assertEquals("fess.semantic_search.query_routing.min_terms", SemanticSearchConstants.QUERY_ROUTING_MIN_TERMS);
+        assertEquals("fess.semantic_search.query_routing.min_samples", SemanticSearchConstants.QUERY_ROUTING_MIN_SAMPLES);
+        assertEquals("fess.semantic_search.query_routing.training_size", SemanticSearchConstants.QUERY_ROUTING_TRAINING_SIZE);
+    }
+
+    /**
+     * Test query aggregation constant
+     */
+    public void test_queryAggregationConstant() throws Exception {
+        assertEquals("fess.semantic_search.query_aggregation.enabled", SemanticSearchConstants.QUERY_AGGREGATION_ENABLED);
+    }
+
+    /**
+     * Test exact search constants
+     */
+    public void test_exactSearchConstants() throws Exception {
+        assertEquals("fess.semantic_search.exact_search.enabled", SemanticSearchConstants.EXACT_SEARCH_ENABLED);
+        assertEquals("fess.semantic_search.exact_search.threshold", SemanticSearchConstants.EXACT_SEARCH_THRESHOLD);
+        assertEquals("fess.semantic_search.exact_search.count_cache.max_size", SemanticSearchConstants.EXACT_SEARCH_COUNT_CACHE_MAX_SIZE);
+        assertEquals("fess.semantic_search.exact_search.count_cache.expire", SemanticSearchConstants.EXACT_SEARCH_COUNT_CACHE_EXPIRE);
+    }
+
+    /**
+     * Test vector compression and rescore constants
+     */
+    public void test_rescoreConstants() throws Exception {
+        assertEquals("fess.semantic_search.content.mode", SemanticSearchConstants.CONTENT_MODE);
+        assertEquals("fess.semantic_search.content.compression_level", SemanticSearchConstants.CONTENT_COMPRESSION_LEVEL);
+        assertEquals("fess.semantic_search.rescore.enabled", SemanticSearchConstants.RESCORE_ENABLED);
+        assertEquals("fess.semantic_search.rescore.oversample_factor", SemanticSearchConstants.RESCORE_OVERSAMPLE_FACTOR);
+    }
+
+    /**
+     * Test vector normalization constants
+     */
+    public void test_vectorNormalizationConstants() throws Exception {
+        assertEquals("fess.semantic_search.vector_normalization.enabled", SemanticSearchConstants.VECTOR_NORMALIZATION_ENABLED);
+        assertEquals("fess.semantic_search.vector_normalization.pipeline", SemanticSearchConstants.VECTOR_NORMALIZATION_PIPELINE);
+    }
+
+    /**
+     * Test centroid constants
+     */
+    public void test_centroidConstants() throws Exception {
+        assertEquals("fess.semantic_search.content.centroid_field", SemanticSearchConstants.CONTENT_CENTROID_FIELD);
+        assertEquals("fess.semantic_search.centroid.candidate_factor", SemanticSearchConstants.CENTROID_CANDIDATE_FACTOR);
+        assertEquals("fess.semantic_search.centroid.pipeline", SemanticSearchConstants.CENTROID_PIPELINE);
+        assertEquals("fess.semantic_search.centroid.check.expire", SemanticSearchConstants.CENTROID_CHECK_EXPIRE);
+    }
+
+    /**
+     * Test sparse retrieval constants
+     */
+    public void test_sparseConstants() throws Exception {
+        assertEquals("fess.semantic_search.retrieval.mode", SemanticSearchConstants.RETRIEVAL_MODE);
+        assertEquals("fess.semantic_search.content.sparse.field", SemanticSearchConstants.CONTENT_SPARSE_FIELD);
+        assertEquals("fess.semantic_search.content.sparse.model_id", SemanticSearchConstants.CONTENT_SPARSE_MODEL_ID);
+        assertEquals("fess.semantic_search.content.sparse.query_model_id", SemanticSearchConstants.CONTENT_SPARSE_QUERY_MODEL_ID);
+        assertEquals("fess.semantic_search.content.sparse.boost", SemanticSearchConstants.CONTENT_SPARSE_BOOST);
+        assertEquals("fess.semantic_search.sparse.pipeline", SemanticSearchConstants.SPARSE_PIPELINE);
+    }
+
+    /**
+     * Test binary vector constants
+     */
+    public void test_binaryConstants() throws Exception {
+        assertEquals("fess.semantic_search.content.binary_field", SemanticSearchConstants.CONTENT_BINARY_FIELD);
+        assertEquals("fess.semantic_search.binary.candidate_factor", SemanticSearchConstants.BINARY_CANDIDATE_FACTOR);
+        assertEquals("fess.semantic_search.binary.pipeline", SemanticSearchConstants.BINARY_PIPELINE);
+        assertEquals("fess.semantic_search.binary.flat_vector", SemanticSearchConstants.BINARY_FLAT_VECTOR);
+        assertEquals("fess.semantic_search.binary.check.expire", SemanticSearchConstants.BINARY_CHECK_EXPIRE);
+    }
+
+    /**
+     * Test similar document constants
+     */
+    public void test_similarDocConstants() throws Exception {
+        assertEquals("fess.semantic_search.similar_doc.vector.enabled", SemanticSearchConstants.SIMILAR_DOC_VECTOR_ENABLED);
+    }
+
+    /**
+     * Test per-language model constants
+     */
+    public void test_languageConstants() throws Exception {
+        assertEquals("fess.semantic_search.language_vector_fields", SemanticSearchConstants.LANGUAGE_VECTOR_FIELDS);
+        assertEquals("fess.semantic_search.language.pipeline", SemanticSearchConstants.LANGUAGE_PIPELINE);
+        assertEquals("fess.semantic_search.language.skip_content_vector", SemanticSearchConstants.LANGUAGE_SKIP_CONTENT_VECTOR);
+    }
+
+    /**
+     * Test label partition constants
+     */
+    public void test_labelConstants() throws Exception {
+        assertEquals("fess.semantic_search.label_vector_fields", SemanticSearchConstants.LABEL_VECTOR_FIELDS);
+        assertEquals("fess.semantic_search.label.pipeline", SemanticSearchConstants.LABEL_PIPELINE);
+        assertEquals("fess.semantic_search.label.partition_check.expire", SemanticSearchConstants.LABEL_PARTITION_CHECK_EXPIRE);
+    }
+
+    /**
+     * Test batch inference constants
+     */
+    public void test_batchInferenceConstants() throws Exception {
+        assertEquals("fess.semantic_search.batch_inference.enabled", SemanticSearchConstants.BATCH_INFERENCE_ENABLED);
+        assertEquals("fess.semantic_search.batch_inference.max_size", SemanticSearchConstants.BATCH_INFERENCE_MAX_SIZE);
+        assertEquals("fess.semantic_search.batch_inference.max_wait", SemanticSearchConstants.BATCH_INFERENCE_MAX_WAIT);
+        assertEquals("fess.semantic_search.batch_inference.max_concurrency", SemanticSearchConstants.BATCH_INFERENCE_MAX_CONCURRENCY);
+        assertEquals("fess.semantic_search.batch_inference.timeout", SemanticSearchConstants.BATCH_INFERENCE_TIMEOUT);
+    }
+
     /**
      * Test that all constants are public, static, and final
      */
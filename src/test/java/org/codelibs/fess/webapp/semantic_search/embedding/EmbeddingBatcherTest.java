@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class EmbeddingBatcherTest extends TestCase {
+
+    private static List<float[]> lengthEmbeddings(final List<String> texts) {
+        final List<float[]> embeddings = new ArrayList<>();
+        for (final String text : texts) {
+            embeddings.add(new float[] { text.length() });
+        }
+        return embeddings;
+    }
+
+    /**
+     * Test a single request is processed after the wait window
+     */
+    public void test_singleRequest() throws Exception {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> lengthEmbeddings(texts), 8, 5, 10000).start()) {
+            float[] embedding = batcher.embed("model", "abc");
+            assertNotNull(embedding);
+            assertEquals(3.0f, embedding[0]);
+            assertEquals(1, batcher.getRequestCount());
+            assertEquals(1, batcher.getBatchCount());
+        }
+    }
+
+    /**
+     * Test concurrent requests are coalesced into batches
+     */
+    public void test_concurrentRequests() throws Exception {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final int numThreads = 16;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> {
+            batchSizes.add(texts.size());
+            return lengthEmbeddings(texts);
+        }, 8, 200, 10000).start()) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                final String text = "q" + "x".repeat(i);
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return batcher.embed("model", text);
+                }));
+            }
+            latch.countDown();
+            for (int i = 0; i < numThreads; i++) {
+                float[] embedding = futures.get(i).get(10, TimeUnit.SECONDS);
+                assertNotNull(embedding);
+                assertEquals((float) (i + 1), embedding[0]);
+            }
+            assertEquals(numThreads, batcher.getRequestCount());
+            assertTrue(batcher.getBatchCount() < numThreads);
+            for (final Integer size : batchSizes) {
+                assertTrue(size <= 8);
+            }
+            assertTrue(batcher.getAverageBatchSize() > 1.0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test batches of a slow predictor run concurrently up to the limit while the next batch is collected
+     */
+    public void test_concurrentBatches() throws Exception {
+        assertEquals(1, runSlowBatches(1));
+        final int maxInFlight = runSlowBatches(3);
+        assertTrue("in flight: " + maxInFlight, maxInFlight > 1);
+        assertTrue("in flight: " + maxInFlight, maxInFlight <= 3);
+    }
+
+    private static int runSlowBatches(final int maxConcurrentBatches) throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final int numThreads = 12;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(300L);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return lengthEmbeddings(texts);
+        }, 2, 1, 10000, maxConcurrentBatches).start()) {
+            assertEquals(maxConcurrentBatches, batcher.getMaxConcurrentBatches());
+            final CountDownLatch latch = new CountDownLatch(1);
+            final List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                final String text = "q" + "x".repeat(i);
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return batcher.embed("model", text);
+                }));
+            }
+            latch.countDown();
+            for (int i = 0; i < numThreads; i++) {
+                float[] embedding = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertNotNull(embedding);
+                assertEquals((float) (i + 1), embedding[0]);
+            }
+            assertEquals(numThreads, batcher.getRequestCount());
+        } finally {
+            executor.shutdownNow();
+        }
+        return maxInFlight.get();
+    }
+
+    /**
+     * Test duplicate texts in a batch are predicted once
+     */
+    public void test_duplicateTexts() throws Exception {
+        final List<List<String>> requests = new CopyOnWriteArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> {
+            requests.add(texts);
+            return lengthEmbeddings(texts);
+        }, 8, 200, 10000).start()) {
+            final List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> batcher.embed("model", "same")));
+            }
+            for (final Future<float[]> future : futures) {
+                assertEquals(4.0f, future.get(10, TimeUnit.SECONDS)[0]);
+            }
+            int predicted = 0;
+            for (final List<String> texts : requests) {
+                predicted += texts.size();
+            }
+            assertTrue(predicted < 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test a failed prediction returns null
+     */
+    public void test_failedPrediction() throws Exception {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> Collections.emptyList(), 8, 1, 10000).start()) {
+            assertNull(batcher.embed("model", "abc"));
+        }
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> {
+            throw new IllegalStateException("test");
+        }, 8, 1, 10000).start()) {
+            assertNull(batcher.embed("model", "abc"));
+        }
+    }
+
+    /**
+     * Test an unstarted or closed batcher returns null without waiting
+     */
+    public void test_close() throws Exception {
+        EmbeddingBatcher batcher = new EmbeddingBatcher((modelId, texts) -> lengthEmbeddings(texts), 8, 1, 10000);
+        assertNull(batcher.embed("model", "abc"));
+        batcher.start();
+        try {
+            batcher.start();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        batcher.close();
+        long start = System.nanoTime();
+        assertNull(batcher.embed("model", "abc"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+}
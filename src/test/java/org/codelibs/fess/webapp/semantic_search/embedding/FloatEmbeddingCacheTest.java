@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import junit.framework.TestCase;
+
+public class FloatEmbeddingCacheTest extends TestCase {
+
+    /**
+     * Test put and get with hit/miss counting
+     */
+    public void test_putAndGet() throws Exception {
+        FloatEmbeddingCache cache = new FloatEmbeddingCache(1024 * 1024, 0);
+
+        assertNull(cache.get("model1", "semantic search"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        float[] embedding = { 0.1f, 0.2f, 0.3f };
+        cache.put("model1", "semantic search", embedding);
+
+        assertSame(embedding, cache.get("model1", "semantic search"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test that keys are normalized by whitespace
+     */
+    public void test_normalizedKey() throws Exception {
+        FloatEmbeddingCache cache = new FloatEmbeddingCache(1024 * 1024, 0);
+
+        float[] embedding = { 1.0f, 2.0f };
+        cache.put("model1", "  semantic   search ", embedding);
+
+        assertSame(embedding, cache.get("model1", "semantic search"));
+        assertSame(embedding, cache.get("model1", "semantic\tsearch"));
+        assertEquals(EmbeddingCache.createKey("model1", "semantic search"), EmbeddingCache.createKey("model1", " semantic  search"));
+    }
+
+    /**
+     * Test that entries are separated by model ID
+     */
+    public void test_separatedByModel() throws Exception {
+        FloatEmbeddingCache cache = new FloatEmbeddingCache(1024 * 1024, 0);
+
+        cache.put("model1", "query", new float[] { 1.0f });
+
+        assertNotNull(cache.get("model1", "query"));
+        assertNull(cache.get("model2", "query"));
+    }
+
+    /**
+     * Test that the cache is bounded by memory size
+     */
+    public void test_boundedByMemory() throws Exception {
+        int dimension = 768;
+        long entrySize = FloatEmbeddingCache.weigh(EmbeddingCache.createKey("model", "query 000"), new float[dimension]);
+        FloatEmbeddingCache cache = new FloatEmbeddingCache(entrySize * 10, 0);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("model", String.format("query %03d", i), new float[dimension]);
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getMemoryUsage() <= cache.getMaxMemory());
+        assertNotNull(cache.get("model", "query 099"));
+    }
+
+    /**
+     * Test memory usage accounting on replace and clear
+     */
+    public void test_memoryUsage() throws Exception {
+        FloatEmbeddingCache cache = new FloatEmbeddingCache(1024 * 1024, 0);
+
+        cache.put("model", "query", new float[384]);
+        long usage = cache.getMemoryUsage();
+        assertTrue(usage >= 384 * Float.BYTES);
+
+        cache.put("model", "query", new float[384]);
+        assertEquals(usage, cache.getMemoryUsage());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryUsage());
+    }
+}
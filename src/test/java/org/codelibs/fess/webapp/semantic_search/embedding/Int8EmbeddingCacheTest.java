@@ -0,0 +1,270 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.codelibs.fess.webapp.semantic_search.util.LongIntHashIndex;
+
+import junit.framework.TestCase;
+
+public class Int8EmbeddingCacheTest extends TestCase {
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * Test put and get with dequantization
+     */
+    public void test_putAndGet() throws Exception {
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(1024 * 1024, 0);
+
+        assertNull(cache.get("model", "query"));
+        assertEquals(1, cache.getMissCount());
+
+        float[] vector = { -1.0f, 0.0f, 0.5f, 1.0f };
+        cache.put("model", "query", vector);
+
+        float[] cached = cache.get("model", " query ");
+        assertNotNull(cached);
+        assertEquals(4, cached.length);
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], cached[i], 2.0f / 255);
+        }
+        assertEquals(1, cache.getHitCount());
+        assertNull(cache.get("other", "query"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test a collision of the indexed half of the digest does not return the vector of another query
+     */
+    public void test_digestCollision() throws Exception {
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(1024 * 1024, 0) {
+            @Override
+            protected long[] digest(final String modelId, final String text) {
+                return new long[] { 1L, text.hashCode() };
+            }
+        };
+        cache.put("model", "a", new float[] { 1.0f, 1.0f });
+        assertNull(cache.get("model", "b"));
+        assertEquals(1.0f, cache.get("model", "a")[0], 0.0f);
+
+        // the colliding query replaces the entry
+        cache.put("model", "b", new float[] { 2.0f, 2.0f });
+        assertEquals(2.0f, cache.get("model", "b")[0], 0.0f);
+        assertNull(cache.get("model", "a"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test constant vectors are restored exactly
+     */
+    public void test_constantVector() throws Exception {
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(1024 * 1024, 0);
+        cache.put("model", "query", new float[] { 0.25f, 0.25f, 0.25f });
+        assertTrue(Arrays.equals(new float[] { 0.25f, 0.25f, 0.25f }, cache.get("model", "query")));
+    }
+
+    /**
+     * Test vectors with a different dimension than the first vector of their model are ignored
+     */
+    public void test_dimensionMismatch() throws Exception {
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(1024 * 1024, 0);
+        cache.put("model", "a", new float[] { 1.0f, 2.0f });
+        cache.put("model", "b", new float[] { 1.0f, 2.0f, 3.0f });
+        assertNotNull(cache.get("model", "a"));
+        assertNull(cache.get("model", "b"));
+    }
+
+    /**
+     * Test models with different dimensions share the memory size in their own segments
+     */
+    public void test_models() throws Exception {
+        long maxMemory = 64L * 1024;
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(maxMemory, 0);
+        Random random = new Random(5);
+        cache.put("multilingual", "query", randomVector(random, 16));
+        int capacity = cache.getCapacity();
+        assertEquals(1, cache.getSegmentCount());
+
+        cache.put("ja", "query", randomVector(random, 32));
+        assertEquals(2, cache.getSegmentCount());
+        assertEquals(32, cache.get("ja", "query").length);
+        // the segments are allocated again with half of the memory
+        assertNull(cache.get("multilingual", "query"));
+        assertTrue(cache.getCapacity() < capacity);
+
+        cache.put("multilingual", "query", randomVector(random, 16));
+        assertEquals(16, cache.get("multilingual", "query").length);
+        assertEquals(2, cache.size());
+        for (int i = 0; i < capacity; i++) {
+            cache.put("multilingual", "query " + i, randomVector(random, 16));
+            cache.put("ja", "query " + i, randomVector(random, 32));
+        }
+        assertTrue(cache.getMemoryUsage() <= maxMemory);
+        assertEquals(cache.getCapacity(), cache.size());
+    }
+
+    /**
+     * Test the first vector of an expected model keeps the warmed entries of the other models
+     */
+    public void test_expectedModels() throws Exception {
+        long maxMemory = 64L * 1024;
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(maxMemory, 0, 2);
+        assertEquals(2, cache.getModelCount());
+        Random random = new Random(6);
+        cache.put("multilingual", "query", randomVector(random, 16));
+        int capacity = cache.getCapacity();
+        assertTrue(Int8EmbeddingCache.getMemorySize(16, capacity) <= maxMemory / 2);
+        for (int i = 1; i < capacity; i++) {
+            cache.put("multilingual", "query " + i, randomVector(random, 16));
+        }
+        assertEquals(capacity, cache.size());
+
+        cache.put("ja", "query", randomVector(random, 32));
+        assertEquals(2, cache.getSegmentCount());
+        assertEquals(16, cache.get("multilingual", "query").length);
+        assertEquals(32, cache.get("ja", "query").length);
+        assertEquals(capacity + 1, cache.size());
+        for (int i = 0; i < capacity; i++) {
+            cache.put("ja", "query " + i, randomVector(random, 32));
+        }
+        assertTrue(cache.getMemoryUsage() <= maxMemory);
+
+        // an unexpected model splits the memory again
+        cache.put("en", "query", randomVector(random, 16));
+        assertEquals(3, cache.getSegmentCount());
+        assertNull(cache.get("multilingual", "query"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test the cache is bounded and evicts with CLOCK, keeping referenced entries
+     */
+    public void test_eviction() throws Exception {
+        int dimension = 8;
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(
+                (dimension + Int8EmbeddingCache.ENTRY_OVERHEAD) * 10L + LongIntHashIndex.getMemoryUsage(10), 0);
+        Random random = new Random(1);
+        cache.put("model", "hot", randomVector(random, dimension));
+        for (int i = 0; i < 9; i++) {
+            cache.put("model", "query " + i, randomVector(random, dimension));
+        }
+        assertEquals(10, cache.getCapacity());
+
+        for (int i = 9; i < 30; i++) {
+            assertNotNull(cache.get("model", "hot"));
+            cache.put("model", "query " + i, randomVector(random, dimension));
+        }
+
+        assertEquals(10, cache.size());
+        assertTrue(cache.getMemoryUsage() <= cache.getMaxMemory());
+        assertNotNull(cache.get("model", "hot"));
+        assertNotNull(cache.get("model", "query 29"));
+        assertNull(cache.get("model", "query 0"));
+    }
+
+    /**
+     * Test the key index is included in the memory size
+     */
+    public void test_memoryBound() throws Exception {
+        int dimension = 16;
+        long maxMemory = 64L * 1024;
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(maxMemory, 0);
+        Random random = new Random(4);
+        cache.put("model", "query", randomVector(random, dimension));
+        int capacity = cache.getCapacity();
+        assertTrue(Int8EmbeddingCache.getMemorySize(dimension, capacity) <= maxMemory);
+        assertTrue(Int8EmbeddingCache.getMemorySize(dimension, capacity + 1) > maxMemory);
+        assertTrue(capacity < maxMemory / (dimension + Int8EmbeddingCache.ENTRY_OVERHEAD));
+
+        for (int i = 0; i < capacity * 2; i++) {
+            cache.put("model", "query " + i, randomVector(random, dimension));
+            assertTrue(cache.getMemoryUsage() <= maxMemory);
+        }
+        assertEquals(capacity, cache.size());
+    }
+
+    /**
+     * Test memory saved and quantization statistics
+     */
+    public void test_statistics() throws Exception {
+        int dimension = 768;
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(64L * 1024 * 1024, 0);
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            cache.put("model", "query " + i, randomVector(random, dimension));
+        }
+
+        assertEquals(100L * dimension * 3, cache.getMemorySaved());
+        assertTrue(cache.getMemoryUsage() < 100L * dimension * Float.BYTES);
+        assertTrue(cache.getAverageCosineSimilarity() > 0.999);
+        assertTrue(cache.getMinCosineSimilarity() > 0.99);
+        assertEquals(2, cache.quantizedCount.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("model", "query 0"));
+    }
+
+    /**
+     * Test nearest neighbors of dequantized queries mostly match those of the original queries
+     */
+    public void test_recall() throws Exception {
+        int dimension = 384;
+        int numDocs = 2000;
+        int k = 10;
+        Random random = new Random(3);
+        float[][] docs = new float[numDocs][];
+        for (int i = 0; i < numDocs; i++) {
+            docs[i] = randomVector(random, dimension);
+        }
+
+        Int8EmbeddingCache cache = new Int8EmbeddingCache(64L * 1024 * 1024, 0);
+        int matched = 0;
+        int numQueries = 20;
+        for (int q = 0; q < numQueries; q++) {
+            float[] query = randomVector(random, dimension);
+            cache.put("model", "query " + q, query);
+            Set<Integer> expected = topK(docs, query, k);
+            Set<Integer> actual = topK(docs, cache.get("model", "query " + q), k);
+            actual.retainAll(expected);
+            matched += actual.size();
+        }
+        double recall = (double) matched / (numQueries * k);
+        assertTrue("recall=" + recall, recall >= 0.95);
+    }
+
+    private static Set<Integer> topK(float[][] docs, float[] query, int k) {
+        Integer[] ids = new Integer[docs.length];
+        double[] scores = new double[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            ids[i] = i;
+            scores[i] = Int8EmbeddingCache.cosineSimilarity(docs[i], query);
+        }
+        Arrays.sort(ids, (a, b) -> Double.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(ids).subList(0, k));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import junit.framework.TestCase;
+
+public class QueryVectorStoreTest extends TestCase {
+
+    private Path path;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        path = File.createTempFile("query_vectors", ".bin").toPath();
+        Files.delete(path);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(path);
+        super.tearDown();
+    }
+
+    /**
+     * Test put and get
+     */
+    public void test_putAndGet() throws Exception {
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 3, 10)) {
+            assertNull(store.get("semantic search"));
+            assertTrue(store.put("semantic search", new float[] { 0.1f, 0.2f, 0.3f }));
+            assertFalse(store.put("semantic  search", new float[] { 0.4f, 0.5f, 0.6f }));
+            assertFalse(store.put("wrong dimension", new float[] { 0.1f }));
+
+            float[] vector = store.get(" semantic search ");
+            assertNotNull(vector);
+            assertEquals(0.1f, vector[0]);
+            assertEquals(0.3f, vector[2]);
+
+            FloatBuffer view = store.getBuffer("semantic search");
+            assertEquals(3, view.remaining());
+            assertEquals(0.2f, view.get(1));
+            assertTrue(view.isReadOnly());
+            assertEquals(1, store.size());
+        }
+    }
+
+    /**
+     * Test stored vectors survive reopening
+     */
+    public void test_reopen() throws Exception {
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 2, 100)) {
+            for (int i = 0; i < 50; i++) {
+                store.put("query " + i, new float[] { i, -i });
+            }
+        }
+
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 2, 100)) {
+            assertEquals(50, store.size());
+            for (int i = 0; i < 50; i++) {
+                float[] vector = store.get("query " + i);
+                assertNotNull(vector);
+                assertEquals((float) i, vector[0]);
+                assertEquals((float) -i, vector[1]);
+            }
+        }
+    }
+
+    /**
+     * Test the store is invalidated when the model or the dimension changes
+     */
+    public void test_invalidation() throws Exception {
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 2, 10)) {
+            store.put("query", new float[] { 1.0f, 2.0f });
+        }
+
+        try (QueryVectorStore store = new QueryVectorStore(path, "model2", 2, 10)) {
+            assertEquals(0, store.size());
+            assertNull(store.get("query"));
+            store.put("query", new float[] { 3.0f, 4.0f });
+        }
+
+        try (QueryVectorStore store = new QueryVectorStore(path, "model2", 4, 10)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    /**
+     * Test the file is mapped for the stored records, not for the maximum number of entries
+     */
+    public void test_growth() throws Exception {
+        final int dimension = 384;
+        final long recordSize = Long.BYTES * 2 + dimension * Float.BYTES;
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", dimension, 100000)) {
+            assertTrue(Files.size(path) < recordSize * 2000);
+            for (int i = 0; i < 3000; i++) {
+                assertTrue(store.put("query " + i, new float[dimension]));
+            }
+            assertTrue(Files.size(path) >= recordSize * 3000);
+            assertTrue(Files.size(path) < recordSize * 100000);
+        }
+
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", dimension, 100000)) {
+            assertEquals(3000, store.size());
+            assertNotNull(store.get("query 2999"));
+            assertTrue(store.put("query 3000", new float[dimension]));
+        }
+    }
+
+    /**
+     * Test a collision of the indexed half of the digest does not return the vector of another query
+     */
+    public void test_digestCollision() throws Exception {
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 1, 10) {
+            @Override
+            protected long[] digest(final String text) {
+                return new long[] { 1L, text.hashCode() };
+            }
+        }) {
+            assertTrue(store.put("a", new float[] { 1.0f }));
+            assertNull(store.get("b"));
+            assertFalse(store.put("b", new float[] { 2.0f }));
+            assertEquals(1.0f, store.get("a")[0]);
+        }
+    }
+
+    /**
+     * Test the store does not grow beyond the maximum number of entries
+     */
+    public void test_full() throws Exception {
+        try (QueryVectorStore store = new QueryVectorStore(path, "model1", 1, 2)) {
+            assertTrue(store.put("a", new float[] { 1.0f }));
+            assertTrue(store.put("b", new float[] { 2.0f }));
+            assertFalse(store.put("c", new float[] { 3.0f }));
+            assertEquals(2, store.size());
+            assertNull(store.get("c"));
+        }
+    }
+}
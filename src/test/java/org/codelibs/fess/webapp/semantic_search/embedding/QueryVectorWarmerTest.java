@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.embedding;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import junit.framework.TestCase;
+
+public class QueryVectorWarmerTest extends TestCase {
+
+    private static List<String> queries(int size) {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            queries.add("query " + i);
+        }
+        return queries;
+    }
+
+    /**
+     * Test all queries are embedded in batches and the ready file is created
+     */
+    public void test_warm() throws Exception {
+        Path dir = Files.createTempDirectory("warmer");
+        Path readyFile = dir.resolve("ready");
+        List<String> embedded = new CopyOnWriteArrayList<>();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (QueryVectorWarmer warmer = new QueryVectorWarmer(() -> queries(25), texts -> {
+            batchSizes.add(texts.size());
+            embedded.addAll(texts);
+        }, 10, 2, 10000, readyFile)) {
+            assertEquals(QueryVectorWarmer.Status.NOT_STARTED, warmer.getStatus());
+            assertFalse(warmer.isReady());
+
+            warmer.start();
+            warmer.await(10000);
+
+            assertEquals(QueryVectorWarmer.Status.WARM, warmer.getStatus());
+            assertTrue(warmer.isReady());
+            assertEquals(25, warmer.getTotalCount());
+            assertEquals(25, warmer.getCompletedCount());
+            assertEquals(25, embedded.size());
+            assertEquals(3, batchSizes.size());
+            assertTrue(Files.exists(readyFile));
+            assertEquals("WARM", new String(Files.readAllBytes(readyFile), StandardCharsets.UTF_8));
+        }
+        assertFalse(Files.exists(readyFile));
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Test the warm-up stops when the time budget is exhausted
+     */
+    public void test_timeout() throws Exception {
+        try (QueryVectorWarmer warmer = new QueryVectorWarmer(() -> queries(100), texts -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 1, 300, null)) {
+            warmer.start();
+            warmer.await(10000);
+
+            assertEquals(QueryVectorWarmer.Status.TIMED_OUT, warmer.getStatus());
+            assertTrue(warmer.isReady());
+            assertTrue(warmer.getCompletedCount() < 100);
+        }
+    }
+
+    /**
+     * Test a failure of the query supplier
+     */
+    public void test_failed() throws Exception {
+        try (QueryVectorWarmer warmer = new QueryVectorWarmer(() -> {
+            throw new IllegalStateException("test");
+        }, texts -> {}, 1, 1, 1000, null)) {
+            warmer.start();
+            warmer.await(10000);
+
+            assertEquals(QueryVectorWarmer.Status.FAILED, warmer.getStatus());
+            assertTrue(warmer.isReady());
+        }
+    }
+
+    /**
+     * Test no queries to warm up
+     */
+    public void test_empty() throws Exception {
+        try (QueryVectorWarmer warmer = new QueryVectorWarmer(ArrayList::new, texts -> fail(), 1, 1, 1000, null)) {
+            warmer.start();
+            warmer.await(10000);
+
+            assertEquals(QueryVectorWarmer.Status.WARM, warmer.getStatus());
+        }
+    }
+}
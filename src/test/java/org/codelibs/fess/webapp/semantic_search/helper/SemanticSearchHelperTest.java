@@ -17,21 +17,62 @@ package org.codelibs.fess.webapp.semantic_search.helper;
 
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.codelibs.fess.Constants;
 import org.codelibs.fess.entity.SearchRequestParams;
 import org.codelibs.fess.entity.SearchRequestParams.SearchRequestType;
+import org.codelibs.fess.helper.DocumentHelper;
+import org.codelibs.fess.helper.QueryHelper;
 import org.codelibs.fess.helper.SystemHelper;
 import org.codelibs.fess.mylasta.action.FessUserBean;
 import org.codelibs.fess.opensearch.client.SearchEngineClient;
 import org.codelibs.fess.query.QueryFieldConfig;
 import org.codelibs.fess.query.parser.QueryParser;
 import org.codelibs.fess.util.ComponentUtil;
+import org.codelibs.fess.webapp.semantic_search.embedding.EmbeddingBatcher;
+import org.codelibs.fess.webapp.semantic_search.embedding.FloatEmbeddingCache;
+import org.codelibs.fess.webapp.semantic_search.embedding.Int8EmbeddingCache;
+import org.codelibs.fess.webapp.semantic_search.embedding.QueryVectorWarmer;
 import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.SemanticSearchContext;
+import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.VectorField;
+import org.codelibs.fess.webapp.semantic_search.index.query.KnnQueryBuilder;
+import org.codelibs.fess.webapp.semantic_search.index.query.NeuralQueryBuilder;
+import org.codelibs.fess.webapp.semantic_search.knn.EfSearchController;
+import org.codelibs.fess.webapp.semantic_search.pipeline.PipelineClient;
+import org.codelibs.fess.webapp.semantic_search.routing.ClickLogQueryClassifier;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifierTrainer;
+import org.codelibs.fess.webapp.semantic_search.routing.QueryRouter;
+import org.codelibs.fess.webapp.semantic_search.routing.RuleBasedQueryClassifier;
+import org.codelibs.fess.webapp.semantic_search.util.VectorUtil;
 import org.dbflute.optional.OptionalThing;
 import org.codelibs.fess.webapp.semantic_search.UnitWebappTestCase;
 import org.junit.jupiter.api.TestInfo;
+import org.opensearch.index.query.BoolQueryBuilder;
 import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.functionscore.ScriptScoreQueryBuilder;
 
 public class SemanticSearchHelperTest extends UnitWebappTestCase {
     private static final Logger logger = LogManager.getLogger(SemanticSearchHelperTest.class);
@@ -53,12 +94,13 @@ public class SemanticSearchHelperTest extends UnitWebappTestCase {
         // Set up required components
         setupTestComponents();
 
-        semanticSearchHelper = new SemanticSearchHelper();
+        semanticSearchHelper = new TestSemanticSearchHelper();
         ComponentUtil.register(semanticSearchHelper, "semanticSearchHelper");
     }
 
     @Override
     public void tearDown(TestInfo testInfo) throws Exception {
+        semanticSearchHelper.destroy();
         clearSemanticSearchProperties();
         ComponentUtil.setFessConfig(null);
         super.tearDown(testInfo);
@@ -132,6 +174,703 @@ public class SemanticSearchHelperTest extends UnitWebappTestCase {
         assertNotNull(result.get());
     }
 
+    /**
+     * Test two-stage retrieval with centroid vectors and exact chunk scoring
+     */
+    public void test_newNeuralQueryBuilder_centroid() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        System.setProperty(CONTENT_CENTROID_FIELD, "content_centroid");
+        System.setProperty(CENTROID_CANDIDATE_FACTOR, "5");
+        final List<float[]> embeddings = new ArrayList<>();
+        embeddings.add(new float[] { 0.6f, 0.8f });
+        semanticSearchHelper = new TestSemanticSearchHelper(embeddings);
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_centroid\""));
+            assertTrue(json, json.contains("\"k\" : 100"));
+            assertTrue(json, json.contains("\"nested\""));
+            assertTrue(json, json.contains("\"script_score\""));
+            assertTrue(json, json.contains("\"content_nested.vector\""));
+            assertTrue(json, json.contains("\"inner_hits\""));
+            assertFalse(json, json.contains("\"neural\""));
+            assertFalse(json, json.contains("\"min_score\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // ef_search widens the candidates
+        System.setProperty(CONTENT_PARAM_EF_SEARCH, "300");
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"k\" : 300"));
+            assertTrue(json, json.contains("\"ef_search\" : 300"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Without the query embedding, the nested neural query is used
+        embeddings.clear();
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"neural\""));
+            assertFalse(json, json.contains("\"content_centroid\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the nested k-NN query is used until every document with chunk vectors has a centroid vector
+     */
+    public void test_newNeuralQueryBuilder_centroidUnpopulated() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        System.setProperty(CONTENT_CENTROID_FIELD, "content_centroid");
+        final List<float[]> embeddings = new ArrayList<>();
+        embeddings.add(new float[] { 0.6f, 0.8f });
+        final long[] missing = { 5L };
+        final List<String> counts = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper(embeddings) {
+            @Override
+            protected long countDocuments(QueryBuilder filter, long threshold) {
+                counts.add(filter.toString());
+                return missing[0];
+            }
+        };
+        semanticSearchHelper.loadCentroidFieldStates();
+        assertNotNull(semanticSearchHelper.centroidFieldStates);
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"nested\""));
+            assertTrue(json, json.contains("\"neural\""));
+            assertTrue(json, json.contains("\"content_nested.vector\""));
+            assertTrue(json, json.contains("\"inner_hits\""));
+            assertFalse(json, json.contains("\"content_centroid\""));
+            assertFalse(json, json.contains("\"script_score\""));
+            assertEquals(1, counts.size());
+            assertTrue(counts.get(0), counts.get(0).contains("\"must_not\""));
+            assertTrue(counts.get(0), counts.get(0).contains("\"content_centroid\""));
+
+            // the check is cached until it expires
+            missing[0] = 0L;
+            json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertFalse(json, json.contains("\"content_centroid\""));
+            assertEquals(1, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // the centroid vectors are used once the documents are reindexed
+        semanticSearchHelper.loadCentroidFieldStates();
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_centroid\""));
+            assertTrue(json, json.contains("\"script_score\""));
+            assertEquals(2, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // no check without the centroid field
+        System.clearProperty(CONTENT_CENTROID_FIELD);
+        semanticSearchHelper.loadCentroidFieldStates();
+        assertNull(semanticSearchHelper.centroidFieldStates);
+    }
+
+    /**
+     * Test a similar document search shares one k-NN query with the vector of the source document
+     */
+    public void test_newNeuralQueryBuilder_similarDoc() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+
+        SemanticSearchContext context = semanticSearchHelper.createContext("foo bar", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setSimilarDocVector(new float[] { 0.6f, 0.8f });
+            OptionalThing<QueryBuilder> query1 = semanticSearchHelper.newNeuralQueryBuilder("foo");
+            OptionalThing<QueryBuilder> query2 = semanticSearchHelper.newNeuralQueryBuilder("bar");
+            assertSame(query1.get(), query2.get());
+            String json = query1.get().toString();
+            assertTrue(json, json.contains("\"knn\""));
+            assertTrue(json, json.replaceAll("\\s", "").contains("\"vector\":[0.6,0.8]"));
+            assertFalse(json, json.contains("\"neural\""));
+            assertFalse(json, json.contains("foo"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        context = semanticSearchHelper.createContext("foo", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setSimilarDocVector(new float[] { 0.6f, 0.8f });
+            String json = semanticSearchHelper.newNeuralQueryBuilder("foo").get().toString();
+            assertTrue(json, json.contains("\"nested\""));
+            assertTrue(json, json.contains("\"content_nested.vector\""));
+            assertTrue(json, json.contains("\"inner_hits\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the vector of the source document is the centroid or the mean of its chunk vectors
+     */
+    public void test_getSimilarDocVector() throws Exception {
+        final List<String> queries = new ArrayList<>();
+        final List<float[]> chunks = new ArrayList<>();
+        chunks.add(new float[] { 1.0f, 0.0f });
+        chunks.add(new float[] { 0.0f, 1.0f });
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected List<float[]> getIndexedVectors(String index, String query, String field, String nestedField, int size) {
+                queries.add(field + ":" + nestedField + ":" + query);
+                return "content_centroid".equals(field) ? Collections.emptyList() : chunks;
+            }
+        };
+        final DocumentHelper documentHelper = new DocumentHelper();
+        ComponentUtil.register(documentHelper, "documentHelper");
+        final String hash = documentHelper.encodeSimilarDocHash("0101");
+
+        assertNull(semanticSearchHelper.getSimilarDocVector(hash));
+
+        System.setProperty(SIMILAR_DOC_VECTOR_ENABLED, "true");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        System.setProperty(CONTENT_CENTROID_FIELD, "content_centroid");
+        float[] vector = semanticSearchHelper.getSimilarDocVector(hash);
+        assertEquals(0.5f, vector[0]);
+        assertEquals(0.5f, vector[1]);
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(0), queries.get(0).startsWith("content_centroid:null:"));
+        assertTrue(queries.get(1), queries.get(1).startsWith("vector:content_nested:"));
+        assertTrue(queries.get(1), queries.get(1).contains("\"0101\""));
+
+        semanticSearchHelper.vectorNormalization = true;
+        assertTrue(VectorUtil.isNormalized(semanticSearchHelper.getSimilarDocVector(hash)));
+
+        chunks.clear();
+        assertNull(semanticSearchHelper.getSimilarDocVector(hash));
+    }
+
+    /**
+     * Test the binary vectors find the candidates rescored with the full-precision vectors
+     */
+    public void test_newNeuralQueryBuilder_binary() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_BINARY_FIELD, "content_binary");
+        System.setProperty(BINARY_CANDIDATE_FACTOR, "10");
+        final List<float[]> embeddings = new ArrayList<>();
+        embeddings.add(new float[] { 0.5f, -0.5f, 0.5f, -0.5f, 0.0f, 0.0f, 0.0f, 0.0f });
+        semanticSearchHelper = new TestSemanticSearchHelper(embeddings);
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_binary\""));
+            assertTrue(json, json.contains("\"k\" : 200"));
+            // 10100000 packed into a signed byte
+            assertTrue(json, json.replaceAll("\\s", "").contains("\"vector\":[-96.0]"));
+            assertTrue(json, json.contains("\"script_score\""));
+            assertTrue(json, json.contains("\"field\" : \"vector\""));
+            assertFalse(json, json.contains("\"neural\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // The binary vectors of nested chunks find the candidates of their documents
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_nested.content_binary\""));
+            assertTrue(json, json.contains("\"k\" : 200"));
+            assertTrue(json, json.contains("\"score_mode\" : \"none\""));
+            assertTrue(json, json.contains("\"field\" : \"content_nested.vector\""));
+            assertTrue(json, json.contains("\"inner_hits\""));
+            assertFalse(json, json.contains("\"neural\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+        System.clearProperty(CONTENT_NESTED_FIELD);
+
+        // Without the query embedding, the neural query is used
+        embeddings.clear();
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"neural\""));
+            assertFalse(json, json.contains("\"content_binary\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the full-precision vectors are searched until every document has binary vectors
+     */
+    public void test_newNeuralQueryBuilder_binaryUnpopulated() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_BINARY_FIELD, "content_binary");
+        final List<float[]> embeddings = new ArrayList<>();
+        embeddings.add(new float[] { 0.5f, -0.5f, 0.5f, -0.5f, 0.0f, 0.0f, 0.0f, 0.0f });
+        final long[] missing = { 3L };
+        final List<String> counts = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper(embeddings) {
+            @Override
+            protected long countDocuments(QueryBuilder filter, long threshold) {
+                counts.add(filter.toString());
+                return missing[0];
+            }
+        };
+        semanticSearchHelper.loadBinaryFieldStates();
+        assertNotNull(semanticSearchHelper.binaryFieldStates);
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"neural\""));
+            assertTrue(json, json.contains("\"vector\""));
+            assertFalse(json, json.contains("\"content_binary\""));
+            assertFalse(json, json.contains("\"script_score\""));
+            assertEquals(1, counts.size());
+            assertTrue(counts.get(0), counts.get(0).contains("\"must_not\""));
+            assertTrue(counts.get(0), counts.get(0).contains("\"content_binary\""));
+
+            // the check is cached until it expires
+            missing[0] = 0L;
+            json = semanticSearchHelper.newNeuralQueryBuilder("other query").get().toString();
+            assertFalse(json, json.contains("\"content_binary\""));
+            assertEquals(1, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // the binary vectors are used once the documents are reindexed
+        semanticSearchHelper.loadBinaryFieldStates();
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_binary\""));
+            assertTrue(json, json.contains("\"script_score\""));
+            assertEquals(2, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // the chunk vectors without a graph are scored exactly
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        System.setProperty(BINARY_FLAT_VECTOR, "true");
+        missing[0] = 3L;
+        semanticSearchHelper.loadBinaryFieldStates();
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(counts.get(2), counts.get(2).contains("\"content_nested.content_binary\""));
+            assertTrue(json, json.contains("\"script_score\""));
+            assertTrue(json, json.contains("\"field\" : \"content_nested.vector\""));
+            assertTrue(json, json.contains("\"inner_hits\""));
+            assertFalse(json, json.contains("\"content_nested.content_binary\""));
+            assertFalse(json, json.contains("\"neural\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the binary and the flat vector mappings
+     */
+    public void test_createBinaryFieldMapping() throws Exception {
+        String mapping = semanticSearchHelper.createBinaryFieldMapping("content_binary", "384", "16", "100");
+        assertTrue(mapping, mapping.contains("\"data_type\": \"binary\""));
+        assertTrue(mapping, mapping.contains("\"space_type\": \"hamming\""));
+        assertTrue(mapping, mapping.contains("\"engine\": \"faiss\""));
+
+        mapping = semanticSearchHelper.createFlatVectorFieldMapping("vector", "384");
+        assertTrue(mapping, mapping.contains("\"index\": false"));
+        assertFalse(mapping, mapping.contains("\"method\""));
+        assertEquals("    \"vector\": {\n      \"type\": \"knn_vector\",\n      \"dimension\": 384,\n      \"index\": false\n    }",
+                semanticSearchHelper.toNestedPropertyMapping(mapping));
+
+        assertTrue(semanticSearchHelper.isBinaryDimension("384"));
+        assertFalse(semanticSearchHelper.isBinaryDimension("100"));
+        assertFalse(semanticSearchHelper.isBinaryDimension("abc"));
+    }
+
+    /**
+     * Test a search in one language uses the vector field of its model, and other searches fall back
+     */
+    public void test_newNeuralQueryBuilder_languageVectorFields() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(LANGUAGE_VECTOR_FIELDS, "JA:ja_vector, en:en_vector, invalid, fr:missing");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.field", "ja_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id", "ja-model");
+        System.setProperty(VECTOR_FIELD_PREFIX + "en_vector.field", "en_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "en_vector.space_type", "innerproduct");
+        try {
+            Map<String, VectorField> fields = semanticSearchHelper.parseLanguageVectorFields();
+            assertEquals(2, fields.size());
+            assertEquals("ja_vector", fields.get("ja").getField());
+            assertEquals("ja-model", fields.get("ja").getModelId());
+            assertEquals("test-model-id", fields.get("en").getModelId());
+            semanticSearchHelper.languageVectorFields = fields;
+            assertEquals("innerproduct", semanticSearchHelper.getSpaceType("en_vector"));
+
+            final String[][] languages = { { "ja" } };
+            final SearchRequestParams params = new MockSearchRequestParams() {
+                @Override
+                public String[] getLanguages() {
+                    return languages[0];
+                }
+            };
+            semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+            try {
+                String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+                assertTrue(json, json.contains("\"ja_vector\""));
+                assertTrue(json, json.contains("\"ja-model\""));
+                assertFalse(json, json.contains("\"vector\""));
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+
+            languages[0] = new String[] { "ja", "en" };
+            semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+            try {
+                String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+                assertTrue(json, json.contains("\"vector\""));
+                assertTrue(json, json.contains("\"test-model-id\""));
+                assertFalse(json, json.contains("\"ja_vector\""));
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+
+            // without the content vector of documents of the languages, the language fields are also searched
+            System.setProperty(LANGUAGE_SKIP_CONTENT_VECTOR, "true");
+            semanticSearchHelper.loadSkipLanguageContentVector();
+            assertTrue(semanticSearchHelper.skipLanguageContentVector);
+            semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+            try {
+                String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+                assertTrue(json, json.contains("\"dis_max\""));
+                assertTrue(json, json.contains("\"vector\""));
+                assertTrue(json, json.contains("\"ja_vector\""));
+                assertTrue(json, json.contains("\"en_vector\""));
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+
+            // the chunks are embedded only with the model of the content field
+            System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+            assertTrue(semanticSearchHelper.parseLanguageVectorFields().isEmpty());
+        } finally {
+            System.clearProperty(LANGUAGE_SKIP_CONTENT_VECTOR);
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.field");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "en_vector.field");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "en_vector.space_type");
+        }
+    }
+
+    /**
+     * Test a search filtered by partitioned labels searches only their partition fields
+     */
+    public void test_newNeuralQueryBuilder_labelPartitions() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(LABEL_VECTOR_FIELDS, "sales:sales_vector, hr:hr_vector, invalid, bad label:x, other:vector");
+        semanticSearchHelper = new TestSemanticSearchHelper();
+        Map<String, String> partitions = semanticSearchHelper.parseLabelVectorFields();
+        assertEquals(2, partitions.size());
+        assertEquals("sales_vector", partitions.get("sales"));
+        assertEquals("hr_vector", partitions.get("hr"));
+        semanticSearchHelper.labelVectorFields = partitions;
+
+        final Map<String, String[]> fields = new HashMap<>();
+        final SearchRequestParams params = new MockSearchRequestParams() {
+            @Override
+            public Map<String, String[]> getFields() {
+                return fields;
+            }
+        };
+
+        fields.put("label", new String[] { "sales" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            assertEquals(Arrays.asList("sales_vector"), semanticSearchHelper.getLabelPartitionFields());
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"sales_vector\""));
+            assertFalse(json, json.contains("\"vector\""));
+            assertFalse(json, json.contains("\"dis_max\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        fields.put("label", new String[] { "sales", "hr", "sales" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"dis_max\""));
+            assertTrue(json, json.contains("\"sales_vector\""));
+            assertTrue(json, json.contains("\"hr_vector\""));
+            assertFalse(json, json.contains("\"vector\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // A label without a partition falls back to the content field
+        fields.put("label", new String[] { "sales", "other" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            assertNull(semanticSearchHelper.getLabelPartitionFields());
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"vector\""));
+            assertFalse(json, json.contains("\"sales_vector\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // A partition is searched only after the documents of its label are reindexed into it
+        final Map<String, Long> missing = new HashMap<>();
+        final List<String> counts = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected long countDocuments(QueryBuilder filter, long threshold) {
+                final String query = filter.toString();
+                counts.add(query);
+                return query.contains("\"sales_vector\"") ? missing.getOrDefault("sales", 0L) : 0L;
+            }
+        };
+        semanticSearchHelper.labelVectorFields = partitions;
+        semanticSearchHelper.loadLabelPartitionStates();
+        missing.put("sales", 3L);
+        fields.put("label", new String[] { "sales" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            assertNull(semanticSearchHelper.getLabelPartitionFields());
+            assertEquals(1, counts.size());
+            assertTrue(counts.get(0), counts.get(0).contains("\"must_not\""));
+            missing.put("sales", 0L);
+            // the check is cached until it expires
+            assertNull(semanticSearchHelper.getLabelPartitionFields());
+            assertEquals(1, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+        semanticSearchHelper.loadLabelPartitionStates();
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            assertEquals(Arrays.asList("sales_vector"), semanticSearchHelper.getLabelPartitionFields());
+            assertEquals(2, counts.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Partitions are not supported with the nested vector field
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        assertTrue(semanticSearchHelper.parseLabelVectorFields().isEmpty());
+    }
+
+    /**
+     * Test label partitions are rejected with binary vectors, which are still used for searches filtered by the label
+     */
+    public void test_newNeuralQueryBuilder_labelPartitionsWithBinary() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_BINARY_FIELD, "content_binary");
+        System.setProperty(LABEL_VECTOR_FIELDS, "sales:sales_vector");
+        final List<float[]> embeddings = new ArrayList<>();
+        embeddings.add(new float[] { 0.5f, -0.5f, 0.5f, -0.5f, 0.0f, 0.0f, 0.0f, 0.0f });
+        semanticSearchHelper = new TestSemanticSearchHelper(embeddings);
+        semanticSearchHelper.labelVectorFields = semanticSearchHelper.parseLabelVectorFields();
+        assertTrue(semanticSearchHelper.labelVectorFields.isEmpty());
+
+        final Map<String, String[]> fields = new HashMap<>();
+        final SearchRequestParams params = new MockSearchRequestParams() {
+            @Override
+            public Map<String, String[]> getFields() {
+                return fields;
+            }
+        };
+        fields.put("label", new String[] { "sales" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"content_binary\""));
+            assertFalse(json, json.contains("\"sales_vector\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test label partitions are rejected with per-language models, which are still used for searches filtered by the label
+     */
+    public void test_newNeuralQueryBuilder_labelPartitionsWithLanguage() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(LANGUAGE_VECTOR_FIELDS, "ja:ja_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.field", "ja_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id", "ja-model");
+        System.setProperty(LABEL_VECTOR_FIELDS, "sales:sales_vector");
+        try {
+            semanticSearchHelper.languageVectorFields = semanticSearchHelper.parseLanguageVectorFields();
+            semanticSearchHelper.labelVectorFields = semanticSearchHelper.parseLabelVectorFields();
+            assertTrue(semanticSearchHelper.labelVectorFields.isEmpty());
+
+            final Map<String, String[]> fields = new HashMap<>();
+            final SearchRequestParams params = new MockSearchRequestParams() {
+                @Override
+                public String[] getLanguages() {
+                    return new String[] { "ja" };
+                }
+
+                @Override
+                public Map<String, String[]> getFields() {
+                    return fields;
+                }
+            };
+            fields.put("label", new String[] { "sales" });
+            semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+            try {
+                String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+                assertTrue(json, json.contains("\"ja_vector\""));
+                assertTrue(json, json.contains("\"ja-model\""));
+                assertFalse(json, json.contains("\"sales_vector\""));
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+        } finally {
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.field");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id");
+        }
+    }
+
+    /**
+     * Test the result window cache applies to the search of a single label partition
+     */
+    public void test_newNeuralQueryBuilder_labelPartitionWithResultWindow() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(RESULT_WINDOW_CACHE_ENABLED, "true");
+        System.setProperty(LABEL_VECTOR_FIELDS, "sales:sales_vector,hr:hr_vector");
+        final List<String> searchedQueries = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected String getSessionId() {
+                return "session1";
+            }
+
+            @Override
+            protected ResultWindow searchResultWindow(QueryBuilder vectorQuery, int k) {
+                searchedQueries.add(vectorQuery.toString());
+                return new ResultWindow(new String[] { "doc1", "doc2" }, new float[] { 0.9f, 0.8f }, k);
+            }
+        };
+        semanticSearchHelper.labelVectorFields = semanticSearchHelper.parseLabelVectorFields();
+        semanticSearchHelper.loadResultWindowCache();
+
+        final Map<String, String[]> fields = new HashMap<>();
+        final SearchRequestParams params = new MockSearchRequestParams() {
+            @Override
+            public int getStartPosition() {
+                return 20;
+            }
+
+            @Override
+            public Map<String, String[]> getFields() {
+                return fields;
+            }
+        };
+        fields.put("label", new String[] { "sales" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("doc1"));
+            assertEquals(1, searchedQueries.size());
+            assertTrue(searchedQueries.get(0), searchedQueries.get(0).contains("\"sales_vector\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // several partitions are combined without the result window
+        fields.put("label", new String[] { "sales", "hr" });
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"dis_max\""));
+            assertEquals(1, searchedQueries.size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the retrieval mode selects the dense query, the sparse query or both
+     */
+    public void test_newNeuralQueryBuilder_sparse() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_SPARSE_FIELD, "content_sparse");
+        System.setProperty(CONTENT_SPARSE_MODEL_ID, "sparse-model");
+
+        String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+        assertTrue(json, json.contains("\"neural\""));
+        assertFalse(json, json.contains("\"neural_sparse\""));
+        assertFalse(semanticSearchHelper.isSparseRetrieval());
+
+        semanticSearchHelper.retrievalMode = "sparse";
+        json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+        assertTrue(json, json.contains("\"neural_sparse\""));
+        assertTrue(json, json.contains("\"content_sparse\""));
+        assertTrue(json, json.contains("\"model_id\" : \"sparse-model\""));
+        assertFalse(json, json.contains("\"neural\""));
+        assertTrue(semanticSearchHelper.isSparseRetrieval());
+
+        System.setProperty(CONTENT_SPARSE_QUERY_MODEL_ID, "tokenizer-model");
+        System.setProperty(CONTENT_SPARSE_BOOST, "0.1");
+        semanticSearchHelper.retrievalMode = "both";
+        json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+        assertTrue(json, json.contains("\"bool\""));
+        assertTrue(json, json.contains("\"neural\""));
+        assertTrue(json, json.contains("\"neural_sparse\""));
+        assertTrue(json, json.contains("\"model_id\" : \"tokenizer-model\""));
+        assertTrue(json, json.contains("\"boost\" : 0.1"));
+
+        // Without the dense configuration, only the sparse query is used
+        System.clearProperty(CONTENT_MODEL_ID);
+        json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+        assertTrue(json, json.contains("\"neural_sparse\""));
+        assertFalse(json, json.contains("\"bool\""));
+
+        System.clearProperty(CONTENT_SPARSE_FIELD);
+        assertFalse(semanticSearchHelper.newNeuralQueryBuilder("test query").isPresent());
+
+        System.setProperty(RETRIEVAL_MODE, "unknown");
+        semanticSearchHelper.loadSparseRetrieval();
+        assertEquals("dense", semanticSearchHelper.retrievalMode);
+        assertNull(semanticSearchHelper.getIngestPipelineManager().getSparsePipeline());
+    }
+
+    /**
+     * Test the rank_features mapping
+     */
+    public void test_createSparseFieldMapping() throws Exception {
+        assertEquals("\"content_sparse\": {\n  \"type\": \"rank_features\"\n},",
+                semanticSearchHelper.createSparseFieldMapping("content_sparse"));
+    }
+
     /**
      * Test empty or null query text handling
      */
@@ -327,6 +1066,204 @@ public class SemanticSearchHelperTest extends UnitWebappTestCase {
         }
     }
 
+    /**
+     * Test query router configuration
+     */
+    public void test_queryRouterConfiguration() throws Exception {
+        semanticSearchHelper.loadQueryRouter();
+        assertNull(semanticSearchHelper.getQueryRouter());
+
+        System.setProperty(QUERY_ROUTING_ENABLED, "true");
+        semanticSearchHelper.loadQueryRouter();
+        QueryRouter router = semanticSearchHelper.getQueryRouter();
+        assertNotNull(router);
+        assertTrue(router.getClassifier() instanceof RuleBasedQueryClassifier);
+
+        // unchanged settings keep the router
+        semanticSearchHelper.loadQueryRouter();
+        assertSame(router, semanticSearchHelper.getQueryRouter());
+
+        System.setProperty(QUERY_ROUTING_CLASSIFIER, "org.codelibs.fess.webapp.semantic_search.routing.RuleBasedQueryClassifier");
+        semanticSearchHelper.loadQueryRouter();
+        assertFalse(router == semanticSearchHelper.getQueryRouter());
+        assertTrue(semanticSearchHelper.getQueryRouter().getClassifier() instanceof RuleBasedQueryClassifier);
+
+        System.setProperty(QUERY_ROUTING_CLASSIFIER, "invalid.Classifier");
+        semanticSearchHelper.loadQueryRouter();
+        assertTrue(semanticSearchHelper.getQueryRouter().getClassifier() instanceof RuleBasedQueryClassifier);
+
+        System.setProperty(QUERY_ROUTING_ENABLED, "false");
+        semanticSearchHelper.loadQueryRouter();
+        assertNull(semanticSearchHelper.getQueryRouter());
+    }
+
+    /**
+     * Test the training of the click log classifier is interrupted when its router is replaced
+     */
+    public void test_queryRouterConfiguration_clickLog() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final List<String> indices = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected QueryClassifierTrainer newQueryClassifierTrainer() {
+                indices.add(getLogIndex("click_log"));
+                return new QueryClassifierTrainer(getLogIndex("click_log"), getLogIndex("search_log")) {
+                    @Override
+                    public void train(ClickLogQueryClassifier classifier, int size) {
+                        started.countDown();
+                        try {
+                            released.await();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+            }
+        };
+
+        System.setProperty(QUERY_ROUTING_ENABLED, "true");
+        System.setProperty(QUERY_ROUTING_CLASSIFIER, "click_log");
+        semanticSearchHelper.loadQueryRouter();
+        assertEquals(Arrays.asList("fess_log.click_log"), indices);
+        final QueryRouter router = semanticSearchHelper.getQueryRouter();
+        Thread thread = semanticSearchHelper.queryClassifierTrainerThread;
+        assertNotNull(thread);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // a replaced router keeps the rule-based classifier
+        System.setProperty(QUERY_ROUTING_ENABLED, "false");
+        semanticSearchHelper.loadQueryRouter();
+        assertNull(semanticSearchHelper.queryClassifierTrainerThread);
+        thread.join(10000L);
+        assertFalse(thread.isAlive());
+        assertTrue(router.getClassifier() instanceof RuleBasedQueryClassifier);
+
+        System.setProperty(QUERY_ROUTING_ENABLED, "true");
+        semanticSearchHelper.loadQueryRouter();
+        thread = semanticSearchHelper.queryClassifierTrainerThread;
+        semanticSearchHelper.destroy();
+        assertNull(semanticSearchHelper.queryClassifierTrainerThread);
+        thread.join(10000L);
+        assertFalse(thread.isAlive());
+        assertTrue(semanticSearchHelper.getQueryRouter().getClassifier() instanceof RuleBasedQueryClassifier);
+    }
+
+    /**
+     * Test keyword-style queries are routed to the lexical search
+     */
+    public void test_newNeuralQueryBuilder_queryRouting() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(QUERY_ROUTING_ENABLED, "true");
+        semanticSearchHelper.loadQueryRouter();
+
+        assertFalse(semanticSearchHelper.newNeuralQueryBuilder("ABC-1234").isPresent());
+        assertTrue(semanticSearchHelper.newNeuralQueryBuilder("open source search server").isPresent());
+        assertEquals(1L, semanticSearchHelper.getQueryRouter().getLexicalCount());
+        assertEquals(1L, semanticSearchHelper.getQueryRouter().getSemanticCount());
+        assertEquals(0.5, semanticSearchHelper.getQueryRouter().getLexicalRatio());
+    }
+
+    /**
+     * Test ef_search controller configuration
+     */
+    public void test_efSearchControllerConfiguration() throws Exception {
+        semanticSearchHelper.loadEfSearchController();
+        assertNull(semanticSearchHelper.getEfSearchController());
+
+        System.setProperty(EF_SEARCH_CONTROLLER_ENABLED, "true");
+        System.setProperty(CONTENT_PARAM_EF_SEARCH, "200");
+        semanticSearchHelper.loadEfSearchController();
+        EfSearchController controller = semanticSearchHelper.getEfSearchController();
+        assertNotNull(controller);
+        assertEquals(16, controller.getMinEfSearch());
+        assertEquals(200, controller.getMaxEfSearch());
+        assertEquals(200, controller.getEfSearch());
+        assertEquals(100L, controller.getTargetLatency());
+
+        // unchanged settings keep the controller
+        semanticSearchHelper.loadEfSearchController();
+        assertSame(controller, semanticSearchHelper.getEfSearchController());
+
+        System.setProperty(EF_SEARCH_CONTROLLER_MIN, "32");
+        System.setProperty(EF_SEARCH_CONTROLLER_MAX, "400");
+        System.setProperty(EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY, "50");
+        semanticSearchHelper.loadEfSearchController();
+        controller = semanticSearchHelper.getEfSearchController();
+        assertEquals(32, controller.getMinEfSearch());
+        assertEquals(400, controller.getMaxEfSearch());
+        assertEquals(200, controller.getEfSearch());
+        assertEquals(50L, controller.getTargetLatency());
+    }
+
+    /**
+     * Test ef_search chosen for the search overrides the configured value
+     */
+    public void test_getEfSearch() throws Exception {
+        assertNull(semanticSearchHelper.getEfSearch());
+
+        System.setProperty(CONTENT_PARAM_EF_SEARCH, "150");
+        assertEquals(Integer.valueOf(150), semanticSearchHelper.getEfSearch());
+
+        SemanticSearchContext context = semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            assertEquals(Integer.valueOf(150), semanticSearchHelper.getEfSearch());
+            context.setEfSearch(64);
+            assertEquals(Integer.valueOf(64), semanticSearchHelper.getEfSearch());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(CONTENT_PARAM_EF_SEARCH, "invalid");
+        assertNull(semanticSearchHelper.getEfSearch());
+    }
+
+    /**
+     * Test the neural sub-query of a hybrid query is one vector query for the default field texts
+     */
+    public void test_newHybridNeuralQueryBuilder() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        semanticSearchHelper = new TestSemanticSearchHelper();
+        assertFalse(semanticSearchHelper.newHybridNeuralQueryBuilder().isPresent());
+
+        SemanticSearchContext context =
+                semanticSearchHelper.createContext("foo \"bar baz\" title:qux", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setDefaultFieldTexts(new LinkedHashSet<>(Arrays.asList("foo", "bar baz")));
+            QueryBuilder neuralQuery = semanticSearchHelper.newHybridNeuralQueryBuilder().get();
+            assertTrue(neuralQuery instanceof NeuralQueryBuilder);
+            assertTrue(neuralQuery.toString(), neuralQuery.toString().contains("\"foo bar baz\""));
+            assertFalse(neuralQuery.toString(), neuralQuery.toString().contains("qux"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        context = semanticSearchHelper.createContext("title:qux", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setDefaultFieldTexts(new LinkedHashSet<>());
+            assertFalse(semanticSearchHelper.newHybridNeuralQueryBuilder().isPresent());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test the context is suspended while running a function without it
+     */
+    public void test_withoutContext() throws Exception {
+        SemanticSearchContext context = semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            assertNull(semanticSearchHelper.withoutContext(() -> semanticSearchHelper.getContext()));
+            assertSame(context, semanticSearchHelper.getContext());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+        assertNull(semanticSearchHelper.withoutContext(() -> semanticSearchHelper.getContext()));
+        assertNull(semanticSearchHelper.getContext());
+    }
+
     /**
      * Test new configuration properties (v15.3.0+)
      */
@@ -361,6 +1298,1012 @@ public class SemanticSearchHelperTest extends UnitWebappTestCase {
         assertEquals("fess.semantic_search.content.space_type", CONTENT_SPACE_TYPE);
     }
 
+    /**
+     * Test query embedding cache configuration
+     */
+    public void test_queryCacheConfiguration() throws Exception {
+        semanticSearchHelper.init();
+        assertNull(semanticSearchHelper.getEmbeddingCache());
+
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        System.setProperty(QUERY_CACHE_MAX_MEMORY, "1048576");
+        semanticSearchHelper.load();
+        assertNotNull(semanticSearchHelper.getEmbeddingCache());
+
+        // Same settings keep the existing cache
+        semanticSearchHelper.getEmbeddingCache().put("model", "query", new float[] { 1.0f });
+        semanticSearchHelper.load();
+        assertEquals(1L, semanticSearchHelper.getEmbeddingCache().size());
+
+        System.setProperty(QUERY_CACHE_ENABLED, "false");
+        semanticSearchHelper.load();
+        assertNull(semanticSearchHelper.getEmbeddingCache());
+    }
+
+    /**
+     * Test int8 query embedding cache configuration
+     */
+    public void test_queryCacheType() throws Exception {
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        semanticSearchHelper.loadEmbeddingCache();
+        assertTrue(semanticSearchHelper.getEmbeddingCache() instanceof FloatEmbeddingCache);
+
+        System.setProperty(QUERY_CACHE_TYPE, "int8");
+        semanticSearchHelper.loadEmbeddingCache();
+        assertTrue(semanticSearchHelper.getEmbeddingCache() instanceof Int8EmbeddingCache);
+
+        semanticSearchHelper.getEmbeddingCache().put("model", "query", new float[] { 0.1f, 0.2f });
+        assertNotNull(semanticSearchHelper.getEmbeddingCache().get("model", "query"));
+        assertEquals(1, ((Int8EmbeddingCache) semanticSearchHelper.getEmbeddingCache()).getModelCount());
+
+        // the memory is split among the content model and the per-language models
+        System.setProperty(CONTENT_MODEL_ID, "multilingual");
+        final Map<String, VectorField> languageVectorFields = new HashMap<>();
+        languageVectorFields.put("ja", new VectorField("ja_vector") {
+            @Override
+            public String getModelId() {
+                return "ja-model";
+            }
+        });
+        semanticSearchHelper.languageVectorFields = languageVectorFields;
+        semanticSearchHelper.loadEmbeddingCache();
+        final Int8EmbeddingCache cache = (Int8EmbeddingCache) semanticSearchHelper.getEmbeddingCache();
+        assertEquals(2, cache.getModelCount());
+        cache.put("multilingual", "query", new float[] { 0.1f, 0.2f });
+        cache.put("ja-model", "query", new float[] { 0.1f, 0.2f, 0.3f });
+        assertNotNull(cache.get("multilingual", "query"));
+        assertNotNull(cache.get("ja-model", "query"));
+    }
+
+    /**
+     * Test that a cached query embedding creates a k-NN query with the vector
+     */
+    public void test_newNeuralQueryBuilder_cachedVector() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        semanticSearchHelper.loadEmbeddingCache();
+
+        semanticSearchHelper.getEmbeddingCache().put("test-model-id", "test query", new float[] { 0.1f, 0.2f });
+
+        OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test  query");
+        assertTrue(result.isPresent());
+        assertTrue(result.get() instanceof KnnQueryBuilder);
+        assertEquals(1L, semanticSearchHelper.getEmbeddingCache().getHitCount());
+    }
+
+    /**
+     * Test that a neural query is created when the embedding cannot be computed
+     */
+    public void test_newNeuralQueryBuilder_cacheMissFallback() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        semanticSearchHelper = new TestSemanticSearchHelper();
+        semanticSearchHelper.loadEmbeddingCache();
+
+        OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+        assertTrue(result.isPresent());
+        assertTrue(result.get() instanceof NeuralQueryBuilder);
+        assertEquals(1L, semanticSearchHelper.getEmbeddingCache().getMissCount());
+    }
+
+    /**
+     * Test the k-NN pre-filter built from the search context
+     */
+    public void test_buildPreFilter() throws Exception {
+        ComponentUtil.register(new QueryHelper(), "queryHelper");
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected Set<String> getRoleSet(SearchRequestType type) {
+                return Collections.singleton("Rguest");
+            }
+
+            @Override
+            protected String getVirtualHostKey() {
+                return null;
+            }
+        };
+
+        // No context
+        assertNull(semanticSearchHelper.buildPreFilter());
+
+        final Map<String, String[]> fields = new HashMap<>();
+        fields.put("label", new String[] { "news", "blog" });
+        semanticSearchHelper.minContentLength = 100L;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams() {
+            @Override
+            public Map<String, String[]> getFields() {
+                return fields;
+            }
+        }, OptionalThing.empty());
+        try {
+            QueryBuilder filter = semanticSearchHelper.buildPreFilter();
+            assertNotNull(filter);
+            String json = filter.toString();
+            assertTrue(json, json.contains("Rguest"));
+            assertTrue(json, json.contains("\"label\""));
+            assertTrue(json, json.contains("news"));
+            assertTrue(json, json.contains("blog"));
+            assertTrue(json, json.contains("content_length"));
+            assertTrue(json, json.contains("100"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test that the pre-filter is set on the neural query
+     */
+    public void test_newNeuralQueryBuilder_preFilter() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        semanticSearchHelper = new TestSemanticSearchHelper();
+        semanticSearchHelper.minContentLength = 50L;
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertTrue(result.isPresent());
+            String json = result.get().toString();
+            assertTrue(json, json.contains("\"filter\""));
+            assertTrue(json, json.contains("content_length"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Without restrictions, no filter is set
+        semanticSearchHelper.minContentLength = null;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertTrue(result.isPresent());
+            assertFalse(result.get().toString().contains("\"filter\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test selective filters are searched exactly with the k-NN scoring script
+     */
+    public void test_newNeuralQueryBuilder_exactSearch() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(EXACT_SEARCH_ENABLED, "true");
+        System.setProperty(EXACT_SEARCH_THRESHOLD, "100");
+        final AtomicLong documentCount = new AtomicLong(10);
+        final List<String> windowQueries = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected long countDocuments(QueryBuilder filter, long threshold) {
+                return documentCount.get();
+            }
+
+            @Override
+            protected ResultWindow searchResultWindow(QueryBuilder vectorQuery, int k) {
+                windowQueries.add(k + " " + vectorQuery.toString());
+                return new ResultWindow(new String[] { "doc1", "doc2" }, new float[] { 0.9f, 0.8f }, k);
+            }
+
+            @Override
+            protected List<float[]> predictTextEmbeddings(String modelId, List<String> texts) {
+                return Collections.singletonList(new float[] { 0.1f, 0.2f });
+            }
+        };
+        semanticSearchHelper.loadKnnStrategySelector();
+        assertNotNull(semanticSearchHelper.getKnnStrategySelector());
+        assertEquals(100L, semanticSearchHelper.getKnnStrategySelector().getThreshold());
+
+        semanticSearchHelper.minContentLength = 50L;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"script_score\""));
+            assertTrue(json, json.contains("\"knn_score\""));
+            assertTrue(json, json.contains("\"cosinesimil\""));
+            assertTrue(json, json.contains("content_length"));
+            assertTrue(windowQueries.isEmpty());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Filtered sets larger than k are scored in the same search without a search of the k nearest documents
+        documentCount.set(50);
+        semanticSearchHelper.minContentLength = 60L;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"knn_score\""));
+            assertFalse(json, json.contains("\"doc1\""));
+            assertTrue(windowQueries.isEmpty());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Large filtered sets use the approximate search
+        documentCount.set(1000);
+        semanticSearchHelper.minContentLength = 100L;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"neural\""));
+            assertFalse(json, json.contains("\"script_score\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        // Searches without a filter use the approximate search
+        semanticSearchHelper.minContentLength = null;
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"neural\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+        assertEquals(2L, semanticSearchHelper.getKnnStrategySelector().getExactCount());
+        assertEquals(1L, semanticSearchHelper.getKnnStrategySelector().getAnnCount());
+
+        System.setProperty(EXACT_SEARCH_ENABLED, "false");
+        semanticSearchHelper.loadKnnStrategySelector();
+        assertNull(semanticSearchHelper.getKnnStrategySelector());
+    }
+
+    /**
+     * Test that the minimum score is used as a radial search threshold
+     */
+    public void test_newNeuralQueryBuilder_radialSearch() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        semanticSearchHelper.minScore = 0.5f;
+        // disabled by default
+        assertNull(semanticSearchHelper.getRadialMinScore());
+
+        System.setProperty(RADIAL_SEARCH_ENABLED, "true");
+        System.setProperty(CONTENT_ENGINE, "nmslib");
+        assertNull(semanticSearchHelper.getRadialMinScore());
+        System.setProperty(CONTENT_ENGINE, "faiss");
+        assertEquals(Float.valueOf(0.5f), semanticSearchHelper.getRadialMinScore());
+        System.setProperty(CONTENT_ENGINE, "lucene");
+        assertEquals(Float.valueOf(0.5f), semanticSearchHelper.getRadialMinScore());
+
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertTrue(result.isPresent());
+            String json = result.get().toString();
+            assertTrue(json, json.contains("\"min_score\" : 0.5"));
+            assertFalse(json, json.contains("\"k\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(RADIAL_SEARCH_ENABLED, "false");
+        assertNull(semanticSearchHelper.getRadialMinScore());
+        System.setProperty(RADIAL_SEARCH_ENABLED, "true");
+
+        System.setProperty(CONTENT_NESTED_FIELD, "content_vector");
+        assertNull(semanticSearchHelper.getRadialMinScore());
+        System.clearProperty(CONTENT_NESTED_FIELD);
+
+        semanticSearchHelper.minScore = null;
+        assertNull(semanticSearchHelper.getRadialMinScore());
+    }
+
+    /**
+     * Test compressed vector mappings and rescoring of oversampled candidates
+     */
+    public void test_rescoreConfiguration() throws Exception {
+        String mapping = semanticSearchHelper.createVectorFieldMapping("content_vector", "384", "hnsw", "faiss", "cosinesimil", "16", "100",
+                "on_disk", "32x");
+        assertTrue(mapping, mapping.contains("\"mode\": \"on_disk\",\n"));
+        assertTrue(mapping, mapping.contains("\"compression_level\": \"32x\",\n"));
+        mapping = semanticSearchHelper.createVectorFieldMapping("content_vector", "384", "hnsw", "faiss", "cosinesimil", "16", "100", null,
+                null);
+        assertFalse(mapping, mapping.contains("\"mode\""));
+        assertFalse(mapping, mapping.contains("\"compression_level\""));
+
+        System.setProperty(RESCORE_OVERSAMPLE_FACTOR, "3.0");
+        semanticSearchHelper.init();
+        assertNull(semanticSearchHelper.getRescore());
+        assertEquals(Float.valueOf(3.0f), semanticSearchHelper.getOversampleFactor());
+
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"oversample_factor\" : 3.0"));
+            assertTrue(json, json.contains("\"k\""));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(RESCORE_ENABLED, "false");
+        System.setProperty(RESCORE_OVERSAMPLE_FACTOR, "invalid");
+        semanticSearchHelper.init();
+        assertEquals(Boolean.FALSE, semanticSearchHelper.getRescore());
+        assertNull(semanticSearchHelper.getOversampleFactor());
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("\"rescore\" : false"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test additional vector field settings
+     */
+    public void test_parseVectorFields() throws Exception {
+        assertTrue(semanticSearchHelper.parseVectorFields().isEmpty());
+
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "content_vector");
+        System.setProperty(CONTENT_DIMENSION, "384");
+        System.setProperty(VECTOR_FIELDS, "title, content,missing");
+        System.setProperty(VECTOR_FIELD_PREFIX + "title.field", "title_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "title.space_type", "innerproduct");
+        System.setProperty(VECTOR_FIELD_PREFIX + "title.k", "5");
+        System.setProperty(VECTOR_FIELD_PREFIX + "title.boost", "2.0");
+        System.setProperty(VECTOR_FIELD_PREFIX + "content.field", "content_vector");
+        try {
+            List<VectorField> fields = semanticSearchHelper.parseVectorFields();
+            assertEquals(1, fields.size());
+            VectorField title = fields.get(0);
+            assertEquals("title", title.getName());
+            assertEquals("title_vector", title.getField());
+            assertEquals("test-model-id", title.getModelId());
+            assertEquals("384", title.getDimension());
+            assertEquals("innerproduct", title.getSpaceType());
+            assertEquals("16", title.getM());
+            assertEquals(Integer.valueOf(5), title.getK());
+            assertEquals(2.0f, title.getBoost());
+
+            String mapping = semanticSearchHelper.createVectorFieldMapping(title.getField(), title.getDimension(), "hnsw", "lucene",
+                    title.getSpaceType(), title.getM(), title.getEfConstruction(), title.getMode(), title.getCompressionLevel());
+            assertTrue(mapping, mapping.startsWith("\"title_vector\": {"));
+            assertTrue(mapping, mapping.contains("\"space_type\": \"innerproduct\""));
+        } finally {
+            System.clearProperty(VECTOR_FIELD_PREFIX + "title.field");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "title.space_type");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "title.k");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "title.boost");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "content.field");
+        }
+    }
+
+    /**
+     * Test that the vector fields are combined with one shared query embedding
+     */
+    public void test_newNeuralQueryBuilder_vectorFields() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "content_vector");
+        System.setProperty(CONTENT_K, "3");
+        System.setProperty(VECTOR_FIELDS, "title");
+        System.setProperty(VECTOR_FIELD_PREFIX + "title.field", "title_vector");
+        final TestSemanticSearchHelper helper = new TestSemanticSearchHelper(Collections.singletonList(new float[] { 0.1f, 0.2f }));
+        semanticSearchHelper = helper;
+        try {
+            semanticSearchHelper.vectorFields = semanticSearchHelper.parseVectorFields();
+            assertEquals(3, semanticSearchHelper.getContentK(10));
+
+            // Without query vectors, each field runs the inference in OpenSearch
+            semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+            try {
+                String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+                assertTrue(json, json.contains("\"content_vector\""));
+                assertTrue(json, json.contains("\"title_vector\""));
+                assertTrue(json, json.contains("\"neural\""));
+                assertEquals(0, helper.getPredictRequests().size());
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+
+            // With query vectors, the embedding is computed once and shared
+            semanticSearchHelper.vectorNormalization = true;
+            semanticSearchHelper.createContext("test", new MockSearchRequestParams(), OptionalThing.empty());
+            try {
+                OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+                assertTrue(result.isPresent());
+                assertTrue(result.get() instanceof BoolQueryBuilder);
+                String json = result.get().toString();
+                assertTrue(json, json.contains("\"content_vector\""));
+                assertTrue(json, json.contains("\"title_vector\""));
+                assertFalse(json, json.contains("\"neural\""));
+                assertEquals(1, helper.getPredictRequests().size());
+            } finally {
+                semanticSearchHelper.closeContext();
+            }
+        } finally {
+            System.clearProperty(VECTOR_FIELD_PREFIX + "title.field");
+        }
+    }
+
+    /**
+     * Test default field texts are collected from the parsed query
+     */
+    public void test_collectDefaultFieldTexts() throws Exception {
+        BooleanQuery query = new BooleanQuery.Builder().add(new TermQuery(new Term(Constants.DEFAULT_FIELD, "foo")), Occur.MUST)
+                .add(new PhraseQuery(Constants.DEFAULT_FIELD, "bar", "baz"), Occur.MUST)
+                .add(new BoostQuery(new TermQuery(new Term(Constants.DEFAULT_FIELD, "qux")), 2.0f), Occur.SHOULD)
+                .add(new TermQuery(new Term(Constants.DEFAULT_FIELD, "spam")), Occur.MUST_NOT)
+                .add(new TermQuery(new Term("title", "fess")), Occur.MUST)
+                .add(new WildcardQuery(new Term(Constants.DEFAULT_FIELD, "wild*")), Occur.MUST)
+                .build();
+
+        Set<String> texts = new LinkedHashSet<>();
+        semanticSearchHelper.collectDefaultFieldTexts(query, texts);
+        assertEquals(Arrays.asList("foo", "bar baz", "qux"), new ArrayList<>(texts));
+    }
+
+    /**
+     * Test default field clauses share one neural query for the combined text
+     */
+    public void test_newNeuralQueryBuilder_aggregation() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+
+        // The aggregation is disabled by default
+        SemanticSearchContext context = semanticSearchHelper.createContext("foo qux", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setDefaultFieldTexts(new LinkedHashSet<>(Arrays.asList("foo", "qux")));
+            QueryBuilder foo = semanticSearchHelper.newNeuralQueryBuilder("foo").get();
+            assertFalse(foo.toString(), foo.toString().contains("foo qux"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(QUERY_AGGREGATION_ENABLED, "true");
+        context = semanticSearchHelper.createContext("foo \"bar baz\" qux", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setDefaultFieldTexts(new LinkedHashSet<>(Arrays.asList("foo", "bar baz", "qux")));
+            QueryBuilder foo = semanticSearchHelper.newNeuralQueryBuilder("foo").get();
+            QueryBuilder barBaz = semanticSearchHelper.newNeuralQueryBuilder("bar baz").get();
+            QueryBuilder other = semanticSearchHelper.newNeuralQueryBuilder("other").get();
+            assertSame(foo, barBaz);
+            assertTrue(foo.toString(), foo.toString().contains("foo bar baz qux"));
+            assertFalse(foo == other);
+
+            BoolQueryBuilder boolQuery = QueryBuilders.boolQuery()
+                    .must(foo)
+                    .must(barBaz)
+                    .should(foo)
+                    .must(QueryBuilders.boolQuery().should(foo).should(other).should(foo));
+            semanticSearchHelper.removeAggregatedDuplicates(boolQuery);
+            assertEquals(2, boolQuery.must().size());
+            assertEquals(0, boolQuery.should().size());
+            assertEquals(2, ((BoolQueryBuilder) boolQuery.must().get(1)).should().size());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+
+        System.setProperty(QUERY_AGGREGATION_ENABLED, "false");
+        context = semanticSearchHelper.createContext("foo qux", new MockSearchRequestParams(), OptionalThing.empty());
+        try {
+            context.setDefaultFieldTexts(new LinkedHashSet<>(Arrays.asList("foo", "qux")));
+            QueryBuilder foo = semanticSearchHelper.newNeuralQueryBuilder("foo").get();
+            assertFalse(foo.toString(), foo.toString().contains("foo qux"));
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test that k covers the start position and the page size
+     */
+    public void test_getK() throws Exception {
+        semanticSearchHelper.createContext("test", new MockSearchRequestParams() {
+            @Override
+            public int getStartPosition() {
+                return 40;
+            }
+        }, OptionalThing.empty());
+        try {
+            assertEquals(60, semanticSearchHelper.getK());
+
+            System.setProperty(KNN_MAX_K, "50");
+            assertEquals(50, semanticSearchHelper.getK());
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test result window cache configuration
+     */
+    public void test_resultWindowCacheConfiguration() throws Exception {
+        semanticSearchHelper.loadResultWindowCache();
+        assertNull(semanticSearchHelper.getResultWindowCache());
+
+        System.setProperty(RESULT_WINDOW_CACHE_ENABLED, "true");
+        semanticSearchHelper.loadResultWindowCache();
+        assertNotNull(semanticSearchHelper.getResultWindowCache());
+        assertEquals("10000:60", semanticSearchHelper.resultWindowCacheSettings);
+
+        System.setProperty(RESULT_WINDOW_CACHE_EXPIRE, "30");
+        semanticSearchHelper.loadResultWindowCache();
+        assertEquals("10000:30", semanticSearchHelper.resultWindowCacheSettings);
+    }
+
+    /**
+     * Test that the first page runs the k-NN query with the window size and later pages are served from the cached result window
+     */
+    public void test_newNeuralQueryBuilder_resultWindow() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(RESULT_WINDOW_CACHE_ENABLED, "true");
+        final List<Integer> searchedKs = new ArrayList<>();
+        final String[] sessionId = { "session1" };
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected String getSessionId() {
+                return sessionId[0];
+            }
+
+            @Override
+            protected ResultWindow searchResultWindow(QueryBuilder vectorQuery, int k) {
+                searchedKs.add(k);
+                return new ResultWindow(new String[] { "doc1", "doc2" }, new float[] { 0.9f, 0.8f }, k);
+            }
+        };
+        semanticSearchHelper.loadResultWindowCache();
+
+        final int[] start = { 0 };
+        final SearchRequestParams params = new MockSearchRequestParams() {
+            @Override
+            public int getStartPosition() {
+                return start[0];
+            }
+        };
+
+        semanticSearchHelper.createContext("test", params, OptionalThing.empty());
+        try {
+            // the first page needs no window search
+            QueryBuilder firstPage = semanticSearchHelper.newNeuralQueryBuilder("test query").get();
+            assertTrue(firstPage instanceof NeuralQueryBuilder);
+            assertTrue(firstPage.toString(), firstPage.toString().contains("\"k\" : 100"));
+            assertTrue(searchedKs.isEmpty());
+
+            // page 2 searches the window
+            start[0] = 20;
+            String json = semanticSearchHelper.newNeuralQueryBuilder("test query").get().toString();
+            assertTrue(json, json.contains("doc1"));
+            assertTrue(json, json.contains("doc2"));
+            assertEquals(Arrays.asList(100), searchedKs);
+
+            // page 3 from the cached window
+            start[0] = 40;
+            semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertEquals(Arrays.asList(100), searchedKs);
+
+            // another session
+            start[0] = 20;
+            sessionId[0] = "session2";
+            semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertEquals(Arrays.asList(100, 100), searchedKs);
+
+            // no session
+            sessionId[0] = null;
+            assertTrue(semanticSearchHelper.newNeuralQueryBuilder("test query").get() instanceof NeuralQueryBuilder);
+        } finally {
+            semanticSearchHelper.closeContext();
+        }
+    }
+
+    /**
+     * Test result window coverage
+     */
+    public void test_resultWindowCovers() throws Exception {
+        SemanticSearchHelper.ResultWindow window =
+                new SemanticSearchHelper.ResultWindow(new String[] { "a", "b" }, new float[] { 0.5f, 0.4f }, 2);
+        assertTrue(window.covers(2));
+        assertFalse(window.covers(3));
+
+        window = new SemanticSearchHelper.ResultWindow(new String[] { "a" }, new float[] { 0.5f }, 10);
+        assertTrue(window.covers(100));
+    }
+
+    /**
+     * Test the result window query selects the hits with one terms query and scores them by a script
+     */
+    public void test_resultWindowQuery() throws Exception {
+        SemanticSearchHelper.ResultWindow window =
+                new SemanticSearchHelper.ResultWindow(new String[] { "a", "b" }, new float[] { 0.5f, -0.1f }, 2);
+        QueryBuilder query = window.toQueryBuilder("doc_id");
+        assertTrue(query instanceof ScriptScoreQueryBuilder);
+        ScriptScoreQueryBuilder scriptScoreQuery = (ScriptScoreQueryBuilder) query;
+        assertEquals(QueryBuilders.termsQuery("doc_id", "a", "b"), scriptScoreQuery.query());
+        String json = query.toString();
+        assertTrue(json, json.contains("\"field\" : \"doc_id\""));
+        assertTrue(json, json.contains("\"a\" : 0.5"));
+        assertTrue(json, json.contains("\"b\" : 0.0"));
+    }
+
+    /**
+     * Test that the predicted embedding fills the cache on a miss
+     */
+    public void test_getQueryVector_fillsCache() throws Exception {
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        semanticSearchHelper = new TestSemanticSearchHelper(Collections.singletonList(new float[] { 0.5f, 0.5f }));
+        semanticSearchHelper.loadEmbeddingCache();
+
+        float[] vector = semanticSearchHelper.getQueryVector("model", "cache me");
+        assertNotNull(vector);
+        assertSame(vector, semanticSearchHelper.getQueryVector("model", "cache me"));
+        assertEquals(1L, semanticSearchHelper.getEmbeddingCache().getHitCount());
+        assertEquals(1L, semanticSearchHelper.getEmbeddingCache().getMissCount());
+    }
+
+    /**
+     * Test batch inference configuration
+     */
+    public void test_batchInferenceConfiguration() throws Exception {
+        semanticSearchHelper.init();
+        assertNull(semanticSearchHelper.getEmbeddingBatcher());
+
+        System.setProperty(BATCH_INFERENCE_ENABLED, "true");
+        System.setProperty(BATCH_INFERENCE_MAX_SIZE, "32");
+        System.setProperty(BATCH_INFERENCE_MAX_WAIT, "10");
+        semanticSearchHelper.load();
+        EmbeddingBatcher batcher = semanticSearchHelper.getEmbeddingBatcher();
+        assertNotNull(batcher);
+        assertEquals(32, batcher.getMaxBatchSize());
+        assertEquals(10L, batcher.getMaxWaitMillis());
+        assertEquals(4, batcher.getMaxConcurrentBatches());
+
+        // Same settings keep the existing batcher
+        semanticSearchHelper.load();
+        assertSame(batcher, semanticSearchHelper.getEmbeddingBatcher());
+
+        System.setProperty(BATCH_INFERENCE_MAX_CONCURRENCY, "2");
+        semanticSearchHelper.load();
+        assertNotSame(batcher, semanticSearchHelper.getEmbeddingBatcher());
+        assertEquals(2, semanticSearchHelper.getEmbeddingBatcher().getMaxConcurrentBatches());
+        assertEquals(semanticSearchHelper.getSearchTimeoutMillis(), semanticSearchHelper.getEmbeddingBatcher().getTimeoutMillis());
+
+        batcher = semanticSearchHelper.getEmbeddingBatcher();
+        System.setProperty(BATCH_INFERENCE_TIMEOUT, "2000");
+        semanticSearchHelper.load();
+        assertNotSame(batcher, semanticSearchHelper.getEmbeddingBatcher());
+        assertEquals(2000L, semanticSearchHelper.getEmbeddingBatcher().getTimeoutMillis());
+
+        System.setProperty(BATCH_INFERENCE_ENABLED, "false");
+        semanticSearchHelper.load();
+        assertNull(semanticSearchHelper.getEmbeddingBatcher());
+    }
+
+    /**
+     * Test that batch inference creates a k-NN query with the batched embedding
+     */
+    public void test_newNeuralQueryBuilder_batchInference() throws Exception {
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_FIELD, "test_vector_field");
+        System.setProperty(BATCH_INFERENCE_ENABLED, "true");
+        System.setProperty(BATCH_INFERENCE_MAX_WAIT, "1");
+        semanticSearchHelper = new TestSemanticSearchHelper(Collections.singletonList(new float[] { 0.5f, 0.5f }));
+        try {
+            semanticSearchHelper.loadEmbeddingBatcher();
+
+            OptionalThing<QueryBuilder> result = semanticSearchHelper.newNeuralQueryBuilder("test query");
+            assertTrue(result.isPresent());
+            assertTrue(result.get() instanceof KnnQueryBuilder);
+            assertEquals(1L, semanticSearchHelper.getEmbeddingBatcher().getRequestCount());
+        } finally {
+            semanticSearchHelper.destroy();
+        }
+    }
+
+    /**
+     * Test that embeddings are persisted in the query vector store and reused
+     */
+    public void test_queryVectorStore() throws Exception {
+        Path path = Files.createTempDirectory("semantic_search").resolve("query_vectors.bin");
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(CONTENT_DIMENSION, "2");
+        System.setProperty(QUERY_VECTOR_STORE_PATH, path.toString());
+        int[] predictCount = new int[1];
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected List<float[]> predictTextEmbeddings(String modelId, List<String> texts) {
+                predictCount[0]++;
+                return Collections.singletonList(new float[] { 0.5f, 0.25f });
+            }
+        };
+        try {
+            semanticSearchHelper.loadQueryVectorStore();
+            assertNotNull(semanticSearchHelper.getQueryVectorStore());
+
+            assertEquals(0.25f, semanticSearchHelper.getQueryVector("test-model-id", "stored query")[1]);
+            assertEquals(1, semanticSearchHelper.getQueryVectorStore().size());
+
+            // Reopen as after a restart
+            semanticSearchHelper.destroy();
+            semanticSearchHelper.loadQueryVectorStore();
+            assertEquals(1, semanticSearchHelper.getQueryVectorStore().size());
+            assertEquals(0.5f, semanticSearchHelper.getQueryVector("test-model-id", "stored query")[0]);
+            assertEquals(1, predictCount[0]);
+
+            // Dimension change invalidates the store
+            System.setProperty(CONTENT_DIMENSION, "3");
+            semanticSearchHelper.loadQueryVectorStore();
+            assertEquals(0, semanticSearchHelper.getQueryVectorStore().size());
+
+            System.clearProperty(QUERY_VECTOR_STORE_PATH);
+            semanticSearchHelper.loadQueryVectorStore();
+            assertNull(semanticSearchHelper.getQueryVectorStore());
+        } finally {
+            semanticSearchHelper.destroy();
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.getParent());
+        }
+    }
+
+    /**
+     * Test parsing of frequent queries from the search log aggregation
+     */
+    public void test_parseFrequentQueries() throws Exception {
+        Map<String, Object> bucket1 = new HashMap<>();
+        bucket1.put("key", "fess");
+        bucket1.put("doc_count", 10);
+        Map<String, Object> bucket2 = new HashMap<>();
+        bucket2.put("key", "");
+        Map<String, Object> bucket3 = new HashMap<>();
+        bucket3.put("key", "semantic search");
+        Map<String, Object> terms = new HashMap<>();
+        terms.put("buckets", Arrays.asList(bucket1, bucket2, bucket3));
+        Map<String, Object> aggregations = new HashMap<>();
+        aggregations.put("queries", terms);
+        Map<String, Object> content = new HashMap<>();
+        content.put("aggregations", aggregations);
+
+        assertEquals(Arrays.asList("fess", "semantic search"), semanticSearchHelper.parseFrequentQueries(content));
+        assertTrue(semanticSearchHelper.parseFrequentQueries(new HashMap<>()).isEmpty());
+    }
+
+    /**
+     * Test warm-up fills the query cache with missing embeddings
+     */
+    public void test_warmUpQueryVectors() throws Exception {
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        List<List<String>> requests = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected List<float[]> predictTextEmbeddings(String modelId, List<String> texts) {
+                requests.add(texts);
+                return texts.stream().map(t -> new float[] { t.length() }).toList();
+            }
+
+            @Override
+            protected List<String> getFrequentQueries(int size) {
+                return Arrays.asList("a", "bb", "ccc").subList(0, size);
+            }
+        };
+        semanticSearchHelper.loadEmbeddingCache();
+
+        semanticSearchHelper.warmUpQueryVectors("model", Arrays.asList("a", "bb"));
+        assertEquals(1, requests.size());
+        assertEquals(2L, semanticSearchHelper.getEmbeddingCache().size());
+        assertEquals(2.0f, semanticSearchHelper.getEmbeddingCache().get("model", "bb")[0]);
+
+        System.setProperty(CONTENT_MODEL_ID, "model");
+        System.setProperty(QUERY_WARMUP_ENABLED, "true");
+        System.setProperty(QUERY_WARMUP_SIZE, "3");
+        semanticSearchHelper.startQueryVectorWarmer();
+        QueryVectorWarmer warmer = semanticSearchHelper.getQueryVectorWarmer();
+        assertNotNull(warmer);
+        warmer.await(10000);
+        assertEquals(QueryVectorWarmer.Status.WARM, warmer.getStatus());
+        assertEquals(3, warmer.getTotalCount());
+        assertEquals(3L, semanticSearchHelper.getEmbeddingCache().size());
+    }
+
+    /**
+     * Test warm-up uses stored embeddings only for the model of the store, and normalizes them
+     */
+    public void test_warmUpQueryVectors_store() throws Exception {
+        assertEquals("fess_log.search_log", semanticSearchHelper.getLogIndex("search_log"));
+
+        Path path = Files.createTempDirectory("semantic_search").resolve("query_vectors.bin");
+        System.setProperty(QUERY_CACHE_ENABLED, "true");
+        System.setProperty(CONTENT_MODEL_ID, "model");
+        System.setProperty(CONTENT_DIMENSION, "2");
+        System.setProperty(QUERY_VECTOR_STORE_PATH, path.toString());
+        List<String> predicted = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected List<float[]> predictTextEmbeddings(String modelId, List<String> texts) {
+                predicted.addAll(texts);
+                return texts.stream().map(t -> new float[] { 1.0f, 0.0f }).toList();
+            }
+        };
+        try {
+            semanticSearchHelper.loadEmbeddingCache();
+            semanticSearchHelper.loadQueryVectorStore();
+            semanticSearchHelper.getQueryVectorStore().put("a", new float[] { 3.0f, 4.0f });
+            semanticSearchHelper.vectorNormalization = true;
+
+            semanticSearchHelper.warmUpQueryVectors("other", Arrays.asList("a"));
+            assertEquals(Arrays.asList("a"), predicted);
+            assertEquals(1.0f, semanticSearchHelper.getEmbeddingCache().get("other", "a")[0]);
+
+            semanticSearchHelper.warmUpQueryVectors("model", Arrays.asList("a"));
+            assertEquals(1, predicted.size());
+            float[] vector = semanticSearchHelper.getEmbeddingCache().get("model", "a");
+            assertTrue(Math.abs(vector[0] - 0.6f) < 0.0001f);
+            assertTrue(Math.abs(vector[1] - 0.8f) < 0.0001f);
+        } finally {
+            semanticSearchHelper.destroy();
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.getParent());
+        }
+    }
+
+    /**
+     * Test parsing of ML predict API responses
+     */
+    public void test_parseTextEmbeddings() throws Exception {
+        Map<String, Object> output = new HashMap<>();
+        output.put("name", "sentence_embedding");
+        output.put("data", Arrays.asList(0.25, -0.5, 1));
+        Map<String, Object> result = new HashMap<>();
+        result.put("output", Collections.singletonList(output));
+        Map<String, Object> content = new HashMap<>();
+        content.put("inference_results", Arrays.asList(result, new HashMap<>()));
+
+        List<float[]> embeddings = semanticSearchHelper.parseTextEmbeddings(content);
+        assertEquals(2, embeddings.size());
+        assertEquals(3, embeddings.get(0).length);
+        assertEquals(-0.5f, embeddings.get(0)[1]);
+        assertNull(embeddings.get(1));
+
+        assertTrue(semanticSearchHelper.parseTextEmbeddings(new HashMap<>()).isEmpty());
+    }
+
+    /**
+     * Test query embeddings are scaled to unit length with vector normalization
+     */
+    public void test_parseTextEmbeddings_normalized() throws Exception {
+        Map<String, Object> output = new HashMap<>();
+        output.put("data", Arrays.asList(3, 4));
+        Map<String, Object> result = new HashMap<>();
+        result.put("output", Collections.singletonList(output));
+        Map<String, Object> content = new HashMap<>();
+        content.put("inference_results", Collections.singletonList(result));
+
+        System.setProperty(VECTOR_NORMALIZATION_ENABLED, "true");
+        semanticSearchHelper.loadVectorNormalization();
+        assertTrue(semanticSearchHelper.isVectorNormalization());
+        assertTrue(semanticSearchHelper.isQueryVectorEnabled());
+
+        float[] embedding = semanticSearchHelper.parseTextEmbeddings(content).get(0);
+        assertEquals(0.6f, embedding[0]);
+        assertEquals(0.8f, embedding[1]);
+
+        System.setProperty(VECTOR_NORMALIZATION_ENABLED, "false");
+        semanticSearchHelper.loadVectorNormalization();
+        assertFalse(semanticSearchHelper.isVectorNormalization());
+        assertEquals(3.0f, semanticSearchHelper.parseTextEmbeddings(content).get(0)[0]);
+    }
+
+    /**
+     * Test a new index with the innerproduct space is refused for an index with unnormalized vectors
+     */
+    public void test_getContentSpaceType() throws Exception {
+        final List<float[]> vectors = new ArrayList<>();
+        final List<String> checks = new ArrayList<>();
+        semanticSearchHelper = new TestSemanticSearchHelper() {
+            @Override
+            protected List<float[]> getIndexedVectors(String index, String field, String nestedField, int size) {
+                checks.add(field);
+                return vectors;
+            }
+        };
+        assertEquals("cosinesimil", semanticSearchHelper.getContentSpaceType("knn", null));
+
+        System.setProperty(VECTOR_NORMALIZATION_ENABLED, "true");
+        assertEquals("innerproduct", semanticSearchHelper.getContentSpaceType("knn", null));
+
+        vectors.add(new float[] { 0.6f, 0.8f });
+        assertEquals("innerproduct", semanticSearchHelper.getContentSpaceType("knn", null));
+
+        vectors.add(new float[] { 3.0f, 4.0f });
+        assertNull(semanticSearchHelper.getContentSpaceType("knn", null));
+
+        // the decision is made when the configuration is loaded
+        checks.clear();
+        System.setProperty(CONTENT_FIELD, "knn");
+        semanticSearchHelper.loadNewIndexSpaceType();
+        assertEquals(Arrays.asList("knn"), checks);
+        assertTrue(semanticSearchHelper.newIndexRefused);
+        assertNull(semanticSearchHelper.newIndexSpaceType);
+
+        vectors.remove(1);
+        semanticSearchHelper.loadNewIndexSpaceType();
+        assertFalse(semanticSearchHelper.newIndexRefused);
+        assertEquals("innerproduct", semanticSearchHelper.newIndexSpaceType);
+
+        System.setProperty(VECTOR_NORMALIZATION_ENABLED, "false");
+        vectors.add(new float[] { 3.0f, 4.0f });
+        semanticSearchHelper.loadNewIndexSpaceType();
+        assertFalse(semanticSearchHelper.newIndexRefused);
+        assertEquals("cosinesimil", semanticSearchHelper.newIndexSpaceType);
+        assertEquals(2, checks.size());
+    }
+
+    /**
+     * Test the exact scoring uses the innerproduct space of the content field mapped with vector normalization
+     */
+    public void test_getSpaceType_normalized() throws Exception {
+        final List<String> mappingFields = new ArrayList<>();
+        semanticSearchHelper.pipelineClient = new PipelineClient() {
+            @Override
+            public String getFieldSpaceType(String index, String field) {
+                mappingFields.add(field);
+                return "innerproduct";
+            }
+        };
+        System.setProperty(CONTENT_FIELD, "knn");
+        final float[] vector = { 0.6f, 0.8f };
+
+        semanticSearchHelper.vectorNormalization = false;
+        semanticSearchHelper.loadContentSpaceType();
+        assertTrue(mappingFields.isEmpty());
+        assertEquals("cosinesimil", semanticSearchHelper.getSpaceType("knn"));
+        QueryBuilder query = semanticSearchHelper.newExactVectorQueryBuilder("knn", vector, QueryBuilders.matchAllQuery());
+        assertEquals(0.5f, query.boost());
+
+        System.setProperty(VECTOR_NORMALIZATION_ENABLED, "true");
+        semanticSearchHelper.vectorNormalization = true;
+        semanticSearchHelper.loadContentSpaceType();
+        assertEquals(Arrays.asList("knn"), mappingFields);
+        assertEquals("innerproduct", semanticSearchHelper.getSpaceType("knn"));
+        query = semanticSearchHelper.newExactVectorQueryBuilder("knn", vector, QueryBuilders.matchAllQuery());
+        assertTrue(query.toString(), query.toString().contains("\"innerproduct\""));
+        assertFalse(query.toString(), query.toString().contains("\"cosinesimil\""));
+        assertEquals(1.0f, query.boost());
+
+        // The nested vector field is read from the mapping with its full path
+        System.setProperty(CONTENT_NESTED_FIELD, "content_vector");
+        semanticSearchHelper.loadContentSpaceType();
+        assertEquals("content_vector.knn", mappingFields.get(1));
+
+        // The space type decided at startup is kept when the mapping cannot be read
+        semanticSearchHelper.pipelineClient = new PipelineClient() {
+            @Override
+            public String getFieldSpaceType(String index, String field) {
+                return null;
+            }
+        };
+        semanticSearchHelper.loadContentSpaceType();
+        assertEquals("innerproduct", semanticSearchHelper.getSpaceType("knn"));
+    }
+
+    /**
+     * Test vectors are parsed from sampled documents
+     */
+    public void test_parseIndexedVectors() throws Exception {
+        Map<String, Object> chunk = new HashMap<>();
+        chunk.put("knn", Arrays.asList(0.6, 0.8));
+        Map<String, Object> nestedSource = new HashMap<>();
+        nestedSource.put("content_vector", Arrays.asList(chunk, chunk));
+        Map<String, Object> source = new HashMap<>();
+        source.put("knn", Arrays.asList(3, 4));
+        Map<String, Object> content = new HashMap<>();
+        content.put("hits", Collections.singletonMap("hits",
+                Arrays.asList(Collections.singletonMap("_source", nestedSource), Collections.singletonMap("_source", source))));
+
+        List<float[]> vectors = semanticSearchHelper.parseIndexedVectors(content, "knn", "content_vector");
+        assertEquals(2, vectors.size());
+        assertEquals(0.6f, vectors.get(0)[0]);
+
+        vectors = semanticSearchHelper.parseIndexedVectors(content, "knn", null);
+        assertEquals(1, vectors.size());
+        assertEquals(4.0f, vectors.get(0)[1]);
+    }
+
     private void clearSemanticSearchProperties() {
         System.clearProperty(PIPELINE);
         System.clearProperty(CONTENT_MODEL_ID);
@@ -381,6 +2324,68 @@ public class SemanticSearchHelperTest extends UnitWebappTestCase {
         System.clearProperty(MMR_LAMBDA);
         System.clearProperty(BATCH_INFERENCE_ENABLED);
         System.clearProperty(PERFORMANCE_MONITORING_ENABLED);
+        System.clearProperty(QUERY_CACHE_ENABLED);
+        System.clearProperty(QUERY_CACHE_MAX_MEMORY);
+        System.clearProperty(QUERY_CACHE_EXPIRE);
+        System.clearProperty(QUERY_CACHE_TYPE);
+        System.clearProperty(BATCH_INFERENCE_ENABLED);
+        System.clearProperty(BATCH_INFERENCE_MAX_SIZE);
+        System.clearProperty(BATCH_INFERENCE_MAX_WAIT);
+        System.clearProperty(BATCH_INFERENCE_MAX_CONCURRENCY);
+        System.clearProperty(BATCH_INFERENCE_TIMEOUT);
+        System.clearProperty(QUERY_VECTOR_STORE_PATH);
+        System.clearProperty(QUERY_VECTOR_STORE_MAX_ENTRIES);
+        System.clearProperty(QUERY_WARMUP_ENABLED);
+        System.clearProperty(QUERY_WARMUP_SIZE);
+        System.clearProperty(QUERY_WARMUP_BATCH_SIZE);
+        System.clearProperty(QUERY_WARMUP_CONCURRENCY);
+        System.clearProperty(QUERY_WARMUP_TIMEOUT);
+        System.clearProperty(QUERY_WARMUP_READY_FILE);
+        System.clearProperty(KNN_MAX_K);
+        System.clearProperty(RESULT_WINDOW_CACHE_ENABLED);
+        System.clearProperty(RESULT_WINDOW_CACHE_WINDOW_SIZE);
+        System.clearProperty(RESULT_WINDOW_CACHE_MAX_SIZE);
+        System.clearProperty(RESULT_WINDOW_CACHE_EXPIRE);
+        System.clearProperty(EF_SEARCH_CONTROLLER_ENABLED);
+        System.clearProperty(EF_SEARCH_CONTROLLER_MIN);
+        System.clearProperty(EF_SEARCH_CONTROLLER_MAX);
+        System.clearProperty(EF_SEARCH_CONTROLLER_TARGET_SEARCH_LATENCY);
+        System.clearProperty(EF_SEARCH_CONTROLLER_MAX_CONCURRENCY);
+        System.clearProperty(EF_SEARCH_CONTROLLER_WINDOW_SIZE);
+        System.clearProperty(HYBRID_ENABLED);
+        System.clearProperty(HYBRID_PIPELINE);
+        System.clearProperty(HYBRID_NORMALIZATION);
+        System.clearProperty(HYBRID_COMBINATION);
+        System.clearProperty(HYBRID_WEIGHTS);
+        System.clearProperty(RADIAL_SEARCH_ENABLED);
+        System.clearProperty(CONTENT_K);
+        System.clearProperty(VECTOR_FIELDS);
+        System.clearProperty(QUERY_ROUTING_ENABLED);
+        System.clearProperty(QUERY_ROUTING_CLASSIFIER);
+        System.clearProperty(QUERY_ROUTING_MIN_TERMS);
+        System.clearProperty(QUERY_ROUTING_MIN_SAMPLES);
+        System.clearProperty(QUERY_ROUTING_TRAINING_SIZE);
+        System.clearProperty(QUERY_AGGREGATION_ENABLED);
+        System.clearProperty(EXACT_SEARCH_ENABLED);
+        System.clearProperty(EXACT_SEARCH_THRESHOLD);
+        System.clearProperty(RESCORE_ENABLED);
+        System.clearProperty(RESCORE_OVERSAMPLE_FACTOR);
+        System.clearProperty(VECTOR_NORMALIZATION_ENABLED);
+        System.clearProperty(CONTENT_CENTROID_FIELD);
+        System.clearProperty(CENTROID_CANDIDATE_FACTOR);
+        System.clearProperty(CENTROID_CHECK_EXPIRE);
+        System.clearProperty(RETRIEVAL_MODE);
+        System.clearProperty(CONTENT_SPARSE_FIELD);
+        System.clearProperty(CONTENT_SPARSE_MODEL_ID);
+        System.clearProperty(CONTENT_SPARSE_QUERY_MODEL_ID);
+        System.clearProperty(CONTENT_SPARSE_BOOST);
+        System.clearProperty(CONTENT_BINARY_FIELD);
+        System.clearProperty(BINARY_CANDIDATE_FACTOR);
+        System.clearProperty(BINARY_FLAT_VECTOR);
+        System.clearProperty(BINARY_CHECK_EXPIRE);
+        System.clearProperty(SIMILAR_DOC_VECTOR_ENABLED);
+        System.clearProperty(LANGUAGE_VECTOR_FIELDS);
+        System.clearProperty(LABEL_VECTOR_FIELDS);
     }
 
     private void setupTestComponents() {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codelibs.fess.entity.SearchRequestParams.SearchRequestType;
+
+/**
+ * Test fixture for {@link SemanticSearchHelper} that runs without the Fess request components.
+ * Roles and the virtual host are fixed, the model is always deployed, and query embeddings come
+ * from a given list instead of the ML Commons predict API.
+ */
+public class TestSemanticSearchHelper extends SemanticSearchHelper {
+
+    /** The embeddings returned for every predict request. */
+    protected final List<float[]> embeddings;
+
+    /** The texts passed to each predict request. */
+    protected final List<List<String>> predictRequests = new ArrayList<>();
+
+    /**
+     * Creates a helper whose predict requests return no embeddings.
+     */
+    public TestSemanticSearchHelper() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * Creates a helper whose predict requests return the given embeddings.
+     *
+     * @param embeddings the embeddings to return, may be modified by the test
+     */
+    public TestSemanticSearchHelper(final List<float[]> embeddings) {
+        this.embeddings = embeddings;
+    }
+
+    /**
+     * Returns the texts passed to each predict request.
+     *
+     * @return the predict requests
+     */
+    public List<List<String>> getPredictRequests() {
+        return predictRequests;
+    }
+
+    @Override
+    protected Set<String> getRoleSet(final SearchRequestType type) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    protected String getVirtualHostKey() {
+        return null;
+    }
+
+    @Override
+    protected Map<String, Object> getModel(final String modelId) {
+        return Collections.singletonMap("model_state", "DEPLOYED");
+    }
+
+    @Override
+    protected List<float[]> predictTextEmbeddings(final String modelId, final List<String> texts) {
+        predictRequests.add(texts);
+        return embeddings;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.common.io.stream.InputStreamStreamInput;
+import org.opensearch.core.common.io.stream.NamedWriteableAwareStreamInput;
+import org.opensearch.core.common.io.stream.NamedWriteableRegistry;
+import org.opensearch.core.common.io.stream.OutputStreamStreamOutput;
+import org.opensearch.core.xcontent.ToXContent;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.TermQueryBuilder;
+
+import junit.framework.TestCase;
+
+public class HybridQueryBuilderTest extends TestCase {
+
+    /**
+     * Test basic HybridQueryBuilder construction using Builder pattern
+     */
+    public void test_builderPattern() throws Exception {
+        HybridQueryBuilder queryBuilder = new HybridQueryBuilder.Builder().add(QueryBuilders.termQuery("content", "test"))
+                .add(new NeuralQueryBuilder.Builder().field("vector").query("test").modelId("model").k(10).build())
+                .build();
+
+        assertEquals("hybrid", queryBuilder.getWriteableName());
+        assertEquals(2, queryBuilder.queries.size());
+        assertNull(queryBuilder.filter);
+    }
+
+    /**
+     * Test XContent output
+     */
+    public void test_toXContent() throws Exception {
+        HybridQueryBuilder queryBuilder = new HybridQueryBuilder.Builder().add(QueryBuilders.termQuery("content", "test"))
+                .add(new NeuralQueryBuilder.Builder().field("vector").query("test").modelId("model").k(10).build())
+                .filter(QueryBuilders.termQuery("role", "guest"))
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+
+        assertTrue(json, json.startsWith("{\"hybrid\":{\"queries\":[{\"term\":{\"content\":"));
+        assertTrue(json, json.contains("{\"neural\":{\"vector\":{\"query_text\":\"test\""));
+        assertTrue(json, json.contains("\"filter\":{\"term\":{\"role\":"));
+    }
+
+    /**
+     * Test stream serialization round trip
+     */
+    public void test_streamSerialization() throws Exception {
+        HybridQueryBuilder original = new HybridQueryBuilder.Builder().add(QueryBuilders.termQuery("content", "a"))
+                .add(QueryBuilders.termQuery("title", "b"))
+                .filter(QueryBuilders.termQuery("role", "guest"))
+                .build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            original.writeTo(out);
+        }
+        NamedWriteableRegistry registry = new NamedWriteableRegistry(
+                Arrays.asList(new NamedWriteableRegistry.Entry(QueryBuilder.class, TermQueryBuilder.NAME, TermQueryBuilder::new)));
+        try (NamedWriteableAwareStreamInput in =
+                new NamedWriteableAwareStreamInput(new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray())), registry)) {
+            HybridQueryBuilder restored = new HybridQueryBuilder(in);
+            assertEquals(2, restored.queries.size());
+            assertEquals(original, restored);
+            assertEquals(original.hashCode(), restored.hashCode());
+        }
+    }
+}
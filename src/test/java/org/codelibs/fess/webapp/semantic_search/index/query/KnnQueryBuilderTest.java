@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.common.io.stream.InputStreamStreamInput;
+import org.opensearch.core.common.io.stream.OutputStreamStreamOutput;
+import org.opensearch.core.xcontent.ToXContent;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.index.query.QueryBuilders;
+
+import junit.framework.TestCase;
+
+public class KnnQueryBuilderTest extends TestCase {
+
+    /**
+     * Test basic KnnQueryBuilder construction using Builder pattern
+     */
+    public void test_builderPattern() throws Exception {
+        KnnQueryBuilder queryBuilder =
+                new KnnQueryBuilder.Builder().field("content_vector").vector(new float[] { 0.1f, 0.2f }).k(50).efSearch(100).build();
+
+        assertNotNull(queryBuilder);
+        assertEquals("knn", queryBuilder.getWriteableName());
+        assertEquals("content_vector", queryBuilder.fieldName);
+        assertEquals(50, queryBuilder.k);
+        assertEquals(Integer.valueOf(100), queryBuilder.efSearch);
+        assertNull(queryBuilder.filter);
+    }
+
+    /**
+     * Test default k value
+     */
+    public void test_defaultK() throws Exception {
+        KnnQueryBuilder queryBuilder = new KnnQueryBuilder.Builder().field("vector_field").vector(new float[] { 1.0f }).build();
+        assertEquals(10, queryBuilder.k);
+    }
+
+    /**
+     * Test stream serialization round trip with packed floats
+     */
+    public void test_streamSerialization() throws Exception {
+        float[] vector = new float[384];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) Math.sin(i) * 0.5f;
+        }
+        vector[0] = Float.MIN_VALUE;
+        vector[1] = -0.0f;
+        KnnQueryBuilder original =
+                new KnnQueryBuilder.Builder().field("content_vector.knn").vector(vector).k(20).efSearch(256).build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            original.writeTo(out);
+        }
+        // header + packed vector + small fields
+        assertTrue(baos.size() < vector.length * Float.BYTES + 64);
+
+        KnnQueryBuilder restored;
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            restored = new KnnQueryBuilder(in);
+        }
+        assertEquals("content_vector.knn", restored.fieldName);
+        assertTrue(Arrays.equals(vector, restored.vector));
+        assertEquals(20, restored.k);
+        assertEquals(Integer.valueOf(256), restored.efSearch);
+        assertEquals(original, restored);
+        assertEquals(original.hashCode(), restored.hashCode());
+    }
+
+    /**
+     * Test stream serialization without ef_search
+     */
+    public void test_streamSerializationWithoutEfSearch() throws Exception {
+        KnnQueryBuilder original = new KnnQueryBuilder.Builder().field("vector").vector(new float[0]).k(5).build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            original.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            KnnQueryBuilder restored = new KnnQueryBuilder(in);
+            assertEquals(0, restored.vector.length);
+            assertNull(restored.efSearch);
+        }
+    }
+
+    /**
+     * Test XContent output
+     */
+    public void test_toXContent() throws Exception {
+        KnnQueryBuilder queryBuilder =
+                new KnnQueryBuilder.Builder().field("content_vector").vector(new float[] { 0.5f, -1.0f }).k(3).efSearch(64).build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+
+        assertTrue(json, json.startsWith("{\"knn\":{\"content_vector\":{\"vector\":[0.5,-1.0],\"k\":3,"));
+        assertTrue(json, json.contains("\"method_parameters\":{\"ef_search\":64}"));
+        assertFalse(json, json.contains("filter"));
+    }
+
+    /**
+     * Test radial search replaces k with min_score
+     */
+    public void test_radialSearch() throws Exception {
+        KnnQueryBuilder original = new KnnQueryBuilder.Builder().field("content_vector")
+                .vector(new float[] { 0.5f, -1.0f })
+                .k(3)
+                .minScore(0.8f)
+                .efSearch(64)
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        original.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.startsWith("{\"knn\":{\"content_vector\":{\"vector\":[0.5,-1.0],\"min_score\":0.8,"));
+        assertFalse(json, json.contains("\"k\""));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            original.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            KnnQueryBuilder restored = new KnnQueryBuilder(in);
+            assertEquals(Float.valueOf(0.8f), restored.minScore);
+            assertNull(restored.maxDistance);
+            assertEquals(original, restored);
+            assertEquals(original.hashCode(), restored.hashCode());
+        }
+    }
+
+    /**
+     * Test rescoring with an oversample factor
+     */
+    public void test_rescore() throws Exception {
+        KnnQueryBuilder original = new KnnQueryBuilder.Builder().field("content_vector")
+                .vector(new float[] { 0.5f, -1.0f })
+                .k(3)
+                .rescore(true)
+                .oversampleFactor(2.0f)
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        original.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("\"k\":3,\"rescore\":{\"oversample_factor\":2.0}"));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            original.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            KnnQueryBuilder restored = new KnnQueryBuilder(in);
+            assertEquals(Boolean.TRUE, restored.rescore);
+            assertEquals(Float.valueOf(2.0f), restored.oversampleFactor);
+            assertEquals(original, restored);
+            assertEquals(original.hashCode(), restored.hashCode());
+        }
+    }
+
+    /**
+     * Test the filter is written inside the knn query
+     */
+    public void test_toXContentWithFilter() throws Exception {
+        KnnQueryBuilder queryBuilder = new KnnQueryBuilder.Builder().field("content_vector")
+                .vector(new float[] { 1.0f })
+                .k(5)
+                .filter(QueryBuilders.termQuery("label", "news"))
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+
+        assertTrue(json, json.startsWith("{\"knn\":{\"content_vector\":{\"vector\":[1.0],\"k\":5,\"filter\":{\"term\":{\"label\":"));
+        assertFalse(json, json.contains("method_parameters"));
+    }
+
+    /**
+     * Test equality and hash code
+     */
+    public void test_equalityAndHashCode() throws Exception {
+        KnnQueryBuilder query1 = new KnnQueryBuilder.Builder().field("vector").vector(new float[] { 1.0f, 2.0f }).k(10).build();
+        KnnQueryBuilder query2 = new KnnQueryBuilder.Builder().field("vector").vector(new float[] { 1.0f, 2.0f }).k(10).build();
+        KnnQueryBuilder query3 = new KnnQueryBuilder.Builder().field("vector").vector(new float[] { 1.0f, 3.0f }).k(10).build();
+        KnnQueryBuilder query4 = new KnnQueryBuilder.Builder().field("vector")
+                .vector(new float[] { 1.0f, 2.0f })
+                .k(10)
+                .filter(QueryBuilders.termQuery("label", "news"))
+                .build();
+
+        assertEquals(query1, query2);
+        assertEquals(query1.hashCode(), query2.hashCode());
+        assertFalse(query1.equals(query3));
+        assertFalse(query1.equals(query4));
+    }
+
+    /**
+     * Test doToQuery is not supported
+     */
+    public void test_doToQueryUnsupported() throws Exception {
+        KnnQueryBuilder queryBuilder = new KnnQueryBuilder.Builder().field("vector").vector(new float[] { 1.0f }).build();
+        try {
+            queryBuilder.doToQuery(null);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test a vector whose byte length is not a multiple of the float size is rejected
+     */
+    public void test_readVectorInvalidLength() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            out.writeByteArray(new byte[6]);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            KnnQueryBuilder.readVector(in);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("6 bytes"));
+        }
+    }
+}
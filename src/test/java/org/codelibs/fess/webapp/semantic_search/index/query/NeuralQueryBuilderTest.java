@@ -21,8 +21,10 @@ import java.io.IOException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.opensearch.core.common.bytes.BytesReference;
 import org.opensearch.core.common.io.stream.InputStreamStreamInput;
 import org.opensearch.core.common.io.stream.OutputStreamStreamOutput;
+import org.opensearch.core.xcontent.ToXContent;
 import org.opensearch.core.xcontent.XContentBuilder;
 import org.opensearch.common.xcontent.XContentFactory;
 import org.opensearch.index.query.BoolQueryBuilder;
@@ -367,4 +369,97 @@ public class NeuralQueryBuilderTest extends TestCase {
         NeuralQueryBuilder result = builder.build();
         assertNotNull(result);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test radial search with min_score replaces k
+     */
+    public void test_radialSearchMinScore() throws Exception {
+        NeuralQueryBuilder queryBuilder = new NeuralQueryBuilder.Builder().field("content_vector")
+                .query("test")
+                .modelId("model")
+                .k(10)
+                .minScore(0.75f)
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("\"min_score\":0.75"));
+        assertFalse(json, json.contains("\"k\""));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            queryBuilder.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            NeuralQueryBuilder restored = new NeuralQueryBuilder(in);
+            assertEquals(Float.valueOf(0.75f), restored.minScore);
+            assertNull(restored.maxDistance);
+            assertEquals(queryBuilder, restored);
+        }
+    }
+
+    /**
+     * Test radial search with max_distance replaces k
+     */
+    public void test_radialSearchMaxDistance() throws Exception {
+        NeuralQueryBuilder queryBuilder = new NeuralQueryBuilder.Builder().field("content_vector")
+                .query("test")
+                .modelId("model")
+                .k(10)
+                .maxDistance(2.5f)
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("\"max_distance\":2.5"));
+        assertFalse(json, json.contains("\"k\""));
+
+        NeuralQueryBuilder other = new NeuralQueryBuilder.Builder().field("content_vector").query("test").modelId("model").k(10).build();
+        assertFalse(queryBuilder.equals(other));
+    }
+
+    /**
+     * Test rescoring with an oversample factor
+     */
+    public void test_rescore() throws Exception {
+        NeuralQueryBuilder queryBuilder = new NeuralQueryBuilder.Builder().field("content_vector")
+                .query("test")
+                .modelId("model")
+                .k(10)
+                .oversampleFactor(3.0f)
+                .build();
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("\"k\":10"));
+        assertTrue(json, json.contains("\"rescore\":{\"oversample_factor\":3.0}"));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            queryBuilder.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            NeuralQueryBuilder restored = new NeuralQueryBuilder(in);
+            assertEquals(Float.valueOf(3.0f), restored.oversampleFactor);
+            assertNull(restored.rescore);
+            assertEquals(queryBuilder, restored);
+        }
+
+        NeuralQueryBuilder disabled = new NeuralQueryBuilder.Builder().field("content_vector")
+                .query("test")
+                .modelId("model")
+                .k(10)
+                .rescore(false)
+                .oversampleFactor(3.0f)
+                .build();
+        builder = XContentFactory.jsonBuilder();
+        disabled.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("\"rescore\":false"));
+        assertFalse(json, json.contains("oversample_factor"));
+        assertFalse(queryBuilder.equals(disabled));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.index.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.core.common.bytes.BytesReference;
+import org.opensearch.core.common.io.stream.InputStreamStreamInput;
+import org.opensearch.core.common.io.stream.OutputStreamStreamOutput;
+import org.opensearch.core.xcontent.ToXContent;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+import junit.framework.TestCase;
+
+public class NeuralSparseQueryBuilderTest extends TestCase {
+
+    /**
+     * Test the query is written as a neural_sparse query
+     */
+    public void test_toXContent() throws Exception {
+        NeuralSparseQueryBuilder queryBuilder =
+                new NeuralSparseQueryBuilder.Builder().field("content_sparse").query("semantic search").modelId("sparse-model").build();
+        assertEquals("neural_sparse", queryBuilder.getWriteableName());
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        queryBuilder.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        String json = BytesReference.bytes(builder).utf8ToString();
+        assertTrue(json, json.contains("{\"neural_sparse\":{\"content_sparse\":{"));
+        assertTrue(json, json.contains("\"query_text\":\"semantic search\""));
+        assertTrue(json, json.contains("\"model_id\":\"sparse-model\""));
+        assertFalse(json, json.contains("\"k\""));
+    }
+
+    /**
+     * Test stream serialization, equality and hash code
+     */
+    public void test_serialization() throws Exception {
+        NeuralSparseQueryBuilder queryBuilder =
+                new NeuralSparseQueryBuilder.Builder().field("content_sparse").query("test").modelId("model").build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStreamStreamOutput out = new OutputStreamStreamOutput(baos)) {
+            queryBuilder.writeTo(out);
+        }
+        try (InputStreamStreamInput in = new InputStreamStreamInput(new ByteArrayInputStream(baos.toByteArray()))) {
+            NeuralSparseQueryBuilder restored = new NeuralSparseQueryBuilder(in);
+            assertEquals(queryBuilder, restored);
+            assertEquals(queryBuilder.hashCode(), restored.hashCode());
+        }
+
+        NeuralSparseQueryBuilder other =
+                new NeuralSparseQueryBuilder.Builder().field("content_sparse").query("test").modelId("other").build();
+        assertFalse(queryBuilder.equals(other));
+    }
+
+    /**
+     * Test doToQuery throws UnsupportedOperationException
+     */
+    public void test_doToQueryUnsupported() throws Exception {
+        NeuralSparseQueryBuilder queryBuilder =
+                new NeuralSparseQueryBuilder.Builder().field("content_sparse").query("test").modelId("model").build();
+
+        try {
+            queryBuilder.doToQuery(null);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("doToQuery is not supported.", e.getMessage());
+        }
+    }
+}
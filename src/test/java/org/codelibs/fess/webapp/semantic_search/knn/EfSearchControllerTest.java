@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.knn;
+
+import junit.framework.TestCase;
+
+public class EfSearchControllerTest extends TestCase {
+
+    /**
+     * Test the initial value is bounded
+     */
+    public void test_initialValue() throws Exception {
+        assertEquals(100, new EfSearchController(16, 256, 100, 100, 8, 10).getEfSearch());
+        assertEquals(256, new EfSearchController(16, 256, 1000, 100, 8, 10).getEfSearch());
+        assertEquals(16, new EfSearchController(16, 256, 1, 100, 8, 10).getEfSearch());
+    }
+
+    /**
+     * Test slow searches decrease ef_search down to the minimum
+     */
+    public void test_decrease() throws Exception {
+        EfSearchController controller = new EfSearchController(16, 256, 256, 100, 8, 10);
+
+        for (int i = 0; i < 10; i++) {
+            controller.acquire();
+            controller.release(200);
+        }
+        assertTrue(controller.getEfSearch() < 256);
+        assertTrue(controller.getDecreaseCount() > 0);
+        assertEquals(200, controller.getP95Latency());
+
+        for (int i = 0; i < 200; i++) {
+            controller.acquire();
+            controller.release(200);
+        }
+        assertEquals(16, controller.getEfSearch());
+        assertEquals(0, controller.getInFlightCount());
+    }
+
+    /**
+     * Test fast searches restore ef_search up to the maximum
+     */
+    public void test_increase() throws Exception {
+        EfSearchController controller = new EfSearchController(16, 256, 16, 100, 8, 10);
+
+        for (int i = 0; i < 200; i++) {
+            controller.acquire();
+            controller.release(10);
+        }
+        assertEquals(256, controller.getEfSearch());
+        assertTrue(controller.getIncreaseCount() > 0);
+        assertEquals(0, controller.getDecreaseCount());
+    }
+
+    /**
+     * Test searches beyond the concurrency limit get a smaller ef_search
+     */
+    public void test_concurrency() throws Exception {
+        EfSearchController controller = new EfSearchController(16, 256, 200, 100, 2, 10);
+
+        assertEquals(200, controller.acquire());
+        assertEquals(200, controller.acquire());
+        assertEquals(133, controller.acquire());
+        assertEquals(100, controller.acquire());
+        assertEquals(2, controller.getConcurrencyReducedCount());
+        assertEquals(4, controller.getInFlightCount());
+
+        for (int i = 0; i < 4; i++) {
+            controller.release(10);
+        }
+        assertEquals(0, controller.getInFlightCount());
+        // increased only after the cluster became idle
+        assertEquals(224, controller.getEfSearch());
+        assertEquals(1, controller.getIncreaseCount());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.knn;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codelibs.fess.webapp.semantic_search.knn.KnnStrategySelector.Strategy;
+import org.opensearch.index.query.QueryBuilders;
+
+import junit.framework.TestCase;
+
+public class KnnStrategySelectorTest extends TestCase {
+
+    /**
+     * Test selective filters are searched exactly
+     */
+    public void test_select() throws Exception {
+        KnnStrategySelector selector = new KnnStrategySelector(1000, 100, 60);
+
+        assertEquals(Strategy.EXACT, selector.select("small", key -> 500));
+        assertEquals(Strategy.EXACT, selector.select("boundary", key -> 1000));
+        assertEquals(Strategy.ANN, selector.select("large", key -> 1001));
+        assertEquals(Strategy.ANN, selector.select(null, key -> 0));
+
+        assertEquals(2, selector.getExactCount());
+        assertEquals(2, selector.getAnnCount());
+        assertEquals(0.5, selector.getExactRatio(), 0.0001);
+    }
+
+    /**
+     * Test counts are cached per filter and failures are not
+     */
+    public void test_countCache() throws Exception {
+        KnnStrategySelector selector = new KnnStrategySelector(1000, 100, 60);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Strategy.EXACT, selector.select("role:guest", key -> {
+                calls.incrementAndGet();
+                return 10;
+            }));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, selector.getCountQueryCount());
+
+        assertEquals(Strategy.ANN, selector.select("failed", key -> -1));
+        assertEquals(Strategy.ANN, selector.select("failed", key -> -1));
+        assertEquals(3, selector.getCountQueryCount());
+    }
+
+    /**
+     * Test filter queries are cached by content
+     */
+    public void test_queryKey() throws Exception {
+        KnnStrategySelector selector = new KnnStrategySelector(1000, 100, 60);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(-1, selector.getCachedCount(QueryBuilders.termQuery("role", "guest")));
+        assertEquals(Strategy.EXACT, selector.select(QueryBuilders.termQuery("role", "guest"), key -> {
+            calls.incrementAndGet();
+            return 10;
+        }));
+        assertEquals(Strategy.EXACT, selector.select(QueryBuilders.termQuery("role", "guest"), key -> {
+            calls.incrementAndGet();
+            return 10;
+        }));
+        assertEquals(1, calls.get());
+        assertEquals(10, selector.getCachedCount(QueryBuilders.termQuery("role", "guest")));
+        assertEquals(-1, selector.getCachedCount(QueryBuilders.termQuery("role", "admin")));
+        assertEquals(-1, selector.getCachedCount(null));
+    }
+}
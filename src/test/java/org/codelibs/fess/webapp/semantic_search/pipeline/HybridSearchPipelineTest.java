@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codelibs.fess.util.ComponentUtil;
+import org.codelibs.fess.webapp.semantic_search.UnitWebappTestCase;
+import org.junit.jupiter.api.TestInfo;
+
+public class HybridSearchPipelineTest extends UnitWebappTestCase {
+
+    private final List<String> pipelines = new ArrayList<>();
+
+    private final List<String> defaultPipelines = new ArrayList<>();
+
+    private String defaultPipeline;
+
+    private HybridSearchPipeline hybridSearchPipeline;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    public void setUp(TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        clearHybridProperties();
+        hybridSearchPipeline = new HybridSearchPipeline(new PipelineClient() {
+            @Override
+            public boolean putSearchPipeline(String name, String pipeline) {
+                pipelines.add(name + " " + pipeline);
+                return true;
+            }
+
+            @Override
+            public String getDefaultSearchPipeline(String index) {
+                return defaultPipeline;
+            }
+
+            @Override
+            public boolean setDefaultSearchPipeline(String index, String name) {
+                defaultPipelines.add(name);
+                defaultPipeline = name;
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void tearDown(TestInfo testInfo) throws Exception {
+        clearHybridProperties();
+        ComponentUtil.setFessConfig(null);
+        super.tearDown(testInfo);
+    }
+
+    private void clearHybridProperties() {
+        System.clearProperty(HYBRID_ENABLED);
+        System.clearProperty(HYBRID_PIPELINE);
+        System.clearProperty(HYBRID_NORMALIZATION);
+        System.clearProperty(HYBRID_COMBINATION);
+        System.clearProperty(HYBRID_WEIGHTS);
+    }
+
+    /**
+     * Test hybrid search pipeline provisioning
+     */
+    public void test_load() throws Exception {
+        hybridSearchPipeline.load();
+        assertNull(hybridSearchPipeline.getName());
+        assertTrue(pipelines.isEmpty());
+
+        System.setProperty(HYBRID_ENABLED, "true");
+        hybridSearchPipeline.load();
+        assertEquals("fess_semantic_search_hybrid", hybridSearchPipeline.getName());
+        assertEquals(1, pipelines.size());
+        assertTrue(pipelines.get(0), pipelines.get(0).contains("\"technique\":\"min_max\""));
+        assertTrue(pipelines.get(0), pipelines.get(0).contains("\"weights\":[0.3,0.7]"));
+        // the pipeline is passed per request, not set as the default search pipeline
+        assertTrue(defaultPipelines.isEmpty());
+
+        // unchanged settings are not provisioned again
+        hybridSearchPipeline.load();
+        assertEquals(1, pipelines.size());
+
+        System.setProperty(HYBRID_NORMALIZATION, "l2");
+        System.setProperty(HYBRID_WEIGHTS, "0.5,0.5");
+        hybridSearchPipeline.load();
+        assertEquals(2, pipelines.size());
+        assertTrue(pipelines.get(1), pipelines.get(1).contains("\"technique\":\"l2\""));
+        assertTrue(pipelines.get(1), pipelines.get(1).contains("\"weights\":[0.5,0.5]"));
+
+        System.setProperty(HYBRID_ENABLED, "false");
+        hybridSearchPipeline.load();
+        assertNull(hybridSearchPipeline.getName());
+        assertNull(hybridSearchPipeline.getSettings());
+        assertTrue(defaultPipelines.isEmpty());
+    }
+
+    /**
+     * Test the default search pipeline set by earlier versions is removed from the index
+     */
+    public void test_load_removeDefaultSearchPipeline() throws Exception {
+        System.setProperty(HYBRID_ENABLED, "true");
+        defaultPipeline = "other_pipeline";
+        hybridSearchPipeline.load();
+        assertTrue(defaultPipelines.isEmpty());
+
+        defaultPipeline = "fess_semantic_search_hybrid";
+        System.setProperty(HYBRID_WEIGHTS, "0.5,0.5");
+        hybridSearchPipeline.load();
+        assertEquals(1, defaultPipelines.size());
+        assertNull(defaultPipelines.get(0));
+        assertNull(defaultPipeline);
+    }
+
+    /**
+     * Test hybrid weights parsing
+     */
+    public void test_parseWeights() throws Exception {
+        assertTrue(Arrays.equals(new float[] { 0.2f, 0.8f }, hybridSearchPipeline.parseWeights("0.2, 0.8")));
+        assertTrue(Arrays.equals(new float[] { 0.3f, 0.7f }, hybridSearchPipeline.parseWeights("invalid")));
+        assertTrue(Arrays.equals(new float[] { 0.3f, 0.7f }, hybridSearchPipeline.parseWeights("0.1,0.2,0.7")));
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.pipeline;
+
+import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.VectorField;
+
+import junit.framework.TestCase;
+
+public class IngestPipelineManagerTest extends TestCase {
+
+    private IngestPipelineManager manager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearProperties();
+        manager = new IngestPipelineManager(new PipelineClient());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        clearProperties();
+        super.tearDown();
+    }
+
+    private void clearProperties() {
+        System.clearProperty(PIPELINE);
+        System.clearProperty(CONTENT_MODEL_ID);
+        System.clearProperty(CONTENT_FIELD);
+        System.clearProperty(CONTENT_NESTED_FIELD);
+        System.clearProperty(CONTENT_CENTROID_FIELD);
+        System.clearProperty(CONTENT_BINARY_FIELD);
+        System.clearProperty(CONTENT_SPARSE_FIELD);
+        System.clearProperty(CONTENT_SPARSE_MODEL_ID);
+    }
+
+    /**
+     * Test the ingest pipeline normalizing indexed vectors
+     */
+    public void test_createNormalizationPipeline() throws Exception {
+        String pipeline = manager.createNormalizationPipeline("neural_pipeline", "knn", "content_vector");
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"lang\":\"painless\""));
+        assertTrue(pipeline, pipeline.contains("\"params\":{\"field\":\"knn\",\"nested_field\":\"content_vector\"}"));
+        assertTrue(pipeline.indexOf("\"pipeline\"") < pipeline.indexOf("\"script\""));
+
+        pipeline = manager.createNormalizationPipeline(null, "knn", null);
+        assertFalse(pipeline, pipeline.contains("\"pipeline\""));
+        assertFalse(pipeline, pipeline.contains("nested_field\":"));
+
+        System.setProperty(CONTENT_FIELD, "knn");
+        manager.loadNormalizationPipeline(false);
+        assertNull(manager.getNormalizationPipeline());
+    }
+
+    /**
+     * Test stages are provisioned without changing the default pipeline of the index
+     */
+    public void test_loadNormalizationPipeline() throws Exception {
+        final List<String> puts = new ArrayList<>();
+        final List<String> defaults = new ArrayList<>();
+        manager = new IngestPipelineManager(new PipelineClient() {
+            @Override
+            public boolean putIngestPipeline(String name, String pipeline) {
+                puts.add(name);
+                return true;
+            }
+
+            @Override
+            public boolean setDefaultIngestPipeline(String index, String name) {
+                defaults.add(name);
+                return true;
+            }
+        });
+
+        System.setProperty(CONTENT_FIELD, "knn");
+        manager.loadNormalizationPipeline(true);
+        assertEquals("fess_semantic_search_normalization", manager.getNormalizationPipeline());
+        assertEquals(Arrays.asList("fess_semantic_search_normalization"), puts);
+        assertTrue(defaults.isEmpty());
+
+        // unchanged settings are not provisioned again
+        manager.loadNormalizationPipeline(true);
+        assertEquals(1, puts.size());
+    }
+
+    /**
+     * Test the head of the pipeline chain is set as the default pipeline once, and reset when stages are disabled
+     */
+    public void test_applyDefaultPipeline() throws Exception {
+        final AtomicReference<String> current = new AtomicReference<>();
+        final List<String> gets = new ArrayList<>();
+        final List<String> defaults = new ArrayList<>();
+        manager = new IngestPipelineManager(new PipelineClient() {
+            @Override
+            public String getDefaultIngestPipeline(String index) {
+                gets.add(index);
+                return current.get();
+            }
+
+            @Override
+            public boolean setDefaultIngestPipeline(String index, String name) {
+                defaults.add(name);
+                current.set(name);
+                return true;
+            }
+        });
+
+        // nothing is configured
+        manager.applyDefaultPipeline("fess.update");
+        assertTrue(gets.isEmpty());
+
+        System.setProperty(PIPELINE, "neural_pipeline");
+        manager.applyDefaultPipeline("fess.update");
+        assertEquals(Arrays.asList("fess.update"), gets);
+        assertEquals(Arrays.asList("neural_pipeline"), defaults);
+
+        // the current value is not set again
+        manager.applyDefaultPipeline("fess.update");
+        assertEquals(1, defaults.size());
+
+        manager.normalizationPipeline = "fess_semantic_search_normalization";
+        manager.sparsePipeline = "fess_semantic_search_sparse";
+        manager.applyDefaultPipeline("fess.update");
+        assertEquals(Arrays.asList("neural_pipeline", "fess_semantic_search_sparse"), defaults);
+
+        // disabled stages fall back to the configured pipeline
+        manager.sparsePipeline = null;
+        manager.applyDefaultPipeline("fess.update");
+        assertEquals("fess_semantic_search_normalization", current.get());
+
+        // a pipeline left by a disabled stage is removed
+        System.clearProperty(PIPELINE);
+        manager.normalizationPipeline = null;
+        manager.applyDefaultPipeline("fess.update");
+        assertNull(current.get());
+        assertEquals(4, defaults.size());
+
+        // a pipeline set by others is kept
+        System.setProperty(PIPELINE, "neural_pipeline");
+        manager.applyDefaultPipeline("fess.update");
+        System.clearProperty(PIPELINE);
+        current.set("custom_pipeline");
+        manager.applyDefaultPipeline("fess.update");
+        assertEquals("custom_pipeline", current.get());
+        assertEquals(5, defaults.size());
+    }
+
+    /**
+     * Test the ingest pipeline computing centroid vectors
+     */
+    public void test_createCentroidPipeline() throws Exception {
+        String pipeline = manager.createCentroidPipeline("neural_pipeline", "vector", "content_nested", "content_centroid", true);
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"params\":{\"field\":\"vector\",\"nested_field\":\"content_nested\","
+                + "\"centroid_field\":\"content_centroid\",\"normalize\":true}"));
+
+        assertNull(manager.getIngestPipeline());
+        System.setProperty(PIPELINE, "neural_pipeline");
+        assertEquals("neural_pipeline", manager.getIngestPipeline());
+        manager.normalizationPipeline = "normalization";
+        assertEquals("normalization", manager.getIngestPipeline());
+        manager.centroidPipeline = "centroid";
+        assertEquals("centroid", manager.getIngestPipeline());
+
+        manager.loadCentroidPipeline(false);
+        assertNull(manager.getCentroidPipeline());
+    }
+
+    /**
+     * Test pipelines are attached only when their target fields are mapped with the expected type
+     */
+    public void test_hasField() throws Exception {
+        final Map<String, String> types = new HashMap<>();
+        final List<String> puts = new ArrayList<>();
+        manager = new IngestPipelineManager(new PipelineClient() {
+            @Override
+            public String getFieldType(String index, String field) {
+                assertEquals("fess.update", index);
+                return types.get(field);
+            }
+
+            @Override
+            public boolean putIngestPipeline(String name, String pipeline) {
+                puts.add(name);
+                return true;
+            }
+        }) {
+            @Override
+            protected String getDocumentIndex() {
+                return "fess.update";
+            }
+        };
+
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        System.setProperty(CONTENT_CENTROID_FIELD, "content_centroid");
+        manager.loadCentroidPipeline(false);
+        assertNull(manager.getCentroidPipeline());
+        assertTrue(puts.isEmpty());
+
+        types.put("content_centroid", "knn_vector");
+        manager.loadCentroidPipeline(false);
+        assertEquals("fess_semantic_search_centroid", manager.getCentroidPipeline());
+        assertEquals(Arrays.asList("fess_semantic_search_centroid"), puts);
+
+        System.setProperty(CONTENT_BINARY_FIELD, "content_binary");
+        types.put("content_nested.content_binary", "float");
+        manager.loadBinaryPipeline();
+        assertNull(manager.getBinaryPipeline());
+
+        types.put("content_nested.content_binary", "knn_vector");
+        manager.loadBinaryPipeline();
+        assertEquals("fess_semantic_search_binary", manager.getBinaryPipeline());
+        assertEquals(2, puts.size());
+    }
+
+    /**
+     * Test the binary vector pipeline
+     */
+    public void test_createBinaryPipeline() throws Exception {
+        String pipeline = manager.createBinaryPipeline("neural_pipeline", "vector", null, "content_binary");
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"params\":{\"field\":\"vector\",\"binary_field\":\"content_binary\"}"));
+
+        pipeline = manager.createBinaryPipeline("centroid", "vector", "content_nested", "content_binary");
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"centroid\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"params\":{\"field\":\"vector\",\"nested_field\":\"content_nested\","
+                + "\"binary_field\":\"content_binary\"}"));
+
+        manager.centroidPipeline = "centroid";
+        manager.binaryPipeline = "binary";
+        assertEquals("binary", manager.getIngestPipeline());
+
+        manager.binaryPipeline = null;
+        System.setProperty(CONTENT_FIELD, "vector");
+        manager.loadBinaryPipeline();
+        assertNull(manager.getBinaryPipeline());
+    }
+
+    /**
+     * Test the language pipeline embeds documents with the model of their language
+     */
+    public void test_createLanguagePipeline() throws Exception {
+        final Map<String, VectorField> fields = new LinkedHashMap<>();
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.field", "ja_vector");
+        System.setProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id", "ja-model");
+        try {
+            fields.put("ja", new VectorField("ja_vector"));
+        } finally {
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.field");
+            System.clearProperty(VECTOR_FIELD_PREFIX + "ja_vector.model_id");
+        }
+
+        String pipeline = manager.createLanguagePipeline("neural_pipeline", "content", "lang", fields, false);
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"if\":\"ctx['lang'] == 'ja'\""));
+        assertTrue(pipeline, pipeline.contains("\"model_id\":\"ja-model\""));
+        assertTrue(pipeline, pipeline.contains("\"field_map\":{\"content\":\"ja_vector\"}"));
+
+        // the content pipeline is skipped for documents of the languages
+        pipeline = manager.createLanguagePipeline("neural_pipeline", "content", "lang", fields, true);
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"if\":\"!['ja'].contains(ctx['lang'])\",\"name\":\"neural_pipeline\"}}"));
+
+        manager.binaryPipeline = "binary";
+        manager.languagePipeline = "language";
+        assertEquals("language", manager.getIngestPipeline());
+        assertEquals("binary", manager.getContentIngestPipeline());
+
+        manager.loadLanguagePipeline(Collections.emptyMap(), false);
+        assertNull(manager.getLanguagePipeline());
+    }
+
+    /**
+     * Test the label pipeline copies the content vector to the partitions of the labels
+     */
+    public void test_createLabelPipeline() throws Exception {
+        final Map<String, String> partitions = new LinkedHashMap<>();
+        partitions.put("sales", "sales_vector");
+        String pipeline = manager.createLabelPipeline("neural_pipeline", "vector", "label", partitions);
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline, pipeline.contains("\"params\":{\"field\":\"vector\",\"label_field\":\"label\","));
+        assertTrue(pipeline, pipeline.contains("\"partitions\":{\"sales\":\"sales_vector\"}"));
+
+        manager.languagePipeline = "language";
+        manager.labelPipeline = "label";
+        assertEquals("label", manager.getIngestPipeline());
+
+        System.setProperty(CONTENT_FIELD, "vector");
+        System.setProperty(CONTENT_NESTED_FIELD, "content_nested");
+        manager.loadLabelPipeline(partitions);
+        assertNull(manager.getLabelPipeline());
+    }
+
+    /**
+     * Test the sparse encoding pipeline
+     */
+    public void test_createSparsePipeline() throws Exception {
+        String pipeline = manager.createSparsePipeline("neural_pipeline", "sparse-model", "content", "content_sparse");
+        assertTrue(pipeline, pipeline.contains("{\"pipeline\":{\"name\":\"neural_pipeline\"}}"));
+        assertTrue(pipeline,
+                pipeline.contains("{\"sparse_encoding\":{\"model_id\":\"sparse-model\",\"field_map\":{\"content\":\"content_sparse\"}}}"));
+
+        pipeline = manager.createSparsePipeline(null, "sparse-model", "content", "content_sparse");
+        assertFalse(pipeline, pipeline.contains("\"pipeline\""));
+
+        System.setProperty(PIPELINE, "neural_pipeline");
+        manager.centroidPipeline = "centroid";
+        manager.sparsePipeline = "sparse";
+        assertEquals("sparse", manager.getIngestPipeline());
+        assertEquals("centroid", manager.getDenseIngestPipeline());
+
+        System.setProperty(CONTENT_SPARSE_FIELD, "content_sparse");
+        manager.loadSparsePipeline();
+        assertNull(manager.getSparsePipeline());
+    }
+}
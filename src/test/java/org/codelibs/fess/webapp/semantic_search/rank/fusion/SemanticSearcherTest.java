@@ -17,7 +17,10 @@ package org.codelibs.fess.webapp.semantic_search.rank.fusion;
 
 import static org.codelibs.fess.webapp.semantic_search.SemanticSearchConstants.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -35,13 +38,19 @@ import org.codelibs.fess.opensearch.client.SearchEngineClient;
 import org.codelibs.fess.query.QueryFieldConfig;
 import org.codelibs.fess.query.parser.QueryParser;
 import org.codelibs.fess.rank.fusion.RankFusionProcessor;
+import org.codelibs.fess.rank.fusion.Searcher;
 import org.codelibs.fess.util.ComponentUtil;
 import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper;
+import org.codelibs.fess.webapp.semantic_search.helper.SemanticSearchHelper.SemanticSearchContext;
+import org.codelibs.fess.webapp.semantic_search.util.FieldPrefixMatcher;
 import org.dbflute.optional.OptionalThing;
 import org.codelibs.fess.webapp.semantic_search.UnitWebappTestCase;
 import org.junit.jupiter.api.TestInfo;
 import org.opensearch.action.search.SearchRequest;
 import org.opensearch.action.search.SearchResponse;
+import org.opensearch.index.query.BoolQueryBuilder;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.search.SearchHit;
 import org.opensearch.search.SearchHit.NestedIdentity;
 import org.opensearch.search.SearchHits;
@@ -113,6 +122,12 @@ public class SemanticSearcherTest extends UnitWebappTestCase {
         boolean result3 = semanticSearcher.isSearchableField("nonexistent_field");
         // Should typically return false
 
+        // The searcher shares the search field matcher of the helper
+        FieldPrefixMatcher matcher = semanticSearchHelper.getSearchFieldMatcher();
+        assertEquals(matcher.contains("title"), result1);
+        assertEquals(matcher.contains("content"), result2);
+        assertSame(matcher, semanticSearchHelper.getSearchFieldMatcher());
+
         // Method should handle null input gracefully
         try {
             boolean result4 = semanticSearcher.isSearchableField(null);
@@ -200,6 +215,31 @@ public class SemanticSearcherTest extends UnitWebappTestCase {
         }
     }
 
+    /**
+     * Test the minimum content length applies to the whole query when the content length field is searchable
+     */
+    public void test_filterByContentLength() throws Exception {
+        QueryBuilder query = QueryBuilders.matchQuery("content", "test");
+        assertSame(query, semanticSearcher.filterByContentLength(query));
+
+        System.setProperty(MIN_CONTENT_LENGTH, "100");
+        semanticSearchHelper.init();
+        String contentLengthField = ComponentUtil.getFessConfig().getIndexFieldContentLength();
+        assertTrue(semanticSearcher.isSearchableField(contentLengthField));
+        QueryBuilder filtered = semanticSearcher.filterByContentLength(query);
+        assertTrue(filtered instanceof BoolQueryBuilder);
+        assertSame(query, ((BoolQueryBuilder) filtered).must().get(0));
+        assertEquals(QueryBuilders.rangeQuery(contentLengthField).gte(100L), ((BoolQueryBuilder) filtered).filter().get(0));
+
+        SemanticSearcher searcher = new SemanticSearcher() {
+            @Override
+            protected boolean isSearchableField(String field) {
+                return false;
+            }
+        };
+        assertSame(query, searcher.filterByContentLength(query));
+    }
+
     /**
      * Test search with various query patterns
      */
@@ -224,6 +264,98 @@ public class SemanticSearcherTest extends UnitWebappTestCase {
         assertTrue(true); // Test completed
     }
 
+    /**
+     * Test request keys for single-flight deduplication
+     */
+    public void test_createRequestKey() throws Exception {
+        SemanticSearcher searcher = new SemanticSearcher() {
+            @Override
+            protected String getPermissionKey(SearchRequestParams params) {
+                return "[role1]@";
+            }
+        };
+        System.setProperty(CONTENT_MODEL_ID, "test-model-id");
+
+        MockSearchRequestParams params1 = new MockSearchRequestParams();
+        MockSearchRequestParams params2 = new MockSearchRequestParams();
+        String key = searcher.createRequestKey("semantic search", params1);
+        assertEquals(key, searcher.createRequestKey("semantic search", params2));
+        assertTrue(key.contains("test-model-id"));
+        assertTrue(key.contains("[role1]@"));
+
+        assertFalse(key.equals(searcher.createRequestKey("other search", params1)));
+
+        params2.setResponseFields(new String[] { "title" });
+        assertFalse(key.equals(searcher.createRequestKey("semantic search", params2)));
+
+        SemanticSearcher otherRoleSearcher = new SemanticSearcher() {
+            @Override
+            protected String getPermissionKey(SearchRequestParams params) {
+                return "[role2]@";
+            }
+        };
+        assertFalse(key.equals(otherRoleSearcher.createRequestKey("semantic search", params1)));
+    }
+
+    /**
+     * Test single-flight statistics are available
+     */
+    public void test_getSingleFlight() throws Exception {
+        assertNotNull(semanticSearcher.getSingleFlight());
+        assertEquals(0L, semanticSearcher.getSingleFlight().getCollapsedCount());
+    }
+
+    /**
+     * Test the hybrid mode replaces the default searcher, and the hybrid query is sent only then
+     */
+    public void test_isHybridSearch() throws Exception {
+        final List<String> registrations = new ArrayList<>();
+        ComponentUtil.register(new RankFusionProcessor() {
+            @Override
+            public void register(final Searcher searcher) {
+                registrations.add("register");
+            }
+
+            @Override
+            public void setSeacher(final Searcher searcher) {
+                registrations.add("setSeacher");
+            }
+        }, "rankFusionProcessor");
+        final boolean[] hybridEnabled = { false };
+        final SemanticSearchHelper hybridHelper = new SemanticSearchHelper() {
+            @Override
+            public boolean isHybridEnabled() {
+                return hybridEnabled[0];
+            }
+        };
+        ComponentUtil.register(hybridHelper, "semanticSearchHelper");
+        final SemanticSearchContext context = new SemanticSearchContext("test", null, OptionalThing.empty());
+
+        // without the hybrid mode, the searcher is added next to the default searcher
+        final SemanticSearcher fusionSearcher = new SemanticSearcher();
+        fusionSearcher.register();
+        assertEquals(Arrays.asList("register"), registrations);
+        assertFalse(fusionSearcher.isMainSearcher());
+        assertFalse(fusionSearcher.isHybridSearch(context));
+
+        // the default searcher would count the lexical scores twice
+        hybridEnabled[0] = true;
+        assertFalse(fusionSearcher.isHybridSearch(context));
+        assertTrue(fusionSearcher.hybridFallbackLogged.get());
+
+        // with the hybrid mode, the searcher replaces the default searcher
+        System.setProperty(HYBRID_ENABLED, "true");
+        final SemanticSearcher hybridSearcher = new SemanticSearcher();
+        hybridSearcher.register();
+        assertEquals(Arrays.asList("register", "setSeacher"), registrations);
+        assertTrue(hybridSearcher.isMainSearcher());
+        assertTrue(hybridSearcher.isHybridSearch(context));
+        assertFalse(hybridSearcher.isHybridSearch(null));
+
+        hybridEnabled[0] = false;
+        assertFalse(hybridSearcher.isHybridSearch(context));
+    }
+
     /**
      * Test getSemanticSearchHelper method
      */
@@ -240,6 +372,8 @@ public class SemanticSearcherTest extends UnitWebappTestCase {
         System.clearProperty(MIN_CONTENT_LENGTH);
         System.clearProperty(CONTENT_MODEL_ID);
         System.clearProperty(CONTENT_FIELD);
+        System.clearProperty(SINGLE_FLIGHT_ENABLED);
+        System.clearProperty(HYBRID_ENABLED);
     }
 
     private void setupTestComponents() {
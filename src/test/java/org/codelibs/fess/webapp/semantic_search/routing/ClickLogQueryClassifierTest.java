@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+
+import junit.framework.TestCase;
+
+public class ClickLogQueryClassifierTest extends TestCase {
+
+    /**
+     * Test labels of clicked results
+     */
+    public void test_label() throws Exception {
+        assertEquals(Route.LEXICAL, ClickLogQueryClassifier.label("Report_2024.pdf", "https://example.com/docs/report_2024.pdf"));
+        assertEquals(Route.LEXICAL, ClickLogQueryClassifier.label("fess 設定", "https://example.com/fess/%E8%A8%AD%E5%AE%9A.html"));
+        assertEquals(Route.SEMANTIC, ClickLogQueryClassifier.label("how to crawl", "https://example.com/docs/crawler.html"));
+        assertEquals(Route.SEMANTIC, ClickLogQueryClassifier.label("query", null));
+    }
+
+    /**
+     * Test the fallback classifier is used until enough samples are trained
+     */
+    public void test_fallback() throws Exception {
+        ClickLogQueryClassifier classifier = new ClickLogQueryClassifier(new RuleBasedQueryClassifier(), 10);
+
+        for (int i = 0; i < 9; i++) {
+            classifier.train("crawler", Route.LEXICAL);
+        }
+        assertEquals(9, classifier.getSampleCount());
+        assertEquals(Route.SEMANTIC, classifier.classify("crawler"));
+
+        classifier.train("crawler", Route.LEXICAL);
+        assertEquals(Route.LEXICAL, classifier.classify("crawler"));
+    }
+
+    /**
+     * Test the trained model generalizes from the term types
+     */
+    public void test_classify() throws Exception {
+        ClickLogQueryClassifier classifier = new ClickLogQueryClassifier(new RuleBasedQueryClassifier(), 10);
+
+        for (int i = 0; i < 20; i++) {
+            classifier.train("product" + i, "https://example.com/item/product" + i);
+            classifier.train("sku-" + i, "https://example.com/item/sku-" + i);
+            classifier.train("how to install fess " + i, "https://example.com/docs/setup");
+            classifier.train("best practices for crawling " + i, "https://example.com/docs/crawler");
+        }
+        assertEquals(40, classifier.getSampleCount(Route.LEXICAL));
+        assertEquals(Route.LEXICAL, classifier.classify("item99"));
+        assertEquals(Route.SEMANTIC, classifier.classify("how to tune crawling"));
+        assertTrue(classifier.toString().contains("samples=80"));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+
+import junit.framework.TestCase;
+
+public class QueryClassifierTrainerTest extends TestCase {
+
+    /**
+     * Test the click log classifier is trained from the click and search logs
+     */
+    public void test_train() throws Exception {
+        final Map<String, Object> clicks = new HashMap<>();
+        clicks.put("hits", Collections.singletonMap("hits",
+                Arrays.asList(Collections.singletonMap("_source", Map.of("queryId", "q1", "url", "https://example.com/sku-1")),
+                        Collections.singletonMap("_source", Map.of("queryId", "q2", "url", "https://example.com/docs")))));
+        final Map<String, Object> searchLogs = new HashMap<>();
+        searchLogs.put("hits", Collections.singletonMap("hits",
+                Arrays.asList(Collections.singletonMap("_source", Map.of("queryId", "q1", "searchWord", "SKU-1")),
+                        Collections.singletonMap("_source", Map.of("queryId", "q2", "searchWord", "how to search")))));
+        final List<String> bodies = new ArrayList<>();
+        final QueryClassifierTrainer trainer = new QueryClassifierTrainer("fess_log.click_log", "fess_log.search_log") {
+            @Override
+            protected Map<String, Object> searchLogIndex(String index, String body) {
+                bodies.add(body);
+                return index.equals(clickLogIndex) ? clicks : searchLogs;
+            }
+        };
+
+        ClickLogQueryClassifier classifier = new ClickLogQueryClassifier(new RuleBasedQueryClassifier(), 1);
+        trainer.train(classifier, 100);
+        assertEquals(2, classifier.getSampleCount());
+        assertEquals(1, classifier.getSampleCount(Route.LEXICAL));
+        assertEquals(2, bodies.size());
+        assertTrue(bodies.get(1), bodies.get(1).contains("\"queryId\":[\"q1\",\"q2\"]"));
+    }
+
+    /**
+     * Test the training stops when the thread is interrupted
+     */
+    public void test_trainInterrupted() throws Exception {
+        final List<String> indices = new ArrayList<>();
+        final QueryClassifierTrainer trainer = new QueryClassifierTrainer("fess_log.click_log", "fess_log.search_log") {
+            @Override
+            protected Map<String, Object> searchLogIndex(String index, String body) {
+                indices.add(index);
+                return Collections.singletonMap("hits", Collections.singletonMap("hits",
+                        Arrays.asList(Collections.singletonMap("_source", Map.of("queryId", "q1", "url", "https://example.com/")))));
+            }
+        };
+
+        ClickLogQueryClassifier classifier = new ClickLogQueryClassifier(new RuleBasedQueryClassifier(), 1);
+        Thread.currentThread().interrupt();
+        try {
+            trainer.train(classifier, 100);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(0, classifier.getSampleCount());
+        assertEquals(Arrays.asList("fess_log.click_log"), indices);
+    }
+
+    /**
+     * Test nothing is trained without clicks
+     */
+    public void test_trainWithoutClicks() throws Exception {
+        final List<String> indices = new ArrayList<>();
+        final QueryClassifierTrainer trainer = new QueryClassifierTrainer("fess_log.click_log", "fess_log.search_log") {
+            @Override
+            protected Map<String, Object> searchLogIndex(String index, String body) {
+                indices.add(index);
+                return Collections.emptyMap();
+            }
+        };
+
+        ClickLogQueryClassifier classifier = new ClickLogQueryClassifier(new RuleBasedQueryClassifier(), 1);
+        trainer.train(classifier, 100);
+        assertEquals(0, classifier.getSampleCount());
+        assertEquals(Arrays.asList("fess_log.click_log"), indices);
+    }
+}
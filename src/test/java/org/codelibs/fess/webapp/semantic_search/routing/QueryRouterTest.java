@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+
+import junit.framework.TestCase;
+
+public class QueryRouterTest extends TestCase {
+
+    /**
+     * Test routed queries are counted
+     */
+    public void test_route() throws Exception {
+        QueryRouter router = new QueryRouter(new RuleBasedQueryClassifier());
+        assertEquals(0.0, router.getLexicalRatio());
+
+        assertEquals(Route.LEXICAL, router.route("https://fess.codelibs.org/"));
+        assertEquals(Route.SEMANTIC, router.route("open source search server"));
+        assertEquals(Route.SEMANTIC, router.route("enterprise search"));
+        assertEquals(Route.LEXICAL, router.route("FESS-123"));
+
+        assertEquals(2, router.getLexicalCount());
+        assertEquals(2, router.getSemanticCount());
+        assertEquals(0.5, router.getLexicalRatio());
+        assertTrue(router.toString(), router.toString().contains("lexicalRatio=0.500"));
+    }
+
+    /**
+     * Test the classifier can be replaced
+     */
+    public void test_setClassifier() throws Exception {
+        QueryRouter router = new QueryRouter(new RuleBasedQueryClassifier());
+        router.setClassifier(query -> Route.LEXICAL);
+
+        assertEquals(Route.LEXICAL, router.route("open source search server"));
+        assertEquals(1, router.getLexicalCount());
+    }
+}
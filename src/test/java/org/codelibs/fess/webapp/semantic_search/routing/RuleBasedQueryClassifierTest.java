@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.routing;
+
+import org.codelibs.fess.webapp.semantic_search.routing.QueryClassifier.Route;
+
+import junit.framework.TestCase;
+
+public class RuleBasedQueryClassifierTest extends TestCase {
+
+    /**
+     * Test token types
+     */
+    public void test_getTokenType() throws Exception {
+        assertEquals(RuleBasedQueryClassifier.URL, RuleBasedQueryClassifier.getTokenType("https://fess.codelibs.org/"));
+        assertEquals(RuleBasedQueryClassifier.URL, RuleBasedQueryClassifier.getTokenType("www.codelibs.org"));
+        assertEquals(RuleBasedQueryClassifier.EMAIL, RuleBasedQueryClassifier.getTokenType("info@codelibs.co"));
+        assertEquals(RuleBasedQueryClassifier.PATH, RuleBasedQueryClassifier.getTokenType("report.pdf"));
+        assertEquals(RuleBasedQueryClassifier.PATH, RuleBasedQueryClassifier.getTokenType("/var/log/fess"));
+        assertEquals(RuleBasedQueryClassifier.CODE, RuleBasedQueryClassifier.getTokenType("ABC-1234"));
+        assertEquals(RuleBasedQueryClassifier.CODE, RuleBasedQueryClassifier.getTokenType("x86_64"));
+        assertEquals(RuleBasedQueryClassifier.NUMBER, RuleBasedQueryClassifier.getTokenType("2024-01-15"));
+        assertEquals(RuleBasedQueryClassifier.WORD, RuleBasedQueryClassifier.getTokenType("search"));
+        assertEquals(RuleBasedQueryClassifier.WORD, RuleBasedQueryClassifier.getTokenType("検索"));
+    }
+
+    /**
+     * Test keyword-style queries are routed to the lexical search
+     */
+    public void test_classify() throws Exception {
+        RuleBasedQueryClassifier classifier = new RuleBasedQueryClassifier();
+
+        assertEquals(Route.LEXICAL, classifier.classify("https://fess.codelibs.org/ja/"));
+        assertEquals(Route.LEXICAL, classifier.classify("\"ABC-1234 XYZ-5678\""));
+        assertEquals(Route.LEXICAL, classifier.classify("report_2024.xlsx"));
+        assertEquals(Route.LEXICAL, classifier.classify(""));
+        assertEquals(Route.LEXICAL, classifier.classify(null));
+        assertEquals(Route.SEMANTIC, classifier.classify("how to configure the crawler"));
+        assertEquals(Route.SEMANTIC, classifier.classify("error ABC-1234 after upgrade"));
+        assertEquals(Route.SEMANTIC, classifier.classify("crawler"));
+    }
+
+    /**
+     * Test queries with fewer terms than the minimum are routed to the lexical search
+     */
+    public void test_minTerms() throws Exception {
+        RuleBasedQueryClassifier classifier = new RuleBasedQueryClassifier(2);
+
+        assertEquals(Route.LEXICAL, classifier.classify("crawler"));
+        assertEquals(Route.SEMANTIC, classifier.classify("crawler settings"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import junit.framework.TestCase;
+
+public class FieldPrefixMatcherTest extends TestCase {
+
+    private static final String[] FIELDS = { "title", "content", "url", "site", "filetype", "タイトル" };
+
+    /**
+     * Test field lookup
+     */
+    public void test_contains() throws Exception {
+        FieldPrefixMatcher matcher = new FieldPrefixMatcher(FIELDS);
+
+        assertTrue(matcher.contains("title"));
+        assertTrue(matcher.contains("タイトル"));
+        assertFalse(matcher.contains("titles"));
+        assertFalse(matcher.contains(""));
+        assertFalse(matcher.contains(null));
+    }
+
+    /**
+     * Test field prefix detection is equivalent to indexOf(field + ":")
+     */
+    public void test_hasFieldPrefix() throws Exception {
+        FieldPrefixMatcher matcher = new FieldPrefixMatcher(FIELDS);
+        String[] queries = { "title:fess", "open source site:fess.codelibs.org", "a b", "time 10:30", "subtitle:x", "x:y title",
+                ":title", "url:", "タイトル:検索", "検索:タイトル", "", "filetype :pdf" };
+        for (String query : queries) {
+            boolean expected = false;
+            for (String field : FIELDS) {
+                if (query.indexOf(field + ":") != -1) {
+                    expected = true;
+                }
+            }
+            assertEquals(query, expected, matcher.hasFieldPrefix(query));
+        }
+        assertFalse(matcher.hasFieldPrefix(null));
+    }
+
+    /**
+     * Test an empty field matches any colon
+     */
+    public void test_emptyField() throws Exception {
+        FieldPrefixMatcher matcher = new FieldPrefixMatcher(new String[] { "", "title" });
+
+        assertTrue(matcher.hasFieldPrefix("a:b"));
+        assertFalse(matcher.hasFieldPrefix("a b"));
+    }
+
+    /**
+     * Test the matcher is bound to the field array
+     */
+    public void test_isCompiledFrom() throws Exception {
+        FieldPrefixMatcher matcher = new FieldPrefixMatcher(FIELDS);
+
+        assertTrue(matcher.isCompiledFrom(FIELDS));
+        assertFalse(matcher.isCompiledFrom(FIELDS.clone()));
+        assertFalse(new FieldPrefixMatcher(null).hasFieldPrefix("title:fess"));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LongIntHashIndexTest extends TestCase {
+
+    /**
+     * Test put and get
+     */
+    public void test_putAndGet() throws Exception {
+        LongIntHashIndex index = new LongIntHashIndex(4);
+
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.get(1L));
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.put(1L, 10));
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.put(0L, 20));
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.put(-1L, 30));
+
+        assertEquals(10, index.get(1L));
+        assertEquals(20, index.get(0L));
+        assertEquals(30, index.get(-1L));
+        assertEquals(3, index.size());
+
+        assertEquals(10, index.put(1L, 11));
+        assertEquals(11, index.get(1L));
+        assertEquals(3, index.size());
+    }
+
+    /**
+     * Test growing beyond the expected size
+     */
+    public void test_rehash() throws Exception {
+        LongIntHashIndex index = new LongIntHashIndex(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextLong();
+            index.put(key, i);
+            expected.put(key, i);
+        }
+
+        assertEquals(expected.size(), index.size());
+        expected.forEach((key, value) -> assertEquals(value.intValue(), index.get(key)));
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.get(random.nextLong()));
+    }
+
+    /**
+     * Test remove keeps other keys reachable
+     */
+    public void test_remove() throws Exception {
+        LongIntHashIndex index = new LongIntHashIndex(64);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            long key = random.nextInt(500);
+            if (random.nextBoolean()) {
+                index.put(key, i);
+                expected.put(key, i);
+            } else {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntHashIndex.NOT_FOUND : removed.intValue(), index.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (long key = 0; key < 500; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? LongIntHashIndex.NOT_FOUND : value.intValue(), index.get(key));
+        }
+    }
+
+    /**
+     * Test clear and invalid values
+     */
+    public void test_clear() throws Exception {
+        LongIntHashIndex index = new LongIntHashIndex(16);
+        index.put(1L, 1);
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(LongIntHashIndex.NOT_FOUND, index.get(1L));
+
+        try {
+            index.put(2L, -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test the memory usage grows with the table and is bounded by the estimate for the final size
+     */
+    public void test_memoryUsage() throws Exception {
+        LongIntHashIndex index = new LongIntHashIndex(1);
+        long initial = index.getMemoryUsage();
+        assertEquals(LongIntHashIndex.getMemoryUsage(1), initial);
+        for (int i = 0; i < 1000; i++) {
+            index.put(i, i);
+        }
+        assertTrue(index.getMemoryUsage() > initial);
+        assertTrue(index.getMemoryUsage() <= LongIntHashIndex.getMemoryUsage(1000));
+        assertEquals(0L, index.getMemoryUsage() % (Long.BYTES + Integer.BYTES));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SingleFlightTest extends TestCase {
+
+    /**
+     * Test sequential calls run their own executions
+     */
+    public void test_sequential() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger counter = new AtomicInteger();
+
+        assertEquals(Integer.valueOf(1), singleFlight.execute("key", counter::incrementAndGet));
+        assertEquals(Integer.valueOf(2), singleFlight.execute("key", counter::incrementAndGet));
+        assertEquals(2, singleFlight.getExecutionCount());
+        assertEquals(0, singleFlight.getCollapsedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    /**
+     * Test concurrent calls with the same key share one execution
+     */
+    public void test_concurrentSameKey() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return counter.incrementAndGet();
+            })));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < numThreads; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("key", counter::incrementAndGet)));
+            }
+            while (singleFlight.getCollapsedCount() < numThreads - 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(1), future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, counter.get());
+            assertEquals(1, singleFlight.getExecutionCount());
+            assertEquals(numThreads - 1, singleFlight.getCollapsedCount());
+            assertEquals(0, singleFlight.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test different keys are executed independently
+     */
+    public void test_differentKeys() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertEquals("a", singleFlight.execute("a", () -> "a"));
+        assertEquals("b", singleFlight.execute("b", () -> "b"));
+        assertEquals(2, singleFlight.getExecutionCount());
+    }
+
+    /**
+     * Test an exception is propagated to all callers and the key is released
+     */
+    public void test_exception() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("failed");
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "follower"));
+            while (singleFlight.getCollapsedCount() < 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<String> future : List.of(leader, follower)) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    fail();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+}
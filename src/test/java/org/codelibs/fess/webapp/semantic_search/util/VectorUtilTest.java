@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.webapp.semantic_search.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+public class VectorUtilTest extends TestCase {
+
+    /**
+     * Test vectors are scaled to unit length in place
+     */
+    public void test_normalize() throws Exception {
+        float[] vector = { 3.0f, 4.0f };
+        assertEquals(5.0, VectorUtil.norm(vector), 0.0001);
+        assertFalse(VectorUtil.isNormalized(vector));
+
+        assertSame(vector, VectorUtil.normalize(vector));
+        assertEquals(0.6f, vector[0], 0.0001f);
+        assertEquals(0.8f, vector[1], 0.0001f);
+        assertTrue(VectorUtil.isNormalized(vector));
+
+        // idempotent
+        VectorUtil.normalize(vector);
+        assertEquals(0.6f, vector[0], 0.0001f);
+        assertEquals(0.8f, vector[1], 0.0001f);
+    }
+
+    /**
+     * Test a zero vector is left unchanged
+     */
+    public void test_normalizeZeroVector() throws Exception {
+        float[] vector = { 0.0f, 0.0f };
+        VectorUtil.normalize(vector);
+        assertEquals(0.0f, vector[0]);
+        assertEquals(0.0f, vector[1]);
+        assertFalse(VectorUtil.isNormalized(vector));
+    }
+
+    /**
+     * Test the mean skips vectors of another length
+     */
+    public void test_mean() throws Exception {
+        float[] mean = VectorUtil.mean(Arrays.asList(new float[] { 1.0f, 2.0f }, new float[] { 3.0f, 4.0f }, new float[] { 9.0f }));
+        assertEquals(2, mean.length);
+        assertEquals(2.0f, mean[0]);
+        assertEquals(3.0f, mean[1]);
+
+        assertNull(VectorUtil.mean(Collections.emptyList()));
+    }
+
+    /**
+     * Test positive values are packed as bits from the most significant bit
+     */
+    public void test_binarize() throws Exception {
+        float[] vector = { 0.5f, -0.1f, 0.0f, 0.2f, -0.3f, -0.4f, 0.1f, 0.9f, //
+                0.1f, 0.1f, 0.1f, 0.1f, 0.1f, 0.1f, 0.1f, 0.1f };
+        float[] bits = VectorUtil.binarize(vector);
+        assertEquals(2, bits.length);
+        assertEquals((float) (byte) 0b10010011, bits[0]);
+        assertEquals(-1.0f, bits[1]);
+
+        try {
+            VectorUtil.binarize(new float[] { 1.0f, 2.0f });
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}